@@ -0,0 +1,97 @@
+package de.prob.parser.benchmarks;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.MachineASTCreator;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.visitors.MachineScopeChecker;
+import de.prob.parser.ast.visitors.TypeChecker;
+import files.BLexer;
+import files.BParser.StartContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * One of the checked-in machines in the input form of every phase:
+ * <ul>
+ * <li>Scheduler: a small hand-written machine</li>
+ * <li>Operations: many small operations</li>
+ * <li>Expressions: deeply nested expressions and predicates</li>
+ * <li>Quantifiers: many bound variables, comprehensions and relations</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+public class MachineState {
+
+	@Param({ "Scheduler", "Operations", "Expressions", "Quantifiers" })
+	public String machine;
+
+	String text;
+	List<? extends Token> tokens;
+	StartContext tree;
+	MachineNode checked;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		text = load(machine);
+		tokens = new BLexer(CharStreams.fromString(text)).getAllTokens();
+		tree = Antlr4BParser.parse(text);
+		checked = MachineASTCreator.createMachineAST(tree);
+		new MachineScopeChecker(checked);
+		new TypeChecker(checked);
+	}
+
+	static String load(String machine) throws IOException {
+		try (InputStream in = MachineState.class.getResourceAsStream("/machines/" + machine + ".mch")) {
+			if (in == null) {
+				throw new IOException("Unknown machine: " + machine);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * A new AST for every invocation, since the checkers modify the AST.
+	 */
+	@State(Scope.Thread)
+	public static class UncheckedMachine {
+		MachineNode ast;
+
+		@Setup(Level.Invocation)
+		public void setUp(MachineState state) {
+			ast = MachineASTCreator.createMachineAST(state.tree);
+		}
+	}
+
+	/**
+	 * A new scope checked AST for every invocation, the input of the type
+	 * checker.
+	 */
+	@State(Scope.Thread)
+	public static class ScopeCheckedMachine {
+		MachineNode ast;
+
+		@Setup(Level.Invocation)
+		public void setUp(MachineState state) throws Exception {
+			ast = MachineASTCreator.createMachineAST(state.tree);
+			new MachineScopeChecker(ast);
+		}
+	}
+
+}
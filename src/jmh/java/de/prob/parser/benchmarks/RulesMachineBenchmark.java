@@ -0,0 +1,84 @@
+package de.prob.parser.benchmarks;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.RulesMachineASTCreator;
+import de.prob.parser.ast.nodes.rules.RulesMachineNode;
+import files.RulesGrammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and AST creation of generated rules machines of growing size,
+ * similar to rule_medium500.mch; the time per rule should stay about the
+ * same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RulesMachineBenchmark {
+
+	@Param({ "500", "1000", "2000", "4000" })
+	public int rules;
+
+	private String text;
+	private RulesGrammar.StartContext tree;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		text = createMachine(rules);
+		tree = Antlr4BParser.parseRulesMachine(text);
+	}
+
+	static String createMachine(int rules) {
+		StringBuilder machine = new StringBuilder("RULES_MACHINE Generated\n");
+		machine.append("OPERATIONS\n");
+		for (int i = 0; i < rules; i++) {
+			machine.append(i == 0 ? "" : ";\n");
+			if (i % 5 == 0) {
+				machine.append("  COMPUTATION comp").append(i).append("\n  BODY\n");
+				machine.append("    DEFINE v").append(i).append(" TYPE POW(INTEGER) VALUE 1..").append(i + 10)
+						.append(" END\n  END");
+				continue;
+			}
+			int computation = i - i % 5;
+			machine.append("  RULE rule").append(i).append("\n");
+			machine.append("  DEPENDS_ON_COMPUTATION comp").append(computation).append("\n");
+			if (i % 5 > 1) {
+				machine.append("  DEPENDS_ON_RULE rule").append(i - 1).append("\n");
+			}
+			machine.append("  RULEID id").append(i).append("\n  ERROR_TYPES 2\n  BODY\n");
+			machine.append("    RULE_FORALL x WHERE x : v").append(computation).append(" & x mod 2 = 0\n");
+			machine.append("    EXPECT x > ").append(i % 7).append(" & x /= ").append(i).append("\n");
+			machine.append("    ERROR_TYPE 1\n");
+			machine.append("    COUNTEREXAMPLE STRING_FORMAT(\"~w is too small\", x) END\n  END");
+		}
+		machine.append("\nEND");
+		return machine.toString();
+	}
+
+	@Benchmark
+	public RulesGrammar.StartContext parse() {
+		return Antlr4BParser.parseRulesMachine(text);
+	}
+
+	@Benchmark
+	public RulesMachineNode createAST() {
+		return RulesMachineASTCreator.createRulesMachineAST(tree);
+	}
+
+}
@@ -1,27 +1,52 @@
 package de.prob.parser.antlr;
 
+import de.prob.parser.ast.NodeInterner;
+import de.prob.parser.ast.OperatorIndex;
+import de.prob.parser.ast.compact.CompactAST;
 import de.prob.parser.ast.nodes.MachineNode;
 import de.prob.parser.ast.nodes.MachineReferenceNode;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.nodes.rules.RulesMachineNode;
 import de.prob.parser.ast.visitors.MachineScopeChecker;
+import de.prob.parser.ast.visitors.MachineScopeViews;
+import de.prob.parser.ast.visitors.MemoryFootprint;
+import de.prob.parser.ast.visitors.RenamedVariablesIndex;
+import de.prob.parser.ast.visitors.RuleDependencyGraph;
 import de.prob.parser.ast.visitors.TypeChecker;
 import de.prob.parser.ast.visitors.TypeErrorException;
 import de.prob.parser.util.Utils;
 import files.BLexer;
 import files.BParser;
 import files.BParser.StartContext;
+import files.RulesGrammar;
+import files.RulesLexer;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CodePointCharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.DiagnosticErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -43,28 +68,68 @@ public class Antlr4BParser {
 	}
 
 	public static BProject createBProject(List<MachineNode> machineNodeList, boolean typecheck, boolean scopecheck) throws TypeErrorException, ScopeException {
+		return createBProject(machineNodeList, typecheck, scopecheck, new ParserMetrics());
+	}
+
+	/**
+	 * Checks the machines and adds the time of the checks to the metrics. The
+	 * node count of a machine not contained in the metrics yet is recorded,
+	 * its other counts and the times of its earlier phases remain 0.
+	 */
+	public static BProject createBProject(List<MachineNode> machineNodeList, boolean typecheck, boolean scopecheck,
+			ParserMetrics metrics) throws TypeErrorException, ScopeException {
+		for (MachineNode machineNode : machineNodeList) {
+			if (metrics.getMachine(machineNode.toString()) == null) {
+				metrics.setNodes(machineNode.toString(), ParserMetrics.countNodes(machineNode));
+			}
+		}
 		// determine machine order
 
 		sortMachineNodes(machineNodeList);
+		MachineScopeViews scopeViews = new MachineScopeViews();
 		for (int i = machineNodeList.size() - 1; i >= 0; i--) {
 			MachineNode machineNode = machineNodeList.get(i);
 		    if(scopecheck) {
-			    new MachineScopeChecker(machineNode);
+				Object event = ParserEvents.begin(ParserMetrics.Phase.SCOPE_CHECK);
+				long start = System.nanoTime();
+			    new MachineScopeChecker(machineNode, scopeViews);
+				metrics.add(machineNode.toString(), ParserMetrics.Phase.SCOPE_CHECK, System.nanoTime() - start);
+				ParserEvents.commit(event, machineNode.toString(), metrics);
 			}
 		}
 		if(typecheck) {
+			long start = System.nanoTime();
+			RenamedVariablesIndex renamedVariables = new RenamedVariablesIndex(machineNodeList);
+			metrics.add(null, ParserMetrics.Phase.TYPE_CHECK, System.nanoTime() - start);
 			for (int i = machineNodeList.size() - 1; i >= 0; i--) {
 				MachineNode machineNode = machineNodeList.get(i);
-				new TypeChecker(machineNode);
+				Object event = ParserEvents.begin(ParserMetrics.Phase.TYPE_CHECK);
+				start = System.nanoTime();
+				new TypeChecker(machineNode, renamedVariables);
+				metrics.add(machineNode.toString(), ParserMetrics.Phase.TYPE_CHECK, System.nanoTime() - start);
+				ParserEvents.commit(event, machineNode.toString(), metrics);
 			}
 		}
-		return new BProject(machineNodeList);
+		BProject project = new BProject(machineNodeList);
+		project.setMetrics(metrics);
+		return project;
 	}
 
 	public static BProject createBProjectFromMachineStrings(String main, String... machines)
 			throws TypeErrorException, ScopeException {
-		List<MachineNode> parsedmachines = parseMachines(main, machines);
-		return createBProject(parsedmachines);
+		return createBProjectFromMachineStrings(false, main, machines);
+	}
+
+	/**
+	 * Loads a project from machines given as strings. If requested, the
+	 * {@link OperatorIndex} of every machine is built during AST creation,
+	 * see {@link MachineNode#getOperatorIndex()}.
+	 */
+	public static BProject createBProjectFromMachineStrings(boolean indexOperators, String main, String... machines)
+			throws TypeErrorException, ScopeException {
+		ParserMetrics metrics = new ParserMetrics();
+		List<MachineNode> parsedmachines = parseMachines(metrics, indexOperators, main, machines);
+		return createBProject(parsedmachines, true, true, metrics);
 	}
 
 	protected static void checkMachineName(File file, String name) {
@@ -82,13 +147,109 @@ public class Antlr4BParser {
 	}
 
 	public static BProject createBProjectFromMainMachineFile(File mainBFile, boolean typecheck, boolean scopecheck) throws IOException, TypeErrorException, ScopeException {
+		return createBProjectFromMainMachineFile(mainBFile, typecheck, scopecheck, DefinitionFileCache.getShared());
+	}
+
+	/**
+	 * Loads a project, taking the definition files included by its machines
+	 * from the given cache.
+	 */
+	public static BProject createBProjectFromMainMachineFile(File mainBFile, boolean typecheck, boolean scopecheck,
+			DefinitionFileCache definitionFiles) throws IOException, TypeErrorException, ScopeException {
+		return createBProjectFromMainMachineFile(mainBFile, typecheck, scopecheck, definitionFiles, null);
+	}
+
+	/**
+	 * Loads a project in which structurally equal expressions and predicates
+	 * are shared via the given interner, if any, see {@link NodeInterner}. A
+	 * shared node only has the position and the parent of one of its
+	 * occurrences, so the project should not be printed with positions, and a
+	 * type error inside a shared node may be reported at another occurrence of
+	 * the same subterm. Callers that need the exact position of an error can
+	 * load the project again without an interner.
+	 */
+	public static BProject createBProjectFromMainMachineFile(File mainBFile, boolean typecheck, boolean scopecheck,
+			DefinitionFileCache definitionFiles, NodeInterner interner)
+			throws IOException, TypeErrorException, ScopeException {
+		return createBProjectFromMainMachineFile(mainBFile, typecheck, scopecheck, definitionFiles, interner, false);
+	}
+
+	/**
+	 * Loads a project as above. If requested, the {@link OperatorIndex} of
+	 * every machine is built during AST creation instead of by a later walk
+	 * of {@link OperatorIndex#of(MachineNode)}.
+	 */
+	public static BProject createBProjectFromMainMachineFile(File mainBFile, boolean typecheck, boolean scopecheck,
+			DefinitionFileCache definitionFiles, NodeInterner interner, boolean indexOperators)
+			throws IOException, TypeErrorException, ScopeException {
 		final File parentFolder = mainBFile.getParentFile();
+		final ParserMetrics metrics = new ParserMetrics();
 		final List<MachineNode> machines = new ArrayList<>();
-		final StartContext mainMachineCST = parse(mainBFile);
-		final MachineNode main = MachineASTCreator.createMachineAST(mainMachineCST);
+		final MachineNode main = loadMachine(mainBFile, null, definitionFiles, interner, indexOperators,
+				metrics);
 		checkMachineName(mainBFile, main.getName());
 
 		machines.add(main);
+		loadReferencedMachines(parentFolder, machines, definitionFiles, interner, indexOperators, metrics);
+		return createBProject(machines, typecheck, scopecheck, metrics);
+	}
+
+	/**
+	 * Creates the compact AST of the main machine of a project without
+	 * creating the object ASTs of all its operations: the referenced machines
+	 * are loaded and checked as usual, then the operations of the main machine
+	 * are created, checked and encoded one at a time. Declarations and
+	 * operations of the referenced machines are stored as externals of the
+	 * compact AST.
+	 */
+	public static CompactAST createCompactMachine(File mainBFile)
+			throws IOException, TypeErrorException, ScopeException {
+		final DefinitionFileCache definitionFiles = DefinitionFileCache.getShared();
+		final MachineASTCreator creator = MachineASTCreator.createMachineASTWithoutOperations(parse(mainBFile),
+				mainBFile.getParentFile(), definitionFiles);
+		final MachineNode main = creator.getMachineNode();
+		checkMachineName(mainBFile, main.getName());
+		final List<MachineNode> machines = new ArrayList<>();
+		machines.add(main);
+		loadReferencedMachines(mainBFile.getParentFile(), machines, definitionFiles, null, false,
+				new ParserMetrics());
+
+		sortMachineNodes(machines);
+		MachineScopeViews scopeViews = new MachineScopeViews();
+		MachineScopeChecker scopeChecker = null;
+		for (int i = machines.size() - 1; i >= 0; i--) {
+			MachineScopeChecker checker = new MachineScopeChecker(machines.get(i), scopeViews);
+			if (machines.get(i) == main) {
+				scopeChecker = checker;
+			}
+		}
+		RenamedVariablesIndex renamedVariables = new RenamedVariablesIndex(machines);
+		TypeChecker typeChecker = null;
+		for (int i = machines.size() - 1; i >= 0; i--) {
+			TypeChecker checker = new TypeChecker(machines.get(i), renamedVariables);
+			if (machines.get(i) == main) {
+				typeChecker = checker;
+			}
+		}
+
+		CompactAST.Builder builder = CompactAST.builder(main);
+		for (int i = 0; i < creator.getOperationCount(); i++) {
+			OperationNode operation = creator.createOperation(i);
+			scopeChecker.checkOperation(operation);
+			typeChecker.checkOperation(operation);
+			builder.addOperation(operation);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Loads the machines referenced by the main machine, the first of the
+	 * list, and by the machines loaded for it.
+	 */
+	private static void loadReferencedMachines(File parentFolder, List<MachineNode> machines,
+			DefinitionFileCache definitionFiles, NodeInterner interner, boolean indexOperators,
+			ParserMetrics metrics) throws IOException {
+		final MachineNode main = machines.get(0);
 		final Set<String> parsedMachines = new HashSet<>();
 		parsedMachines.add(main.getName());
 		final List<MachineReferenceNode> todo = new ArrayList<>();
@@ -100,9 +261,8 @@ public class Antlr4BParser {
 			if (!parsedMachines.contains(name)) {
 				final File file = getFile(parentFolder, name);
 				checkMachineName(file, name);
-				final StartContext cst = parse(file);
-				final MachineNode ast = MachineASTCreator.createMachineAST(cst);
-				ast.setPrefix(next.getPrefix());
+				final MachineNode ast = loadMachine(file, next.getPrefix(), definitionFiles, interner,
+						indexOperators, metrics);
 				machines.add(ast);
 				for (MachineReferenceNode machineReferenceNode : ast.getMachineReferences()) {
 					final String refName = machineReferenceNode.getMachineName();
@@ -112,7 +272,68 @@ public class Antlr4BParser {
 				}
 			}
 		}
-		return createBProject(machines, typecheck, scopecheck);
+	}
+
+	/**
+	 * Reads, lexes, parses and creates the AST of a machine file, recording
+	 * the time of each phase separately.
+	 */
+	private static MachineNode loadMachine(File file, String prefix, DefinitionFileCache definitionFiles,
+			NodeInterner interner, boolean indexOperators, ParserMetrics metrics) throws IOException {
+		final Object readEvent = ParserEvents.begin(ParserMetrics.Phase.READ);
+		final long start = System.nanoTime();
+		final CharStream charStream;
+		try (FileInputStream fileInputStream = new FileInputStream(file)) {
+			charStream = CharStreams.fromStream(fileInputStream);
+		}
+		final long read = System.nanoTime() - start;
+		ParserEvents.end(readEvent);
+		return createMachine(charStream, prefix, file.getParentFile(), definitionFiles, interner, indexOperators,
+				metrics, readEvent, read, file.length());
+	}
+
+	/**
+	 * Lexes, parses and creates the AST of a machine that has been read
+	 * before, recording the time of each phase separately.
+	 */
+	private static MachineNode createMachine(CharStream charStream, String prefix, File directory,
+			DefinitionFileCache definitionFiles, NodeInterner interner, boolean indexOperators, ParserMetrics metrics,
+			Object readEvent, long read, long bytes) {
+		final Object lexEvent = ParserEvents.begin(ParserMetrics.Phase.LEX);
+		long start = System.nanoTime();
+		final CommonTokenStream tokens = new CommonTokenStream(new BLexer(charStream));
+		tokens.fill();
+		final long lex = System.nanoTime() - start;
+		ParserEvents.end(lexEvent);
+
+		final Object parseEvent = ParserEvents.begin(ParserMetrics.Phase.PARSE);
+		start = System.nanoTime();
+		final StartContext cst = parse(tokens);
+		final long parse = System.nanoTime() - start;
+		ParserEvents.end(parseEvent);
+
+		final Object astEvent = ParserEvents.begin(ParserMetrics.Phase.AST);
+		start = System.nanoTime();
+		final MachineNode ast = MachineASTCreator.createMachineAST(cst, interner, indexOperators, directory,
+				definitionFiles);
+		ast.setPrefix(prefix);
+		final long astCreation = System.nanoTime() - start;
+		ParserEvents.end(astEvent);
+
+		final String name = ast.toString();
+		metrics.add(name, ParserMetrics.Phase.READ, read);
+		metrics.add(name, ParserMetrics.Phase.LEX, lex);
+		metrics.add(name, ParserMetrics.Phase.PARSE, parse);
+		metrics.add(name, ParserMetrics.Phase.AST, astCreation);
+		metrics.setBytes(name, bytes);
+		metrics.setTokens(name, tokens.size());
+		metrics.setNodes(name, ParserMetrics.countNodes(ast));
+		// the machine name and the counts are only known now
+		ParserEvents.commit(readEvent, name, metrics);
+		ParserEvents.commit(lexEvent, name, metrics);
+		ParserEvents.commit(parseEvent, name, metrics);
+		ParserEvents.commit(astEvent, name, metrics);
+		return ast;
 	}
 
 	protected static File getFile(File parentFolder, String name) {
@@ -121,14 +342,31 @@ public class Antlr4BParser {
 	}
 
 	public static List<MachineNode> parseMachines(String input, String... machines) {
+		return parseMachines(new ParserMetrics(), input, machines);
+	}
+
+	/**
+	 * Parses machines given as strings, recording the time of lexing, parsing
+	 * and AST creation and the token and node counts of every machine in the
+	 * metrics, which can then be passed to
+	 * {@link #createBProject(List, boolean, boolean, ParserMetrics)}.
+	 */
+	public static List<MachineNode> parseMachines(ParserMetrics metrics, String input, String... machines) {
+		return parseMachines(metrics, false, input, machines);
+	}
+
+	/**
+	 * Parses machines given as strings as above and, if requested, builds the
+	 * {@link OperatorIndex} of every machine during AST creation.
+	 */
+	public static List<MachineNode> parseMachines(ParserMetrics metrics, boolean indexOperators, String input,
+			String... machines) {
 		List<MachineNode> machineNodeList = new ArrayList<>();
-		StartContext tree = parse(input);
-		MachineNode main = MachineASTCreator.createMachineAST(tree);
-		machineNodeList.add(main);
+		machineNodeList.add(createMachine(CharStreams.fromString(input), null, null, DefinitionFileCache.getShared(),
+				null, indexOperators, metrics, null, 0, 0));
 		for (String string : machines) {
-			StartContext tree2 = parse(string);
-			MachineNode mNode = MachineASTCreator.createMachineAST(tree2);
-			machineNodeList.add(mNode);
+			machineNodeList.add(createMachine(CharStreams.fromString(string), null, null,
+					DefinitionFileCache.getShared(), null, indexOperators, metrics, null, 0, 0));
 		}
 		return machineNodeList;
 	}
@@ -187,8 +425,14 @@ public class Antlr4BParser {
 		// create a buffer of tokens pulled from the lexer
 		CommonTokenStream tokens = new CommonTokenStream(lexer);
 		// BLexer.rulesGrammar = true;
-		// create a parser that feeds off the tokens buffer
+		return parse(tokens);
+	}
 
+	/**
+	 * Parses the tokens of a machine, e.g. tokens that have been lexed before.
+	 */
+	public static StartContext parse(final TokenStream tokens) {
+		// create a parser that feeds off the tokens buffer
 		BParser parser = new BParser(tokens);
 		// RulesGrammar parser = new RulesGrammar(tokens);
 
@@ -221,6 +465,53 @@ public class Antlr4BParser {
 		return tree;
 	}
 
+	public static RulesGrammar.StartContext parseRulesMachine(File file) throws IOException {
+		try (FileInputStream fileInputStream = new FileInputStream(file)) {
+			return parseRulesMachine(CharStreams.fromStream(fileInputStream));
+		}
+	}
+
+	public static RulesGrammar.StartContext parseRulesMachine(String machine) {
+		return parseRulesMachine(CharStreams.fromString(machine));
+	}
+
+	/**
+	 * Parses a machine with the rules grammar. The input is first parsed in
+	 * SLL mode, which is linear for the rules grammar in practice, and only
+	 * parsed again with full LL prediction if SLL fails; syntax errors are
+	 * reported by the second attempt.
+	 */
+	public static RulesGrammar.StartContext parseRulesMachine(final CharStream charStream) {
+		return parseRulesMachine(new CommonTokenStream(new RulesLexer(charStream)));
+	}
+
+	private static RulesGrammar.StartContext parseRulesMachine(final CommonTokenStream tokens) {
+		RulesGrammar parser = new RulesGrammar(tokens);
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		try {
+			return parser.start();
+		} catch (ParseCancellationException e) {
+			tokens.seek(0);
+			parser.reset();
+			parser.setErrorHandler(new DefaultErrorStrategy());
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			parser.addErrorListener(new BaseErrorListener() {
+				@Override
+				public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+						int charPositionInLine, String msg, RecognitionException exception) {
+					throw new RuntimeException("Syntax error in line " + line + ":" + charPositionInLine + ": " + msg);
+				}
+			});
+			return parser.start();
+		}
+	}
+
+	public static RulesMachineNode createRulesMachineAST(File file) throws IOException {
+		return RulesMachineASTCreator.createRulesMachineAST(parseRulesMachine(file));
+	}
+
 	public static BParser.ExpressionContext parseExpression(final CharStream charStream) {
 		BLexer lexer = new BLexer(charStream);
 		// MyLexer myLexer = new MyLexer(fromString);
@@ -268,33 +559,222 @@ public class Antlr4BParser {
 	}
 
 	public static void main(String[] args) throws TypeErrorException, ScopeException, IOException, URISyntaxException {
-		if(args.length != 1 && args.length != 2) {
+		final List<String> options = new ArrayList<>();
+		final List<String> arguments = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.startsWith("-")) {
+				options.add(arg);
+			} else {
+				arguments.add(arg);
+			}
+		}
+		if(arguments.size() != 1 && arguments.size() != 2 || !Arrays.asList("-fastrw", "-parallel", "-positions", "-share", "-build", "-footprint", "-rules", "-metrics", "-metricscsv").containsAll(options)) {
 			System.out.println("Arguments for ANTLR B Parser is wrong");
-			System.out.println("Use java -jar antlr-parser-VERSION.jar FILE [TypeCheck]");
+			System.out.println("Use java -jar antlr-parser-VERSION.jar [-fastrw] [-parallel] [-positions] [-share] [-footprint] [-metrics] [-metricscsv] [-rules] FILE [TypeCheck]");
 			System.out.println(" where FILE is the B file to parse and TypeCheck is true or false");
+			System.out.println(" -fastrw writes the terms in SICStus fastrw format instead of textual Prolog");
+			System.out.println(" -parallel prints the operations of the machine in parallel");
+			System.out.println(" -positions prints source code positions instead of none");
+			System.out.println(" -share shares structurally equal expressions and predicates in the AST, ignored with -positions");
+			System.out.println(" -build treats FILE as directory and regenerates all outdated .prob files in it");
+			System.out.println(" -footprint prints the estimated memory footprint of the AST per node class and machine");
+			System.out.println(" -metrics prints the time of each phase and the token and node counts per machine as JSON to stderr");
+			System.out.println(" -metricscsv prints the same metrics as CSV");
+			System.out.println(" -rules parses FILE as rules machine and prints the execution levels of its rules");
 			return;
 		}
 
-		boolean typecheck = args.length == 1 || Boolean.parseBoolean(args[1]);
-		boolean scopecheck =  (args.length<=2) ? typecheck : Boolean.parseBoolean(args[2]);
+		boolean typecheck = arguments.size() == 1 || Boolean.parseBoolean(arguments.get(1));
+		boolean scopecheck =  (arguments.size()<=2) ? typecheck : Boolean.parseBoolean(arguments.get(2));
 		// TODO: add options similar to SableCC parser, notably -prolog, or automatically generating .prob file
 		
-		Path filePath = Paths.get(args[0]);
-
-		final long start = System.currentTimeMillis();
-		BProject project = createBProjectFromMainMachineFile(filePath.toFile(), typecheck, scopecheck);
-		final long mid = System.currentTimeMillis();
-		PrologASTPrinter astPrinter = new PrologASTPrinter();
-		String prologAST = astPrinter.visitMachineNode(project.getMainMachine());
-		final long end = System.currentTimeMillis();
-		System.out.println("% Generated AST for machine: " + project.getMainMachine().getName() + " (Parsing: " + (mid - start) + " ms, AST: " + (end - start) + " ms)");
-		System.out.println("parser_version('ANTLR-0.1').");
-		System.out.println("classical_b('"+ project.getMainMachine().getName() + "',['" + filePath + "'])."); // TO DO: insert real machine name
-		System.out.println(prologAST + ".");
+		Path filePath = Paths.get(arguments.get(0));
+
+		if (options.contains("-build")) {
+			options.remove("-build");
+			ProbFileBuilder.BuildResult result = new ProbFileBuilder(filePath, typecheck, options).build();
+			System.out.println("Generated: " + result.getGenerated().size() + ", up to date: "
+					+ result.getUpToDate().size() + ", failed: " + result.getFailed().size());
+			result.getFailed().forEach((file, error) -> System.out.println(" " + file + ": " + error));
+			return;
+		}
+
+		if (options.contains("-rules")) {
+			printRulesMachine(filePath.toFile(), options);
+			return;
+		}
+
+		// a shared node has a single position, which is wrong for all but one
+		// of its occurrences
+		NodeInterner interner = options.contains("-share") && !options.contains("-positions") ? new NodeInterner()
+				: null;
+		BProject project;
+		try {
+			project = createBProjectFromMainMachineFile(filePath.toFile(), typecheck, scopecheck,
+					DefinitionFileCache.getShared(), interner);
+		} catch (TypeErrorException | ScopeException e) {
+			if (interner == null) {
+				throw e;
+			}
+			// the error may have the position of another occurrence of a
+			// shared node, report the one found without sharing instead
+			project = createBProjectFromMainMachineFile(filePath.toFile(), typecheck, scopecheck,
+					DefinitionFileCache.getShared(), null);
+		}
+		if (options.contains("-fastrw")) {
+			printFastRead(project, filePath, System.out, options);
+			if (options.contains("-footprint")) {
+				Writer err = new OutputStreamWriter(System.err, StandardCharsets.UTF_8);
+				MemoryFootprint.analyse(project).write(err, "");
+				err.flush();
+			}
+			printMetrics(project.getMetrics(), options);
+			return;
+		}
+		final String newLine = System.lineSeparator();
+		final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		final ParserMetrics metrics = project.getMetrics();
+		out.write("% Generated AST for machine: " + project.getMainMachine().getName() + " (Parsing: "
+				+ toMillis(metrics, ParserMetrics.Phase.READ, ParserMetrics.Phase.LEX, ParserMetrics.Phase.PARSE)
+				+ " ms, AST: " + toMillis(metrics, ParserMetrics.Phase.AST) + " ms, checks: "
+				+ toMillis(metrics, ParserMetrics.Phase.SCOPE_CHECK, ParserMetrics.Phase.TYPE_CHECK) + " ms)"
+				+ newLine);
+		printProlog(project, filePath, out, options);
+		out.write("% Printing: " + toMillis(metrics, ParserMetrics.Phase.PRINT) + " ms" + newLine);
 		
-        System.out.println("% Used memory : " + 
-                   (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory())/ 1000 + " KB");
-        System.out.println("% Total memory: " + Runtime.getRuntime().totalMemory() / 1000 + " KB");
+		out.write("% Used memory : " + 
+				(Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory())/ 1000 + " KB" + newLine);
+		out.write("% Total memory: " + Runtime.getRuntime().totalMemory() / 1000 + " KB" + newLine);
+		if (options.contains("-footprint")) {
+			MemoryFootprint.analyse(project).write(out, "% ");
+		}
+		out.flush();
+		printMetrics(metrics, options);
+	}
+
+	private static long toMillis(ParserMetrics metrics, ParserMetrics.Phase... phases) {
+		long nanos = 0;
+		for (ParserMetrics.Phase phase : phases) {
+			nanos += metrics.getNanos(phase);
+		}
+		return nanos / 1_000_000;
+	}
+
+	/**
+	 * Writes the metrics to stderr, so that they do not end up in the .prob
+	 * output.
+	 */
+	private static void printMetrics(ParserMetrics metrics, List<String> options) throws IOException {
+		if (options.contains("-metrics") || options.contains("-metricscsv")) {
+			Writer err = new OutputStreamWriter(System.err, StandardCharsets.UTF_8);
+			if (options.contains("-metrics")) {
+				metrics.writeJson(err);
+			} else {
+				metrics.writeCsv(err);
+			}
+			err.flush();
+		}
+	}
+
+	private static void printRulesMachine(File file, List<String> options) throws IOException {
+		final ParserMetrics metrics = new ParserMetrics();
+		final Object readEvent = ParserEvents.begin(ParserMetrics.Phase.READ);
+		long start = System.nanoTime();
+		final CharStream charStream;
+		try (FileInputStream fileInputStream = new FileInputStream(file)) {
+			charStream = CharStreams.fromStream(fileInputStream);
+		}
+		final long read = System.nanoTime() - start;
+		ParserEvents.end(readEvent);
+
+		final Object lexEvent = ParserEvents.begin(ParserMetrics.Phase.LEX);
+		start = System.nanoTime();
+		final CommonTokenStream tokens = new CommonTokenStream(new RulesLexer(charStream));
+		tokens.fill();
+		final long lex = System.nanoTime() - start;
+		ParserEvents.end(lexEvent);
+
+		final Object parseEvent = ParserEvents.begin(ParserMetrics.Phase.PARSE);
+		start = System.nanoTime();
+		RulesGrammar.StartContext tree = parseRulesMachine(tokens);
+		final long parse = System.nanoTime() - start;
+		ParserEvents.end(parseEvent);
+
+		final Object astEvent = ParserEvents.begin(ParserMetrics.Phase.AST);
+		start = System.nanoTime();
+		RulesMachineNode machine = RulesMachineASTCreator.createRulesMachineAST(tree);
+		final long astCreation = System.nanoTime() - start;
+		ParserEvents.end(astEvent);
+
+		final String name = machine.getName();
+		metrics.add(name, ParserMetrics.Phase.READ, read);
+		metrics.add(name, ParserMetrics.Phase.LEX, lex);
+		metrics.add(name, ParserMetrics.Phase.PARSE, parse);
+		metrics.add(name, ParserMetrics.Phase.AST, astCreation);
+		metrics.setBytes(name, file.length());
+		metrics.setTokens(name, tokens.size());
+		metrics.setNodes(name, ParserMetrics.countNodes(machine));
+		ParserEvents.commit(readEvent, name, metrics);
+		ParserEvents.commit(lexEvent, name, metrics);
+		ParserEvents.commit(parseEvent, name, metrics);
+		ParserEvents.commit(astEvent, name, metrics);
+
+		System.out.println("% Rules machine: " + name + " (Parsing: "
+				+ toMillis(metrics, ParserMetrics.Phase.READ, ParserMetrics.Phase.LEX, ParserMetrics.Phase.PARSE)
+				+ " ms, AST: " + toMillis(metrics, ParserMetrics.Phase.AST) + " ms)");
+		System.out.println("% Rules: " + machine.getRules().size() + ", computations: "
+				+ machine.getComputations().size() + ", functions: " + machine.getFunctions().size()
+				+ ", operations: " + machine.getClassicalOperations().size());
+
+		final Object printEvent = ParserEvents.begin(ParserMetrics.Phase.PRINT);
+		start = System.nanoTime();
+		RuleDependencyGraph graph = RuleDependencyGraph.analyse(machine);
+		graph.getErrors().forEach(error -> System.out.println("% Error: " + error));
+		PrologTermOutput pout = new PrologTermOutput((OutputStream) System.out);
+		graph.write(pout);
+		pout.flush();
+		metrics.add(name, ParserMetrics.Phase.PRINT, System.nanoTime() - start);
+		ParserEvents.commit(printEvent, name, metrics);
+		printMetrics(metrics, options);
+	}
+
+	static void printProlog(BProject project, Path filePath, Writer out, List<String> options) throws IOException {
+		final Object event = ParserEvents.begin(ParserMetrics.Phase.PRINT);
+		final long start = System.nanoTime();
+		final String newLine = System.lineSeparator();
+		out.write("parser_version('ANTLR-0.1')." + newLine);
+		out.write("classical_b('"+ project.getMainMachine().getName() + "',['" + filePath + "'])." + newLine); // TO DO: insert real machine name
+		PrologTermWriter termWriter = new PrologTermWriter(out);
+		termWriter.setParallel(options.contains("-parallel"));
+		termWriter.setPositions(options.contains("-positions"));
+		termWriter.visitMachineNode(project.getMainMachine());
+		out.write("." + newLine);
+		final String machineName = project.getMainMachine().toString();
+		project.getMetrics().add(machineName, ParserMetrics.Phase.PRINT, System.nanoTime() - start);
+		ParserEvents.commit(event, machineName, project.getMetrics());
+	}
+
+	static void printFastRead(BProject project, Path filePath, OutputStream stream, List<String> options) {
+		final Object event = ParserEvents.begin(ParserMetrics.Phase.PRINT);
+		final long start = System.nanoTime();
+		final String machineName = project.getMainMachine().getName();
+		final FastReadTermOutput out = new FastReadTermOutput(stream);
+		out.openTerm("parser_version", 1, false);
+		out.atom("ANTLR-0.1");
+		out.closeTerm();
+		out.openTerm("classical_b", 2, false);
+		out.atom(machineName);
+		out.openList();
+		out.atom(filePath.toString());
+		out.closeList();
+		out.closeTerm();
+		PrologTermWriter termWriter = new PrologTermWriter(out);
+		termWriter.setParallel(options.contains("-parallel"));
+		termWriter.setPositions(options.contains("-positions"));
+		termWriter.visitMachineNode(project.getMainMachine());
+		out.flush();
+		project.getMetrics().add(machineName, ParserMetrics.Phase.PRINT, System.nanoTime() - start);
+		ParserEvents.commit(event, machineName, project.getMetrics());
 	}
 
 }
@@ -8,6 +8,7 @@ import de.prob.parser.ast.nodes.MachineNode;
 
 public class BProject {
 	protected final LinkedHashMap<String, MachineNode> machinesMap = new LinkedHashMap<>();
+	private ParserMetrics metrics = new ParserMetrics();
 
 	public BProject(List<MachineNode> machineNodeList) {
 		for (MachineNode node : machineNodeList) {
@@ -31,4 +32,15 @@ public class BProject {
 		return new ArrayList<>(machinesMap.values());
 	}
 
+	/**
+	 * The time spent loading and printing this project.
+	 */
+	public ParserMetrics getMetrics() {
+		return metrics;
+	}
+
+	void setMetrics(ParserMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 }
@@ -0,0 +1,156 @@
+package de.prob.parser.antlr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.prob.parser.ast.compact.CompactAST;
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.visitors.MachineScopeViews;
+
+/**
+ * Reads and writes machines and projects in a versioned binary format: the
+ * {@link CompactAST}s of the machines, preceded by a header with a magic
+ * number and the format version. The AST is stored as it is, including the
+ * types inferred by the type checker and the links of identifiers to their
+ * declarations, so a loaded project does not need to be checked again.
+ */
+public class BProjectSerializer {
+
+	public static final int VERSION = 2;
+	private static final int MAGIC = 0x42415354; // BAST
+
+	private BProjectSerializer() {
+	}
+
+	public static void write(BProject project, OutputStream stream) throws IOException {
+		write(project.getMachines(), stream);
+	}
+
+	public static void write(MachineNode machineNode, OutputStream stream) throws IOException {
+		write(Collections.singletonList(machineNode), stream);
+	}
+
+	private static void write(List<MachineNode> machines, OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(machines.size());
+		for (MachineNode machine : machines) {
+			CompactAST.encode(machine).write(out);
+		}
+		out.flush();
+	}
+
+	public static BProject read(InputStream stream) throws IOException {
+		return new BProject(readMachines(stream));
+	}
+
+	/**
+	 * Reads the main machine of a serialized machine or project.
+	 */
+	public static MachineNode readMachine(InputStream stream) throws IOException {
+		return readMachines(stream).get(0);
+	}
+
+	private static List<MachineNode> readMachines(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a serialized B AST");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported AST format version " + version + ", expected " + VERSION);
+		}
+		List<CompactAST> asts = new ArrayList<>();
+		for (int count = in.readInt(); count > 0; count--) {
+			asts.add(CompactAST.read(in));
+		}
+		// the machines are sorted like in a BProject: referenced machines come after the referencing ones
+		ProjectResolver resolver = new ProjectResolver();
+		MachineNode[] machines = new MachineNode[asts.size()];
+		for (int i = asts.size() - 1; i >= 0; i--) {
+			machines[i] = asts.get(i).toMachineNode(resolver);
+			resolver.machines.put(machines[i].toString(), machines[i]);
+		}
+		List<MachineNode> result = new ArrayList<>();
+		Collections.addAll(result, machines);
+		return result;
+	}
+
+	private static class ProjectResolver implements CompactAST.ExternalResolver {
+		private final Map<String, MachineNode> machines = new HashMap<>();
+		private final Map<MachineNode, Map<String, DeclarationNode>> declarations = new HashMap<>();
+		private final MachineScopeViews scopeViews = new MachineScopeViews();
+
+		@Override
+		public DeclarationNode resolveDeclaration(String machine, String name, DeclarationNode.Kind kind) {
+			MachineNode machineNode = machines.get(machine);
+			if (machineNode == null) {
+				return null;
+			}
+			DeclarationNode declaration = declarations.computeIfAbsent(machineNode, this::collectDeclarations)
+					.get(name);
+			String prefix = machineNode.getPrefix();
+			if (declaration == null && prefix != null && name.startsWith(prefix + ".")) {
+				// a renamed declaration created by the scope checker, e.g. a.x
+				MachineScopeViews.ScopeView view = scopeViews.getView(machineNode);
+				List<DeclarationNode> renamed = new ArrayList<>(view.getConstants());
+				renamed.addAll(view.getVariables());
+				renamed.addAll(view.getEnumeratedSetElements());
+				for (DeclarationNode candidate : renamed) {
+					if (candidate.getName().equals(name)) {
+						return candidate;
+					}
+				}
+			}
+			return declaration;
+		}
+
+		private Map<String, DeclarationNode> collectDeclarations(MachineNode machineNode) {
+			List<DeclarationNode> all = new ArrayList<>(machineNode.getDeferredSets());
+			for (EnumeratedSetDeclarationNode enumSet : machineNode.getEnumeratedSets()) {
+				all.add(enumSet.getSetDeclarationNode());
+				all.addAll(enumSet.getElements());
+			}
+			all.addAll(machineNode.getConstants());
+			all.addAll(machineNode.getVariables());
+			Map<String, DeclarationNode> result = new HashMap<>();
+			for (DeclarationNode declaration : all) {
+				result.putIfAbsent(declaration.getName(), declaration);
+			}
+			return result;
+		}
+
+		@Override
+		public OperationNode resolveOperation(String machine, String name) {
+			MachineNode machineNode = machines.get(machine);
+			if (machineNode != null) {
+				for (OperationNode operation : machineNode.getOperations()) {
+					if (operation.getName().equals(name)) {
+						return operation;
+					}
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public MachineNode resolveMachine(String machine) {
+			return machines.get(machine);
+		}
+	}
+
+}
@@ -0,0 +1,628 @@
+package de.prob.parser.antlr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import de.prob.parser.antlr.IDefinitions.DefinitionType;
+import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.DefinitionNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeUtil;
+import de.prob.parser.ast.nodes.expression.ExprNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode.ExpressionOperator;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.expression.IfExpressionNode;
+import de.prob.parser.ast.nodes.expression.LambdaNode;
+import de.prob.parser.ast.nodes.expression.LetExpressionNode;
+import de.prob.parser.ast.nodes.expression.NumberNode;
+import de.prob.parser.ast.nodes.expression.QuantifiedExpressionNode;
+import de.prob.parser.ast.nodes.expression.RealNumberNode;
+import de.prob.parser.ast.nodes.expression.RecordFieldAccessNode;
+import de.prob.parser.ast.nodes.expression.RecordNode;
+import de.prob.parser.ast.nodes.expression.SetComprehensionNode;
+import de.prob.parser.ast.nodes.expression.StringNode;
+import de.prob.parser.ast.nodes.expression.StructNode;
+import de.prob.parser.ast.nodes.predicate.CastPredicateExpressionNode;
+import de.prob.parser.ast.nodes.predicate.IdentifierPredicateNode;
+import de.prob.parser.ast.nodes.predicate.IfPredicateNode;
+import de.prob.parser.ast.nodes.predicate.LetPredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.predicate.QuantifiedPredicateNode;
+import de.prob.parser.ast.nodes.substitution.AnySubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.AssignSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesElementOfSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesSuchThatSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ChoiceSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ConditionSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.IfOrSelectSubstitutionsNode;
+import de.prob.parser.ast.nodes.substitution.LetSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ListSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.OperationCallSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SkipSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.VarSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.WhileSubstitutionNode;
+import files.BParser.FormulaAmbiguousCallContext;
+import files.BParser.FormulaContext;
+import files.BParser.FormulaExpressionContext;
+import files.BParser.FormulaPredicateContext;
+import files.BParser.FormulaSubstitutionContext;
+import files.BParser.OrdinaryDefinitionContext;
+
+/**
+ * Expands the uses of DEFINITIONS while the AST of a machine is created. The
+ * body of every definition is built once, on its first use, as a template;
+ * every use is replaced by a copy of the template in which the parameters are
+ * replaced by the arguments, so the cost of the expansion is linear in the
+ * number of uses. The copies are created via the {@link FormulaASTCreator}, so
+ * with hash-consing enabled identical expansions share their nodes.
+ * <p>
+ * A definition whose body is a single identifier, possibly with arguments, is
+ * a call of another definition or gets the kind of its first use (expression,
+ * predicate or substitution); its templates are cached per kind. The kind in
+ * which such a definition is listed in the machine is the one determined by
+ * the {@link DefinitionsAnalyser}.
+ * <p>
+ * The nodes of an expansion have the position of the call, the arguments
+ * inserted into it keep their own positions.
+ * <p>
+ * The expansion is hygienic: a variable bound in the body whose name occurs
+ * in an argument inserted into its scope is renamed in the copy, e.g.
+ * {@code SMALLER(a) == {x | x : 0..10 & x < a}} used as {@code SMALLER(x)}
+ * becomes {@code {x_1 | x_1 : 0..10 & x_1 < x}}.
+ */
+final class DefinitionExpander {
+
+	private final FormulaASTCreator creator;
+	private final Map<String, Template> templates = new HashMap<>();
+	private DefinitionsAnalyser.Result analysis;
+
+	DefinitionExpander(FormulaASTCreator creator) {
+		this.creator = creator;
+	}
+
+	private static final class Template {
+		private final OrdinaryDefinitionContext context;
+		private final List<DeclarationNode> parameters;
+		private final DefinitionType type;
+		private final Map<DefinitionType, Node> bodies = new EnumMap<>(DefinitionType.class);
+		private boolean compiling;
+
+		Template(OrdinaryDefinitionContext context, List<DeclarationNode> parameters, DefinitionType type) {
+			this.context = context;
+			this.parameters = parameters;
+			this.type = type;
+		}
+	}
+
+	void add(OrdinaryDefinitionContext ctx) {
+		String name = ctx.name.getText();
+		if (templates.containsKey(name)) {
+			throw new RuntimeException("Duplicate definition: " + name);
+		}
+		List<DeclarationNode> parameters = new ArrayList<>();
+		if (ctx.parameters != null) {
+			for (TerminalNode parameter : ctx.parameters.IDENTIFIER()) {
+				parameters.add(new DeclarationNode(Util.createSourceCodePosition(parameter.getSymbol()),
+						parameter.getText(), DeclarationNode.Kind.OP_INPUT_PARAMETER, null));
+			}
+		}
+		templates.put(name, new Template(ctx, parameters, getType(ctx.formula())));
+	}
+
+	/**
+	 * Sets the analysis of all definitions that have been added.
+	 */
+	void setAnalysis(DefinitionsAnalyser.Result analysis) {
+		this.analysis = analysis;
+	}
+
+	private static DefinitionType getType(FormulaContext formula) {
+		if (formula instanceof FormulaExpressionContext) {
+			return DefinitionType.EXPRESSION_DEFINITION;
+		} else if (formula instanceof FormulaPredicateContext) {
+			return DefinitionType.PREDICATE_DEFINITION;
+		} else if (formula instanceof FormulaSubstitutionContext) {
+			return DefinitionType.SUBSTITUTION_DEFINITION;
+		}
+		return DefinitionType.UNKNOWN_TYPE;
+	}
+
+	boolean hasDefinitions() {
+		return !templates.isEmpty();
+	}
+
+	boolean isDefinition(String name) {
+		return templates.containsKey(name);
+	}
+
+	int getParameterCount(String name) {
+		return templates.get(name).parameters.size();
+	}
+
+	/**
+	 * Creates the node listing the definition in the machine, with the template
+	 * of the definition as body.
+	 */
+	DefinitionNode createDefinitionNode(OrdinaryDefinitionContext ctx) {
+		String name = ctx.name.getText();
+		Template template = templates.get(name);
+		Node body = getBody(name, template, getListedType(name));
+		return new DefinitionNode(Util.createSourceCodePosition(ctx), name, template.parameters, body);
+	}
+
+	/**
+	 * The kind of a definition as classified by the analysis; definitions whose
+	 * kind is unknown are listed as expressions.
+	 */
+	private DefinitionType getListedType(String name) {
+		DefinitionType type = analysis == null ? null : analysis.getDefinitionType(name);
+		return type == null || type == DefinitionType.UNKNOWN_TYPE ? DefinitionType.EXPRESSION_DEFINITION : type;
+	}
+
+	/**
+	 * Returns a copy of the body of the given definition in which the parameters
+	 * are replaced by the arguments.
+	 */
+	Node expand(String name, DefinitionType type, List<ExprNode> arguments, ParserRuleContext call) {
+		Template template = templates.get(name);
+		if (template.parameters.size() != arguments.size()) {
+			throw new RuntimeException("Number of Parameter does not match for definition '" + name + "'. Expected: "
+					+ template.parameters.size() + ", found: " + arguments.size() + "\nLine: "
+					+ call.getStart().getLine());
+		}
+		if (template.type != DefinitionType.UNKNOWN_TYPE && template.type != type) {
+			throw new RuntimeException("Invalid definition type of '" + name + "'. Expected: " + template.type
+					+ ", found: " + type + "\nLine: " + call.getStart().getLine());
+		}
+		Node body = getBody(name, template, type);
+		Map<String, ExprNode> substitution = new HashMap<>();
+		for (int i = 0; i < arguments.size(); i++) {
+			substitution.put(template.parameters.get(i).getName(), arguments.get(i));
+		}
+		return new Instantiation(Util.createSourceCodePosition(call), body).copy(body, substitution);
+	}
+
+	private Node getBody(String name, Template template, DefinitionType type) {
+		Node body = template.bodies.get(type);
+		if (body != null) {
+			return body;
+		}
+		if (template.compiling) {
+			throw new RuntimeException("Cyclic definition: " + name);
+		}
+		template.compiling = true;
+		creator.enterScope(template.parameters);
+		try {
+			FormulaContext formula = template.context.formula();
+			if (formula instanceof FormulaExpressionContext) {
+				body = ((FormulaExpressionContext) formula).expression().accept(creator);
+			} else if (formula instanceof FormulaPredicateContext) {
+				body = ((FormulaPredicateContext) formula).predicate().accept(creator);
+			} else if (formula instanceof FormulaSubstitutionContext) {
+				body = ((FormulaSubstitutionContext) formula).substitution().accept(creator);
+			} else {
+				body = createCall((FormulaAmbiguousCallContext) formula, type);
+			}
+		} finally {
+			creator.exitScope();
+			template.compiling = false;
+		}
+		template.bodies.put(type, body);
+		return body;
+	}
+
+	private Node createCall(FormulaAmbiguousCallContext call, DefinitionType type) {
+		List<TerminalNode> identifiers = call.composed_identifier().IDENTIFIER();
+		List<ExprNode> arguments = new ArrayList<>();
+		if (call.expression_list() != null) {
+			call.expression_list().exprs.forEach(expr -> arguments.add((ExprNode) expr.accept(creator)));
+		}
+		String name = identifiers.get(0).getText();
+		if (identifiers.size() == 1 && isDefinition(name)) {
+			return expand(name, type, arguments, call);
+		}
+		List<String> names = new ArrayList<>();
+		identifiers.forEach(identifier -> names.add(identifier.getText()));
+		String composedName = String.join(".", names);
+		switch (type) {
+		case PREDICATE_DEFINITION:
+			if (!arguments.isEmpty()) {
+				throw new RuntimeException("Predicate with arguments is not supported: " + call.getText());
+			}
+			return creator.register(
+					new IdentifierPredicateNode(Util.createSourceCodePosition(call), composedName));
+		case SUBSTITUTION_DEFINITION:
+			return creator.register(
+					new OperationCallSubstitutionNode(Util.createSourceCodePosition(call), names, arguments));
+		default:
+			ExprNode identifier = creator.register(new IdentifierExprNode(
+					Util.createSourceCodePosition(call.composed_identifier()), composedName, false));
+			if (arguments.isEmpty()) {
+				return identifier;
+			}
+			arguments.add(0, identifier);
+			return creator.register(new ExpressionOperatorNode(Util.createSourceCodePosition(call), arguments,
+					ExpressionOperator.FUNCTION_CALL));
+		}
+	}
+
+	/**
+	 * The names of all identifiers and declarations in the given subtree.
+	 */
+	private static Set<String> getNames(Node node) {
+		Set<String> names = new HashSet<>();
+		Deque<Node> stack = new ArrayDeque<>();
+		stack.push(node);
+		while (!stack.isEmpty()) {
+			Node next = stack.pop();
+			if (next instanceof IdentifierExprNode) {
+				names.add(((IdentifierExprNode) next).getName());
+			} else if (next instanceof IdentifierPredicateNode) {
+				names.add(((IdentifierPredicateNode) next).getName());
+			} else if (next instanceof DeclarationNode) {
+				names.add(((DeclarationNode) next).getName());
+			}
+			for (Node child : NodeUtil.getChildren(next)) {
+				if (child != null) {
+					stack.push(child);
+				}
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * A single copy of a template. Every argument is inserted as it is for its
+	 * first occurrence and copied for all further ones, so that every node of the
+	 * expanded AST has a single parent. The nodes copied from the template get the
+	 * given position, copies of arguments keep theirs if the position is
+	 * {@code null}.
+	 */
+	private final class Instantiation {
+		private final Set<Node> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final SourceCodePosition position;
+		private final Node template;
+		private final Map<ExprNode, Set<String>> argumentNames = new IdentityHashMap<>();
+		private Set<String> templateNames;
+		// bound variables of the template renamed in the copy, restored when
+		// their scope is left
+		private Map<String, String> renamings = Collections.emptyMap();
+		private final Deque<Map<String, String>> outerRenamings = new ArrayDeque<>();
+
+		Instantiation(SourceCodePosition position, Node template) {
+			this.position = position;
+			this.template = template;
+		}
+
+		private SourceCodePosition position(Node node) {
+			return position == null ? node.getSourceCodePosition() : position;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T extends Node> T copy(T node, Map<String, ExprNode> arguments) {
+			return node == null ? null : (T) copyNode(node, arguments);
+		}
+
+		private <T extends Node> List<T> copyAll(List<T> nodes, Map<String, ExprNode> arguments) {
+			List<T> copies = new ArrayList<>(nodes.size());
+			for (T node : nodes) {
+				copies.add(copy(node, arguments));
+			}
+			return copies;
+		}
+
+		private List<DeclarationNode> declarations(List<DeclarationNode> declarations) {
+			List<DeclarationNode> copies = new ArrayList<>(declarations.size());
+			for (DeclarationNode declaration : declarations) {
+				copies.add(declaration(declaration));
+			}
+			return copies;
+		}
+
+		private DeclarationNode declaration(DeclarationNode declaration) {
+			return new DeclarationNode(position(declaration), declaration.getName(),
+					declaration.getKind(), declaration.getSurroundingMachineNode());
+		}
+
+		/**
+		 * Enters the scope of a binder of the template: its variables hide the
+		 * parameters and renamed variables of the same name. A variable whose
+		 * name occurs in an argument that is still visible is renamed in the
+		 * copied declarations, so that the argument is not captured.
+		 */
+		private Map<String, ExprNode> bind(List<DeclarationNode> declarations, Map<String, ExprNode> arguments) {
+			Map<String, ExprNode> visible = arguments;
+			for (DeclarationNode declaration : declarations) {
+				if (visible.containsKey(declaration.getName())) {
+					if (visible == arguments) {
+						visible = new HashMap<>(arguments);
+					}
+					visible.remove(declaration.getName());
+				}
+			}
+			Set<String> captured = new HashSet<>();
+			for (ExprNode argument : visible.values()) {
+				captured.addAll(argumentNames.computeIfAbsent(argument, DefinitionExpander::getNames));
+			}
+			outerRenamings.push(renamings);
+			Map<String, String> scopeRenamings = renamings;
+			for (int i = 0; i < declarations.size(); i++) {
+				DeclarationNode declaration = declarations.get(i);
+				String name = declaration.getName();
+				if (!captured.contains(name) && !scopeRenamings.containsKey(name)) {
+					continue;
+				}
+				if (scopeRenamings == renamings) {
+					scopeRenamings = new HashMap<>(renamings);
+				}
+				scopeRenamings.remove(name);
+				if (captured.contains(name)) {
+					String fresh = freshName(name, captured, scopeRenamings);
+					scopeRenamings.put(name, fresh);
+					declarations.set(i, new DeclarationNode(declaration.getSourceCodePosition(), fresh,
+							declaration.getKind(), declaration.getSurroundingMachineNode()));
+				}
+			}
+			renamings = scopeRenamings;
+			creator.enterScope(declarations);
+			return visible;
+		}
+
+		private void unbind() {
+			creator.exitScope();
+			renamings = outerRenamings.pop();
+		}
+
+		private String freshName(String name, Set<String> captured, Map<String, String> scopeRenamings) {
+			if (templateNames == null) {
+				templateNames = getNames(template);
+			}
+			for (int i = 1;; i++) {
+				String fresh = name + "_" + i;
+				if (!captured.contains(fresh) && !templateNames.contains(fresh)
+						&& !scopeRenamings.containsValue(fresh)) {
+					return fresh;
+				}
+			}
+		}
+
+		private List<IdentifierExprNode> identifiers(List<IdentifierExprNode> identifiers,
+				Map<String, ExprNode> arguments) {
+			List<IdentifierExprNode> copies = new ArrayList<>(identifiers.size());
+			for (IdentifierExprNode identifier : identifiers) {
+				ExprNode copy = copy(identifier, arguments);
+				if (!(copy instanceof IdentifierExprNode)) {
+					throw new RuntimeException("Identifier expected instead of " + copy);
+				}
+				copies.add((IdentifierExprNode) copy);
+			}
+			return copies;
+		}
+
+		private Node copyNode(Node node, Map<String, ExprNode> arguments) {
+			switch (node.getNodeKind()) {
+			case IDENTIFIER_EXPRESSION: {
+				IdentifierExprNode identifier = (IdentifierExprNode) node;
+				ExprNode argument = identifier.isPrimed() ? null : arguments.get(identifier.getName());
+				if (argument == null) {
+					String renamed = renamings.get(identifier.getName());
+					return creator.register(new IdentifierExprNode(position(identifier),
+							renamed == null ? identifier.getName() : renamed, identifier.isPrimed()));
+				} else if (inserted.add(argument)) {
+					return argument;
+				}
+				return new Instantiation(null, argument).copy(argument, Collections.emptyMap());
+			}
+			case EXPRESSION_OPERATOR: {
+				ExpressionOperatorNode operator = (ExpressionOperatorNode) node;
+				return creator.register(new ExpressionOperatorNode(position(operator),
+						copyAll(operator.getExpressionNodes(), arguments), operator.getOperator()));
+			}
+			case NUMBER:
+				return creator.register(
+						new NumberNode(position(node), ((NumberNode) node).getValue()));
+			case REAL_NUMBER:
+				return creator.register(
+						new RealNumberNode(position(node), ((RealNumberNode) node).getValue()));
+			case STRING:
+				return creator.register(
+						new StringNode(position(node), ((StringNode) node).getValue()));
+			case SET_COMPREHENSION: {
+				SetComprehensionNode comprehension = (SetComprehensionNode) node;
+				List<DeclarationNode> declarations = declarations(comprehension.getDeclarationList());
+				PredicateNode predicate = copy(comprehension.getPredicateNode(), bind(declarations, arguments));
+				unbind();
+				return creator.register(
+						new SetComprehensionNode(position(node), declarations, predicate));
+			}
+			case QUANTIFIED_EXPRESSION: {
+				QuantifiedExpressionNode quantified = (QuantifiedExpressionNode) node;
+				List<DeclarationNode> declarations = declarations(quantified.getDeclarationList());
+				Map<String, ExprNode> visible = bind(declarations, arguments);
+				PredicateNode predicate = copy(quantified.getPredicateNode(), visible);
+				ExprNode expression = copy(quantified.getExpressionNode(), visible);
+				unbind();
+				return creator.register(new QuantifiedExpressionNode(position(node),
+						quantified.getOperator(), declarations, predicate, expression));
+			}
+			case LAMBDA: {
+				LambdaNode lambda = (LambdaNode) node;
+				List<DeclarationNode> declarations = declarations(lambda.getDeclarations());
+				Map<String, ExprNode> visible = bind(declarations, arguments);
+				PredicateNode predicate = copy(lambda.getPredicate(), visible);
+				ExprNode expression = copy(lambda.getExpression(), visible);
+				unbind();
+				return creator.register(
+						new LambdaNode(position(node), declarations, predicate, expression));
+			}
+			case LET_EXPRESSION: {
+				LetExpressionNode let = (LetExpressionNode) node;
+				List<DeclarationNode> declarations = declarations(let.getLocalIdentifiers());
+				Map<String, ExprNode> visible = bind(declarations, arguments);
+				PredicateNode predicate = copy(let.getPredicate(), visible);
+				ExprNode expression = copy(let.getExpression(), visible);
+				unbind();
+				return creator.register(
+						new LetExpressionNode(position(node), declarations, predicate, expression));
+			}
+			case IF_EXPRESSION: {
+				IfExpressionNode ifExpression = (IfExpressionNode) node;
+				return creator.register(new IfExpressionNode(position(node),
+						copy(ifExpression.getCondition(), arguments), copy(ifExpression.getThenExpression(), arguments),
+						copy(ifExpression.getElseExpression(), arguments)));
+			}
+			case RECORD: {
+				RecordNode record = (RecordNode) node;
+				return creator.register(new RecordNode(position(node),
+						declarations(record.getDeclarations()), copyAll(record.getExpressions(), arguments)));
+			}
+			case STRUCT: {
+				StructNode struct = (StructNode) node;
+				return creator.register(new StructNode(position(node),
+						declarations(struct.getDeclarations()), copyAll(struct.getExpressions(), arguments)));
+			}
+			case RECORD_FIELD_ACCESS: {
+				RecordFieldAccessNode access = (RecordFieldAccessNode) node;
+				return creator.register(new RecordFieldAccessNode(position(node),
+						copy(access.getRecord(), arguments), declaration(access.getIdentifier())));
+			}
+			case CAST_PREDICATE_EXPRESSION:
+				return creator.register(new CastPredicateExpressionNode(position(node),
+						copy(((CastPredicateExpressionNode) node).getPredicate(), arguments)));
+			case IDENTIFIER_PREDICATE:
+				return creator.register(new IdentifierPredicateNode(position(node),
+						((IdentifierPredicateNode) node).getName()));
+			case PREDICATE_OPERATOR: {
+				PredicateOperatorNode operator = (PredicateOperatorNode) node;
+				return creator.register(new PredicateOperatorNode(position(node),
+						operator.getOperator(), copyAll(operator.getPredicateArguments(), arguments)));
+			}
+			case PREDICATE_OPERATOR_WITH_EXPR_ARGS: {
+				PredicateOperatorWithExprArgsNode operator = (PredicateOperatorWithExprArgsNode) node;
+				return creator.register(new PredicateOperatorWithExprArgsNode(position(node),
+						operator.getOperator(), copyAll(operator.getExpressionNodes(), arguments)));
+			}
+			case QUANTIFIED_PREDICATE: {
+				QuantifiedPredicateNode quantified = (QuantifiedPredicateNode) node;
+				List<DeclarationNode> declarations = declarations(quantified.getDeclarationList());
+				PredicateNode predicate = copy(quantified.getPredicateNode(), bind(declarations, arguments));
+				unbind();
+				return creator.register(new QuantifiedPredicateNode(position(node), declarations,
+						predicate, quantified.getOperator()));
+			}
+			case LET_PREDICATE: {
+				LetPredicateNode let = (LetPredicateNode) node;
+				List<DeclarationNode> declarations = declarations(let.getLocalIdentifiers());
+				Map<String, ExprNode> visible = bind(declarations, arguments);
+				PredicateNode where = copy(let.getWherePredicate(), visible);
+				PredicateNode predicate = copy(let.getPredicate(), visible);
+				unbind();
+				return creator.register(
+						new LetPredicateNode(position(node), declarations, where, predicate));
+			}
+			case IF_PREDICATE: {
+				IfPredicateNode ifPredicate = (IfPredicateNode) node;
+				return creator.register(new IfPredicateNode(position(node),
+						copy(ifPredicate.getCondition(), arguments), copy(ifPredicate.getThenPredicate(), arguments),
+						copy(ifPredicate.getElsePredicate(), arguments)));
+			}
+			case ANY_SUBSTITUTION: {
+				AnySubstitutionNode any = (AnySubstitutionNode) node;
+				List<DeclarationNode> declarations = declarations(any.getParameters());
+				Map<String, ExprNode> visible = bind(declarations, arguments);
+				PredicateNode where = copy(any.getWherePredicate(), visible);
+				SubstitutionNode then = copy(any.getThenSubstitution(), visible);
+				unbind();
+				return creator.register(new AnySubstitutionNode(position(node), declarations, where, then));
+			}
+			case ASSIGN_SUBSTITUTION: {
+				AssignSubstitutionNode assign = (AssignSubstitutionNode) node;
+				return creator.register(new AssignSubstitutionNode(position(node),
+						copyAll(assign.getLeftSide(), arguments), copyAll(assign.getRightSide(), arguments)));
+			}
+			case BECOMES_ELEMENT_OF_SUBSTITUTION: {
+				BecomesElementOfSubstitutionNode becomes = (BecomesElementOfSubstitutionNode) node;
+				return creator.register(new BecomesElementOfSubstitutionNode(position(node),
+						identifiers(becomes.getIdentifiers(), arguments), copy(becomes.getExpression(), arguments)));
+			}
+			case BECOMES_SUCH_THAT_SUBSTITUTION: {
+				BecomesSuchThatSubstitutionNode becomes = (BecomesSuchThatSubstitutionNode) node;
+				return creator.register(new BecomesSuchThatSubstitutionNode(position(node),
+						identifiers(becomes.getIdentifiers(), arguments), copy(becomes.getPredicate(), arguments)));
+			}
+			case CHOICE_SUBSTITUTION:
+				return creator.register(new ChoiceSubstitutionNode(position(node),
+						copyAll(((ChoiceSubstitutionNode) node).getSubstitutions(), arguments)));
+			case CONDITION_SUBSTITUTION: {
+				ConditionSubstitutionNode condition = (ConditionSubstitutionNode) node;
+				return creator.register(new ConditionSubstitutionNode(position(node),
+						condition.getKind(), copy(condition.getCondition(), arguments),
+						copy(condition.getSubstitution(), arguments)));
+			}
+			case IF_OR_SELECT_SUBSTITUTION: {
+				IfOrSelectSubstitutionsNode ifOrSelect = (IfOrSelectSubstitutionsNode) node;
+				return creator.register(new IfOrSelectSubstitutionsNode(position(node),
+						ifOrSelect.getOperator(), copyAll(ifOrSelect.getConditions(), arguments),
+						copyAll(ifOrSelect.getSubstitutions(), arguments),
+						copy(ifOrSelect.getElseSubstitution(), arguments)));
+			}
+			case LET_SUBSTITUTION: {
+				LetSubstitutionNode let = (LetSubstitutionNode) node;
+				List<DeclarationNode> declarations = declarations(let.getLocalIdentifiers());
+				Map<String, ExprNode> visible = bind(declarations, arguments);
+				PredicateNode predicate = copy(let.getPredicate(), visible);
+				SubstitutionNode body = copy(let.getBody(), visible);
+				unbind();
+				return creator.register(
+						new LetSubstitutionNode(position(node), declarations, predicate, body));
+			}
+			case LIST_SUBSTITUTION: {
+				ListSubstitutionNode list = (ListSubstitutionNode) node;
+				return creator.register(new ListSubstitutionNode(position(node), list.getOperator(),
+						copyAll(list.getSubstitutions(), arguments)));
+			}
+			case OPERATION_CALL_SUBSTITUTION: {
+				OperationCallSubstitutionNode call = (OperationCallSubstitutionNode) node;
+				return creator.register(new OperationCallSubstitutionNode(position(node),
+						new ArrayList<>(call.getNames()), copyAll(call.getArguments(), arguments),
+						copyAll(call.getAssignedVariables(), arguments)));
+			}
+			case SKIP_SUBSTITUTION:
+				return creator.register(new SkipSubstitutionNode(position(node)));
+			case VAR_SUBSTITUTION: {
+				VarSubstitutionNode var = (VarSubstitutionNode) node;
+				List<DeclarationNode> declarations = declarations(var.getLocalIdentifiers());
+				SubstitutionNode body = copy(var.getBody(), bind(declarations, arguments));
+				unbind();
+				return creator.register(new VarSubstitutionNode(position(node), declarations, body));
+			}
+			case WHILE_SUBSTITUTION: {
+				WhileSubstitutionNode whileNode = (WhileSubstitutionNode) node;
+				return creator.register(new WhileSubstitutionNode(position(node),
+						copy(whileNode.getCondition(), arguments), copy(whileNode.getBody(), arguments),
+						copy(whileNode.getInvariant(), arguments), copy(whileNode.getVariant(), arguments)));
+			}
+			default:
+				throw new IllegalArgumentException("Cannot copy " + node.getNodeKind() + " in a definition");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,271 @@
+package de.prob.parser.antlr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import files.BParser;
+import files.BParser.StartContext;
+
+/**
+ * Parsed and analysed definition files (e.g. LibraryStrings.def), shared by
+ * all machines that include them.
+ *
+ * Entries are keyed by the canonical path of the file and the hash of its
+ * content; a file is read on every lookup but only lexed and parsed again if
+ * its content has changed. The parse trees are never modified after parsing,
+ * so they can be used by several AST creators at the same time.
+ *
+ * A cache holds at most a maximum number of files; the least recently used
+ * file is evicted when another one is added. Long running tools that load
+ * many unrelated projects should use their own cache per project or build,
+ * like {@link ProbFileBuilder}, instead of the shared one.
+ */
+public class DefinitionFileCache {
+
+	/**
+	 * The maximum number of files in the shared cache, enough for the
+	 * libraries of ProB and the definition files of a few projects.
+	 */
+	public static final int SHARED_MAXIMUM_SIZE = 64;
+
+	private static final DefinitionFileCache SHARED = new DefinitionFileCache(SHARED_MAXIMUM_SIZE);
+
+	private final ConcurrentMap<String, DefinitionFile> files = new ConcurrentHashMap<>();
+	private final List<File> libraryDirectories = new CopyOnWriteArrayList<>();
+	private final AtomicInteger parsed = new AtomicInteger();
+	private final AtomicLong clock = new AtomicLong();
+	private final int maximumSize;
+
+	public DefinitionFileCache() {
+		this(Integer.MAX_VALUE);
+	}
+
+	public DefinitionFileCache(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximum size must be positive: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Creates an empty cache with the same library directories and maximum
+	 * size as this one.
+	 */
+	public DefinitionFileCache copyConfiguration() {
+		DefinitionFileCache cache = new DefinitionFileCache(maximumSize);
+		cache.libraryDirectories.addAll(libraryDirectories);
+		return cache;
+	}
+
+	/**
+	 * The cache used by {@link MachineASTCreator} unless another one is given.
+	 */
+	public static DefinitionFileCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Adds a directory (e.g. the stdlib folder of ProB) in which definition
+	 * files are searched if they are not found next to the including file.
+	 */
+	public void addLibraryDirectory(File directory) {
+		libraryDirectories.add(directory);
+	}
+
+	public List<File> getLibraryDirectories() {
+		return Collections.unmodifiableList(libraryDirectories);
+	}
+
+	/**
+	 * Finds the definition file with the given name in the given directory or
+	 * one of the library directories.
+	 */
+	public File resolve(File directory, String name) {
+		File file = new File(directory, name);
+		if (file.isFile()) {
+			return file;
+		}
+		for (File libraryDirectory : libraryDirectories) {
+			File libraryFile = new File(libraryDirectory, name);
+			if (libraryFile.isFile()) {
+				return libraryFile;
+			}
+		}
+		throw new RuntimeException("Definition file not found: " + name);
+	}
+
+	public DefinitionFile get(File file) {
+		final String path;
+		final byte[] content;
+		try {
+			path = file.getCanonicalPath();
+			content = Files.readAllBytes(file.toPath());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		final String hash = hash(content);
+		DefinitionFile cached = files.get(path);
+		if (cached != null && cached.hash.equals(hash)) {
+			cached.lastUsed = clock.incrementAndGet();
+			return cached;
+		}
+		DefinitionFile result = files.compute(path, (key, old) -> {
+			if (old != null && old.hash.equals(hash)) {
+				return old;
+			}
+			parsed.incrementAndGet();
+			return new DefinitionFile(new File(path), hash, content);
+		});
+		result.lastUsed = clock.incrementAndGet();
+		evict();
+		return result;
+	}
+
+	private void evict() {
+		while (files.size() > maximumSize) {
+			DefinitionFile leastRecentlyUsed = null;
+			for (DefinitionFile file : files.values()) {
+				if (leastRecentlyUsed == null || file.lastUsed < leastRecentlyUsed.lastUsed) {
+					leastRecentlyUsed = file;
+				}
+			}
+			if (leastRecentlyUsed == null) {
+				return;
+			}
+			files.remove(leastRecentlyUsed.getFile().getPath(), leastRecentlyUsed);
+		}
+	}
+
+	/**
+	 * Returns the hash of the content of a file, as used for the entries of
+	 * the cache.
+	 */
+	public static String hashOf(File file) {
+		try {
+			return hash(Files.readAllBytes(file.toPath()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * The number of times a definition file has been lexed and parsed.
+	 */
+	public int getParseCount() {
+		return parsed.get();
+	}
+
+	public int size() {
+		return files.size();
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public void clear() {
+		files.clear();
+	}
+
+	static String getFileName(BParser.DefinitionFileContext ctx) {
+		String literal = ctx.StringLiteral().getText();
+		return literal.substring(1, literal.length() - 1);
+	}
+
+	private static String hash(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static class DefinitionFile {
+		private final File file;
+		private final String hash;
+		private final StartContext parseTree;
+		private final DefinitionsAnalyser.Result analysis;
+		private final List<BParser.OrdinaryDefinitionContext> definitions = new ArrayList<>();
+		private final List<String> includedFiles = new ArrayList<>();
+		private volatile long lastUsed;
+
+		DefinitionFile(File file, String hash, byte[] content) {
+			this.file = file;
+			this.hash = hash;
+			String text = new String(content, StandardCharsets.UTF_8);
+			if (text.startsWith("\uFEFF")) {
+				// utf-8 byte order mark
+				text = text.substring(1);
+			}
+			this.parseTree = Antlr4BParser.parse(CharStreams.fromString(text, file.getPath()));
+			if (!(parseTree.getChild(0) instanceof BParser.DefinitionParseUnitContext)) {
+				throw new RuntimeException("Expected a DEFINITIONS clause in definition file: " + file);
+			}
+			collect(parseTree);
+			this.analysis = new DefinitionsAnalyser(parseTree).analyse();
+		}
+
+		private void collect(ParserRuleContext ctx) {
+			for (ParseTree child : ctx.children) {
+				if (child instanceof BParser.OrdinaryDefinitionContext) {
+					definitions.add((BParser.OrdinaryDefinitionContext) child);
+				} else if (child instanceof BParser.DefinitionFileContext) {
+					includedFiles.add(getFileName((BParser.DefinitionFileContext) child));
+				} else if (child instanceof ParserRuleContext) {
+					collect((ParserRuleContext) child);
+				}
+			}
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		public StartContext getParseTree() {
+			return parseTree;
+		}
+
+		public DefinitionsAnalyser.Result getAnalysis() {
+			return analysis;
+		}
+
+		public List<BParser.OrdinaryDefinitionContext> getDefinitions() {
+			return Collections.unmodifiableList(definitions);
+		}
+
+		/**
+		 * The names of the definition files included by this file, relative to
+		 * its directory.
+		 */
+		public List<String> getIncludedFiles() {
+			return Collections.unmodifiableList(includedFiles);
+		}
+	}
+
+}
@@ -1,30 +1,69 @@
 package de.prob.parser.antlr;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.antlr.v4.runtime.ParserRuleContext;
-import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
 import files.BParserBaseVisitor;
 import files.BParser.*;
 
+/**
+ * Classifies the definitions of a parse tree as expression, predicate or
+ * substitution definitions.
+ *
+ * A definition whose right side is a single identifier or call (e.g.
+ * {@code a == b(x)}) is ambiguous and depends on the definition it calls.
+ * These dependencies form a graph in which every definition has at most one
+ * successor; the types are propagated along it in a single topological pass.
+ *
+ * The definitions of included definition files are not analysed again: the
+ * {@link Result} of each file records the types, parameters and dependencies of
+ * its definitions and its uses of definitions it does not define itself, which
+ * are combined with the definitions and uses of the tree.
+ */
 public class DefinitionsAnalyser implements IDefinitions {
 	final ParseTree parseTree;
-	HashMap<String, FormulaContext> definitions = new HashMap<>();
-	HashMap<String, DefinitionType> definitionTypes = new HashMap<>();
-	HashMap<String, Integer> definitionParameterNumber = new HashMap<>();
-	HashMap<String, String> definitionDependencies = new HashMap<>();
+	final List<Result> includedAnalyses;
+	final Map<String, FormulaContext> definitions = new LinkedHashMap<>();
+	final Map<String, DefinitionType> definitionTypes = new HashMap<>();
+	final Map<String, Integer> definitionParameterNumber = new HashMap<>();
+	final Map<String, String> definitionDependencies = new HashMap<>();
+	final List<Usage> externalUsages = new ArrayList<>();
 
 	public DefinitionsAnalyser(ParseTree tree) {
+		this(tree, Collections.emptyList());
+	}
+
+	/**
+	 * Analyses the definitions of the tree together with the already analysed
+	 * definitions of the definition files included by a machine.
+	 */
+	public DefinitionsAnalyser(ParseTree tree, List<Result> includedAnalyses) {
 		this.parseTree = tree;
+		this.includedAnalyses = includedAnalyses;
 	}
 
-	public void analyse() {
+	public Result analyse() {
+		for (Result included : includedAnalyses) {
+			for (Map.Entry<String, DefinitionType> entry : included.types.entrySet()) {
+				String name = entry.getKey();
+				definitions.put(name, null);
+				definitionTypes.put(name, entry.getValue());
+				definitionParameterNumber.put(name, included.parameterNumbers.get(name));
+				String dependency = included.dependencies.get(name);
+				if (dependency != null) {
+					definitionDependencies.put(name, dependency);
+				}
+			}
+		}
+
 		/*
 		 * find all definitions and try to determine their by inspecting the top
 		 * level node of the right side
@@ -38,44 +77,164 @@ public class DefinitionsAnalyser implements IDefinitions {
 		 */
 		DefinitionUsage definitionUsage = new DefinitionUsage();
 		this.parseTree.accept(definitionUsage);
+		for (Result included : includedAnalyses) {
+			for (Usage usage : included.externalUsages) {
+				definitionUsage.addUsage(usage);
+			}
+		}
 
-		HashSet<String> defsWithUnknownType = new HashSet<>();
-		for (Iterator<String> iterator = definitionTypes.keySet().iterator(); iterator.hasNext();) {
-			String defName = (String) iterator.next();
-			DefinitionType definitionType = this.getDefinitionType(defName);
-			System.out.println("DEFINITION: " + defName + " has type " + definitionType);
-			if (definitionType == DefinitionType.UNKNOWN_TYPE) {
-				defsWithUnknownType.add(defName);
-			}
-		}
-
-		boolean progress = true;
-		while (!defsWithUnknownType.isEmpty() && progress) {
-			progress = false;
-			for (Iterator<String> iterator = new HashSet<String>(defsWithUnknownType).iterator(); iterator.hasNext();) {
-				String defName = iterator.next();
-				String dependency = definitionDependencies.get(defName);
-				if (this.isDefinition(dependency)) {
-					DefinitionType otherType = this.getDefinitionType(dependency);
-					if (otherType != DefinitionType.UNKNOWN_TYPE) {
-						defsWithUnknownType.remove(defName);
-						definitionTypes.put(defName, otherType);
-						progress = true;
-					}
-				}
+		return propagateTypes();
+	}
+
+	/**
+	 * Visits the definitions in topological order, every definition after the
+	 * definition it depends on. Following the only successor of each
+	 * definition until a visited definition is reached finds every cycle once,
+	 * so each definition is visited exactly once.
+	 */
+	private Result propagateTypes() {
+		final Map<String, Integer> state = new HashMap<>(); // 1: on path, 2: done
+		final List<String> order = new ArrayList<>(definitions.size());
+		final List<List<String>> cycles = new ArrayList<>();
+		final List<String> path = new ArrayList<>();
+		for (String start : definitions.keySet()) {
+			String current = start;
+			while (current != null && isDefinition(current) && !state.containsKey(current)) {
+				state.put(current, 1);
+				path.add(current);
+				current = definitionDependencies.get(current);
+			}
+			int end = path.size();
+			if (current != null && state.get(current) != null && state.get(current) == 1) {
+				int first = path.indexOf(current);
+				List<String> cycle = new ArrayList<>(path.subList(first, end));
+				resolveCycle(cycle);
+				cycles.add(Collections.unmodifiableList(cycle));
+				order.addAll(cycle);
+				end = first;
+			}
+			for (int i = end - 1; i >= 0; i--) {
+				String name = path.get(i);
+				resolve(name, definitionDependencies.get(name));
+				order.add(name);
+			}
+			for (String name : path) {
+				state.put(name, 2);
+			}
+			path.clear();
+		}
+
+		Map<String, DefinitionType> types = new LinkedHashMap<>();
+		for (String name : order) {
+			types.put(name, definitionTypes.get(name));
+		}
+		Map<String, String> dependencies = new HashMap<>();
+		for (String name : order) {
+			String dependency = definitionDependencies.get(name);
+			if (dependency != null && definitionTypes.get(name) == DefinitionType.UNKNOWN_TYPE) {
+				dependencies.put(name, dependency);
 			}
 		}
+		return new Result(types, cycles, new HashMap<>(definitionParameterNumber), dependencies, externalUsages);
+	}
+
+	private void resolve(String name, String dependency) {
+		if (definitionTypes.get(name) == DefinitionType.UNKNOWN_TYPE && dependency != null
+				&& isDefinition(dependency)) {
+			definitionTypes.put(name, definitionTypes.get(dependency));
+		}
+	}
 
-		for (Iterator<String> iterator = definitionTypes.keySet().iterator(); iterator.hasNext();) {
-			String defName = (String) iterator.next();
-			DefinitionType definitionType = this.getDefinitionType(defName);
-			System.out.println(defName + " " + definitionType);
-			if (definitionType == DefinitionType.UNKNOWN_TYPE) {
-				// throw new RuntimeException("Unkown type of definition: " +
-				// defName);
+	/**
+	 * The definitions of a cycle can only get a type by their usage; a known
+	 * type is passed on to the definitions depending on it.
+	 */
+	private void resolveCycle(List<String> cycle) {
+		int size = cycle.size();
+		for (int i = 0; i < size; i++) {
+			if (definitionTypes.get(cycle.get(i)) == DefinitionType.UNKNOWN_TYPE) {
+				continue;
 			}
+			for (int j = 1; j < size; j++) {
+				// cycle.get(k) depends on cycle.get(k + 1)
+				String name = cycle.get((i - j + size) % size);
+				resolve(name, cycle.get((i - j + 1 + size) % size));
+			}
+			return;
 		}
+	}
 
+	/**
+	 * A use of a definition, kept for the definitions the analysed tree does
+	 * not define itself.
+	 */
+	static final class Usage {
+		final String name;
+		final DefinitionType type;
+		final int numberOfArguments;
+		final int line;
+
+		Usage(String name, DefinitionType type, int numberOfArguments, int line) {
+			this.name = name;
+			this.type = type;
+			this.numberOfArguments = numberOfArguments;
+			this.line = line;
+		}
+	}
+
+	public static class Result {
+		private final Map<String, DefinitionType> types;
+		private final List<List<String>> cycles;
+		private final Map<String, Integer> parameterNumbers;
+		private final Map<String, String> dependencies;
+		private final List<Usage> externalUsages;
+
+		Result(Map<String, DefinitionType> types, List<List<String>> cycles, Map<String, Integer> parameterNumbers,
+				Map<String, String> dependencies, List<Usage> externalUsages) {
+			this.types = Collections.unmodifiableMap(types);
+			this.cycles = Collections.unmodifiableList(cycles);
+			this.parameterNumbers = parameterNumbers;
+			this.dependencies = dependencies;
+			this.externalUsages = externalUsages;
+		}
+
+		/**
+		 * The types of all definitions, in topological order.
+		 */
+		public Map<String, DefinitionType> getDefinitionTypes() {
+			return types;
+		}
+
+		public DefinitionType getDefinitionType(String name) {
+			return types.get(name);
+		}
+
+		public List<String> getUnknownDefinitions() {
+			List<String> unknown = new ArrayList<>();
+			for (Map.Entry<String, DefinitionType> entry : types.entrySet()) {
+				if (entry.getValue() == DefinitionType.UNKNOWN_TYPE) {
+					unknown.add(entry.getKey());
+				}
+			}
+			return unknown;
+		}
+
+		/**
+		 * The cycles of definitions calling each other, every definition followed
+		 * by the definition it calls.
+		 */
+		public List<List<String>> getCycles() {
+			return cycles;
+		}
+
+		public boolean hasCycles() {
+			return !cycles.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return types.toString();
+		}
 	}
 
 	class DefinitionFinder extends BParserBaseVisitor<Void> {
@@ -84,12 +243,11 @@ public class DefinitionsAnalyser implements IDefinitions {
 			FormulaContext formula = ctx.formula();
 			final String name = ctx.name.getText();
 			definitions.put(name, formula);
-			List<TerminalNode> parameters = ctx.parameters.IDENTIFIER();
 			int numberOfParameter;
-			if (parameters == null) {
+			if (ctx.parameters == null) {
 				numberOfParameter = 0;
 			} else {
-				numberOfParameter = parameters.size();
+				numberOfParameter = ctx.parameters.IDENTIFIER().size();
 			}
 			definitionParameterNumber.put(name, numberOfParameter);
 
@@ -118,6 +276,17 @@ public class DefinitionsAnalyser implements IDefinitions {
 	}
 
 	class DefinitionUsage extends BParserBaseVisitor<Void> {
+		// the parameters of the definition being visited
+		private List<TerminalNode> parameters = Collections.emptyList();
+
+		@Override
+		public Void visitOrdinaryDefinition(OrdinaryDefinitionContext ctx) {
+			parameters = ctx.parameters == null ? Collections.emptyList() : ctx.parameters.IDENTIFIER();
+			visitChildren(ctx);
+			parameters = Collections.emptyList();
+			return null;
+		}
+
 		@Override
 		public Void visitSubstitutionIdentifierCall(SubstitutionIdentifierCallContext ctx) {
 			final List<TerminalNode> identifiers = ctx.composed_identifier().IDENTIFIER();
@@ -125,7 +294,7 @@ public class DefinitionsAnalyser implements IDefinitions {
 			Expression_listContext expression_list = ctx.expression_list();
 			int numberOfArguments = (expression_list == null) ? 0 : expression_list.exprs.size();
 
-			if (identifiers.size() == 1 && DefinitionsAnalyser.this.isDefinition(id.getText())) {
+			if (identifiers.size() == 1) {
 				addDefinitionTypeUsage(id.getText(), DefinitionType.SUBSTITUTION_DEFINITION, ctx.composed_identifier(),
 						numberOfArguments);
 			}
@@ -137,7 +306,7 @@ public class DefinitionsAnalyser implements IDefinitions {
 		public Void visitExpressionIdentifier(ExpressionIdentifierContext ctx) {
 			List<TerminalNode> identifiers = ctx.composed_identifier().IDENTIFIER();
 			final String firstName = identifiers.get(0).getText();
-			if (identifiers.size() == 1 && DefinitionsAnalyser.this.isDefinition(firstName)) {
+			if (identifiers.size() == 1) {
 				addDefinitionTypeUsage(firstName, DefinitionType.EXPRESSION_DEFINITION, ctx, 0);
 			}
 			return null;
@@ -151,7 +320,7 @@ public class DefinitionsAnalyser implements IDefinitions {
 				ExpressionIdentifierContext identifierContext = (ExpressionIdentifierContext) function;
 				List<TerminalNode> tokens = identifierContext.composed_identifier().IDENTIFIER();
 				final TerminalNode id = tokens.get(0);
-				if (tokens.size() == 1 && DefinitionsAnalyser.this.isDefinition(id.getText())) {
+				if (tokens.size() == 1) {
 					addDefinitionTypeUsage(id.getText(), DefinitionType.EXPRESSION_DEFINITION, function,
 							arguments.size());
 				}
@@ -165,20 +334,41 @@ public class DefinitionsAnalyser implements IDefinitions {
 			return null;
 		}
 
-		private void addDefinitionTypeUsage(final String defName, final DefinitionType type,
+		private void addDefinitionTypeUsage(final String name, final DefinitionType type,
 				final ParserRuleContext context, int numberOfArguments) {
+			Usage usage = new Usage(name, type, numberOfArguments, context.getStart().getLine());
+			if (DefinitionsAnalyser.this.isDefinition(name)) {
+				addUsage(usage);
+			} else if (!isParameter(name)) {
+				// may be a definition of another definition file
+				externalUsages.add(usage);
+			}
+		}
 
+		private boolean isParameter(String name) {
+			for (TerminalNode parameter : parameters) {
+				if (parameter.getText().equals(name)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void addUsage(Usage usage) {
+			final String defName = usage.name;
+			if (!DefinitionsAnalyser.this.isDefinition(defName)) {
+				return;
+			}
+			final DefinitionType type = usage.type;
 			if (definitionTypes.get(defName) != DefinitionType.UNKNOWN_TYPE && definitionTypes.get(defName) != type) {
-//				SourcecodeRange sourcecodeRange = new SourcecodeRange(context.getStart().getCharPositionInLine() + 1,
-//						context.getStop().getCharPositionInLine() + context.getStop().getText().length() + 1);
-				String msg = "Invalid definition type. Expected: " + definitionTypes.get(defName);
-				throw new RuntimeException(msg);
+				throw new RuntimeException("Invalid definition type of '" + defName + "'. Expected: "
+						+ definitionTypes.get(defName) + ", found: " + type + "\nLine: " + usage.line);
 			}
 			final int numberOfParameter = definitionParameterNumber.get(defName);
-			if (numberOfParameter != numberOfArguments) {
+			if (numberOfParameter != usage.numberOfArguments) {
 				throw new RuntimeException("Number of Parameter does not match for definition '" + defName
-						+ "'. Expected: " + numberOfParameter + ", found: " + numberOfArguments + "\nLine: "
-						+ context.getStart().getLine());
+						+ "'. Expected: " + numberOfParameter + ", found: " + usage.numberOfArguments + "\nLine: "
+						+ usage.line);
 			}
 
 			if (definitionTypes.get(defName) == DefinitionType.UNKNOWN_TYPE) {
@@ -0,0 +1,269 @@
+package de.prob.parser.antlr;
+
+import de.prob.parser.ast.Symbol;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes terms in the binary format of the SICStus fastrw library, so that
+ * they can be loaded with fast_read/1 without tokenizing and parsing them.
+ * Every top-level term starts with 'D', atoms are written as 'A' followed by
+ * their 0-terminated UTF-8 name, compound terms as 'S' followed by the
+ * 0-terminated functor and the arity as a byte, integers as 'I' and floats as
+ * 'F' followed by their 0-terminated digits, list cells as '[' and the empty
+ * list as ']'.
+ * <p>
+ * The encoded name of every atom is computed once and shared by all its
+ * occurrences; atoms given as {@link Symbol} are looked up by their id.
+ */
+public class FastReadTermOutput implements IPrologTermOutput {
+
+	private static final int MAX_ARITY = 255;
+
+	private final OutputStream out;
+	// set for fragments, which contain a subterm and no 'D' marker
+	private final ByteArrayOutputStream fragmentBuffer;
+	private final Map<String, byte[]> atomTable = new HashMap<>();
+	private byte[][] symbolTable = new byte[256][];
+	// the symbols of symbolTable, which keeps them and their ids alive
+	private Symbol[] symbols = new Symbol[256];
+	private boolean[] inList = new boolean[32];
+	private int depth = 0;
+
+	public FastReadTermOutput(OutputStream out) {
+		this.out = new BufferedOutputStream(out);
+		this.fragmentBuffer = null;
+	}
+
+	private FastReadTermOutput(ByteArrayOutputStream fragmentBuffer) {
+		this.out = fragmentBuffer;
+		this.fragmentBuffer = fragmentBuffer;
+	}
+
+	private void write(int b) {
+		try {
+			out.write(b);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void write(byte[] bytes) {
+		try {
+			out.write(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static byte[] encode(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		byte[] encoded = Arrays.copyOf(bytes, bytes.length + 1);
+		encoded[bytes.length] = 0;
+		return encoded;
+	}
+
+	private byte[] lookUp(String name) {
+		return atomTable.computeIfAbsent(name, FastReadTermOutput::encode);
+	}
+
+	private byte[] lookUp(Symbol symbol) {
+		int id = symbol.getId();
+		if (id >= symbolTable.length) {
+			symbolTable = Arrays.copyOf(symbolTable, Math.max(id + 1, symbolTable.length * 2));
+			symbols = Arrays.copyOf(symbols, symbolTable.length);
+		}
+		byte[] encoded = symbolTable[id];
+		if (symbols[id] != symbol) {
+			encoded = lookUp(symbol.getName());
+			symbolTable[id] = encoded;
+			symbols[id] = symbol;
+		}
+		return encoded;
+	}
+
+	private void beforeArgument() {
+		if (depth == 0) {
+			if (fragmentBuffer == null) {
+				write('D');
+			}
+		} else if (inList[depth - 1]) {
+			write('[');
+		}
+	}
+
+	private void push(boolean list) {
+		if (depth == inList.length) {
+			inList = Arrays.copyOf(inList, depth * 2);
+		}
+		inList[depth++] = list;
+	}
+
+	@Override
+	public void openTerm(String functor, int arity, boolean compact) {
+		if (arity > MAX_ARITY) {
+			throw new IllegalArgumentException("Arity of " + functor + " exceeds " + MAX_ARITY + ": " + arity);
+		}
+		beforeArgument();
+		write('S');
+		write(lookUp(functor));
+		write(arity);
+		push(false);
+	}
+
+	@Override
+	public void closeTerm() {
+		depth--;
+	}
+
+	@Override
+	public int getMaximumArity() {
+		return MAX_ARITY;
+	}
+
+	@Override
+	public void openList() {
+		beforeArgument();
+		push(true);
+	}
+
+	@Override
+	public void closeList() {
+		depth--;
+		write(']');
+	}
+
+	@Override
+	public void atom(String atom) {
+		beforeArgument();
+		write('A');
+		write(lookUp(atom));
+	}
+
+	@Override
+	public void atom(Symbol symbol) {
+		beforeArgument();
+		write('A');
+		write(lookUp(symbol));
+	}
+
+	@Override
+	public void quotedAtom(String name) {
+		// atoms are never quoted in the binary format
+		atom(name);
+	}
+
+	@Override
+	public void integer(BigInteger value) {
+		beforeArgument();
+		write('I');
+		write(encode(value.toString()));
+	}
+
+	@Override
+	public void integer(long value) {
+		beforeArgument();
+		write('I');
+		write(encode(Long.toString(value)));
+	}
+
+	@Override
+	public void integerTerm(String functor, int... arguments) {
+		beforeArgument();
+		write('S');
+		write(lookUp(functor));
+		write(arguments.length);
+		for (int argument : arguments) {
+			write('I');
+			write(encode(Integer.toString(argument)));
+		}
+	}
+
+	@Override
+	public void number(Number value) {
+		beforeArgument();
+		write(value instanceof BigInteger ? 'I' : 'F');
+		write(encode(value.toString()));
+	}
+
+	/**
+	 * Writes the literal as the list of its character codes, which is what
+	 * the textual output is read as. Escape sequences are therefore resolved
+	 * the way Prolog reads them, e.g. "a\"b" becomes [97,34,98].
+	 */
+	@Override
+	public void stringLiteral(String literal) {
+		beforeArgument();
+		String text = literal.substring(1, literal.length() - 1);
+		for (int i = 0; i < text.length(); i++) {
+			int c = text.codePointAt(i);
+			if (c == '\\' && i + 1 < text.length()) {
+				int escaped = unescape(text.charAt(i + 1));
+				if (escaped >= 0) {
+					c = escaped;
+					i++;
+				}
+			}
+			i += Character.charCount(c) - 1;
+			write('[');
+			write('I');
+			write(encode(Integer.toString(c)));
+		}
+		write(']');
+	}
+
+	private static int unescape(char c) {
+		switch (c) {
+		case 'n':
+			return '\n';
+		case 't':
+			return '\t';
+		case 'r':
+			return '\r';
+		case '\\':
+		case '"':
+		case '\'':
+			return c;
+		default:
+			return -1;
+		}
+	}
+
+	@Override
+	public IPrologTermOutput createFragment() {
+		return new FastReadTermOutput(new ByteArrayOutputStream());
+	}
+
+	@Override
+	public void appendFragment(IPrologTermOutput fragment) {
+		beforeArgument();
+		try {
+			((FastReadTermOutput) fragment).fragmentBuffer.writeTo(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void fullStop() {
+		// every top-level term starts with its own 'D'
+	}
+
+	@Override
+	public void flush() {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
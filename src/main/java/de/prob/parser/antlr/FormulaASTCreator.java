@@ -1,5 +1,8 @@
 package de.prob.parser.antlr;
 
+import de.prob.parser.antlr.IDefinitions.DefinitionType;
+import de.prob.parser.ast.NodeInterner;
+import de.prob.parser.ast.OperatorIndex;
 import de.prob.parser.ast.nodes.DeclarationNode;
 import de.prob.parser.ast.nodes.Node;
 import de.prob.parser.ast.nodes.expression.RealNumberNode;
@@ -47,6 +50,7 @@ import files.BParser.BooleanValueContext;
 import files.BParser.ExpressionContext;
 import files.BParser.Expression_in_parContext;
 import files.BParser.Expression_listContext;
+import files.BParser.ExpressionIdentifierContext;
 import files.BParser.Identifier_or_function_or_recordContext;
 import files.BParser.PredicateContext;
 import files.BParser.Predicate_atomicContext;
@@ -201,6 +205,55 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		addPredicateOperator(BParser.STRICT_NON_INCLUSION, PredOperatorExprArgs.STRICT_NON_INCLUSION);
 	}
 
+	private final NodeInterner interner;
+	private final OperatorIndex index;
+	private final DefinitionExpander definitions = new DefinitionExpander(this);
+
+	public FormulaASTCreator() {
+		this(null);
+	}
+
+	/**
+	 * Creates ASTs in which structurally equal expressions and predicates are
+	 * shared via the given interner, see {@link NodeInterner}.
+	 */
+	public FormulaASTCreator(NodeInterner interner) {
+		this(interner, null);
+	}
+
+	/**
+	 * Creates ASTs whose nodes are added to the given index, see
+	 * {@link OperatorIndex}. Both the interner and the index are optional.
+	 */
+	public FormulaASTCreator(NodeInterner interner, OperatorIndex index) {
+		this.interner = interner;
+		this.index = index;
+	}
+
+	<T extends Node> T register(T node) {
+		T result = interner == null ? node : interner.intern(node);
+		if (index != null && result == node) {
+			index.add(node);
+		}
+		return result;
+	}
+
+	DefinitionExpander getDefinitions() {
+		return definitions;
+	}
+
+	void enterScope(List<DeclarationNode> declarations) {
+		if (interner != null) {
+			interner.enterScope(declarations);
+		}
+	}
+
+	void exitScope() {
+		if (interner != null) {
+			interner.exitScope();
+		}
+	}
+
 	@Override
 	public Node visitChildren(RuleNode node) {
 		throw new RuntimeException("Not implemented: " + node.getClass().getSimpleName() + " at " + node.getSourceInterval());
@@ -232,7 +285,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 			PredicateOperator newOp = ctx.operators.get(i).getType() == BParser.AND ? PredicateOperator.AND
 					: PredicateOperator.OR;
 			if (op != newOp) {
-				PredicateNode temp = new PredicateOperatorNode(Util.createSourceCodePosition(ctx), newOp, args);
+				PredicateNode temp = register(new PredicateOperatorNode(Util.createSourceCodePosition(ctx), newOp, args));
 				args = new ArrayList<>();
 				args.add(temp);
 			}
@@ -240,14 +293,14 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		Predicate_atomicContext lastContext = terms.get(terms.size()-1);
 		PredicateNode last = (PredicateNode) lastContext.accept(this);
 		args.add(last);
-		return new PredicateOperatorNode(Util.createSourceCodePosition(ctx), op, args);
+		return register(new PredicateOperatorNode(Util.createSourceCodePosition(ctx), op, args));
 	}
 
 	@Override
 	public Node visitPredicateNot(BParser.PredicateNotContext ctx) {
 		PredicateNode node = (PredicateNode) ctx.predicate().accept(this);
-		return new PredicateOperatorNode(Util.createSourceCodePosition(ctx), PredicateOperator.NOT,
-				createPredicateNodeList(node));
+		return register(new PredicateOperatorNode(Util.createSourceCodePosition(ctx), PredicateOperator.NOT,
+				createPredicateNodeList(node)));
 	}
 
 	@Override
@@ -258,7 +311,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		int type = ctx.keyword.getType();
 		PredicateOperator op = type == BParser.BTRUE ? PredicateOperator.TRUE : PredicateOperator.FALSE;
 		List<PredicateNode> list = new ArrayList<>();
-		return new PredicateOperatorNode(Util.createSourceCodePosition(ctx), op, list);
+		return register(new PredicateOperatorNode(Util.createSourceCodePosition(ctx), op, list));
 	}
 
 	@Override
@@ -267,13 +320,21 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		ExprNode tuple = expressions.get(expressions.size() - 1);
 		for(int i = expressions.size() - 2; i >= 0; i--) {
 			ExprNode lhs = expressions.get(i);
-			tuple = new ExpressionOperatorNode(lhs.getSourceCodePosition(), Arrays.asList(lhs, tuple), ExpressionOperator.COUPLE);
+			tuple = register(new ExpressionOperatorNode(lhs.getSourceCodePosition(), Arrays.asList(lhs, tuple), ExpressionOperator.COUPLE));
 		}
 		return tuple;
 	}
 
 	@Override
 	public Node visitPredicateIdentifierCall(BParser.PredicateIdentifierCallContext ctx) {
+		String name = ctx.composed_identifier().getText();
+		if (definitions.isDefinition(name)) {
+			List<ExprNode> arguments = new ArrayList<>();
+			for (ExpressionContext argument : ctx.arguments) {
+				arguments.add((ExprNode) argument.accept(this));
+			}
+			return definitions.expand(name, DefinitionType.PREDICATE_DEFINITION, arguments, ctx);
+		}
 		//TODO: Implement PredicateIdentifierCall
 		return null;
 	}
@@ -285,7 +346,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		List<PredicateNode> list = new ArrayList<>();
 		list.add(left);
 		list.add(right);
-		return new PredicateOperatorNode(Util.createSourceCodePosition(ctx), PredicateOperator.IMPLIES, list);
+		return register(new PredicateOperatorNode(Util.createSourceCodePosition(ctx), PredicateOperator.IMPLIES, list));
 	}
 
 	@Override
@@ -295,7 +356,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		List<PredicateNode> list = new ArrayList<>();
 		list.add(left);
 		list.add(right);
-		return new PredicateOperatorNode(Util.createSourceCodePosition(ctx), PredicateOperator.EQUIVALENCE, list);
+		return register(new PredicateOperatorNode(Util.createSourceCodePosition(ctx), PredicateOperator.EQUIVALENCE, list));
 	}
 
 	@Override
@@ -317,7 +378,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		if (op == null) {
 			throw new RuntimeException("Not implemented: " + ctx.expressionOperatorP160().operator.getText());
 		}
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(left, right), op);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(left, right), op));
 	}
 
 	@Override
@@ -329,15 +390,27 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 					DeclarationNode.Kind.VARIABLE, null);
 			identifierList.add(decl);
 		}
+		enterScope(identifierList);
 		PredicateNode predicate = (PredicateNode) ctx.predicate().accept(this);
+		exitScope();
 		QuantifiedPredicateNode.QuantifiedPredicateOperator operator = BParser.FOR_ANY == ctx.operator.getType()
 				? QuantifiedPredicateNode.QuantifiedPredicateOperator.UNIVERSAL_QUANTIFICATION
 				: QuantifiedPredicateNode.QuantifiedPredicateOperator.EXISTENTIAL_QUANTIFICATION;
-		return new QuantifiedPredicateNode(Util.createSourceCodePosition(ctx), identifierList, predicate, operator);
+		return register(new QuantifiedPredicateNode(Util.createSourceCodePosition(ctx), identifierList, predicate, operator));
 	}
 
 	@Override
 	public Node visitExpressionFunctionCall(BParser.ExpressionFunctionCallContext ctx) {
+		if (ctx.expression() instanceof ExpressionIdentifierContext) {
+			String name = ctx.expression().getText();
+			if (definitions.isDefinition(name) && definitions.getParameterCount(name) > 0) {
+				List<ExprNode> arguments = new ArrayList<>();
+				for (Expression_in_parContext arg : ctx.expression_in_par()) {
+					arguments.add((ExprNode) arg.accept(this));
+				}
+				return definitions.expand(name, DefinitionType.EXPRESSION_DEFINITION, arguments, ctx);
+			}
+		}
 		List<ExprNode> list = new ArrayList<>();
 		final ExprNode func = (ExprNode) ctx.expression().accept(this);
 		list.add(func);
@@ -345,7 +418,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 			final ExprNode argNode = (ExprNode) arg.accept(this);
 			list.add(argNode);
 		}
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), list, ExpressionOperator.FUNCTION_CALL);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), list, ExpressionOperator.FUNCTION_CALL));
 	}
 
 	@Override
@@ -355,8 +428,8 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		list.add(func);
 		ExprNode arg = (ExprNode) ctx.expression_in_par().accept(this);
 		list.add(arg);
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), list,
-				ExpressionOperator.RELATIONAL_IMAGE);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), list,
+				ExpressionOperator.RELATIONAL_IMAGE));
 	}
 
 	@Override
@@ -364,15 +437,15 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		List<ExprNode> list = new ArrayList<>();
 		final ExprNode node = (ExprNode) ctx.expression().accept(this);
 		list.add(node);
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), list,
-				ExpressionOperator.INVERSE_RELATION);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), list,
+				ExpressionOperator.INVERSE_RELATION));
 	}
 
 	@Override
 	public Node visitUnaryMinus(BParser.UnaryMinusContext ctx) {
 		ExprNode expr = (ExprNode) ctx.expression().accept(this);
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(expr),
-				ExpressionOperator.UNARY_MINUS);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(expr),
+				ExpressionOperator.UNARY_MINUS));
 	}
 
 	@Override
@@ -382,14 +455,14 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 
 	@Override
 	public Node visitEmptySet(BParser.EmptySetContext ctx) {
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), new ArrayList<>(),
-				ExpressionOperator.SET_ENUMERATION);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), new ArrayList<>(),
+				ExpressionOperator.SET_ENUMERATION));
 	}
 
 	@Override
 	public Node visitEmptySequence(BParser.EmptySequenceContext ctx) {
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), new ArrayList<>(),
-				ExpressionOperator.SEQ_ENUMERATION);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), new ArrayList<>(),
+				ExpressionOperator.SEQ_ENUMERATION));
 	}
 
 	@Override
@@ -402,8 +475,8 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		if (op == null) {
 			throw new RuntimeException();
 		}
-		return new PredicateOperatorWithExprArgsNode(Util.createSourceCodePosition(ctx), op,
-				createExprNodeList(left, right));
+		return register(new PredicateOperatorWithExprArgsNode(Util.createSourceCodePosition(ctx), op,
+				createExprNodeList(left, right)));
 	}
 
 	// Expression
@@ -415,7 +488,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		if (op == null) {
 			throw new RuntimeException(ctx.expression_keyword().operator.getText());
 		}
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), op);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), op));
 	}
 
 	@Override
@@ -426,7 +499,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 			throw new RuntimeException(ctx.expression_prefix_operator().operator.getText());
 		}
 		ExprNode argument = (ExprNode) ctx.expression_in_par().accept(this);
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(argument), op);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(argument), op));
 	}
 
 	@Override
@@ -438,7 +511,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		}
 		ExprNode expr1 = (ExprNode) ctx.expr1.accept(this);
 		ExprNode expr2 = (ExprNode) ctx.expr2.accept(this);
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(expr1, expr2), op);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(expr1, expr2), op));
 	}
 
 	@Override
@@ -460,7 +533,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		if (op == null) {
 			throw new RuntimeException("Not implemented operator: " + ctx.operator.getText());
 		}
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(left, right), op);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(left, right), op));
 	}
 
 	@Override
@@ -472,7 +545,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		if (op == null) {
 			throw new RuntimeException("Not implemented: " + ctx.expression_bin_operator_p125().operator.getText());
 		}
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(left, right), op);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(left, right), op));
 
 	}
 
@@ -484,7 +557,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		if (op == null) {
 			throw new RuntimeException("Not implemented: " + ctx.operator.getText());
 		}
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(left, right), op);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), createExprNodeList(left, right), op));
 	}
 
 	@Override
@@ -496,21 +569,23 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 					DeclarationNode.Kind.VARIABLE, null);
 			identifierList.add(decl);
 		}
+		enterScope(identifierList);
 		PredicateNode predicateNode = (PredicateNode) ctx.predicate().accept(this);
 		ExprNode exprNode = (ExprNode) ctx.expression_in_par().accept(this);
-		return new LambdaNode(Util.createSourceCodePosition(ctx), identifierList, predicateNode, exprNode);
+		exitScope();
+		return register(new LambdaNode(Util.createSourceCodePosition(ctx), identifierList, predicateNode, exprNode));
 	}
 
 	@Override
 	public Node visitSetEnumeration(BParser.SetEnumerationContext ctx) {
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx),
-				visitExpressionList(ctx.expression_list()), ExpressionOperator.SET_ENUMERATION);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx),
+				visitExpressionList(ctx.expression_list()), ExpressionOperator.SET_ENUMERATION));
 	}
 
 	@Override
 	public Node visitSequenceEnumeration(BParser.SequenceEnumerationContext ctx) {
-		return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx),
-				visitExpressionList(ctx.expression_list()), ExpressionOperator.SEQ_ENUMERATION);
+		return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx),
+				visitExpressionList(ctx.expression_list()), ExpressionOperator.SEQ_ENUMERATION));
 	}
 
 	@Override
@@ -522,8 +597,10 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 					DeclarationNode.Kind.VARIABLE, null);
 			identifierList.add(decl);
 		}
+		enterScope(identifierList);
 		PredicateNode predicate = (PredicateNode) ctx.predicate().accept(this);
-		return new SetComprehensionNode(Util.createSourceCodePosition(ctx), identifierList, predicate);
+		exitScope();
+		return register(new SetComprehensionNode(Util.createSourceCodePosition(ctx), identifierList, predicate));
 	}
 
 	@Override
@@ -550,47 +627,52 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 					DeclarationNode.Kind.VARIABLE, null);
 			identifierList.add(decl);
 		}
+		enterScope(identifierList);
 		PredicateNode predicate = (PredicateNode) ctx.predicate().accept(this);
 		ExprNode expression = (ExprNode) ctx.expression_in_par().accept(this);
-		return new QuantifiedExpressionNode(Util.createSourceCodePosition(ctx), operator, identifierList, predicate, expression);
+		exitScope();
+		return register(new QuantifiedExpressionNode(Util.createSourceCodePosition(ctx), operator, identifierList, predicate, expression));
 	}
 
 	@Override
 	public Node visitNumber(BParser.NumberContext ctx) {
 		BigInteger value = new BigInteger(ctx.Number().getText());
-		return new NumberNode(Util.createSourceCodePosition(ctx), value);
+		return register(new NumberNode(Util.createSourceCodePosition(ctx), value));
 	}
 
 	@Override
 	public Node visitRealNumber(BParser.RealNumberContext ctx) {
 		BigDecimal value = new BigDecimal(ctx.Real_Number().getText());
-		return new RealNumberNode(Util.createSourceCodePosition(ctx), value);
+		return register(new RealNumberNode(Util.createSourceCodePosition(ctx), value));
 	}
 
 	@Override
 	public Node visitBooleanValue(BParser.BooleanValueContext ctx) {
 		if (ctx.value.getText().equals("TRUE")) {
-			return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), ExpressionOperator.TRUE);
+			return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), ExpressionOperator.TRUE));
 		} else if (ctx.value.getText().equals("FALSE")) {
-			return new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), ExpressionOperator.FALSE);
+			return register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), ExpressionOperator.FALSE));
 		}
 		return notReachable(ctx);
 	}
 
 	@Override
 	public Node visitBoolCastExpression(BParser.BoolCastExpressionContext ctx) {
-		return new CastPredicateExpressionNode(Util.createSourceCodePosition(ctx),
-				(PredicateNode) ctx.predicate().accept(this));
+		return register(new CastPredicateExpressionNode(Util.createSourceCodePosition(ctx),
+				(PredicateNode) ctx.predicate().accept(this)));
 	}
 
 	@Override
 	public Node visitExpressionIdentifier(BParser.ExpressionIdentifierContext ctx) {
-		return new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.getText(), false);
+		if (definitions.isDefinition(ctx.getText())) {
+			return definitions.expand(ctx.getText(), DefinitionType.EXPRESSION_DEFINITION, new ArrayList<>(), ctx);
+		}
+		return register(new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.getText(), false));
 	}
 
 	@Override
 	public Node visitPrimedIdentifierExpression(BParser.PrimedIdentifierExpressionContext ctx) {
-		return new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.getText().substring(0, ctx.getText().length() - 2), true);
+		return register(new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.getText().substring(0, ctx.getText().length() - 2), true));
 	}
 
 	// Substitution
@@ -604,7 +686,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 
 		List<ExprNode> exprList = visitExpressionList(ctx.expression_list());
 
-		return new AssignSubstitutionNode(Util.createSourceCodePosition(ctx), leftList, exprList);
+		return register(new AssignSubstitutionNode(Util.createSourceCodePosition(ctx), leftList, exprList));
 	}
 
 	@Override
@@ -615,7 +697,10 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		}
 		List<ExprNode> arguments = ctx.expression_list() == null ? new ArrayList<>()
 				: visitExpressionList(ctx.expression_list());
-		return new OperationCallSubstitutionNode(Util.createSourceCodePosition(ctx), names, arguments);
+		if (names.size() == 1 && definitions.isDefinition(names.get(0))) {
+			return definitions.expand(names.get(0), DefinitionType.SUBSTITUTION_DEFINITION, arguments, ctx);
+		}
+		return register(new OperationCallSubstitutionNode(Util.createSourceCodePosition(ctx), names, arguments));
 	}
 
 	@Override
@@ -630,12 +715,12 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		List<ExprNode> output = new ArrayList<>();
 		for (Token exprNode : ctx.identifier_list().idents) {
 			String name = exprNode.getText();
-			IdentifierExprNode identifierExprNode = new IdentifierExprNode(Util.createSourceCodePosition(exprNode),
-					name, false);
+			IdentifierExprNode identifierExprNode = register(new IdentifierExprNode(Util.createSourceCodePosition(exprNode),
+					name, false));
 			output.add(identifierExprNode);
 		}
 
-		return new OperationCallSubstitutionNode(Util.createSourceCodePosition(ctx), names, arguments, output);
+		return register(new OperationCallSubstitutionNode(Util.createSourceCodePosition(ctx), names, arguments, output));
 	}
 
 	@Override
@@ -645,7 +730,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 
 	@Override
 	public Node visitSubstitutionSkip(BParser.SubstitutionSkipContext ctx) {
-		return new SkipSubstitutionNode(Util.createSourceCodePosition(ctx));
+		return register(new SkipSubstitutionNode(Util.createSourceCodePosition(ctx)));
 	}
 
 	@Override
@@ -673,7 +758,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 			operator = ListOperator.Parallel;
 		}
 
-		return new ListSubstitutionNode(Util.createSourceCodePosition(ctx), operator, result);
+		return register(new ListSubstitutionNode(Util.createSourceCodePosition(ctx), operator, result));
 	}
 
 	@Override
@@ -700,8 +785,8 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		if (ctx.elseSub != null) {
 			elseSubstitution = (SubstitutionNode) ctx.elseSub.accept(this);
 		}
-		return new IfOrSelectSubstitutionsNode(Util.createSourceCodePosition(ctx),
-				IfOrSelectSubstitutionsNode.Operator.IF, predList, subList, elseSubstitution);
+		return register(new IfOrSelectSubstitutionsNode(Util.createSourceCodePosition(ctx),
+				IfOrSelectSubstitutionsNode.Operator.IF, predList, subList, elseSubstitution));
 	}
 
 	@Override
@@ -709,7 +794,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		PredicateNode condition = (PredicateNode) ctx.predicate().accept(this);
 		ExprNode thenExpr = (ExprNode) ctx.expr1.accept(this);
 		ExprNode elseExpr = (ExprNode) ctx.expr2.accept(this);
-		return new IfExpressionNode(Util.createSourceCodePosition(ctx), condition, thenExpr, elseExpr);
+		return register(new IfExpressionNode(Util.createSourceCodePosition(ctx), condition, thenExpr, elseExpr));
 	}
 
 	@Override
@@ -717,7 +802,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		PredicateNode condition = (PredicateNode) ctx.conditionPred.accept(this);
 		PredicateNode thenPred = (PredicateNode) ctx.thenPred.accept(this);
 		PredicateNode elsePred = (PredicateNode) ctx.elsePred.accept(this);
-		return new IfPredicateNode(Util.createSourceCodePosition(ctx), condition, thenPred, elsePred);
+		return register(new IfPredicateNode(Util.createSourceCodePosition(ctx), condition, thenPred, elsePred));
 	}
 
 	@Override
@@ -726,7 +811,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		SubstitutionNode body = (SubstitutionNode) ctx.substitution().accept(this);
 		PredicateNode invariant = (PredicateNode) ctx.invariant.accept(this);
 		ExprNode variant = (ExprNode) ctx.variant.accept(this);
-		return new WhileSubstitutionNode(Util.createSourceCodePosition(ctx), condition, body, invariant, variant);
+		return register(new WhileSubstitutionNode(Util.createSourceCodePosition(ctx), condition, body, invariant, variant));
 	}
 
 	@Override
@@ -738,8 +823,10 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 					DeclarationNode.Kind.SUBSTITUION_IDENTIFIER, null);
 			identifierList.add(decl);
 		}
+		enterScope(identifierList);
 		SubstitutionNode sub = (SubstitutionNode) ctx.substitution().accept(this);
-		return new VarSubstitutionNode(Util.createSourceCodePosition(ctx), identifierList, sub);
+		exitScope();
+		return register(new VarSubstitutionNode(Util.createSourceCodePosition(ctx), identifierList, sub));
 	}
 
 	@Override
@@ -751,9 +838,11 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 					DeclarationNode.Kind.SUBSTITUION_IDENTIFIER, null);
 			identifierList.add(decl);
 		}
+		enterScope(identifierList);
 		PredicateNode pred = (PredicateNode) ctx.predicate().accept(this);
 		SubstitutionNode sub = (SubstitutionNode) ctx.substitution().accept(this);
-		return new LetSubstitutionNode(Util.createSourceCodePosition(ctx), identifierList, pred, sub);
+		exitScope();
+		return register(new LetSubstitutionNode(Util.createSourceCodePosition(ctx), identifierList, pred, sub));
 	}
 
 	@Override
@@ -765,9 +854,11 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 					DeclarationNode.Kind.SUBSTITUION_IDENTIFIER, null);
 			identifierList.add(decl);
 		}
+		enterScope(identifierList);
 		PredicateNode pred = (PredicateNode) ctx.predicate().accept(this);
 		ExprNode sub = (ExprNode) ctx.expression_in_par().accept(this);
-		return new LetExpressionNode(Util.createSourceCodePosition(ctx), identifierList, pred, sub);
+		exitScope();
+		return register(new LetExpressionNode(Util.createSourceCodePosition(ctx), identifierList, pred, sub));
 	}
 
 	@Override
@@ -779,9 +870,11 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 					DeclarationNode.Kind.SUBSTITUION_IDENTIFIER, null);
 			identifierList.add(decl);
 		}
+		enterScope(identifierList);
 		PredicateNode pred = (PredicateNode) ctx.pred1.accept(this);
 		PredicateNode sub = (PredicateNode) ctx.pred2.accept(this);
-		return new LetPredicateNode(Util.createSourceCodePosition(ctx), identifierList, pred, sub);
+		exitScope();
+		return register(new LetPredicateNode(Util.createSourceCodePosition(ctx), identifierList, pred, sub));
 	}
 
 	@Override
@@ -808,23 +901,24 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		if (ctx.else_sub != null) {
 			elseSubstitution = (SubstitutionNode) ctx.else_sub.accept(this);
 		}
-		return new IfOrSelectSubstitutionsNode(Util.createSourceCodePosition(ctx),
-				IfOrSelectSubstitutionsNode.Operator.SELECT, predList, subList, elseSubstitution);
+		return register(new IfOrSelectSubstitutionsNode(Util.createSourceCodePosition(ctx),
+				IfOrSelectSubstitutionsNode.Operator.SELECT, predList, subList, elseSubstitution));
 	}
 
 	@Override
 	public Node visitAnySubstitution(BParser.AnySubstitutionContext ctx) {
-		PredicateNode predicate = (PredicateNode) ctx.predicate().accept(this);
-		SubstitutionNode substitution = (SubstitutionNode) ctx.substitution().accept(this);
 		List<DeclarationNode> identifierList = new ArrayList<>();
-
 		for (Token node : ctx.identifier_list().idents) {
 			String name = node.getText();
 			DeclarationNode decl = new DeclarationNode(Util.createSourceCodePosition(node), name,
 					DeclarationNode.Kind.SUBSTITUION_IDENTIFIER, null);
 			identifierList.add(decl);
 		}
-		return new AnySubstitutionNode(Util.createSourceCodePosition(ctx), identifierList, predicate, substitution);
+		enterScope(identifierList);
+		PredicateNode predicate = (PredicateNode) ctx.predicate().accept(this);
+		SubstitutionNode substitution = (SubstitutionNode) ctx.substitution().accept(this);
+		exitScope();
+		return register(new AnySubstitutionNode(Util.createSourceCodePosition(ctx), identifierList, predicate, substitution));
 	}
 
 	@Override
@@ -832,12 +926,12 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		List<IdentifierExprNode> leftList = new ArrayList<>();
 		for (Token left : ctx.identifier_list().idents) {
 			String name = left.getText();
-			IdentifierExprNode identifierExprNode = new IdentifierExprNode(Util.createSourceCodePosition(left), name, false);
+			IdentifierExprNode identifierExprNode = register(new IdentifierExprNode(Util.createSourceCodePosition(left), name, false));
 			leftList.add(identifierExprNode);
 		}
 
 		ExprNode expression = (ExprNode) ctx.expression().accept(this);
-		return new BecomesElementOfSubstitutionNode(Util.createSourceCodePosition(ctx), leftList, expression);
+		return register(new BecomesElementOfSubstitutionNode(Util.createSourceCodePosition(ctx), leftList, expression));
 	}
 
 	@Override
@@ -845,22 +939,22 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		List<IdentifierExprNode> leftList = new ArrayList<>();
 		for (Token left : ctx.identifier_list().idents) {
 			String name = left.getText();
-			IdentifierExprNode identifierExprNode = new IdentifierExprNode(Util.createSourceCodePosition(left), name, false);
+			IdentifierExprNode identifierExprNode = register(new IdentifierExprNode(Util.createSourceCodePosition(left), name, false));
 			leftList.add(identifierExprNode);
 		}
 		PredicateNode predicate = (PredicateNode) ctx.predicate().accept(this);
-		return new BecomesSuchThatSubstitutionNode(Util.createSourceCodePosition(ctx), leftList, predicate);
+		return register(new BecomesSuchThatSubstitutionNode(Util.createSourceCodePosition(ctx), leftList, predicate));
 	}
 
 	@Override
 	public ExprNode visitAssignSingleIdentifier(BParser.AssignSingleIdentifierContext ctx) {
-		return new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.getText(), false);
+		return register(new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.getText(), false));
 	}
 
 	@Override
 	public ExprNode visitAssignFunctionIdentifier(BParser.AssignFunctionIdentifierContext ctx) {
 
-		final ExprNode func = new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.IDENTIFIER().getText(), false);
+		final ExprNode func = register(new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.IDENTIFIER().getText(), false));
 		ExprNode resultNode = func;
 
 		for(int i = 0; i < ctx.argument_lists.size(); i++) {
@@ -870,7 +964,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 			List<ExprNode> arguments = listCtx == null ? new ArrayList<>()
 					: visitExpressionList(listCtx);
 			list.addAll(arguments);
-			resultNode = new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), list, ExpressionOperator.FUNCTION_CALL);
+			resultNode = register(new ExpressionOperatorNode(Util.createSourceCodePosition(ctx), list, ExpressionOperator.FUNCTION_CALL));
 
 		}
 		return resultNode;
@@ -901,7 +995,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 
 	@Override
 	public Node visitString(BParser.StringContext ctx) {
-		return new StringNode(Util.createSourceCodePosition(ctx), ctx.StringLiteral().getText());
+		return register(new StringNode(Util.createSourceCodePosition(ctx), ctx.StringLiteral().getText()));
 	}
 
 	private Node notReachable(BooleanValueContext ctx) {
@@ -913,9 +1007,9 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		PredicateNode predicate = (PredicateNode) ctx.predicate().accept(this);
 		SubstitutionNode substitution = (SubstitutionNode) ctx.substitution().accept(this);
 		if("PRE".equals(ctx.keyword.getText())) {
-			return new ConditionSubstitutionNode(Util.createSourceCodePosition(ctx), ConditionSubstitutionNode.Kind.PRECONDITION, predicate, substitution);
+			return register(new ConditionSubstitutionNode(Util.createSourceCodePosition(ctx), ConditionSubstitutionNode.Kind.PRECONDITION, predicate, substitution));
 		} else {
-			return new ConditionSubstitutionNode(Util.createSourceCodePosition(ctx), ConditionSubstitutionNode.Kind.ASSERT, predicate, substitution);
+			return register(new ConditionSubstitutionNode(Util.createSourceCodePosition(ctx), ConditionSubstitutionNode.Kind.ASSERT, predicate, substitution));
 		}
 	}
 
@@ -925,7 +1019,7 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		for (SubstitutionContext sCtx : ctx.substitution()) {
 			substitutions.add((SubstitutionNode) sCtx.accept(this));
 		}
-		return new ChoiceSubstitutionNode(Util.createSourceCodePosition(ctx), substitutions);
+		return register(new ChoiceSubstitutionNode(Util.createSourceCodePosition(ctx), substitutions));
 	}
 
 	@Override
@@ -940,9 +1034,9 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 			expressions.add((ExprNode) entry.expression_in_par().accept(this));
 		}
 		if(ctx.operator.getType() == BParser.STRUCT) {
-			return new StructNode(Util.createSourceCodePosition(ctx), declarations, expressions);
+			return register(new StructNode(Util.createSourceCodePosition(ctx), declarations, expressions));
 		}
-		return new RecordNode(Util.createSourceCodePosition(ctx), declarations, expressions);
+		return register(new RecordNode(Util.createSourceCodePosition(ctx), declarations, expressions));
 	}
 
 	@Override
@@ -951,26 +1045,26 @@ public class FormulaASTCreator extends BParserBaseVisitor<Node> {
 		String name = ctx.identifier().getText();
 		DeclarationNode identifier = new DeclarationNode(Util.createSourceCodePosition(ctx.identifier().getStart()), name,
 				DeclarationNode.Kind.VARIABLE, null);
-		return new RecordFieldAccessNode(Util.createSourceCodePosition(ctx), expression, identifier);
+		return register(new RecordFieldAccessNode(Util.createSourceCodePosition(ctx), expression, identifier));
 	}
 
 	@Override
 	public Node visitIdentifier(BParser.IdentifierContext ctx) {
-		return new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.getText(), false);
+		return register(new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.getText(), false));
 	}
 
 	@Override
 	public Node visitAssignRecordIdentifier(BParser.AssignRecordIdentifierContext ctx) {
-		final ExprNode record = new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.name.getText(), false);
+		final ExprNode record = register(new IdentifierExprNode(Util.createSourceCodePosition(ctx), ctx.name.getText(), false));
 		RecordFieldAccessNode result = null;
 		for(int i = 0; i < ctx.attributes.size(); i++) {
 			String name = ctx.attributes.get(i).getText();
 			DeclarationNode identifier = new DeclarationNode(Util.createSourceCodePosition(ctx.attributes.get(i)), name,
 					DeclarationNode.Kind.VARIABLE, null);
 			if(i == 0) {
-				result = new RecordFieldAccessNode(Util.createSourceCodePosition(ctx), record, identifier);
+				result = register(new RecordFieldAccessNode(Util.createSourceCodePosition(ctx), record, identifier));
 			} else {
-				result = new RecordFieldAccessNode(Util.createSourceCodePosition(ctx), result, identifier);
+				result = register(new RecordFieldAccessNode(Util.createSourceCodePosition(ctx), result, identifier));
 			}
 		}
 		return result;
@@ -0,0 +1,80 @@
+package de.prob.parser.antlr;
+
+import de.prob.parser.ast.Symbol;
+
+import java.math.BigInteger;
+
+/**
+ * Receives a Prolog term piece by piece, e.g. f(a, [b]) as openTerm(f, 2),
+ * atom(a), openList(), atom(b), closeList(), closeTerm(). Separators between
+ * arguments and list elements are inserted by the implementation.
+ */
+public interface IPrologTermOutput {
+
+	/**
+	 * Opens a compound term. A compact term is printed without blank between
+	 * its first and second argument, e.g. add(none,x, y).
+	 */
+	void openTerm(String functor, int arity, boolean compact);
+
+	void closeTerm();
+
+	/**
+	 * The largest arity of a compound term the format can represent.
+	 */
+	int getMaximumArity();
+
+	void openList();
+
+	void closeList();
+
+	/**
+	 * Writes an atom that does not have to be quoted.
+	 */
+	void atom(String atom);
+
+	void atom(Symbol symbol);
+
+	/**
+	 * Writes an atom that is quoted if necessary, like the atom of a
+	 * {@link Symbol}, e.g. 'Foo'.
+	 */
+	void quotedAtom(String name);
+
+	void integer(BigInteger value);
+
+	void integer(long value);
+
+	void number(Number value);
+
+	/**
+	 * Writes a compound term with integer arguments, e.g. p3(1,2,3). In
+	 * textual form no blanks are written between the arguments.
+	 */
+	void integerTerm(String functor, int... arguments);
+
+	/**
+	 * Writes a string literal as it appears in the B source, i.e. with its
+	 * surrounding double quotes.
+	 */
+	void stringLiteral(String literal);
+
+	/**
+	 * Creates an empty output of the same format, into which a subterm can be
+	 * written independently of (and concurrently to) this output.
+	 */
+	IPrologTermOutput createFragment();
+
+	/**
+	 * Writes the subterm collected in a fragment created by
+	 * {@link #createFragment()} as next argument.
+	 */
+	void appendFragment(IPrologTermOutput fragment);
+
+	/**
+	 * Terminates a top-level term.
+	 */
+	void fullStop();
+
+	void flush();
+}
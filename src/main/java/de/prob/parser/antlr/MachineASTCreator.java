@@ -1,12 +1,13 @@
 package de.prob.parser.antlr;
 
+import de.prob.parser.ast.NodeInterner;
+import de.prob.parser.ast.OperatorIndex;
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
 import de.prob.parser.ast.nodes.DefinitionNode;
 import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
 import de.prob.parser.ast.nodes.MachineNode;
 import de.prob.parser.ast.nodes.MachineReferenceNode;
-import de.prob.parser.ast.nodes.Node;
 import de.prob.parser.ast.nodes.OperationNode;
 import de.prob.parser.ast.nodes.OperationReferenceNode;
 import de.prob.parser.ast.nodes.expression.ExprNode;
@@ -19,28 +20,77 @@ import files.BParser.DeclarationClauseContext;
 import files.BParser.Machine_instantiationContext;
 import files.BParser.StartContext;
 import files.BParserBaseVisitor;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import files.BParser.FormulaContext;
-import files.BParser.FormulaExpressionContext;
-import files.BParser.FormulaPredicateContext;
-import files.BParser.FormulaSubstitutionContext;
 
 public class MachineASTCreator {
 	private final MachineNode machineNode;
+	private final File directory;
+	private final DefinitionFileCache definitionFiles;
+	// the operations not created yet, null if all operations are created with the machine
+	private final List<BParser.BOperationContext> deferredOperations;
+	private final MachineConstructor constructor;
 
 	public static MachineNode createMachineAST(StartContext startContext) {
-		MachineASTCreator machineASTCreator = new MachineASTCreator(startContext);
+		return createMachineAST(startContext, null);
+	}
+
+	/**
+	 * Creates the AST of a machine in which structurally equal expressions and
+	 * predicates are shared via the given interner. The interner can be reused
+	 * for all machines of a project.
+	 */
+	public static MachineNode createMachineAST(StartContext startContext, NodeInterner interner) {
+		return createMachineAST(startContext, interner, false);
+	}
+
+	/**
+	 * Creates the AST of a machine and, if requested, its {@link OperatorIndex}
+	 * at the same time. The interner is optional.
+	 */
+	public static MachineNode createMachineAST(StartContext startContext, NodeInterner interner,
+			boolean indexOperators) {
+		return createMachineAST(startContext, interner, indexOperators, null, DefinitionFileCache.getShared());
+	}
+
+	/**
+	 * Creates the AST of a machine located in the given directory. Definition
+	 * files included by the machine are searched relative to it and taken from
+	 * the given cache, which parses each file only once.
+	 */
+	public static MachineNode createMachineAST(StartContext startContext, NodeInterner interner,
+			boolean indexOperators, File directory, DefinitionFileCache definitionFiles) {
+		MachineASTCreator machineASTCreator = new MachineASTCreator(startContext, interner, indexOperators,
+				directory, definitionFiles);
 		return machineASTCreator.getMachineNode();
 	}
 
+	/**
+	 * Creates the AST of a machine without its operations, which are created
+	 * one at a time by {@link #createOperation(int)} and are not added to the
+	 * machine. The parse tree of an operation is released once its AST has
+	 * been created, so a machine can be checked and encoded operation by
+	 * operation without holding the parse trees or ASTs of all operations.
+	 */
+	public static MachineASTCreator createMachineASTWithoutOperations(StartContext startContext, File directory,
+			DefinitionFileCache definitionFiles) {
+		return new MachineASTCreator(startContext, null, false, directory, definitionFiles, true);
+	}
+
 	public static ExprNode createExpressionAST(BParser.ExpressionContext context) {
 		FormulaASTCreator formulaASTCreator = new FormulaASTCreator();
 		return (ExprNode) context.accept(formulaASTCreator);
@@ -51,23 +101,109 @@ public class MachineASTCreator {
 		return (PredicateNode) context.accept(formulaASTCreator);
 	}
 
-	private MachineNode getMachineNode() {
+	public MachineNode getMachineNode() {
 		return this.machineNode;
 	}
 
-	private MachineASTCreator(StartContext startContext) {
+	/**
+	 * The number of operations of a machine created without its operations.
+	 */
+	public int getOperationCount() {
+		return deferredOperations.size();
+	}
+
+	/**
+	 * Creates the AST of an operation of a machine created without its
+	 * operations. Every operation can only be created once.
+	 */
+	public OperationNode createOperation(int index) {
+		BParser.BOperationContext ctx = deferredOperations.set(index, null);
+		if (ctx == null) {
+			throw new IllegalStateException("Operation " + index + " has already been created");
+		}
+		OperationNode operationNode = constructor.createOperation(ctx);
+		// release the parse tree of the operation
+		ctx.children = null;
+		return operationNode;
+	}
+
+	private MachineASTCreator(StartContext startContext, NodeInterner interner, boolean indexOperators,
+			File directory, DefinitionFileCache definitionFiles) {
+		this(startContext, interner, indexOperators, directory, definitionFiles, false);
+	}
+
+	private MachineASTCreator(StartContext startContext, NodeInterner interner, boolean indexOperators,
+			File directory, DefinitionFileCache definitionFiles, boolean deferOperations) {
+		this.directory = directory;
+		this.definitionFiles = definitionFiles;
+		this.deferredOperations = deferOperations ? new ArrayList<>() : null;
 		this.machineNode = new MachineNode(Util.createSourceCodePosition(startContext));
-		new MachineConstructor(startContext);
+		if (interner != null) {
+			interner.beginMachine();
+		}
+		OperatorIndex index = indexOperators ? new OperatorIndex() : null;
+		this.constructor = new MachineConstructor(startContext, new FormulaASTCreator(interner, index));
+		machineNode.setOperatorIndex(index);
 	}
 
 	class MachineConstructor extends BParserBaseVisitor<Void> {
 
-		private FormulaASTCreator formulaAstCreator = new FormulaASTCreator();
+		private final FormulaASTCreator formulaAstCreator;
+		private final Set<File> includedFiles = new LinkedHashSet<>();
+		private final Map<BParser.DefinitionFileContext, List<BParser.OrdinaryDefinitionContext>> fileDefinitions = new HashMap<>();
+		private final List<DefinitionsAnalyser.Result> includedAnalyses = new ArrayList<>();
 
-		MachineConstructor(StartContext start) {
+		MachineConstructor(StartContext start, FormulaASTCreator formulaAstCreator) {
+			this.formulaAstCreator = formulaAstCreator;
+			// definitions can be used before the DEFINITIONS clause
+			collectDefinitions(start);
+			machineNode.setDefinitionFiles(new ArrayList<>(includedFiles));
+			if (formulaAstCreator.getDefinitions().hasDefinitions()) {
+				// the definition files have been analysed when they were cached
+				formulaAstCreator.getDefinitions()
+						.setAnalysis(new DefinitionsAnalyser(start, includedAnalyses).analyse());
+			}
 			start.accept(this);
 		}
 
+		private void collectDefinitions(ParserRuleContext ctx) {
+			for (ParseTree child : ctx.children) {
+				if (child instanceof BParser.OrdinaryDefinitionContext) {
+					formulaAstCreator.getDefinitions().add((BParser.OrdinaryDefinitionContext) child);
+				} else if (child instanceof BParser.DefinitionFileContext) {
+					BParser.DefinitionFileContext fileContext = (BParser.DefinitionFileContext) child;
+					List<BParser.OrdinaryDefinitionContext> definitions = new ArrayList<>();
+					includeDefinitionFile(directory, DefinitionFileCache.getFileName(fileContext), definitions);
+					fileDefinitions.put(fileContext, definitions);
+				} else if (child instanceof BParser.Parse_unitContext || child instanceof BParser.Machine_xContext
+						|| child instanceof BParser.DefinitionClauseIndirectionContext
+						|| child instanceof BParser.Definition_clauseContext) {
+					collectDefinitions((ParserRuleContext) child);
+				}
+			}
+		}
+
+		/**
+		 * Adds the definitions of a definition file and the files it includes;
+		 * every file is included at most once.
+		 */
+		private void includeDefinitionFile(File directory, String name,
+				List<BParser.OrdinaryDefinitionContext> definitions) {
+			DefinitionFileCache.DefinitionFile definitionFile = definitionFiles
+					.get(definitionFiles.resolve(directory, name));
+			if (!includedFiles.add(definitionFile.getFile())) {
+				return;
+			}
+			includedAnalyses.add(definitionFile.getAnalysis());
+			for (BParser.OrdinaryDefinitionContext definition : definitionFile.getDefinitions()) {
+				formulaAstCreator.getDefinitions().add(definition);
+				definitions.add(definition);
+			}
+			for (String includedFile : definitionFile.getIncludedFiles()) {
+				includeDefinitionFile(definitionFile.getFile().getParentFile(), includedFile, definitions);
+			}
+		}
+
 		@Override
 		public Void visitMachine_header(BParser.Machine_headerContext ctx) {
 			machineNode.setName(ctx.IDENTIFIER().getText());
@@ -75,36 +211,18 @@ public class MachineASTCreator {
 			return null;
 		}
 
-		// TODO: Add definitions to Machine AST
-		// @Override public Void visitDefinitionClause(BParser.DefinitionClauseContext
-		// ctx) { return null; }
-		// @Override public T visitDefinitionFile(BParser.DefinitionFileContext ctx) {
-		// return visitChildren(ctx); }
-		// see DefinitionFinder in DefinitionsAnalyser.java
 		@Override
 		public Void visitOrdinaryDefinition(BParser.OrdinaryDefinitionContext ctx) {
-			final String name = ctx.name.getText();
-			Node body = null;
-			FormulaContext formula = ctx.formula();
-	        if (formula instanceof FormulaPredicateContext) {
-	        	body = ((FormulaPredicateContext)formula).predicate().accept(formulaAstCreator);
-	        } else if (formula instanceof FormulaSubstitutionContext) {
-	        	body = ((FormulaSubstitutionContext)formula).substitution().accept(formulaAstCreator);
-	        } else if (formula instanceof FormulaExpressionContext) {
-	        	body = ((FormulaExpressionContext)formula).expression().accept(formulaAstCreator);
-	        } else {
-	        	throw new RuntimeException();
-	        }
+			DefinitionNode definitionNode = formulaAstCreator.getDefinitions().createDefinitionNode(ctx);
+			machineNode.addDefinition(formulaAstCreator.register(definitionNode));
+			return null;
+		}
 
-			List<DeclarationNode> paramNodes = new ArrayList<>();
-			if (ctx.parameters != null) {
-				paramNodes = createDeclarationList(ctx.parameters.IDENTIFIER(),
-						DeclarationNode.Kind.OP_INPUT_PARAMETER);
+		@Override
+		public Void visitDefinitionFile(BParser.DefinitionFileContext ctx) {
+			for (BParser.OrdinaryDefinitionContext definition : fileDefinitions.get(ctx)) {
+				visitOrdinaryDefinition(definition);
 			}
-
-			DefinitionNode definitionNode = new DefinitionNode(Util.createSourceCodePosition(ctx), name, paramNodes,
-					body);
-			machineNode.addDefinition(definitionNode);
 			return null;
 		}
 
@@ -218,11 +336,12 @@ public class MachineASTCreator {
 		public Void visitValuesClause(BParser.ValuesClauseContext ctx) {
 			for (int i = 0; i < ctx.idents.size(); i++) {
 				String name = ctx.idents.get(i).getText();
-				IdentifierExprNode identifier = new IdentifierExprNode(Util.createSourceCodePosition(ctx.idents.get(i)),
-						name, false);
+				IdentifierExprNode identifier = formulaAstCreator.register(
+						new IdentifierExprNode(Util.createSourceCodePosition(ctx.idents.get(i)), name, false));
 				ExprNode expr = (ExprNode) ctx.exprs.get(i).accept(formulaAstCreator);
-				machineNode.addValues(new AssignSubstitutionNode(Util.createSourceCodePosition(ctx),
-						Collections.singletonList(identifier), Collections.singletonList(expr)));
+				machineNode.addValues(formulaAstCreator.register(new AssignSubstitutionNode(
+						Util.createSourceCodePosition(ctx), Collections.singletonList(identifier),
+						Collections.singletonList(expr))));
 			}
 			return null;
 		}
@@ -253,6 +372,15 @@ public class MachineASTCreator {
 
 		@Override
 		public Void visitBOperation(BParser.BOperationContext ctx) {
+			if (deferredOperations != null) {
+				deferredOperations.add(ctx);
+			} else {
+				machineNode.addOperation(createOperation(ctx));
+			}
+			return null;
+		}
+
+		OperationNode createOperation(BParser.BOperationContext ctx) {
 			List<DeclarationNode> outputParamNodes = new ArrayList<>();
 			if (ctx.output != null) {
 				outputParamNodes = createDeclarationList(ctx.output.IDENTIFIER(),
@@ -263,12 +391,14 @@ public class MachineASTCreator {
 				paramNodes = createDeclarationList(ctx.parameters.IDENTIFIER(),
 						DeclarationNode.Kind.OP_INPUT_PARAMETER);
 			}
+			List<DeclarationNode> parameters = new ArrayList<>(outputParamNodes);
+			parameters.addAll(paramNodes);
+			formulaAstCreator.enterScope(parameters);
 			SubstitutionNode sub = (SubstitutionNode) ctx.substitution().accept(formulaAstCreator);
+			formulaAstCreator.exitScope();
 			String opName = ctx.IDENTIFIER().getText();
-			OperationNode operationNode = new OperationNode(Util.createSourceCodePosition(ctx), opName,
-					outputParamNodes, sub, paramNodes);
-			machineNode.addOperation(operationNode);
-			return null;
+			return formulaAstCreator.register(new OperationNode(Util.createSourceCodePosition(ctx), opName,
+					outputParamNodes, sub, paramNodes));
 		}
 
 		private void unreachable() {
@@ -286,11 +416,7 @@ public class MachineASTCreator {
 		}
 
 		private SourceCodePosition getSourcePositionFromTerminalNode(TerminalNode terminalNode) {
-			SourceCodePosition sourceCodePosition = new SourceCodePosition();
-			sourceCodePosition.setStartLine(terminalNode.getSymbol().getLine());
-			sourceCodePosition.setStartColumn(terminalNode.getSymbol().getCharPositionInLine());
-			sourceCodePosition.setText(terminalNode.getSymbol().getText());
-			return sourceCodePosition;
+			return Util.createSourceCodePosition(terminalNode.getSymbol());
 		}
 
 	}
@@ -0,0 +1,154 @@
+package de.prob.parser.antlr;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDK Flight Recorder events for the phases of {@link ParserMetrics.Phase},
+ * e.g. de.prob.parser.Parse, each with the machine name, its size in bytes
+ * and its token and node counts.
+ *
+ * The parser is compiled for Java 8, so the event types are created at run
+ * time with jdk.jfr.EventFactory through reflection. If JFR is not available
+ * all methods do nothing. Events are created before the machine name is known
+ * and only committed once the AST exists; {@link #end(Object)} fixes the
+ * duration of an event in the meantime.
+ */
+final class ParserEvents {
+
+	private static final String[] LABELS = { "Read", "Lex", "Parse", "AST Creation", "Scope Check", "Type Check",
+			"Print" };
+
+	private static final Object[] FACTORIES = new Object[ParserMetrics.Phase.values().length];
+	private static Method newEvent;
+	private static Method begin;
+	private static Method end;
+	private static Method set;
+	private static Method shouldCommit;
+	private static Method commit;
+	private static boolean available;
+
+	static {
+		try {
+			Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+			Constructor<?> newAnnotation = annotationElement.getConstructor(Class.class, Object.class);
+			Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+			Constructor<?> newField = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+			Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+			Method create = eventFactory.getMethod("create", List.class, List.class);
+
+			List<Object> fields = Arrays.asList(
+					newField.newInstance(String.class, "machine",
+							Collections.singletonList(annotation(newAnnotation, "Label", "Machine"))),
+					newField.newInstance(long.class, "bytes",
+							Arrays.asList(annotation(newAnnotation, "Label", "Bytes"),
+									annotation(newAnnotation, "DataAmount", "BYTES"))),
+					newField.newInstance(int.class, "tokens",
+							Collections.singletonList(annotation(newAnnotation, "Label", "Tokens"))),
+					newField.newInstance(int.class, "nodes",
+							Collections.singletonList(annotation(newAnnotation, "Label", "AST Nodes"))));
+			for (ParserMetrics.Phase phase : ParserMetrics.Phase.values()) {
+				List<Object> annotations = new ArrayList<>();
+				String label = LABELS[phase.ordinal()];
+				annotations.add(annotation(newAnnotation, "Name", "de.prob.parser." + label.replace(" ", "")));
+				annotations.add(annotation(newAnnotation, "Label", label));
+				annotations.add(annotation(newAnnotation, "Category", new String[] { "ProB", "Parser" }));
+				annotations.add(annotation(newAnnotation, "StackTrace", false));
+				FACTORIES[phase.ordinal()] = create.invoke(null, annotations, fields);
+			}
+
+			newEvent = eventFactory.getMethod("newEvent");
+			Class<?> event = Class.forName("jdk.jfr.Event");
+			begin = event.getMethod("begin");
+			end = event.getMethod("end");
+			set = event.getMethod("set", int.class, Object.class);
+			shouldCommit = event.getMethod("shouldCommit");
+			commit = event.getMethod("commit");
+			available = true;
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			// no JFR, e.g. an old Java 8 runtime
+			available = false;
+		}
+	}
+
+	private ParserEvents() {
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object annotation(Constructor<?> newAnnotation, String type, Object value)
+			throws ReflectiveOperationException {
+		Class<? extends Annotation> annotationType = (Class<? extends Annotation>) Class.forName("jdk.jfr." + type);
+		return newAnnotation.newInstance(annotationType, value);
+	}
+
+	/**
+	 * Starts the event of a phase, returns {@code null} if JFR is not
+	 * available.
+	 */
+	static Object begin(ParserMetrics.Phase phase) {
+		if (!available) {
+			return null;
+		}
+		try {
+			Object event = newEvent.invoke(FACTORIES[phase.ordinal()]);
+			begin.invoke(event);
+			return event;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	static void end(Object event) {
+		if (event == null) {
+			return;
+		}
+		try {
+			end.invoke(event);
+		} catch (ReflectiveOperationException e) {
+			// the event is dropped by commit
+		}
+	}
+
+	/**
+	 * Commits the event if it is enabled in the running recordings; the event
+	 * is ended if it has not been ended before.
+	 */
+	static void commit(Object event, String machine, long bytes, int tokens, int nodes) {
+		if (event == null) {
+			return;
+		}
+		try {
+			if ((Boolean) shouldCommit.invoke(event)) {
+				set.invoke(event, 0, machine);
+				set.invoke(event, 1, bytes);
+				set.invoke(event, 2, tokens);
+				set.invoke(event, 3, nodes);
+				commit.invoke(event);
+			}
+		} catch (ReflectiveOperationException e) {
+			// recording must never break parsing
+		}
+	}
+
+	/**
+	 * Commits the event with the counts recorded in the metrics for the
+	 * machine, if any.
+	 */
+	static void commit(Object event, String machine, ParserMetrics metrics) {
+		if (event == null) {
+			return;
+		}
+		ParserMetrics.MachineMetrics machineMetrics = metrics.getMachine(machine);
+		if (machineMetrics == null) {
+			commit(event, machine, 0, 0, 0);
+		} else {
+			commit(event, machine, machineMetrics.getBytes(), machineMetrics.getTokens(), machineMetrics.getNodes());
+		}
+	}
+
+}
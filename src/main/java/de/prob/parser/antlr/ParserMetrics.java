@@ -0,0 +1,279 @@
+package de.prob.parser.antlr;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeUtil;
+
+/**
+ * The time spent in each phase of loading and printing a project, per machine
+ * and in total, together with the size, the number of tokens and the number of
+ * AST nodes of the machines. Every {@link BProject} created by
+ * {@link Antlr4BParser} carries its metrics, see {@link BProject#getMetrics()}.
+ * The same phases are recorded as JDK Flight Recorder events, see
+ * {@link ParserEvents}.
+ *
+ * Times are in nanoseconds. A phase a project was loaded without (e.g. the
+ * reading of machines given as strings) is 0. Time that cannot be
+ * attributed to a single machine, like building the index of renamed
+ * variables, is only contained in the totals.
+ */
+public class ParserMetrics {
+
+	public enum Phase {
+		READ, LEX, PARSE, AST, SCOPE_CHECK, TYPE_CHECK, PRINT;
+
+		/**
+		 * The name used in the JSON and CSV output, e.g. scope_check.
+		 */
+		public String getKey() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	public static class MachineMetrics {
+		private final String name;
+		private final long[] nanos = new long[Phase.values().length];
+		private long bytes;
+		private int tokens;
+		private int nodes;
+
+		MachineMetrics(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * The name of the machine, including the prefix of a renamed machine.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public long getNanos(Phase phase) {
+			return nanos[phase.ordinal()];
+		}
+
+		public long getTotalNanos() {
+			long total = 0;
+			for (long n : nanos) {
+				total += n;
+			}
+			return total;
+		}
+
+		/**
+		 * The size of the machine file.
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * The number of tokens including the end of file.
+		 */
+		public int getTokens() {
+			return tokens;
+		}
+
+		/**
+		 * The number of distinct AST nodes of the machine, nodes shared by
+		 * several parents are counted once.
+		 */
+		public int getNodes() {
+			return nodes;
+		}
+	}
+
+	private final Map<String, MachineMetrics> machines = new LinkedHashMap<>();
+	private final long[] unattributed = new long[Phase.values().length];
+
+	/**
+	 * Adds the time spent in a phase for the machine; if the machine is
+	 * {@code null} the time is only added to the totals.
+	 */
+	public void add(String machine, Phase phase, long nanos) {
+		if (machine == null) {
+			unattributed[phase.ordinal()] += nanos;
+		} else {
+			getOrCreate(machine).nanos[phase.ordinal()] += nanos;
+		}
+	}
+
+	void setBytes(String machine, long bytes) {
+		getOrCreate(machine).bytes = bytes;
+	}
+
+	void setTokens(String machine, int tokens) {
+		getOrCreate(machine).tokens = tokens;
+	}
+
+	void setNodes(String machine, int nodes) {
+		getOrCreate(machine).nodes = nodes;
+	}
+
+	private MachineMetrics getOrCreate(String machine) {
+		return machines.computeIfAbsent(machine, MachineMetrics::new);
+	}
+
+	public List<MachineMetrics> getMachines() {
+		return Collections.unmodifiableList(new ArrayList<>(machines.values()));
+	}
+
+	public MachineMetrics getMachine(String name) {
+		return machines.get(name);
+	}
+
+	public long getNanos(Phase phase) {
+		long total = unattributed[phase.ordinal()];
+		for (MachineMetrics machine : machines.values()) {
+			total += machine.getNanos(phase);
+		}
+		return total;
+	}
+
+	public long getTotalNanos() {
+		long total = 0;
+		for (Phase phase : Phase.values()) {
+			total += getNanos(phase);
+		}
+		return total;
+	}
+
+	public long getBytes() {
+		long total = 0;
+		for (MachineMetrics machine : machines.values()) {
+			total += machine.bytes;
+		}
+		return total;
+	}
+
+	public int getTokens() {
+		int total = 0;
+		for (MachineMetrics machine : machines.values()) {
+			total += machine.tokens;
+		}
+		return total;
+	}
+
+	public int getNodes() {
+		int total = 0;
+		for (MachineMetrics machine : machines.values()) {
+			total += machine.nodes;
+		}
+		return total;
+	}
+
+	static int countNodes(Node root) {
+		Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<Node> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Node node = stack.pop();
+			if (node != null && visited.add(node)) {
+				NodeUtil.getChildren(node).forEach(stack::push);
+			}
+		}
+		return visited.size();
+	}
+
+	/**
+	 * Writes the metrics as one JSON object: {"machines":[{"name":...,
+	 * "bytes":...,"tokens":...,"nodes":...,"read":...,...,"total":...},...],
+	 * "total":{...}}.
+	 */
+	public void writeJson(Writer out) throws IOException {
+		out.write("{\"machines\":[");
+		boolean first = true;
+		for (MachineMetrics machine : machines.values()) {
+			out.write(first ? "" : ",");
+			first = false;
+			out.write("{\"name\":\"" + escapeJson(machine.name) + "\",");
+			writeJsonFields(out, machine.bytes, machine.tokens, machine.nodes, machine.nanos, machine.getTotalNanos());
+		}
+		out.write("],\"total\":{");
+		writeJsonFields(out, getBytes(), getTokens(), getNodes(), getTotals(), getTotalNanos());
+		out.write("}\n");
+	}
+
+	private static void writeJsonFields(Writer out, long bytes, int tokens, int nodes, long[] nanos, long total)
+			throws IOException {
+		out.write("\"bytes\":" + bytes + ",\"tokens\":" + tokens + ",\"nodes\":" + nodes);
+		for (Phase phase : Phase.values()) {
+			out.write(",\"" + phase.getKey() + "\":" + nanos[phase.ordinal()]);
+		}
+		out.write(",\"total\":" + total + "}");
+	}
+
+	private static String escapeJson(String s) {
+		StringBuilder sb = new StringBuilder();
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the metrics as CSV with a header line, one line per machine and a
+	 * last line for the totals whose machine column is empty.
+	 */
+	public void writeCsv(Writer out) throws IOException {
+		StringBuilder header = new StringBuilder("machine,bytes,tokens,nodes");
+		for (Phase phase : Phase.values()) {
+			header.append(',').append(phase.getKey());
+		}
+		out.write(header + ",total\n");
+		for (MachineMetrics machine : machines.values()) {
+			writeCsvLine(out, machine.name, machine.bytes, machine.tokens, machine.nodes, machine.nanos,
+					machine.getTotalNanos());
+		}
+		writeCsvLine(out, "", getBytes(), getTokens(), getNodes(), getTotals(), getTotalNanos());
+	}
+
+	private static void writeCsvLine(Writer out, String name, long bytes, int tokens, int nodes, long[] nanos,
+			long total) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		// machine names are B identifiers, possibly with a prefix, and never
+		// need quoting
+		sb.append(name).append(',').append(bytes).append(',').append(tokens).append(',').append(nodes);
+		for (long n : nanos) {
+			sb.append(',').append(n);
+		}
+		out.write(sb.append(',').append(total).append('\n').toString());
+	}
+
+	private long[] getTotals() {
+		long[] totals = new long[Phase.values().length];
+		for (Phase phase : Phase.values()) {
+			totals[phase.ordinal()] = getNanos(phase);
+		}
+		return totals;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Phase phase : Phase.values()) {
+			sb.append(sb.length() == 0 ? "" : ", ").append(phase.getKey()).append(": ")
+					.append(getNanos(phase) / 1_000_000).append(" ms");
+		}
+		return sb.append(", tokens: ").append(getTokens()).append(", nodes: ").append(getNodes()).toString();
+	}
+
+}
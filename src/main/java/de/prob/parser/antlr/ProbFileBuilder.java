@@ -0,0 +1,333 @@
+package de.prob.parser.antlr;
+
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.MachineReferenceNode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates the .prob files of all main machines in a directory tree, i.e. of
+ * all machines that are not referenced by another machine in their directory.
+ * A .prob file is only regenerated if the content of its machine, of one of
+ * the machines it transitively references or of one of the definition files
+ * these machines include has changed, or if the output options have changed.
+ * The content hashes of the machines, their references, the definition files
+ * they include and the hashes the .prob files were generated from are recorded
+ * in a manifest in the root directory.
+ *
+ * Definition files are parsed once per build, with a cache of their own that
+ * has the library directories of the shared one.
+ */
+public class ProbFileBuilder {
+
+	public static final String MANIFEST = ".prob-manifest";
+	private static final String MACHINE_EXTENSION = ".mch";
+	private static final String PROB_EXTENSION = ".prob";
+
+	private final Path root;
+	private final boolean typecheck;
+	private final List<String> options;
+	private final DefinitionFileCache definitionFiles = DefinitionFileCache.getShared().copyConfiguration();
+
+	// relative path of a machine -> content hash, names of referenced machines
+	// and hashes of included definition files
+	private final Map<String, MachineEntry> machines = new ConcurrentHashMap<>();
+	// relative path of a main machine -> hash its .prob file was generated from
+	private final Map<String, String> outputs = new ConcurrentHashMap<>();
+
+	public ProbFileBuilder(Path root, boolean typecheck, List<String> options) {
+		this.root = root;
+		this.typecheck = typecheck;
+		this.options = new ArrayList<>(options);
+		Collections.sort(this.options);
+	}
+
+	private static class MachineEntry {
+		private final String hash;
+		private final List<String> references;
+		// canonical path of an included definition file -> content hash
+		private final Map<String, String> definitionFiles;
+
+		MachineEntry(String hash, List<String> references, Map<String, String> definitionFiles) {
+			this.hash = hash;
+			this.references = references;
+			this.definitionFiles = definitionFiles;
+		}
+	}
+
+	public static class BuildResult {
+		private final List<Path> generated = Collections.synchronizedList(new ArrayList<>());
+		private final List<Path> upToDate = new ArrayList<>();
+		private final Map<Path, String> failed = new ConcurrentHashMap<>();
+
+		public List<Path> getGenerated() {
+			return generated;
+		}
+
+		public List<Path> getUpToDate() {
+			return upToDate;
+		}
+
+		public Map<Path, String> getFailed() {
+			return failed;
+		}
+	}
+
+	public BuildResult build() throws IOException {
+		final Map<String, MachineEntry> oldMachines = new HashMap<>();
+		final Map<String, String> oldOutputs = new HashMap<>();
+		readManifest(oldMachines, oldOutputs);
+
+		final List<Path> files;
+		try (Stream<Path> stream = Files.walk(root)) {
+			files = stream.filter(file -> file.toString().endsWith(MACHINE_EXTENSION) && Files.isRegularFile(file))
+					.sorted().collect(Collectors.toList());
+		}
+		final BuildResult result = new BuildResult();
+		files.parallelStream().forEach(file -> {
+			try {
+				machines.put(relativize(file), readMachine(file, oldMachines.get(relativize(file))));
+			} catch (IOException | RuntimeException e) {
+				result.failed.put(file, String.valueOf(e.getMessage()));
+			}
+		});
+
+		final Map<Path, String> stale = new LinkedHashMap<>();
+		for (Path main : determineMainMachines(files)) {
+			final String mainKey = relativize(main);
+			final String hash = hashOfOutput(main);
+			if (hash == null) {
+				continue;
+			}
+			final String oldHash = oldOutputs.get(mainKey);
+			if (hash.equals(oldHash) && Files.exists(getOutputFile(main))) {
+				outputs.put(mainKey, hash);
+				result.upToDate.add(main);
+			} else {
+				stale.put(main, hash);
+			}
+		}
+		stale.entrySet().parallelStream().forEach(entry -> {
+			final Path main = entry.getKey();
+			try {
+				generate(main);
+				outputs.put(relativize(main), entry.getValue());
+				result.generated.add(main);
+			} catch (Exception e) {
+				result.failed.put(main, String.valueOf(e.getMessage()));
+			}
+		});
+		result.generated.sort(null);
+		writeManifest();
+		return result;
+	}
+
+	private String relativize(Path file) {
+		return root.relativize(file).toString().replace('\\', '/');
+	}
+
+	private MachineEntry readMachine(Path file, MachineEntry oldEntry) throws IOException {
+		final byte[] content = Files.readAllBytes(file);
+		final String hash = hash(content);
+		if (oldEntry != null && oldEntry.hash.equals(hash) && definitionFilesUnchanged(oldEntry)) {
+			return oldEntry;
+		}
+		final MachineNode machineNode = MachineASTCreator.createMachineAST(
+				Antlr4BParser.parse(new String(content, StandardCharsets.UTF_8)), null, false,
+				file.toFile().getParentFile(), definitionFiles);
+		final List<String> references = new ArrayList<>();
+		for (MachineReferenceNode reference : machineNode.getMachineReferences()) {
+			references.add(reference.getMachineName());
+		}
+		final Map<String, String> definitionHashes = new TreeMap<>();
+		for (File definitionFile : machineNode.getDefinitionFiles()) {
+			definitionHashes.put(definitionFile.getPath(), definitionFiles.get(definitionFile).getHash());
+		}
+		return new MachineEntry(hash, references, definitionHashes);
+	}
+
+	/**
+	 * Checks whether the definition files of an unchanged machine are
+	 * unchanged as well; a changed definition file may include other files,
+	 * so the machine has to be read again in that case.
+	 */
+	private static boolean definitionFilesUnchanged(MachineEntry entry) {
+		for (Map.Entry<String, String> definitionFile : entry.definitionFiles.entrySet()) {
+			final File file = new File(definitionFile.getKey());
+			if (!file.isFile() || !definitionFile.getValue().equals(DefinitionFileCache.hashOf(file))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private List<Path> determineMainMachines(List<Path> files) {
+		final Set<Path> referenced = new HashSet<>();
+		for (Path file : files) {
+			final MachineEntry entry = machines.get(relativize(file));
+			if (entry == null) {
+				continue;
+			}
+			for (String reference : entry.references) {
+				final Path referencedFile = getMachineFile(file, reference);
+				if (!referencedFile.equals(file)) {
+					referenced.add(referencedFile);
+				}
+			}
+		}
+		return files.stream().filter(file -> !referenced.contains(file)).collect(Collectors.toList());
+	}
+
+	private static Path getMachineFile(Path machine, String name) {
+		// referenced machines are looked up in the folder of the machine, see
+		// Antlr4BParser.getFile
+		return machine.resolveSibling(name + MACHINE_EXTENSION);
+	}
+
+	private static Path getOutputFile(Path main) {
+		final String fileName = main.getFileName().toString();
+		return main.resolveSibling(
+				fileName.substring(0, fileName.length() - MACHINE_EXTENSION.length()) + PROB_EXTENSION);
+	}
+
+	/**
+	 * Returns the hash of the options and of the contents of all machines
+	 * the main machine transitively references, or {@code null} if one of
+	 * them could not be read.
+	 */
+	private String hashOfOutput(Path main) {
+		final Map<String, String> hashes = new TreeMap<>();
+		final List<Path> todo = new ArrayList<>();
+		todo.add(main);
+		while (!todo.isEmpty()) {
+			final Path file = todo.remove(todo.size() - 1);
+			final String key = relativize(file);
+			if (hashes.containsKey(key)) {
+				continue;
+			}
+			final MachineEntry entry = machines.get(key);
+			if (entry == null) {
+				if (Files.exists(file)) {
+					return null;
+				}
+				// let the generation report the missing machine
+				hashes.put(key, "missing");
+				continue;
+			}
+			hashes.put(key, entry.hash);
+			hashes.putAll(entry.definitionFiles);
+			for (String reference : entry.references) {
+				todo.add(getMachineFile(main, reference));
+			}
+		}
+		final StringBuilder sb = new StringBuilder();
+		sb.append("typecheck=").append(typecheck).append(' ').append(options).append('\n');
+		hashes.forEach((file, hash) -> sb.append(file).append(' ').append(hash).append('\n'));
+		return hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void generate(Path main) throws Exception {
+		final BProject project = Antlr4BParser.createBProjectFromMainMachineFile(main.toFile(), typecheck, typecheck,
+				definitionFiles);
+		final Path output = getOutputFile(main);
+		final Path temp = Files.createTempFile(output.getParent(), output.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream stream = Files.newOutputStream(temp)) {
+				if (options.contains("-fastrw")) {
+					Antlr4BParser.printFastRead(project, main.getFileName(), stream, options);
+				} else {
+					final Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+					Antlr4BParser.printProlog(project, main.getFileName(), out, options);
+					out.flush();
+				}
+			}
+			Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static String hash(byte[] content) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest(content)) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	private void readManifest(Map<String, MachineEntry> oldMachines, Map<String, String> oldOutputs)
+			throws IOException {
+		final Path manifest = root.resolve(MANIFEST);
+		if (!Files.exists(manifest)) {
+			return;
+		}
+		final Map<String, Map<String, String>> definitionHashes = new HashMap<>();
+		for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+			final String[] fields = line.split("\t", -1);
+			if (fields.length == 5 && "machine".equals(fields[0])) {
+				final List<String> references = fields[3].isEmpty() ? Collections.emptyList()
+						: Collections.unmodifiableList(Arrays.asList(fields[3].split(",")));
+				final Map<String, String> definitionFiles = new TreeMap<>();
+				definitionHashes.put(fields[1], definitionFiles);
+				oldMachines.put(fields[1], new MachineEntry(fields[2], references, definitionFiles));
+			} else if (fields.length == 4 && "definitions".equals(fields[0])) {
+				definitionHashes.computeIfAbsent(fields[1], k -> new TreeMap<>()).put(fields[2], fields[3]);
+			} else if (fields.length == 3 && "output".equals(fields[0])) {
+				oldOutputs.put(fields[1], fields[2]);
+			}
+			// ignore anything else, e.g. machine lines of older manifests, which
+			// did not record definition files
+		}
+	}
+
+	private void writeManifest() throws IOException {
+		final List<String> lines = new ArrayList<>();
+		lines.add("# generated by the ANTLR B parser, do not edit");
+		new TreeMap<>(machines).forEach((file, entry) -> {
+			// the last field is the number of definitions lines of the machine
+			lines.add("machine\t" + file + "\t" + entry.hash + "\t" + String.join(",", entry.references) + "\t"
+					+ entry.definitionFiles.size());
+			entry.definitionFiles.forEach(
+					(definitionFile, hash) -> lines.add("definitions\t" + file + "\t" + definitionFile + "\t" + hash));
+		});
+		new TreeMap<>(outputs).forEach((file, hash) -> lines.add("output\t" + file + "\t" + hash));
+		final Path manifest = root.resolve(MANIFEST);
+		final Path temp = Files.createTempFile(root, MANIFEST, ".tmp");
+		try {
+			Files.write(temp, lines, StandardCharsets.UTF_8);
+			Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
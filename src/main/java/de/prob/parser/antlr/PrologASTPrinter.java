@@ -5,7 +5,6 @@ import de.prob.parser.ast.nodes.DefinitionNode;
 import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
 import de.prob.parser.ast.nodes.MachineNode;
 import de.prob.parser.ast.nodes.OperationNode;
-import de.prob.parser.ast.nodes.expression.ExprNode;
 import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
 import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
 import de.prob.parser.ast.nodes.expression.IfExpressionNode;
@@ -47,509 +46,146 @@ import de.prob.parser.ast.nodes.substitution.VarSubstitutionNode;
 import de.prob.parser.ast.nodes.substitution.WhileSubstitutionNode;
 import de.prob.parser.ast.visitors.AbstractVisitor;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
+/**
+ * Returns the Prolog representation of (parts of) a machine as a String. Use
+ * {@link PrologTermWriter} to write the representation of a whole machine to
+ * a stream without building it in memory.
+ */
 public class PrologASTPrinter implements AbstractVisitor<String, Void> {
 
+	private String print(Consumer<PrologTermWriter> printer) {
+		StringBuilder sb = new StringBuilder();
+		printer.accept(new PrologTermWriter(sb));
+		return sb.toString();
+	}
+
 	public String visitMachineNode(MachineNode node) {
-		String machineName = handleName(node.getName());
-		String deferredEnumSets = visitDeferredEnumeratedSets(node.getDeferredSets(), node.getEnumeratedSets());
-		String variables = visitVariables(node.getVariables());
-		String constants = visitConstants(node.getConstants());
-		String invariant = visitInvariant(node.getInvariant());
-		String properties = visitProperties(node.getProperties());
-		String assertions = visitAssertions(node.getAssertions());
-		String definitions = visitDefinitions(node.getDefinitions());
-		String initialisation = visitInitialisation(node.getInitialisation());
-		String operations = visitOperations(node.getOperations());
-		List<String> body = Stream.of(deferredEnumSets, variables, definitions, constants, invariant, properties,
-				assertions, initialisation, operations).filter(Objects::nonNull).collect(Collectors.toList());
-		return String.format("machine(abstract_machine(none, machine(none), machine_header(none, %s, []), [%s]))",
-				machineName, String.join(", ", body));
+		return print(writer -> writer.visitMachineNode(node));
 	}
 
 	public String visitDeferredEnumeratedSets(List<DeclarationNode> setsNodes1,
 			List<EnumeratedSetDeclarationNode> setsNodes2) {
-		List<String> sets = Stream.concat(setsNodes1.stream().map(this::visitDeferredSet),
-				setsNodes2.stream().map(this::visitEnumeratedSet)).collect(Collectors.toList());
-		return String.format("sets(none, [%s])", String.join(", ", sets));
+		return print(writer -> writer.visitDeferredEnumeratedSets(setsNodes1, setsNodes2));
 	}
 
 	public String visitEnumeratedSet(EnumeratedSetDeclarationNode setNode) {
-		String set = handleName(setNode.getSetDeclarationNode().getName());
-		List<String> elements = setNode.getElements().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		return String.format("enumerated_set(none, %s, [%s])", set, String.join(", ", elements));
+		return print(writer -> writer.visitEnumeratedSet(setNode));
 	}
 
 	public String visitDeferredSet(DeclarationNode setNode) {
-		String set = handleName(setNode.getName());
-		return String.format("deferred_set(none, %s)", set);
+		return print(writer -> writer.visitDeferredSet(setNode));
 	}
 
 	public String visitVariables(List<DeclarationNode> variablesNodes) {
-		List<String> variables = variablesNodes.stream().map(this::visitDeclarationNode).collect(Collectors.toList());
-		return String.format("variables(none, [%s])", String.join(", ", variables));
+		return print(writer -> writer.visitVariables(variablesNodes));
 	}
 
 	public String visitConstants(List<DeclarationNode> constantsNodes) {
-		List<String> constants = constantsNodes.stream().map(this::visitDeclarationNode).collect(Collectors.toList());
-		return String.format("constants(none, [%s])", String.join(", ", constants));
+		return print(writer -> writer.visitConstants(constantsNodes));
 	}
 
 	public String visitInvariant(PredicateNode node) {
 		if (node == null) {
 			return null;
 		}
-		String invariant = visitPredicateNode(node, null);
-		return String.format("invariant(none, %s)", invariant);
+		return print(writer -> writer.visitInvariant(node));
 	}
 
 	public String visitProperties(PredicateNode node) {
 		if (node == null) {
 			return null;
 		}
-		String properties = visitPredicateNode(node, null);
-		return String.format("properties(none, %s)", properties);
+		return print(writer -> writer.visitProperties(node));
 	}
 
 	public String visitAssertions(List<PredicateNode> predicates) {
 		if (predicates == null) {
 			return null;
 		}
-		List<String> assertions = predicates.stream().map(pred -> visitPredicateNode(pred, null))
-				.collect(Collectors.toList());
-		return String.format("assertions(none, [%s])", String.join(", ", assertions));
+		return print(writer -> writer.visitAssertions(predicates));
 	}
 
 	public String visitDeclarationNode(DeclarationNode node) {
-		return String.format("identifier(none, %s)", handleName(node.getName()));
+		return print(writer -> writer.visitDeclarationNode(node));
 	}
 
 	public String visitInitialisation(SubstitutionNode node) {
-		if (node == null) {
-			return "initialisation(none, skip(none))"; // TO DO: Sable returns no initialisation term at all
-		}
-		String substitution = visitSubstitutionNode(node, null);
-		return String.format("initialisation(none, %s)", substitution);
+		return print(writer -> writer.visitInitialisation(node));
 	}
 
 	public String visitOperations(List<OperationNode> operationNodes) {
-		List<String> operations = operationNodes.stream().map(this::visitOperation).collect(Collectors.toList());
-		return String.format("operations(none, [%s])", String.join(", ", operations));
-	}
-
-	private String visitDefinitions(List<DefinitionNode> definitions) {
-		List<String> defs = definitions.stream().map(this::visitDefinition).collect(Collectors.toList());
-		return String.format("definitions(none, [%s])", String.join(", ", defs));
+		return print(writer -> writer.visitOperations(operationNodes));
 	}
 
 	public String visitDefinition(DefinitionNode def) {
-		String opName = def.getName();
-		List<String> params = def.getParams().stream().map(this::visitDeclarationNode).collect(Collectors.toList());
-		String body = null;
-		String prefix = null;
-		if (def.getBody() instanceof ExprNode) {
-			prefix = "expression";
-			body = visitExprNode((ExprNode) def.getBody(), null);
-		} else if (def.getBody() instanceof PredicateNode) {
-			prefix = "predicate";
-			body = visitPredicateNode((PredicateNode) def.getBody(), null);
-		} else if (def.getBody() instanceof SubstitutionNode) {
-			prefix = "substitution";
-			body = visitSubstitutionNode((SubstitutionNode) def.getBody(), null);
-		} else {
-			// todo
-		}
-		return String.format("%s_definition(none, %s, [%s], %s)", prefix, opName,
-				String.join(", ", params), body);
+		return print(writer -> writer.visitDefinition(def));
 	}
 
 	public String visitOperation(OperationNode operationNode) {
-		String opName = handleName(operationNode.getName());
-		List<String> params = operationNode.getParams().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		List<String> outputs = operationNode.getOutputParams().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String substitution = visitSubstitutionNode(operationNode.getSubstitution(), null);
-		return String.format("operation(none, identifier(none,%s), [%s], [%s], %s)", opName, String.join(", ", outputs),
-				String.join(", ", params), substitution);
+		return print(writer -> writer.visitOperation(operationNode));
+	}
+
+	public String visitElse(IfOrSelectSubstitutionsNode.Operator operator, PredicateNode predicate,
+			SubstitutionNode substitution) {
+		return print(writer -> writer.visitElse(operator, predicate, substitution));
 	}
 
 	@Override
 	public String visitExprOperatorNode(ExpressionOperatorNode node, Void expected) {
-		ExpressionOperatorNode.ExpressionOperator operator = node.getOperator();
-		String functor = "";
-		if (node.getArity() == 0) {
-			switch (operator) {
-			case MININT:
-				return "min_int(none)";
-			case MAXINT:
-				return "max_int(none)";
-			case INTEGER:
-				return "integer_set(none)";
-			case NATURAL:
-				return "natural_set(none)";
-			case NATURAL1:
-				return "natural1_set(none)";
-			case INT:
-				return "int_set(none)";
-			case NAT:
-				return "nat_set(none)";
-			case NAT1:
-				return "nat1_set(none)";
-			case STRING:
-				return "string_set(none)";
-			case FALSE:
-				return "boolean_false(none)";
-			case TRUE:
-				return "boolean_true(none)";
-			case BOOL:
-				return "bool_set(none)";
-			case EMPTY_SET:
-			case SET_ENUMERATION: // an empty set_extension of arity 0 is the empty set
-				return "empty_set(none)";
-			case EMPTY_SEQUENCE:
-			case SEQ_ENUMERATION: // an empty sequence_extension of arity 0 is the empty set
-				return "empty_sequence(none)";
-			default:
-				throw new RuntimeException("Constant is not supported for ExpressionOperatorNode: " + operator);
-			}
-		} else {
-			boolean operator_expects_list = false;
-			switch (operator) {
-			case PLUS:
-				functor = "add";
-				break;
-			case UNARY_MINUS:
-				functor = "unary_minus";
-				break;
-			case MOD:
-				functor = "modulo";
-				break;
-			case DIVIDE:
-				functor = "div";
-				break;
-			case PRED:
-				functor = "pred";
-				break;
-			case SUCC:
-				functor = "succ";
-				break;
-			case POWER_OF:
-				functor = "power_of";
-				break;
-			case CARTESIAN_PRODUCT:
-				functor = "cartesian_product";
-				break;
-			case MULT:
-				functor = "mult_or_cart";
-				break;
-			case MINUS:
-				functor = "minus_or_set_subtract";
-				break;
-			case INTERVAL:
-				functor = "interval";
-				break;
-			case SET_ENUMERATION:
-				functor = "set_extension";
-				operator_expects_list = true;
-				break;
-			case MIN:
-				functor = "min";
-				break;
-			case MAX:
-				functor = "max";
-				break;
-			case SET_SUBTRACTION:
-				functor = "set_subtraction";
-				break;
-			case INTERSECTION:
-				functor = "intersection";
-				break;
-			case UNION:
-				functor = "union";
-				break;
-			case COUPLE:
-				functor = "couple";
-				break;
-			case DOMAIN:
-				functor = "domain";
-				break;
-			case RANGE:
-				functor = "range";
-				break;
-			case ID:
-				functor = "identity";
-				break;
-			case CLOSURE:
-				functor = "reflexive_closure";
-				break;
-			case CLOSURE1:
-				functor = "closure"; // yes, this is closure1 in the SableCC AST :-(
-				break;
-			case ITERATE:
-				functor = "iterate";
-				break;
-			case PRJ1:
-				functor = "first_projection"; // prj1
-				break;
-			case PRJ2:
-				functor = "second_projection"; // prj2
-				break;
-			case FNC:
-				functor = "trans_function"; // fnc()
-				break;
-			case REL:
-				functor = "trans_relation"; // rel(.)
-				break;
-			case CONCAT:
-				functor = "concat";
-				break;
-			case CONC:
-				functor = "conc";
-				break;
-			case DIRECT_PRODUCT:
-				functor = "direct_product";
-				break;
-			case PARALLEL_PRODUCT:
-				functor = "parallel_product";
-				break;
-			case COMPOSITION:
-				functor = "composition";
-				break;
-			case DOMAIN_RESTRICTION:
-				functor = "domain_restriction";
-				break;
-			case DOMAIN_SUBTRACTION:
-				functor = "domain_subtraction";
-				break;
-			case RANGE_RESTRICTION:
-				functor = "range_restriction";
-				break;
-			case RANGE_SUBTRACTION:
-				functor = "range_subtraction";
-				break;
-			case INSERT_FRONT:
-				functor = "insert_front";
-				break;
-			case INSERT_TAIL:
-				functor = "insert_tail";
-				break;
-			case OVERWRITE_RELATION:
-				functor = "overwrite";
-				break;
-			case INVERSE_RELATION:
-				functor = "reverse"; // this is not rev for sequences it is f~
-				break;
-			case RESTRICT_FRONT:
-				functor = "restrict_front";
-				break;
-			case RESTRICT_TAIL:
-				functor = "restrict_tail";
-				break;
-			case GENERALIZED_INTER:
-				functor = "generalized_inter";
-				break;
-			case GENERALIZED_UNION:
-				functor = "generalized_union";
-				break;
-			case SEQ_ENUMERATION:
-				functor = "sequence_extension";
-				operator_expects_list = true;
-				break;
-			case LAST:
-				functor = "last";
-				break;
-			case FIRST:
-				functor = "first";
-				break;
-			case REV:
-				functor = "rev"; // reverse of sequence
-				break;
-			case FRONT:
-				functor = "front";
-				break;
-			case TAIL:
-				functor = "tail";
-				break;
-			case PERM:
-				functor = "perm";
-				break;
-			case SEQ:
-				functor = "seq";
-				break;
-			case SEQ1:
-				functor = "seq1";
-				break;
-			case ISEQ:
-				functor = "iseq";
-				break;
-			case ISEQ1:
-				functor = "iseq1";
-				break;
-			case FUNCTION_CALL:
-				functor = "function";
-				break;
-			case RELATIONAL_IMAGE:
-				functor = "image";
-				break;
-			case SIZE:
-				functor = "size";
-				break;
-			case CARD:
-				functor = "card";
-				break;
-			case TOTAL_FUNCTION:
-				functor = "total_function";
-				break;
-			case PARTIAL_FUNCTION:
-				functor = "partial_function";
-				break;
-			case TOTAL_INJECTION:
-				functor = "total_injection";
-				break;
-			case PARTIAL_INJECTION:
-				functor = "partial_injection";
-				break;
-			case TOTAL_BIJECTION:
-				functor = "total_bijection";
-				break;
-			case PARTIAL_BIJECTION:
-				functor = "partial_bijection";
-				break;
-			case TOTAL_SURJECTION:
-				functor = "total_surjection";
-				break;
-			case PARTIAL_SURJECTION:
-				functor = "partial_surjection";
-				break;
-			case SURJECTION_RELATION:
-				functor = "surjection_relation";
-				break;
-			case TOTAL_RELATION:
-				functor = "total_relation";
-				break;
-			case TOTAL_SURJECTION_RELATION:
-				functor = "total_surjection_relation";
-				break;
-			case SET_RELATION:
-				functor = "relations";
-				break;
-			case FIN:
-				functor = "fin_subset";
-				break;
-			case FIN1:
-				functor = "fin1_subset";
-				break;
-			case POW1:
-				functor = "pow1_subset";
-				break;
-			case POW:
-				functor = "pow_subset";
-				break;
-			default:
-				throw new RuntimeException("Operator is not supported for ExpressionOperatorNode: " + operator);
-			}
-			List<String> expressions = node.getExpressionNodes().stream().map(expr -> visitExprNode(expr, expected))
-					.collect(Collectors.toList());
-			if (operator_expects_list) {
-				return String.format("%s(none,[%s])", functor, String.join(", ", expressions));
-			} else {
-				return String.format("%s(none,%s)", functor, String.join(", ", expressions));
-			}
-		}
+		return print(writer -> writer.visitExprOperatorNode(node, expected));
 	}
 
 	@Override
 	public String visitIdentifierExprNode(IdentifierExprNode node, Void expected) {
-		return String.format("identifier(none, %s)", handleName(node.getName()));
-	}
-
-	private String handleName(String name) {
-		if (Character.isUpperCase(name.charAt(0))) {
-			return String.format("'%s'", name);
-		}
-		return name;
+		return print(writer -> writer.visitIdentifierExprNode(node, expected));
 	}
 
 	@Override
 	public String visitCastPredicateExpressionNode(CastPredicateExpressionNode node, Void expected) {
-		String predicate = visitPredicateNode(node.getPredicate(), expected);
-		return String.format("convert_bool(none, %s)", predicate);
+		return print(writer -> writer.visitCastPredicateExpressionNode(node, expected));
 	}
 
 	@Override
 	public String visitNumberNode(NumberNode node, Void expected) {
-		return String.format("integer(none, %s)", node.getValue());
+		return print(writer -> writer.visitNumberNode(node, expected));
 	}
 
 	@Override
 	public String visitRealNumberNode(RealNumberNode node, Void expected) {
-		return String.format("real(none, %s)", node.getValue());
+		return print(writer -> writer.visitRealNumberNode(node, expected));
 	}
 
 	@Override
 	public String visitQuantifiedExpressionNode(QuantifiedExpressionNode node, Void expected) {
-		QuantifiedExpressionNode.QuantifiedExpressionOperator operator = node.getOperator();
-		String functor = "";
-		switch (operator) {
-		case QUANTIFIED_INTER:
-			functor = "inter";
-			break;
-		case QUANTIFIED_UNION:
-			functor = "union";
-			break;
-		default:
-			throw new RuntimeException("Operator for QuantifiedExpressionNode is not supported: " + operator);
-		}
-		List<String> identifiers = node.getDeclarationList().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String predicate = visitPredicateNode(node.getPredicateNode(), expected);
-		return String.format("%s(none, [%s], %s)", functor, String.join(", ", identifiers), predicate);
+		return print(writer -> writer.visitQuantifiedExpressionNode(node, expected));
 	}
 
 	@Override
 	public String visitSetComprehensionNode(SetComprehensionNode node, Void expected) {
-		List<String> identifiers = node.getDeclarationList().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String predicate = visitPredicateNode(node.getPredicateNode(), expected);
-		return String.format("comprehension_set(none, [%s], %s)", String.join(", ", identifiers), predicate);
+		return print(writer -> writer.visitSetComprehensionNode(node, expected));
 	}
 
 	@Override
 	public String visitLambdaNode(LambdaNode node, Void expected) {
-		List<String> identifiers = node.getDeclarations().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String predicate = visitPredicateNode(node.getPredicate(), expected);
-		String expression = visitExprNode(node.getExpression(), expected);
-		return String.format("lambda(none, [%s], %s, %s)", String.join(", ", identifiers), predicate, expression);
+		return print(writer -> writer.visitLambdaNode(node, expected));
 	}
 
 	@Override
 	public String visitLetExpressionNode(LetExpressionNode node, Void expected) {
-		List<String> identifiers = node.getLocalIdentifiers().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String predicate = visitPredicateNode(node.getPredicate(), expected);
-		String body = visitExprNode(node.getExpression(), expected);
-		return String.format("let_expr(none, [%s], %s, %s)", String.join(", ", identifiers), predicate, body);
+		return print(writer -> writer.visitLetExpressionNode(node, expected));
 	}
 
 	@Override
 	public String visitIfExpressionNode(IfExpressionNode node, Void expected) {
-		String predicate = visitPredicateNode(node.getCondition(), expected);
-		String thenExpr = visitExprNode(node.getThenExpression(), expected);
-		String elseExpr = visitExprNode(node.getElseExpression(), expected);
-		return String.format("if_expr(none, %s, %s, %s)", predicate, thenExpr, elseExpr);
+		return print(writer -> writer.visitIfExpressionNode(node, expected));
 	}
 
 	@Override
 	public String visitStringNode(StringNode node, Void expected) {
-		return String.format("string(none, %s)", node.getValue());
+		return print(writer -> writer.visitStringNode(node, expected));
 	}
 
 	@Override
@@ -596,285 +232,96 @@ public class PrologASTPrinter implements AbstractVisitor<String, Void> {
 
 	@Override
 	public String visitIdentifierPredicateNode(IdentifierPredicateNode node, Void expected) {
-		return String.format("identifier(none, %s)", handleName(node.getName()));
+		return print(writer -> writer.visitIdentifierPredicateNode(node, expected));
 	}
 
 	@Override
 	public String visitPredicateOperatorNode(PredicateOperatorNode node, Void expected) {
-		PredicateOperatorNode.PredicateOperator operator = node.getOperator();
-		if (node.getPredicateArguments().size() == 0) {
-			switch (operator) {
-			case TRUE:
-				return "boolean_true(none)";
-			case FALSE:
-				return "boolean_false(none)";
-			default:
-				throw new RuntimeException("PredicateOperator for PredicateOperatorNode is not supprted: " + operator);
-			}
-		} else {
-			String functor = "";
-			switch (operator) {
-			case OR:
-				functor = "disjunct";
-				break;
-			case AND:
-				functor = "conjunct";
-				break;
-			case NOT:
-				functor = "negation";
-				break;
-			case IMPLIES:
-				functor = "implication";
-				break;
-			case EQUIVALENCE:
-				functor = "equivalence";
-				break;
-			}
-			List<String> predicates = node.getPredicateArguments().stream()
-					.map(pred -> visitPredicateNode(pred, expected)).collect(Collectors.toList());
-			return String.format("%s(none,%s)", functor, String.join(", ", predicates));
-		}
+		return print(writer -> writer.visitPredicateOperatorNode(node, expected));
 	}
 
 	@Override
 	public String visitPredicateOperatorWithExprArgs(PredicateOperatorWithExprArgsNode node, Void expected) {
-		PredicateOperatorWithExprArgsNode.PredOperatorExprArgs operator = node.getOperator();
-		String functor = "";
-		switch (operator) {
-		case LESS:
-			functor = "less";
-			break;
-		case EQUAL:
-			functor = "equal";
-			break;
-		case GREATER:
-			functor = "greater";
-			break;
-		case INCLUSION:
-			functor = "subset";
-			break;
-		case NOT_EQUAL:
-			functor = "not_equal";
-			break;
-		case ELEMENT_OF:
-			functor = "member";
-			break;
-		case LESS_EQUAL:
-			functor = "less_equal";
-			break;
-		case GREATER_EQUAL:
-			functor = "greater_equal";
-			break;
-		case NON_INCLUSION:
-			functor = "not_subset";
-			break;
-		case NOT_BELONGING:
-			functor = "not_member";
-			break;
-		case STRICT_INCLUSION:
-			functor = "subset_strict";
-			break;
-		case STRICT_NON_INCLUSION:
-			functor = "not_subset_strict";
-			break;
-		}
-		List<String> expressions = node.getExpressionNodes().stream()
-				.map(expression -> visitExprNode(expression, expected)).collect(Collectors.toList());
-		return String.format("%s(none,%s)", functor, String.join(", ", expressions));
+		return print(writer -> writer.visitPredicateOperatorWithExprArgs(node, expected));
 	}
 
 	@Override
 	public String visitQuantifiedPredicateNode(QuantifiedPredicateNode node, Void expected) {
-		QuantifiedPredicateNode.QuantifiedPredicateOperator operator = node.getOperator();
-		String functor = "";
-		switch (operator) {
-		case UNIVERSAL_QUANTIFICATION:
-			functor = "forall";
-			break;
-		case EXISTENTIAL_QUANTIFICATION:
-			functor = "exists";
-			break;
-		default:
-			throw new RuntimeException("Operator for QuantifiedPredicateNode is not supported: " + operator);
-		}
-		List<String> identifiers = node.getDeclarationList().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String predicate = visitPredicateNode(node.getPredicateNode(), expected);
-		return String.format("%s(none, [%s], %s)", functor, String.join(", ", identifiers), predicate);
+		return print(writer -> writer.visitQuantifiedPredicateNode(node, expected));
 	}
 
 	@Override
 	public String visitLetPredicateNode(LetPredicateNode node, Void expected) {
-		List<String> identifiers = node.getLocalIdentifiers().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String predicate = visitPredicateNode(node.getWherePredicate(), expected);
-		String body = visitPredicateNode(node.getPredicate(), expected);
-		return String.format("let_pred(none, [%s], %s, %s)", String.join(", ", identifiers), predicate, body);
+		return print(writer -> writer.visitLetPredicateNode(node, expected));
 	}
 
 	@Override
 	public String visitIfPredicateNode(IfPredicateNode node, Void expected) {
-		String predicate = visitPredicateNode(node.getCondition(), expected);
-		String thenPred = visitPredicateNode(node.getThenPredicate(), expected);
-		String elsePred = visitPredicateNode(node.getElsePredicate(), expected);
-		return String.format("if_pred(none, %s, %s, %s)", predicate, thenPred, elsePred);
+		return print(writer -> writer.visitIfPredicateNode(node, expected));
 	}
 
 	@Override
 	public String visitVarSubstitutionNode(VarSubstitutionNode node, Void expected) {
-		List<String> identifiers = node.getLocalIdentifiers().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String body = visitSubstitutionNode(node.getBody(), expected);
-		return String.format("var(none, [%s], %s)", String.join(", ", identifiers), body);
+		return print(writer -> writer.visitVarSubstitutionNode(node, expected));
 	}
 
 	@Override
 	public String visitWhileSubstitutionNode(WhileSubstitutionNode node, Void expected) {
-		String condition = visitPredicateNode(node.getCondition(), expected);
-		String body = visitSubstitutionNode(node.getBody(), expected);
-		String variant = visitExprNode(node.getVariant(), expected);
-		String invariant = visitPredicateNode(node.getInvariant(), expected);
-		return String.format("while(none, %s, %s, %s, %s)", condition, body, variant, invariant);
+		return print(writer -> writer.visitWhileSubstitutionNode(node, expected));
 	}
 
 	@Override
 	public String visitListSubstitutionNode(ListSubstitutionNode node, Void expected) {
-		ListSubstitutionNode.ListOperator operator = node.getOperator();
-		List<String> substitutions = node.getSubstitutions().stream()
-				.map(substitution -> visitSubstitutionNode(substitution, expected)).collect(Collectors.toList());
-		switch (operator) {
-		case Parallel:
-			return String.format("parallel(none, [%s])", String.join(", ", substitutions));
-		case Sequential:
-			return String.format("sequence(none, [%s])", String.join(", ", substitutions));
-		default:
-			throw new RuntimeException("List operator for ListSubstitutionNode is not supported: " + operator);
-		}
+		return print(writer -> writer.visitListSubstitutionNode(node, expected));
 	}
 
 	@Override
 	public String visitIfOrSelectSubstitutionsNode(IfOrSelectSubstitutionsNode node, Void expected) {
-		IfOrSelectSubstitutionsNode.Operator operator = node.getOperator();
-		// TODO: Check whether this representation is close to ProB's Prolog
-		// representation
-		String ifCondition = visitPredicateNode(node.getConditions().get(0), expected);
-		String ifSubstitution = visitSubstitutionNode(node.getSubstitutions().get(0), expected);
-		List<String> elses = new ArrayList<>();
-		for (int i = 1; i < node.getConditions().size(); i++) {
-			elses.add(visitElse(operator, node.getConditions().get(i), node.getSubstitutions().get(i)));
-		}
-		String elseSubstitution = node.getElseSubstitution() == null ? "skip(none)"
-				: visitSubstitutionNode(node.getElseSubstitution(), expected);
-
-		switch (operator) {
-		case SELECT:
-			return String.format("select(none, %s, %s, [%s])", ifCondition, ifSubstitution, String.join(", ", elses)); // []
-																														// means
-																														// no
-																														// ELSE;
-																														// TO
-																														// DO
-		case IF:
-			return String.format("if(none, %s, %s, [%s], %s)", ifCondition, ifSubstitution, String.join(", ", elses),
-					elseSubstitution); // [] means no ELSIFs : TO DO :treat them
-		default:
-			throw new RuntimeException("Operator for IfOrSelectSubstitutionsNode is not supported: " + operator);
-		}
-	}
-
-	public String visitElse(IfOrSelectSubstitutionsNode.Operator operator, PredicateNode predicate,
-			SubstitutionNode substitution) {
-		String predicateString = visitPredicateNode(predicate, null);
-		String substitutionString = visitSubstitutionNode(substitution, null);
-		switch (operator) {
-		case SELECT:
-			return String.format("select_when(none, %s, %s)", predicateString, substitutionString);
-		case IF:
-			return String.format("if_elsif(none, %s, %s)", predicateString, substitutionString);
-		default:
-			throw new RuntimeException("Operator for IfOrSelectSubstitutionsNode is not supported");
-		}
+		return print(writer -> writer.visitIfOrSelectSubstitutionsNode(node, expected));
 	}
 
 	@Override
 	public String visitAssignSubstitutionNode(AssignSubstitutionNode node, Void expected) {
-		List<String> lhsAST = node.getLeftSide().stream().map(lhs -> visitExprNode(lhs, expected))
-				.collect(Collectors.toList());
-		List<String> rhsAST = node.getRightSide().stream().map(rhs -> visitExprNode(rhs, expected))
-				.collect(Collectors.toList());
-		return String.format("assign(none, [%s], [%s])", String.join(", ", lhsAST), String.join(", ", rhsAST));
+		return print(writer -> writer.visitAssignSubstitutionNode(node, expected));
 	}
 
 	@Override
 	public String visitSkipSubstitutionNode(SkipSubstitutionNode node, Void expected) {
-		return "skip(none)";
+		return print(writer -> writer.visitSkipSubstitutionNode(node, expected));
 	}
 
 	@Override
 	public String visitConditionSubstitutionNode(ConditionSubstitutionNode node, Void expected) {
-		ConditionSubstitutionNode.Kind kind = node.getKind();
-		String predicate = visitPredicateNode(node.getCondition(), expected);
-		String substitution = visitSubstitutionNode(node.getSubstitution(), expected);
-		switch (kind) {
-		case ASSERT:
-			return String.format("assertion(none, %s, %s)", predicate, substitution);
-		case PRECONDITION:
-			return String.format("precondition(none, %s, %s)", predicate, substitution); // TO DO:
-																							// precondition(none,PRE,BODY)
-		default:
-			throw new RuntimeException("Kind for ConditionSubstitutionNode is not supported: " + kind);
-		}
+		return print(writer -> writer.visitConditionSubstitutionNode(node, expected));
 	}
 
 	@Override
 	public String visitAnySubstitution(AnySubstitutionNode node, Void expected) {
-		List<String> identifiers = node.getParameters().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String predicate = visitPredicateNode(node.getWherePredicate(), expected);
-		String body = visitSubstitutionNode(node.getThenSubstitution(), expected);
-		return String.format("any(none, [%s], %s, %s)", String.join(", ", identifiers), predicate, body);
+		return print(writer -> writer.visitAnySubstitution(node, expected));
 	}
 
 	@Override
 	public String visitLetSubstitution(LetSubstitutionNode node, Void expected) {
-		List<String> identifiers = node.getLocalIdentifiers().stream().map(this::visitDeclarationNode)
-				.collect(Collectors.toList());
-		String predicate = visitPredicateNode(node.getPredicate(), expected);
-		String body = visitSubstitutionNode(node.getBody(), expected);
-		return String.format("let(none, [%s], %s, %s)", String.join(", ", identifiers), predicate, body);
+		return print(writer -> writer.visitLetSubstitution(node, expected));
 	}
 
 	@Override
 	public String visitBecomesElementOfSubstitutionNode(BecomesElementOfSubstitutionNode node, Void expected) {
-		List<String> lhsAST = node.getIdentifiers().stream().map(lhs -> visitExprNode(lhs, expected))
-				.collect(Collectors.toList());
-		String rhsAST = visitExprNode(node.getExpression(), expected);
-		return String.format("becomes_element_of(none, [%s], %s)", String.join(", ", lhsAST), rhsAST);
+		return print(writer -> writer.visitBecomesElementOfSubstitutionNode(node, expected));
 	}
 
 	@Override
 	public String visitBecomesSuchThatSubstitutionNode(BecomesSuchThatSubstitutionNode node, Void expected) {
-		List<String> lhsAST = node.getIdentifiers().stream().map(lhs -> visitExprNode(lhs, expected))
-				.collect(Collectors.toList());
-		String rhsAST = visitPredicateNode(node.getPredicate(), expected);
-		return String.format("becomes_such_that(none, [%s], %s)", String.join(", ", lhsAST), rhsAST);
+		return print(writer -> writer.visitBecomesSuchThatSubstitutionNode(node, expected));
 	}
 
 	@Override
 	public String visitSubstitutionIdentifierCallNode(OperationCallSubstitutionNode node, Void expected) {
-		List<String> assignedVariables = node.getAssignedVariables().stream().map(var -> visitExprNode(var, expected))
-				.collect(Collectors.toList());
-		String opName = handleName(node.getOperationNode().getName());
-		List<String> arguments = node.getArguments().stream().map(arg -> visitExprNode(arg, expected))
-				.collect(Collectors.toList());
-		return String.format("op_call(none, [%s], %s, [%s])", String.join(", ", assignedVariables), opName,
-				String.join(", ", arguments));
+		return print(writer -> writer.visitSubstitutionIdentifierCallNode(node, expected));
 	}
 
 	@Override
 	public String visitChoiceSubstitutionNode(ChoiceSubstitutionNode node, Void expected) {
-		List<String> substitutions = node.getSubstitutions().stream()
-				.map(substitution -> visitSubstitutionNode(substitution, expected)).collect(Collectors.toList());
-		return String.format("choice(none, [%s])", String.join(", ", substitutions));
+		return print(writer -> writer.visitChoiceSubstitutionNode(node, expected));
 	}
 }
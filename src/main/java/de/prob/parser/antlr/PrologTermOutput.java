@@ -0,0 +1,183 @@
+package de.prob.parser.antlr;
+
+import de.prob.parser.ast.Symbol;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes terms in textual Prolog syntax to an {@link Appendable}.
+ */
+public class PrologTermOutput implements IPrologTermOutput {
+
+	private final Appendable out;
+	// number of arguments written so far for each open term or list
+	private int[] written = new int[32];
+	private boolean[] compact = new boolean[32];
+	private int depth = 0;
+
+	public PrologTermOutput(Appendable out) {
+		this.out = out;
+	}
+
+	/**
+	 * Creates an output encoding the terms as UTF-8. The caller has to
+	 * {@link #flush()} the output once it is complete.
+	 */
+	public PrologTermOutput(OutputStream out) {
+		this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+	}
+
+	private void write(String s) {
+		try {
+			out.append(s);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void beforeArgument() {
+		if (depth == 0) {
+			return;
+		}
+		int index = written[depth - 1]++;
+		if (index > 0) {
+			write(index == 1 && compact[depth - 1] ? "," : ", ");
+		}
+	}
+
+	private void push(boolean isCompact) {
+		if (depth == written.length) {
+			written = Arrays.copyOf(written, depth * 2);
+			compact = Arrays.copyOf(compact, depth * 2);
+		}
+		written[depth] = 0;
+		compact[depth] = isCompact;
+		depth++;
+	}
+
+	@Override
+	public void openTerm(String functor, int arity, boolean isCompact) {
+		beforeArgument();
+		write(functor);
+		write("(");
+		push(isCompact);
+	}
+
+	@Override
+	public void closeTerm() {
+		depth--;
+		write(")");
+	}
+
+	@Override
+	public int getMaximumArity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public void openList() {
+		beforeArgument();
+		write("[");
+		push(false);
+	}
+
+	@Override
+	public void closeList() {
+		depth--;
+		write("]");
+	}
+
+	@Override
+	public void atom(String atom) {
+		beforeArgument();
+		write(atom);
+	}
+
+	@Override
+	public void atom(Symbol symbol) {
+		beforeArgument();
+		write(symbol.getPrologAtom());
+	}
+
+	@Override
+	public void quotedAtom(String name) {
+		beforeArgument();
+		write(Symbol.toPrologAtom(name));
+	}
+
+	@Override
+	public void integer(BigInteger value) {
+		beforeArgument();
+		write(value.toString());
+	}
+
+	@Override
+	public void integer(long value) {
+		beforeArgument();
+		write(Long.toString(value));
+	}
+
+	@Override
+	public void integerTerm(String functor, int... arguments) {
+		beforeArgument();
+		StringBuilder sb = new StringBuilder(functor).append('(');
+		for (int i = 0; i < arguments.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(arguments[i]);
+		}
+		write(sb.append(')').toString());
+	}
+
+	@Override
+	public void number(Number value) {
+		beforeArgument();
+		write(value.toString());
+	}
+
+	@Override
+	public void stringLiteral(String literal) {
+		beforeArgument();
+		write(literal);
+	}
+
+	@Override
+	public IPrologTermOutput createFragment() {
+		return new PrologTermOutput(new StringBuilder());
+	}
+
+	@Override
+	public void appendFragment(IPrologTermOutput fragment) {
+		beforeArgument();
+		try {
+			out.append((CharSequence) ((PrologTermOutput) fragment).out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void fullStop() {
+		write("." + System.lineSeparator());
+	}
+
+	@Override
+	public void flush() {
+		if (out instanceof Flushable) {
+			try {
+				((Flushable) out).flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
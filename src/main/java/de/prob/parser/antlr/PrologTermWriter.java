@@ -0,0 +1,1124 @@
+package de.prob.parser.antlr;
+
+import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.DefinitionNode;
+import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.nodes.expression.ExprNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.expression.IfExpressionNode;
+import de.prob.parser.ast.nodes.expression.LambdaNode;
+import de.prob.parser.ast.nodes.expression.LetExpressionNode;
+import de.prob.parser.ast.nodes.expression.NumberNode;
+import de.prob.parser.ast.nodes.expression.QuantifiedExpressionNode;
+import de.prob.parser.ast.nodes.expression.RealNumberNode;
+import de.prob.parser.ast.nodes.expression.RecordFieldAccessNode;
+import de.prob.parser.ast.nodes.expression.RecordNode;
+import de.prob.parser.ast.nodes.expression.SetComprehensionNode;
+import de.prob.parser.ast.nodes.expression.StringNode;
+import de.prob.parser.ast.nodes.expression.StructNode;
+import de.prob.parser.ast.nodes.ltl.LTLBPredicateNode;
+import de.prob.parser.ast.nodes.ltl.LTLInfixOperatorNode;
+import de.prob.parser.ast.nodes.ltl.LTLKeywordNode;
+import de.prob.parser.ast.nodes.ltl.LTLPrefixOperatorNode;
+import de.prob.parser.ast.nodes.predicate.CastPredicateExpressionNode;
+import de.prob.parser.ast.nodes.predicate.IdentifierPredicateNode;
+import de.prob.parser.ast.nodes.predicate.IfPredicateNode;
+import de.prob.parser.ast.nodes.predicate.LetPredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.predicate.QuantifiedPredicateNode;
+import de.prob.parser.ast.nodes.substitution.AnySubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.AssignSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesElementOfSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesSuchThatSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ChoiceSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ConditionSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.IfOrSelectSubstitutionsNode;
+import de.prob.parser.ast.nodes.substitution.LetSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ListSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.OperationCallSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SkipSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.VarSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.WhileSubstitutionNode;
+import de.prob.parser.ast.visitors.AbstractVisitor;
+
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the Prolog representation of a machine directly to an
+ * {@link IPrologTermOutput} instead of building it as a String. With a
+ * {@link PrologTermOutput} the output is the same as the one of
+ * {@link PrologASTPrinter}.
+ */
+public class PrologTermWriter implements AbstractVisitor<Void, Void> {
+
+	// conjunctions with fewer conjuncts are not worth splitting up
+	private static final int PARALLEL_CONJUNCTS = 16;
+
+	private final IPrologTermOutput out;
+	private boolean parallel = false;
+	private boolean positions = false;
+	private int fileNumber = 1;
+
+	public PrologTermWriter(IPrologTermOutput out) {
+		this.out = out;
+	}
+
+	public PrologTermWriter(Appendable out) {
+		this(new PrologTermOutput(out));
+	}
+
+	/**
+	 * Creates a buffered writer encoding the output as UTF-8. The caller has
+	 * to {@link #flush()} the writer once the output is complete.
+	 */
+	public PrologTermWriter(OutputStream out) {
+		this(new PrologTermOutput(out));
+	}
+
+	public IPrologTermOutput getOutput() {
+		return out;
+	}
+
+	public void flush() {
+		out.flush();
+	}
+
+	/**
+	 * In parallel mode the operations of a machine and the conjuncts of large
+	 * conjunctions are rendered concurrently into separate fragments, which
+	 * are then written in source order. The output does not change.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Prints the source code position of every node instead of none, as
+	 * p3(File, Line, Column) or, if the end of the node is known,
+	 * p4(File, Line, Column, EndColumn) for nodes on a single line and
+	 * p5(File, Line, Column, EndLine, EndColumn) otherwise. Lines and columns
+	 * start at 1, the end column is the one after the last character.
+	 * <p>
+	 * The positions make the output about 60% larger. They are absolute and
+	 * not delta encoded, so that every subterm carries its position on its own
+	 * and can be reported by the reader without knowing its parents, which is
+	 * also what ProB expects from the p3/p4/p5 terms.
+	 */
+	public void setPositions(boolean positions) {
+		this.positions = positions;
+	}
+
+	/**
+	 * Sets the number of the file in which the printed machine is defined.
+	 * Defaults to 1, the main machine in classical_b(Name, [Files]).
+	 */
+	public void setFileNumber(int fileNumber) {
+		this.fileNumber = fileNumber;
+	}
+
+	private void writePosition(Node node) {
+		SourceCodePosition position = node == null ? null : node.getSourceCodePosition();
+		if (!positions || position == null) {
+			out.atom("none");
+			return;
+		}
+		int line = position.getStartLine();
+		int column = position.getStartColumn() + 1;
+		if (!position.hasEndPosition()) {
+			out.integerTerm("p3", fileNumber, line, column);
+		} else if (position.getEndLine() == line) {
+			out.integerTerm("p4", fileNumber, line, column, position.getEndColumn() + 1);
+		} else {
+			out.integerTerm("p5", fileNumber, line, column, position.getEndLine(), position.getEndColumn() + 1);
+		}
+	}
+
+	private void open(String functor, int arity, Node node) {
+		out.openTerm(functor, arity, false);
+		writePosition(node);
+	}
+
+	private void openCompact(String functor, int arity, Node node) {
+		out.openTerm(functor, arity, true);
+		writePosition(node);
+	}
+
+	private void close() {
+		out.closeTerm();
+	}
+
+	private void constant(String functor, Node node) {
+		open(functor, 1, node);
+		close();
+	}
+
+	private void writeName(String name) {
+		out.quotedAtom(name);
+	}
+
+	private <T> void writeList(List<T> nodes, Consumer<T> writer) {
+		out.openList();
+		for (T node : nodes) {
+			writer.accept(node);
+		}
+		out.closeList();
+	}
+
+	private <T> void writeInParallel(List<T> nodes, BiConsumer<PrologTermWriter, T> writer) {
+		List<IPrologTermOutput> fragments = nodes.parallelStream().map(node -> {
+			IPrologTermOutput fragment = out.createFragment();
+			PrologTermWriter fragmentWriter = new PrologTermWriter(fragment);
+			fragmentWriter.positions = positions;
+			fragmentWriter.fileNumber = fileNumber;
+			writer.accept(fragmentWriter, node);
+			return fragment;
+		}).collect(Collectors.toList());
+		fragments.forEach(out::appendFragment);
+	}
+
+	public void visitMachineNode(MachineNode node) {
+		out.openTerm("machine", 1, false);
+		open("abstract_machine", 4, node);
+		constant("machine", null);
+		open("machine_header", 3, null);
+		writeName(node.getName());
+		out.openList();
+		out.closeList();
+		close();
+		out.openList();
+		visitDeferredEnumeratedSets(node.getDeferredSets(), node.getEnumeratedSets());
+		visitVariables(node.getVariables());
+		visitDefinitions(node.getDefinitions());
+		visitConstants(node.getConstants());
+		if (node.getInvariant() != null) {
+			visitInvariant(node.getInvariant());
+		}
+		if (node.getProperties() != null) {
+			visitProperties(node.getProperties());
+		}
+		if (node.getAssertions() != null) {
+			visitAssertions(node.getAssertions());
+		}
+		visitInitialisation(node.getInitialisation());
+		visitOperations(node.getOperations());
+		out.closeList();
+		close();
+		close();
+	}
+
+	public void visitDeferredEnumeratedSets(List<DeclarationNode> setsNodes1,
+			List<EnumeratedSetDeclarationNode> setsNodes2) {
+		open("sets", 2, null);
+		out.openList();
+		setsNodes1.forEach(this::visitDeferredSet);
+		setsNodes2.forEach(this::visitEnumeratedSet);
+		out.closeList();
+		close();
+	}
+
+	public void visitEnumeratedSet(EnumeratedSetDeclarationNode setNode) {
+		open("enumerated_set", 3, setNode);
+		out.atom(setNode.getSetDeclarationNode().getSymbol());
+		writeList(setNode.getElements(), this::visitDeclarationNode);
+		close();
+	}
+
+	public void visitDeferredSet(DeclarationNode setNode) {
+		open("deferred_set", 2, setNode);
+		out.atom(setNode.getSymbol());
+		close();
+	}
+
+	public void visitVariables(List<DeclarationNode> variablesNodes) {
+		open("variables", 2, null);
+		writeList(variablesNodes, this::visitDeclarationNode);
+		close();
+	}
+
+	public void visitConstants(List<DeclarationNode> constantsNodes) {
+		open("constants", 2, null);
+		writeList(constantsNodes, this::visitDeclarationNode);
+		close();
+	}
+
+	public void visitInvariant(PredicateNode node) {
+		open("invariant", 2, node);
+		visitPredicateNode(node, null);
+		close();
+	}
+
+	public void visitProperties(PredicateNode node) {
+		open("properties", 2, node);
+		visitPredicateNode(node, null);
+		close();
+	}
+
+	public void visitAssertions(List<PredicateNode> predicates) {
+		open("assertions", 2, null);
+		writeList(predicates, pred -> visitPredicateNode(pred, null));
+		close();
+	}
+
+	public void visitDeclarationNode(DeclarationNode node) {
+		open("identifier", 2, node);
+		out.atom(node.getSymbol());
+		close();
+	}
+
+	public void visitInitialisation(SubstitutionNode node) {
+		open("initialisation", 2, node);
+		if (node == null) {
+			constant("skip", null); // TO DO: Sable returns no initialisation term at all
+		} else {
+			visitSubstitutionNode(node, null);
+		}
+		close();
+	}
+
+	public void visitOperations(List<OperationNode> operationNodes) {
+		open("operations", 2, null);
+		if (parallel) {
+			out.openList();
+			writeInParallel(operationNodes, PrologTermWriter::visitOperation);
+			out.closeList();
+		} else {
+			writeList(operationNodes, this::visitOperation);
+		}
+		close();
+	}
+
+	public void visitDefinitions(List<DefinitionNode> definitions) {
+		open("definitions", 2, null);
+		writeList(definitions, this::visitDefinition);
+		close();
+	}
+
+	public void visitDefinition(DefinitionNode def) {
+		String prefix = null;
+		if (def.getBody() instanceof ExprNode) {
+			prefix = "expression";
+		} else if (def.getBody() instanceof PredicateNode) {
+			prefix = "predicate";
+		} else if (def.getBody() instanceof SubstitutionNode) {
+			prefix = "substitution";
+		}
+		open(prefix + "_definition", 4, def);
+		writeName(def.getName());
+		writeList(def.getParams(), this::visitDeclarationNode);
+		if (def.getBody() instanceof ExprNode) {
+			visitExprNode((ExprNode) def.getBody(), null);
+		} else if (def.getBody() instanceof PredicateNode) {
+			visitPredicateNode((PredicateNode) def.getBody(), null);
+		} else if (def.getBody() instanceof SubstitutionNode) {
+			visitSubstitutionNode((SubstitutionNode) def.getBody(), null);
+		} else {
+			// todo
+			out.atom("null");
+		}
+		close();
+	}
+
+	public void visitOperation(OperationNode operationNode) {
+		open("operation", 5, operationNode);
+		openCompact("identifier", 2, operationNode);
+		writeName(operationNode.getName());
+		close();
+		writeList(operationNode.getOutputParams(), this::visitDeclarationNode);
+		writeList(operationNode.getParams(), this::visitDeclarationNode);
+		visitSubstitutionNode(operationNode.getSubstitution(), null);
+		close();
+	}
+
+	@Override
+	public Void visitExprOperatorNode(ExpressionOperatorNode node, Void expected) {
+		ExpressionOperatorNode.ExpressionOperator operator = node.getOperator();
+		if (node.getArity() == 0) {
+			constant(constantFunctor(operator), node);
+			return null;
+		}
+		String functor = "";
+		boolean operator_expects_list = false;
+		switch (operator) {
+		case PLUS:
+			functor = "add";
+			break;
+		case UNARY_MINUS:
+			functor = "unary_minus";
+			break;
+		case MOD:
+			functor = "modulo";
+			break;
+		case DIVIDE:
+			functor = "div";
+			break;
+		case PRED:
+			functor = "pred";
+			break;
+		case SUCC:
+			functor = "succ";
+			break;
+		case POWER_OF:
+			functor = "power_of";
+			break;
+		case CARTESIAN_PRODUCT:
+			functor = "cartesian_product";
+			break;
+		case MULT:
+			functor = "mult_or_cart";
+			break;
+		case MINUS:
+			functor = "minus_or_set_subtract";
+			break;
+		case INTERVAL:
+			functor = "interval";
+			break;
+		case SET_ENUMERATION:
+			functor = "set_extension";
+			operator_expects_list = true;
+			break;
+		case MIN:
+			functor = "min";
+			break;
+		case MAX:
+			functor = "max";
+			break;
+		case SET_SUBTRACTION:
+			functor = "set_subtraction";
+			break;
+		case INTERSECTION:
+			functor = "intersection";
+			break;
+		case UNION:
+			functor = "union";
+			break;
+		case COUPLE:
+			functor = "couple";
+			break;
+		case DOMAIN:
+			functor = "domain";
+			break;
+		case RANGE:
+			functor = "range";
+			break;
+		case ID:
+			functor = "identity";
+			break;
+		case CLOSURE:
+			functor = "reflexive_closure";
+			break;
+		case CLOSURE1:
+			functor = "closure"; // yes, this is closure1 in the SableCC AST :-(
+			break;
+		case ITERATE:
+			functor = "iterate";
+			break;
+		case PRJ1:
+			functor = "first_projection"; // prj1
+			break;
+		case PRJ2:
+			functor = "second_projection"; // prj2
+			break;
+		case FNC:
+			functor = "trans_function"; // fnc()
+			break;
+		case REL:
+			functor = "trans_relation"; // rel(.)
+			break;
+		case CONCAT:
+			functor = "concat";
+			break;
+		case CONC:
+			functor = "conc";
+			break;
+		case DIRECT_PRODUCT:
+			functor = "direct_product";
+			break;
+		case PARALLEL_PRODUCT:
+			functor = "parallel_product";
+			break;
+		case COMPOSITION:
+			functor = "composition";
+			break;
+		case DOMAIN_RESTRICTION:
+			functor = "domain_restriction";
+			break;
+		case DOMAIN_SUBTRACTION:
+			functor = "domain_subtraction";
+			break;
+		case RANGE_RESTRICTION:
+			functor = "range_restriction";
+			break;
+		case RANGE_SUBTRACTION:
+			functor = "range_subtraction";
+			break;
+		case INSERT_FRONT:
+			functor = "insert_front";
+			break;
+		case INSERT_TAIL:
+			functor = "insert_tail";
+			break;
+		case OVERWRITE_RELATION:
+			functor = "overwrite";
+			break;
+		case INVERSE_RELATION:
+			functor = "reverse"; // this is not rev for sequences it is f~
+			break;
+		case RESTRICT_FRONT:
+			functor = "restrict_front";
+			break;
+		case RESTRICT_TAIL:
+			functor = "restrict_tail";
+			break;
+		case GENERALIZED_INTER:
+			functor = "generalized_inter";
+			break;
+		case GENERALIZED_UNION:
+			functor = "generalized_union";
+			break;
+		case SEQ_ENUMERATION:
+			functor = "sequence_extension";
+			operator_expects_list = true;
+			break;
+		case LAST:
+			functor = "last";
+			break;
+		case FIRST:
+			functor = "first";
+			break;
+		case REV:
+			functor = "rev"; // reverse of sequence
+			break;
+		case FRONT:
+			functor = "front";
+			break;
+		case TAIL:
+			functor = "tail";
+			break;
+		case PERM:
+			functor = "perm";
+			break;
+		case SEQ:
+			functor = "seq";
+			break;
+		case SEQ1:
+			functor = "seq1";
+			break;
+		case ISEQ:
+			functor = "iseq";
+			break;
+		case ISEQ1:
+			functor = "iseq1";
+			break;
+		case FUNCTION_CALL:
+			functor = "function";
+			break;
+		case RELATIONAL_IMAGE:
+			functor = "image";
+			break;
+		case SIZE:
+			functor = "size";
+			break;
+		case CARD:
+			functor = "card";
+			break;
+		case TOTAL_FUNCTION:
+			functor = "total_function";
+			break;
+		case PARTIAL_FUNCTION:
+			functor = "partial_function";
+			break;
+		case TOTAL_INJECTION:
+			functor = "total_injection";
+			break;
+		case PARTIAL_INJECTION:
+			functor = "partial_injection";
+			break;
+		case TOTAL_BIJECTION:
+			functor = "total_bijection";
+			break;
+		case PARTIAL_BIJECTION:
+			functor = "partial_bijection";
+			break;
+		case TOTAL_SURJECTION:
+			functor = "total_surjection";
+			break;
+		case PARTIAL_SURJECTION:
+			functor = "partial_surjection";
+			break;
+		case SURJECTION_RELATION:
+			functor = "surjection_relation";
+			break;
+		case TOTAL_RELATION:
+			functor = "total_relation";
+			break;
+		case TOTAL_SURJECTION_RELATION:
+			functor = "total_surjection_relation";
+			break;
+		case SET_RELATION:
+			functor = "relations";
+			break;
+		case FIN:
+			functor = "fin_subset";
+			break;
+		case FIN1:
+			functor = "fin1_subset";
+			break;
+		case POW1:
+			functor = "pow1_subset";
+			break;
+		case POW:
+			functor = "pow_subset";
+			break;
+		default:
+			throw new RuntimeException("Operator is not supported for ExpressionOperatorNode: " + operator);
+		}
+		if (operator_expects_list) {
+			openCompact(functor, 2, node);
+			writeList(node.getExpressionNodes(), expr -> visitExprNode(expr, expected));
+		} else {
+			openCompact(functor, 1 + node.getExpressionNodes().size(), node);
+			node.getExpressionNodes().forEach(expr -> visitExprNode(expr, expected));
+		}
+		close();
+		return null;
+	}
+
+	private static String constantFunctor(ExpressionOperatorNode.ExpressionOperator operator) {
+		switch (operator) {
+		case MININT:
+			return "min_int";
+		case MAXINT:
+			return "max_int";
+		case INTEGER:
+			return "integer_set";
+		case NATURAL:
+			return "natural_set";
+		case NATURAL1:
+			return "natural1_set";
+		case INT:
+			return "int_set";
+		case NAT:
+			return "nat_set";
+		case NAT1:
+			return "nat1_set";
+		case STRING:
+			return "string_set";
+		case FALSE:
+			return "boolean_false";
+		case TRUE:
+			return "boolean_true";
+		case BOOL:
+			return "bool_set";
+		case EMPTY_SET:
+		case SET_ENUMERATION: // an empty set_extension of arity 0 is the empty set
+			return "empty_set";
+		case EMPTY_SEQUENCE:
+		case SEQ_ENUMERATION: // an empty sequence_extension of arity 0 is the empty set
+			return "empty_sequence";
+		default:
+			throw new RuntimeException("Constant is not supported for ExpressionOperatorNode: " + operator);
+		}
+	}
+
+	@Override
+	public Void visitIdentifierExprNode(IdentifierExprNode node, Void expected) {
+		open("identifier", 2, node);
+		out.atom(node.getSymbol());
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitCastPredicateExpressionNode(CastPredicateExpressionNode node, Void expected) {
+		open("convert_bool", 2, node);
+		visitPredicateNode(node.getPredicate(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitNumberNode(NumberNode node, Void expected) {
+		open("integer", 2, node);
+		out.integer(node.getValue());
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitRealNumberNode(RealNumberNode node, Void expected) {
+		open("real", 2, node);
+		out.number(node.getValue());
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitQuantifiedExpressionNode(QuantifiedExpressionNode node, Void expected) {
+		QuantifiedExpressionNode.QuantifiedExpressionOperator operator = node.getOperator();
+		String functor = "";
+		switch (operator) {
+		case QUANTIFIED_INTER:
+			functor = "inter";
+			break;
+		case QUANTIFIED_UNION:
+			functor = "union";
+			break;
+		default:
+			throw new RuntimeException("Operator for QuantifiedExpressionNode is not supported: " + operator);
+		}
+		open(functor, 3, node);
+		writeList(node.getDeclarationList(), this::visitDeclarationNode);
+		visitPredicateNode(node.getPredicateNode(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitSetComprehensionNode(SetComprehensionNode node, Void expected) {
+		open("comprehension_set", 3, node);
+		writeList(node.getDeclarationList(), this::visitDeclarationNode);
+		visitPredicateNode(node.getPredicateNode(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitLambdaNode(LambdaNode node, Void expected) {
+		open("lambda", 4, node);
+		writeList(node.getDeclarations(), this::visitDeclarationNode);
+		visitPredicateNode(node.getPredicate(), expected);
+		visitExprNode(node.getExpression(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitLetExpressionNode(LetExpressionNode node, Void expected) {
+		open("let_expr", 4, node);
+		writeList(node.getLocalIdentifiers(), this::visitDeclarationNode);
+		visitPredicateNode(node.getPredicate(), expected);
+		visitExprNode(node.getExpression(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitIfExpressionNode(IfExpressionNode node, Void expected) {
+		open("if_expr", 4, node);
+		visitPredicateNode(node.getCondition(), expected);
+		visitExprNode(node.getThenExpression(), expected);
+		visitExprNode(node.getElseExpression(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitStringNode(StringNode node, Void expected) {
+		open("string", 2, node);
+		out.stringLiteral(node.getValue());
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitRecordNode(RecordNode node, Void expected) {
+		// TODO
+		out.atom("null");
+		return null;
+	}
+
+	@Override
+	public Void visitStructNode(StructNode node, Void expected) {
+		// TODO
+		out.atom("null");
+		return null;
+	}
+
+	@Override
+	public Void visitRecordFieldAccessNode(RecordFieldAccessNode node, Void expected) {
+		// TODO
+		out.atom("null");
+		return null;
+	}
+
+	@Override
+	public Void visitLTLPrefixOperatorNode(LTLPrefixOperatorNode node, Void expected) {
+		// TODO
+		out.atom("null");
+		return null;
+	}
+
+	@Override
+	public Void visitLTLKeywordNode(LTLKeywordNode node, Void expected) {
+		// TODO
+		out.atom("null");
+		return null;
+	}
+
+	@Override
+	public Void visitLTLInfixOperatorNode(LTLInfixOperatorNode node, Void expected) {
+		// TODO
+		out.atom("null");
+		return null;
+	}
+
+	@Override
+	public Void visitLTLBPredicateNode(LTLBPredicateNode node, Void expected) {
+		// TODO
+		out.atom("null");
+		return null;
+	}
+
+	@Override
+	public Void visitIdentifierPredicateNode(IdentifierPredicateNode node, Void expected) {
+		open("identifier", 2, node);
+		out.atom(node.getSymbol());
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitPredicateOperatorNode(PredicateOperatorNode node, Void expected) {
+		PredicateOperatorNode.PredicateOperator operator = node.getOperator();
+		if (node.getPredicateArguments().size() == 0) {
+			switch (operator) {
+			case TRUE:
+				constant("boolean_true", node);
+				return null;
+			case FALSE:
+				constant("boolean_false", node);
+				return null;
+			default:
+				throw new RuntimeException("PredicateOperator for PredicateOperatorNode is not supprted: " + operator);
+			}
+		}
+		String functor = "";
+		switch (operator) {
+		case OR:
+			functor = "disjunct";
+			break;
+		case AND:
+			functor = "conjunct";
+			break;
+		case NOT:
+			functor = "negation";
+			break;
+		case IMPLIES:
+			functor = "implication";
+			break;
+		case EQUIVALENCE:
+			functor = "equivalence";
+			break;
+		}
+		writePredicateOperator(functor, node, node.getPredicateArguments(), expected);
+		return null;
+	}
+
+	/**
+	 * Writes the arguments as one term if the output allows its arity.
+	 * Otherwise, which only happens for conjunctions and disjunctions in
+	 * fastrw format, the term is split into nested terms, e.g.
+	 * conjunct(Pos, P1, ..., P253, conjunct(Pos, P254, ...)).
+	 */
+	private void writePredicateOperator(String functor, PredicateOperatorNode node, List<PredicateNode> arguments,
+			Void expected) {
+		int maximumArity = out.getMaximumArity();
+		List<PredicateNode> rest = Collections.emptyList();
+		if (1 + arguments.size() > maximumArity) {
+			rest = arguments.subList(maximumArity - 2, arguments.size());
+			arguments = arguments.subList(0, maximumArity - 2);
+		}
+		openCompact(functor, 1 + arguments.size() + (rest.isEmpty() ? 0 : 1), node);
+		if (parallel && node.getOperator() == PredicateOperatorNode.PredicateOperator.AND
+				&& arguments.size() >= PARALLEL_CONJUNCTS) {
+			writeInParallel(arguments, (writer, pred) -> writer.visitPredicateNode(pred, expected));
+		} else {
+			arguments.forEach(pred -> visitPredicateNode(pred, expected));
+		}
+		if (!rest.isEmpty()) {
+			writePredicateOperator(functor, node, rest, expected);
+		}
+		close();
+	}
+
+	@Override
+	public Void visitPredicateOperatorWithExprArgs(PredicateOperatorWithExprArgsNode node, Void expected) {
+		PredicateOperatorWithExprArgsNode.PredOperatorExprArgs operator = node.getOperator();
+		String functor = "";
+		switch (operator) {
+		case LESS:
+			functor = "less";
+			break;
+		case EQUAL:
+			functor = "equal";
+			break;
+		case GREATER:
+			functor = "greater";
+			break;
+		case INCLUSION:
+			functor = "subset";
+			break;
+		case NOT_EQUAL:
+			functor = "not_equal";
+			break;
+		case ELEMENT_OF:
+			functor = "member";
+			break;
+		case LESS_EQUAL:
+			functor = "less_equal";
+			break;
+		case GREATER_EQUAL:
+			functor = "greater_equal";
+			break;
+		case NON_INCLUSION:
+			functor = "not_subset";
+			break;
+		case NOT_BELONGING:
+			functor = "not_member";
+			break;
+		case STRICT_INCLUSION:
+			functor = "subset_strict";
+			break;
+		case STRICT_NON_INCLUSION:
+			functor = "not_subset_strict";
+			break;
+		}
+		openCompact(functor, 1 + node.getExpressionNodes().size(), node);
+		node.getExpressionNodes().forEach(expression -> visitExprNode(expression, expected));
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitQuantifiedPredicateNode(QuantifiedPredicateNode node, Void expected) {
+		QuantifiedPredicateNode.QuantifiedPredicateOperator operator = node.getOperator();
+		String functor = "";
+		switch (operator) {
+		case UNIVERSAL_QUANTIFICATION:
+			functor = "forall";
+			break;
+		case EXISTENTIAL_QUANTIFICATION:
+			functor = "exists";
+			break;
+		default:
+			throw new RuntimeException("Operator for QuantifiedPredicateNode is not supported: " + operator);
+		}
+		open(functor, 3, node);
+		writeList(node.getDeclarationList(), this::visitDeclarationNode);
+		visitPredicateNode(node.getPredicateNode(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitLetPredicateNode(LetPredicateNode node, Void expected) {
+		open("let_pred", 4, node);
+		writeList(node.getLocalIdentifiers(), this::visitDeclarationNode);
+		visitPredicateNode(node.getWherePredicate(), expected);
+		visitPredicateNode(node.getPredicate(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitIfPredicateNode(IfPredicateNode node, Void expected) {
+		open("if_pred", 4, node);
+		visitPredicateNode(node.getCondition(), expected);
+		visitPredicateNode(node.getThenPredicate(), expected);
+		visitPredicateNode(node.getElsePredicate(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitVarSubstitutionNode(VarSubstitutionNode node, Void expected) {
+		open("var", 3, node);
+		writeList(node.getLocalIdentifiers(), this::visitDeclarationNode);
+		visitSubstitutionNode(node.getBody(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitWhileSubstitutionNode(WhileSubstitutionNode node, Void expected) {
+		open("while", 5, node);
+		visitPredicateNode(node.getCondition(), expected);
+		visitSubstitutionNode(node.getBody(), expected);
+		visitExprNode(node.getVariant(), expected);
+		visitPredicateNode(node.getInvariant(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitListSubstitutionNode(ListSubstitutionNode node, Void expected) {
+		ListSubstitutionNode.ListOperator operator = node.getOperator();
+		switch (operator) {
+		case Parallel:
+			open("parallel", 2, node);
+			break;
+		case Sequential:
+			open("sequence", 2, node);
+			break;
+		default:
+			throw new RuntimeException("List operator for ListSubstitutionNode is not supported: " + operator);
+		}
+		writeList(node.getSubstitutions(), substitution -> visitSubstitutionNode(substitution, expected));
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitIfOrSelectSubstitutionsNode(IfOrSelectSubstitutionsNode node, Void expected) {
+		IfOrSelectSubstitutionsNode.Operator operator = node.getOperator();
+		// TODO: Check whether this representation is close to ProB's Prolog
+		// representation
+		switch (operator) {
+		case SELECT:
+			open("select", 4, node);
+			break;
+		case IF:
+			open("if", 5, node);
+			break;
+		default:
+			throw new RuntimeException("Operator for IfOrSelectSubstitutionsNode is not supported: " + operator);
+		}
+		visitPredicateNode(node.getConditions().get(0), expected);
+		visitSubstitutionNode(node.getSubstitutions().get(0), expected);
+		out.openList();
+		for (int i = 1; i < node.getConditions().size(); i++) {
+			visitElse(operator, node.getConditions().get(i), node.getSubstitutions().get(i));
+		}
+		out.closeList();
+		if (operator == IfOrSelectSubstitutionsNode.Operator.IF) {
+			// [] means no ELSIFs : TO DO :treat them
+			if (node.getElseSubstitution() == null) {
+				constant("skip", null);
+			} else {
+				visitSubstitutionNode(node.getElseSubstitution(), expected);
+			}
+		}
+		close();
+		return null;
+	}
+
+	public void visitElse(IfOrSelectSubstitutionsNode.Operator operator, PredicateNode predicate,
+			SubstitutionNode substitution) {
+		switch (operator) {
+		case SELECT:
+			open("select_when", 3, predicate);
+			break;
+		case IF:
+			open("if_elsif", 3, predicate);
+			break;
+		default:
+			throw new RuntimeException("Operator for IfOrSelectSubstitutionsNode is not supported");
+		}
+		visitPredicateNode(predicate, null);
+		visitSubstitutionNode(substitution, null);
+		close();
+	}
+
+	@Override
+	public Void visitAssignSubstitutionNode(AssignSubstitutionNode node, Void expected) {
+		open("assign", 3, node);
+		writeList(node.getLeftSide(), lhs -> visitExprNode(lhs, expected));
+		writeList(node.getRightSide(), rhs -> visitExprNode(rhs, expected));
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitSkipSubstitutionNode(SkipSubstitutionNode node, Void expected) {
+		constant("skip", node);
+		return null;
+	}
+
+	@Override
+	public Void visitConditionSubstitutionNode(ConditionSubstitutionNode node, Void expected) {
+		ConditionSubstitutionNode.Kind kind = node.getKind();
+		switch (kind) {
+		case ASSERT:
+			open("assertion", 3, node);
+			break;
+		case PRECONDITION:
+			open("precondition", 3, node); // TO DO: precondition(none,PRE,BODY)
+			break;
+		default:
+			throw new RuntimeException("Kind for ConditionSubstitutionNode is not supported: " + kind);
+		}
+		visitPredicateNode(node.getCondition(), expected);
+		visitSubstitutionNode(node.getSubstitution(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitAnySubstitution(AnySubstitutionNode node, Void expected) {
+		open("any", 4, node);
+		writeList(node.getParameters(), this::visitDeclarationNode);
+		visitPredicateNode(node.getWherePredicate(), expected);
+		visitSubstitutionNode(node.getThenSubstitution(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitLetSubstitution(LetSubstitutionNode node, Void expected) {
+		open("let", 4, node);
+		writeList(node.getLocalIdentifiers(), this::visitDeclarationNode);
+		visitPredicateNode(node.getPredicate(), expected);
+		visitSubstitutionNode(node.getBody(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitBecomesElementOfSubstitutionNode(BecomesElementOfSubstitutionNode node, Void expected) {
+		open("becomes_element_of", 3, node);
+		writeList(node.getIdentifiers(), lhs -> visitExprNode(lhs, expected));
+		visitExprNode(node.getExpression(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitBecomesSuchThatSubstitutionNode(BecomesSuchThatSubstitutionNode node, Void expected) {
+		open("becomes_such_that", 3, node);
+		writeList(node.getIdentifiers(), lhs -> visitExprNode(lhs, expected));
+		visitPredicateNode(node.getPredicate(), expected);
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitSubstitutionIdentifierCallNode(OperationCallSubstitutionNode node, Void expected) {
+		open("op_call", 4, node);
+		writeList(node.getAssignedVariables(), var -> visitExprNode(var, expected));
+		writeName(node.getOperationNode().getName());
+		writeList(node.getArguments(), arg -> visitExprNode(arg, expected));
+		close();
+		return null;
+	}
+
+	@Override
+	public Void visitChoiceSubstitutionNode(ChoiceSubstitutionNode node, Void expected) {
+		open("choice", 2, node);
+		writeList(node.getSubstitutions(), substitution -> visitSubstitutionNode(substitution, expected));
+		close();
+		return null;
+	}
+}
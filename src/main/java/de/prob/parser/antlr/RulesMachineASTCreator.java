@@ -0,0 +1,180 @@
+package de.prob.parser.antlr;
+
+import de.prob.parser.ast.nodes.rules.RuleOperationNode;
+import de.prob.parser.ast.nodes.rules.RulesMachineNode;
+import files.RulesGrammar;
+import files.RulesGrammarBaseVisitor;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates the AST of a machine parsed with the rules grammar. Only the rules,
+ * computations and functions with their attributes are represented by nodes;
+ * formulas are kept as their source text. The parse tree is visited once, so
+ * the time is linear in the size of the machine.
+ */
+public class RulesMachineASTCreator extends RulesGrammarBaseVisitor<Void> {
+
+	private final RulesMachineNode machineNode;
+	private RuleOperationNode current;
+
+	public static RulesMachineNode createRulesMachineAST(RulesGrammar.StartContext startContext) {
+		RulesMachineASTCreator creator = new RulesMachineASTCreator(startContext);
+		startContext.accept(creator);
+		return creator.machineNode;
+	}
+
+	private RulesMachineASTCreator(RulesGrammar.StartContext startContext) {
+		this.machineNode = new RulesMachineNode(Util.createSourceCodePosition(startContext));
+	}
+
+	@Override
+	public Void visitMachine(RulesGrammar.MachineContext ctx) {
+		machineNode.setRulesMachine(ctx.variant.getType() == RulesGrammar.RULES_MACHINE);
+		return visitChildren(ctx);
+	}
+
+	@Override
+	public Void visitMachine_header(RulesGrammar.Machine_headerContext ctx) {
+		machineNode.setName(ctx.name.getText());
+		return null;
+	}
+
+	@Override
+	public Void visitBOperation(RulesGrammar.BOperationContext ctx) {
+		machineNode.addClassicalOperation(ctx.IDENTIFIER().getText());
+		return null;
+	}
+
+	@Override
+	public Void visitRuleComputationOperation(RulesGrammar.RuleComputationOperationContext ctx) {
+		RuleOperationNode.Kind kind = ctx.keyword.getType() == RulesGrammar.RULE ? RuleOperationNode.Kind.RULE
+				: RuleOperationNode.Kind.COMPUTATION;
+		addOperation(ctx, kind, ctx.IDENTIFIER(), null, null, ctx.operation_attributes(), ctx.substitution());
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionOperation(RulesGrammar.FunctionOperationContext ctx) {
+		addOperation(ctx, RuleOperationNode.Kind.FUNCTION, ctx.IDENTIFIER(), ctx.parameters, ctx.return_values,
+				ctx.operation_attributes(), ctx.substitution());
+		return null;
+	}
+
+	private void addOperation(ParserRuleContext ctx, RuleOperationNode.Kind kind, TerminalNode name,
+			RulesGrammar.Identifier_listContext parameters, RulesGrammar.Identifier_listContext returnValues,
+			List<RulesGrammar.Operation_attributesContext> attributes, RulesGrammar.SubstitutionContext body) {
+		current = new RuleOperationNode(Util.createSourceCodePosition(ctx), kind, name.getText(),
+				getIdentifiers(parameters), getIdentifiers(returnValues), getSourceText(body));
+		for (RulesGrammar.Operation_attributesContext attribute : attributes) {
+			attribute.accept(this);
+		}
+		// collects the referenced rules and the defined variables
+		body.accept(this);
+		machineNode.addOperation(current);
+		current = null;
+	}
+
+	@Override
+	public Void visitDependsOnAttribute(RulesGrammar.DependsOnAttributeContext ctx) {
+		if (ctx.keyword.getType() == RulesGrammar.DEPENDS_ON_RULE) {
+			current.addDependsOnRules(getIdentifiers(ctx.identifier_list()));
+		} else {
+			current.addDependsOnComputations(getIdentifiers(ctx.identifier_list()));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitErrorTypesAttribute(RulesGrammar.ErrorTypesAttributeContext ctx) {
+		current.setErrorTypes(Integer.parseInt(ctx.Number().getText()));
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionAttribute(RulesGrammar.ExpressionAttributeContext ctx) {
+		if (ctx.keyword.getType() == RulesGrammar.RULEID) {
+			current.setRuleId(getSourceText(ctx.expression()));
+		} else {
+			current.setClassification(getSourceText(ctx.expression()));
+		}
+		return visitChildren(ctx);
+	}
+
+	@Override
+	public Void visitTagsAttribute(RulesGrammar.TagsAttributeContext ctx) {
+		List<String> tags = new ArrayList<>();
+		for (RulesGrammar.ExpressionContext tag : ctx.expression_list().exprs) {
+			tags.add(getSourceText(tag));
+		}
+		current.addTags(tags);
+		return visitChildren(ctx);
+	}
+
+	@Override
+	public Void visitPredicateAttribute(RulesGrammar.PredicateAttributeContext ctx) {
+		if (ctx.keyword.getType() == RulesGrammar.PRECONDITION) {
+			current.setPrecondition(getSourceText(ctx.predicate()));
+		} else {
+			current.setActivation(getSourceText(ctx.predicate()));
+		}
+		return visitChildren(ctx);
+	}
+
+	@Override
+	public Void visitPredicateOperator(RulesGrammar.PredicateOperatorContext ctx) {
+		// SUCCEEDED_RULE(rule), FAILED_RULE_ERROR_TYPE(rule, type), ...
+		addReferencedRule(ctx.expression_list());
+		return visitChildren(ctx);
+	}
+
+	@Override
+	public Void visitExpressionOperator(RulesGrammar.ExpressionOperatorContext ctx) {
+		if (ctx.keyword.getType() == RulesGrammar.GET_RULE_COUNTEREXAMPLES) {
+			addReferencedRule(ctx.expression_list());
+		}
+		return visitChildren(ctx);
+	}
+
+	private void addReferencedRule(RulesGrammar.Expression_listContext arguments) {
+		if (current != null && !arguments.exprs.isEmpty()) {
+			current.addReferencedRule(getSourceText(arguments.exprs.get(0)));
+		}
+	}
+
+	@Override
+	public Void visitDefineSubstitution(RulesGrammar.DefineSubstitutionContext ctx) {
+		if (current != null) {
+			current.addDefinedVariable(ctx.IDENTIFIER().getText());
+		}
+		return visitChildren(ctx);
+	}
+
+	private static List<String> getIdentifiers(RulesGrammar.Identifier_listContext ctx) {
+		if (ctx == null) {
+			return Collections.emptyList();
+		}
+		List<String> identifiers = new ArrayList<>();
+		for (TerminalNode identifier : ctx.IDENTIFIER()) {
+			identifiers.add(identifier.getText());
+		}
+		return identifiers;
+	}
+
+	/**
+	 * The text of the context including the whitespace between its tokens.
+	 */
+	private static String getSourceText(ParserRuleContext ctx) {
+		if (ctx.getStop() == null || ctx.getStop().getStopIndex() < ctx.getStart().getStartIndex()) {
+			return ctx.getText();
+		}
+		return ctx.getStart().getInputStream()
+				.getText(Interval.of(ctx.getStart().getStartIndex(), ctx.getStop().getStopIndex()));
+	}
+
+}
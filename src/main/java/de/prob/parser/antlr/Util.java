@@ -47,6 +47,12 @@ public class Util {
 		sourceCodePosition.setText(ctx.getText());
 		sourceCodePosition.setStartLine(ctx.getStart().getLine());
 		sourceCodePosition.setStartColumn(ctx.getStart().getCharPositionInLine());
+		Token stop = ctx.getStop();
+		if (stop == null || stop.getTokenIndex() < ctx.getStart().getTokenIndex()) {
+			// empty rule
+			stop = ctx.getStart();
+		}
+		setEndPosition(sourceCodePosition, stop);
 		return sourceCodePosition;
 	}
 
@@ -55,7 +61,26 @@ public class Util {
 		sourceCodePosition.setText(ctx.getText());
 		sourceCodePosition.setStartLine(ctx.getLine());
 		sourceCodePosition.setStartColumn(ctx.getCharPositionInLine());
+		setEndPosition(sourceCodePosition, ctx);
 		return sourceCodePosition;
 	}
 
+	private static void setEndPosition(SourceCodePosition sourceCodePosition, Token lastToken) {
+		if (lastToken.getType() == Token.EOF) {
+			sourceCodePosition.setEndLine(lastToken.getLine());
+			sourceCodePosition.setEndColumn(lastToken.getCharPositionInLine());
+			return;
+		}
+		String text = lastToken.getText();
+		int lastNewLine = text.lastIndexOf('\n');
+		if (lastNewLine < 0) {
+			sourceCodePosition.setEndLine(lastToken.getLine());
+			sourceCodePosition.setEndColumn(lastToken.getCharPositionInLine() + text.length());
+		} else {
+			int newLines = (int) text.chars().filter(c -> c == '\n').count();
+			sourceCodePosition.setEndLine(lastToken.getLine() + newLines);
+			sourceCodePosition.setEndColumn(text.length() - lastNewLine - 1);
+		}
+	}
+
 }
@@ -0,0 +1,265 @@
+package de.prob.parser.ast;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode.ExpressionOperator;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.expression.IfExpressionNode;
+import de.prob.parser.ast.nodes.expression.NumberNode;
+import de.prob.parser.ast.nodes.expression.RealNumberNode;
+import de.prob.parser.ast.nodes.expression.RecordFieldAccessNode;
+import de.prob.parser.ast.nodes.expression.StringNode;
+import de.prob.parser.ast.nodes.predicate.CastPredicateExpressionNode;
+import de.prob.parser.ast.nodes.predicate.IfPredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+
+/**
+ * Hash-consing of expression and predicate nodes: structurally equal subtrees
+ * are created once and shared. Nodes have to be interned bottom-up, i.e. the
+ * children of a node are interned before the node itself, so that structural
+ * equality reduces to the identity of the children.
+ * <p>
+ * Identifiers are only shared if they refer to the same binder (quantifier,
+ * operation parameters, ...) of the same machine; the creator of the AST
+ * reports the binders via {@link #beginMachine()}, {@link #enterScope(List)}
+ * and {@link #exitScope()}. Subtrees containing an empty set or sequence are
+ * never shared, since their type depends on the context.
+ * <p>
+ * A shared node keeps the source code position of its first occurrence, and
+ * {@link Node#getParent()} returns the parent of its last occurrence. The
+ * interner is therefore only meant for ASTs whose positions are neither
+ * printed nor reported exactly: a type error inside a shared node is reported
+ * at its first occurrence, whichever occurrence causes it. It is up to the
+ * caller to load the project again without sharing if it needs the exact
+ * position; the command line does so, and ignores -share together with
+ * -positions.
+ * <p>
+ * Every shared node has a fingerprint, a 64 bit hash of its structure which
+ * does not depend on the binders and is stable across runs.
+ */
+public class NodeInterner {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private final Map<Key, Node> nodes = new HashMap<>();
+	private final Map<Node, Long> fingerprints = new IdentityHashMap<>();
+	private final Deque<Scope> scopes = new ArrayDeque<>();
+	private int machine;
+	private int nextBinder = 1;
+	private long requests;
+
+	/**
+	 * Starts the identifiers of a new machine, which are never shared with
+	 * identifiers of the same name in machines interned before.
+	 */
+	public void beginMachine() {
+		scopes.clear();
+		machine = nextBinder++;
+	}
+
+	public void enterScope(List<DeclarationNode> declarations) {
+		Set<String> names = new HashSet<>();
+		for (DeclarationNode declaration : declarations) {
+			names.add(declaration.getName());
+		}
+		scopes.push(new Scope(nextBinder++, names));
+	}
+
+	public void exitScope() {
+		scopes.pop();
+	}
+
+	/**
+	 * Returns the shared node structurally equal to the given node, or the node
+	 * itself if it is the first of its kind or cannot be shared.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Node> T intern(T node) {
+		requests++;
+		Key key = createKey(node);
+		if (key == null) {
+			return node;
+		}
+		Node shared = nodes.putIfAbsent(key, node);
+		if (shared != null) {
+			return (T) shared;
+		}
+		fingerprints.put(node, key.fingerprint);
+		return node;
+	}
+
+	public boolean isShared(Node node) {
+		return fingerprints.containsKey(node);
+	}
+
+	public long getFingerprint(Node node) {
+		Long fingerprint = fingerprints.get(node);
+		if (fingerprint == null) {
+			throw new IllegalArgumentException("Node is not shared: " + node);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * The number of distinct shared nodes.
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * The number of nodes passed to {@link #intern(Node)}.
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	private Key createKey(Node node) {
+		if (node instanceof IdentifierExprNode) {
+			IdentifierExprNode identifier = (IdentifierExprNode) node;
+			return new Key(node, identifier.isPrimed() ? 1 : 0, identifier.getName(),
+					getBinder(identifier.getName()), NO_CHILDREN);
+		} else if (node instanceof NumberNode) {
+			return new Key(node, 0, ((NumberNode) node).getValue(), 0, NO_CHILDREN);
+		} else if (node instanceof RealNumberNode) {
+			return new Key(node, 0, ((RealNumberNode) node).getValue(), 0, NO_CHILDREN);
+		} else if (node instanceof StringNode) {
+			return new Key(node, 0, ((StringNode) node).getValue(), 0, NO_CHILDREN);
+		} else if (node instanceof ExpressionOperatorNode) {
+			ExpressionOperatorNode operatorNode = (ExpressionOperatorNode) node;
+			ExpressionOperator operator = operatorNode.getOperator();
+			List<? extends Node> arguments = operatorNode.getExpressionNodes();
+			if (arguments.isEmpty() && (operator == ExpressionOperator.SET_ENUMERATION
+					|| operator == ExpressionOperator.SEQ_ENUMERATION)) {
+				return null;
+			}
+			return createKey(node, operator.ordinal(), null, arguments);
+		} else if (node instanceof PredicateOperatorNode) {
+			PredicateOperatorNode operatorNode = (PredicateOperatorNode) node;
+			return createKey(node, operatorNode.getOperator().ordinal(), null, operatorNode.getPredicateArguments());
+		} else if (node instanceof PredicateOperatorWithExprArgsNode) {
+			PredicateOperatorWithExprArgsNode operatorNode = (PredicateOperatorWithExprArgsNode) node;
+			return createKey(node, operatorNode.getOperator().ordinal(), null, operatorNode.getExpressionNodes());
+		} else if (node instanceof CastPredicateExpressionNode) {
+			return createKey(node, 0, null,
+					Collections.singletonList(((CastPredicateExpressionNode) node).getPredicate()));
+		} else if (node instanceof RecordFieldAccessNode) {
+			RecordFieldAccessNode access = (RecordFieldAccessNode) node;
+			return createKey(node, 0, access.getIdentifier().getName(),
+					Collections.singletonList(access.getRecord()));
+		} else if (node instanceof IfExpressionNode) {
+			IfExpressionNode ifNode = (IfExpressionNode) node;
+			return createKey(node, 0, null,
+					Arrays.asList(ifNode.getCondition(), ifNode.getThenExpression(), ifNode.getElseExpression()));
+		} else if (node instanceof IfPredicateNode) {
+			IfPredicateNode ifNode = (IfPredicateNode) node;
+			return createKey(node, 0, null,
+					Arrays.asList(ifNode.getCondition(), ifNode.getThenPredicate(), ifNode.getElsePredicate()));
+		}
+		return null;
+	}
+
+	private Key createKey(Node node, int operator, Object value, List<? extends Node> children) {
+		Node[] array = new Node[children.size()];
+		for (int i = 0; i < array.length; i++) {
+			Node child = children.get(i);
+			if (child == null || !fingerprints.containsKey(child)) {
+				// a child which is not shared makes the node unique
+				return null;
+			}
+			array[i] = child;
+		}
+		return new Key(node, operator, value, 0, array);
+	}
+
+	private int getBinder(String name) {
+		for (Scope scope : scopes) {
+			if (scope.names.contains(name)) {
+				return scope.binder;
+			}
+		}
+		return machine;
+	}
+
+	private final class Key {
+		private final Class<?> type;
+		private final int operator;
+		private final Object value;
+		private final int binder;
+		private final Node[] children;
+		private final long fingerprint;
+
+		Key(Node node, int operator, Object value, int binder, Node[] children) {
+			this.type = node.getClass();
+			this.operator = operator;
+			this.value = value;
+			this.binder = binder;
+			this.children = children;
+			long hash = mix(FNV_OFFSET, type.getSimpleName().hashCode());
+			hash = mix(hash, operator);
+			hash = mix(hash, value == null ? 0 : value.hashCode());
+			for (Node child : children) {
+				hash = mix(hash, fingerprints.get(child));
+			}
+			this.fingerprint = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (fingerprint ^ (fingerprint >>> 32)) * 31 + binder;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if (type != other.type || operator != other.operator || binder != other.binder
+					|| fingerprint != other.fingerprint || children.length != other.children.length
+					|| (value == null ? other.value != null : !value.equals(other.value))) {
+				return false;
+			}
+			for (int i = 0; i < children.length; i++) {
+				if (children[i] != other.children[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static long mix(long hash, long value) {
+		for (int i = 0; i < 8; i++) {
+			hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+			value >>>= 8;
+		}
+		return hash;
+	}
+
+	private static final class Scope {
+		private final int binder;
+		private final Set<String> names;
+
+		Scope(int binder, Set<String> names) {
+			this.binder = binder;
+			this.names = names;
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package de.prob.parser.ast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.nodes.NodeUtil;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode.ExpressionOperator;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode.PredicateOperator;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode.PredOperatorExprArgs;
+
+/**
+ * Inverted index from operators and node kinds to the nodes of a machine, so
+ * that analyses looking for all function applications, all quantifiers, ...
+ * do not have to walk the whole AST. The index is filled while the AST is
+ * created, see
+ * {@link de.prob.parser.antlr.MachineASTCreator#createMachineAST(files.BParser.StartContext, NodeInterner, boolean)}
+ * and the project loaders of {@link de.prob.parser.antlr.Antlr4BParser} with
+ * an indexOperators argument, or built on demand by {@link #of(MachineNode)}.
+ * <p>
+ * The index contains the expressions, predicates and substitutions of the
+ * machine as well as its operations and definitions, but no declarations. A
+ * node shared by several parents (see {@link NodeInterner}) is contained once.
+ * The order of the nodes of an operator or kind is unspecified.
+ */
+public class OperatorIndex {
+
+	private final Map<NodeKind, List<Node>> kinds = new EnumMap<>(NodeKind.class);
+	private final Map<ExpressionOperator, List<ExpressionOperatorNode>> expressionOperators = new EnumMap<>(
+			ExpressionOperator.class);
+	private final Map<PredicateOperator, List<PredicateOperatorNode>> predicateOperators = new EnumMap<>(
+			PredicateOperator.class);
+	private final Map<PredOperatorExprArgs, List<PredicateOperatorWithExprArgsNode>> predicateOperatorsWithExprArgs = new EnumMap<>(
+			PredOperatorExprArgs.class);
+	private int size;
+
+	/**
+	 * Returns the index of the given machine, building and attaching it if the
+	 * machine has been created without one.
+	 */
+	public static OperatorIndex of(MachineNode machineNode) {
+		OperatorIndex index = machineNode.getOperatorIndex();
+		if (index == null) {
+			index = build(machineNode);
+			machineNode.setOperatorIndex(index);
+		}
+		return index;
+	}
+
+	/**
+	 * Builds the index of a machine by walking its AST once.
+	 */
+	public static OperatorIndex build(MachineNode machineNode) {
+		OperatorIndex index = new OperatorIndex();
+		Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<Node> stack = new ArrayDeque<>(NodeUtil.getChildren(machineNode));
+		while (!stack.isEmpty()) {
+			Node node = stack.pop();
+			if (isIndexed(node.getNodeKind()) && visited.add(node)) {
+				index.add(node);
+				NodeUtil.getChildren(node).forEach(stack::push);
+			}
+		}
+		return index;
+	}
+
+	private static boolean isIndexed(NodeKind kind) {
+		switch (kind) {
+		case DECLARATION:
+		case ENUMERATED_SET_DECLARATION:
+		case MACHINE_REFERENCE:
+		case OPERATION_REFERENCE:
+		case FORMULA:
+		case MACHINE:
+		case LTL_PREFIX_OPERATOR:
+		case LTL_INFIX_OPERATOR:
+		case LTL_KEYWORD:
+		case LTL_B_PREDICATE:
+		case LTL_FORMULA:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	public void add(Node node) {
+		NodeKind kind = node.getNodeKind();
+		kinds.computeIfAbsent(kind, k -> new ArrayList<>()).add(node);
+		switch (kind) {
+		case EXPRESSION_OPERATOR:
+			ExpressionOperatorNode expressionOperatorNode = (ExpressionOperatorNode) node;
+			expressionOperators.computeIfAbsent(expressionOperatorNode.getOperator(), k -> new ArrayList<>())
+					.add(expressionOperatorNode);
+			break;
+		case PREDICATE_OPERATOR:
+			PredicateOperatorNode predicateOperatorNode = (PredicateOperatorNode) node;
+			predicateOperators.computeIfAbsent(predicateOperatorNode.getOperator(), k -> new ArrayList<>())
+					.add(predicateOperatorNode);
+			break;
+		case PREDICATE_OPERATOR_WITH_EXPR_ARGS:
+			PredicateOperatorWithExprArgsNode predicateNode = (PredicateOperatorWithExprArgsNode) node;
+			predicateOperatorsWithExprArgs.computeIfAbsent(predicateNode.getOperator(), k -> new ArrayList<>())
+					.add(predicateNode);
+			break;
+		default:
+			break;
+		}
+		size++;
+	}
+
+	public List<Node> getNodes(NodeKind kind) {
+		return unmodifiable(kinds.get(kind));
+	}
+
+	public List<ExpressionOperatorNode> getNodes(ExpressionOperator operator) {
+		return unmodifiable(expressionOperators.get(operator));
+	}
+
+	public List<PredicateOperatorNode> getNodes(PredicateOperator operator) {
+		return unmodifiable(predicateOperators.get(operator));
+	}
+
+	public List<PredicateOperatorWithExprArgsNode> getNodes(PredOperatorExprArgs operator) {
+		return unmodifiable(predicateOperatorsWithExprArgs.get(operator));
+	}
+
+	/**
+	 * The number of indexed nodes.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private static <T> List<T> unmodifiable(List<T> nodes) {
+		return nodes == null ? Collections.emptyList() : Collections.unmodifiableList(nodes);
+	}
+
+}
@@ -2,8 +2,13 @@ package de.prob.parser.ast;
 
 public class SourceCodePosition {
 
+	// end line and column of a position whose end is unknown
+	private static final int UNKNOWN = -1;
+
 	private Integer startColumn;
 	private Integer startLine;
+	private int endColumn = UNKNOWN;
+	private int endLine = UNKNOWN;
 	private String text;
 
 	public int getStartLine() {
@@ -14,6 +19,22 @@ public class SourceCodePosition {
 		return this.startColumn;
 	}
 
+	/**
+	 * Returns the column after the last character of the node, starting at 0
+	 * like the start column.
+	 */
+	public int getEndColumn() {
+		return this.endColumn;
+	}
+
+	public int getEndLine() {
+		return this.endLine;
+	}
+
+	public boolean hasEndPosition() {
+		return this.endLine != UNKNOWN && this.endColumn != UNKNOWN;
+	}
+
 	public void setText(String text) {
 		this.text = text;
 	}
@@ -30,4 +51,12 @@ public class SourceCodePosition {
 		this.startColumn = charPositionInLine;
 	}
 
+	public void setEndLine(int line) {
+		this.endLine = line;
+	}
+
+	public void setEndColumn(int column) {
+		this.endColumn = column;
+	}
+
 }
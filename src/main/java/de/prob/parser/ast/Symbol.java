@@ -0,0 +1,50 @@
+package de.prob.parser.ast;
+
+/**
+ * An interned identifier. There is exactly one symbol per name in a
+ * {@link SymbolTable}, so symbols can be compared by identity and used as
+ * cheap hash keys. The escaped Prolog atom is computed once per symbol.
+ */
+public final class Symbol {
+
+	private final String name;
+	private final int id;
+	private final String prologAtom;
+
+	Symbol(String name, int id) {
+		this.name = name;
+		this.id = id;
+		this.prologAtom = toPrologAtom(name);
+	}
+
+	/**
+	 * Returns the name as Prolog atom, i.e. quoted if it starts with an
+	 * uppercase letter.
+	 */
+	public static String toPrologAtom(String name) {
+		return Character.isUpperCase(name.charAt(0)) ? "'" + name + "'" : name;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	public String getPrologAtom() {
+		return this.prologAtom;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.id;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+}
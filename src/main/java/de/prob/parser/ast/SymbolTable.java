@@ -0,0 +1,113 @@
+package de.prob.parser.ast;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe table interning identifier names into {@link Symbol}s with dense
+ * integer ids. The parser pipeline shares the global table.
+ *
+ * The table only holds weak references to its symbols: a symbol no longer
+ * used by any AST is removed and its id is handed out again, so the ids of a
+ * long-running process stay below the largest number of symbols in use at
+ * the same time.
+ */
+public final class SymbolTable {
+
+	private static final SymbolTable GLOBAL = new SymbolTable();
+
+	private static final class SymbolReference extends WeakReference<Symbol> {
+		private final String name;
+		private final int id;
+
+		SymbolReference(Symbol symbol, ReferenceQueue<Symbol> queue) {
+			super(symbol, queue);
+			this.name = symbol.getName();
+			this.id = symbol.getId();
+		}
+	}
+
+	private final Map<String, SymbolReference> symbols = new ConcurrentHashMap<>();
+	// guarded by symbolsById
+	private final List<SymbolReference> symbolsById = new ArrayList<>();
+	private final List<Integer> freeIds = new ArrayList<>();
+	private final ReferenceQueue<Symbol> collected = new ReferenceQueue<>();
+
+	public static SymbolTable getGlobal() {
+		return GLOBAL;
+	}
+
+	public static Symbol intern(String name) {
+		return GLOBAL.getSymbol(name);
+	}
+
+	public Symbol getSymbol(String name) {
+		Symbol symbol = lookUp(name);
+		if (symbol != null) {
+			return symbol;
+		}
+		synchronized (symbolsById) {
+			removeCollected();
+			symbol = lookUp(name);
+			if (symbol == null) {
+				int id;
+				if (freeIds.isEmpty()) {
+					id = symbolsById.size();
+					symbolsById.add(null);
+				} else {
+					id = freeIds.remove(freeIds.size() - 1);
+				}
+				symbol = new Symbol(name, id);
+				SymbolReference reference = new SymbolReference(symbol, collected);
+				symbolsById.set(id, reference);
+				symbols.put(name, reference);
+			}
+			return symbol;
+		}
+	}
+
+	/**
+	 * Returns the symbol of the name if it has been interned and is still in
+	 * use, without interning the name otherwise.
+	 */
+	public Symbol lookUp(String name) {
+		SymbolReference reference = symbols.get(name);
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * Returns the symbol with the given id, or {@code null} if there is no
+	 * such symbol (anymore).
+	 */
+	public Symbol getSymbol(int id) {
+		synchronized (symbolsById) {
+			SymbolReference reference = id < symbolsById.size() ? symbolsById.get(id) : null;
+			return reference == null ? null : reference.get();
+		}
+	}
+
+	/**
+	 * The number of symbols in use.
+	 */
+	public int size() {
+		synchronized (symbolsById) {
+			removeCollected();
+			return symbols.size();
+		}
+	}
+
+	private void removeCollected() {
+		SymbolReference reference;
+		while ((reference = (SymbolReference) collected.poll()) != null) {
+			// the name may already have been interned again
+			symbols.remove(reference.name, reference);
+			symbolsById.set(reference.id, null);
+			freeIds.add(reference.id);
+		}
+	}
+
+}
@@ -0,0 +1,371 @@
+package de.prob.parser.ast.compact;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.types.BType;
+
+/**
+ * A machine AST stored as a structure of primitive arrays instead of a graph
+ * of node objects. A node is an {@code int} index into the arrays; its kind,
+ * operator ordinal, first child, next sibling, source position and type id
+ * are read with the flyweight accessors below or with a
+ * {@link CompactASTCursor}, and a {@link CompactASTVisitor} walks the arrays
+ * without creating nodes. A machine needs about a quarter of the heap of its
+ * object representation, so large machines can be kept in memory in compact
+ * form and only the parts needed at a time are materialised as nodes, e.g.
+ * with {@link #toNode(int)}.
+ * <p>
+ * {@link #encode(MachineNode)} encodes a complete, type checked object AST.
+ * To create the compact AST of a machine whose object AST does not fit into
+ * memory, {@link de.prob.parser.antlr.Antlr4BParser#createCompactMachine(java.io.File)}
+ * creates, checks and encodes its operations one at a time with a
+ * {@link Builder}, so only the other clauses and a single operation exist as
+ * objects at the same time. A machine {@link #read(DataInputStream) read}
+ * from a serialized project is not materialised at all.
+ * <p>
+ * Fields of a node that hold a list of nodes are represented by a
+ * {@link #LIST} node whose children are the elements, fields that are
+ * {@code null} by an {@link #ABSENT} node. The children of a node appear in
+ * the order of the arguments of the constructor of its node class, the
+ * children of the machine node in the order of {@link MachineSection}.
+ * Declarations of other machines referenced by the machine are stored as
+ * children of the {@link MachineSection#EXTERNALS} list. The source text of
+ * the positions is not retained.
+ */
+public final class CompactAST {
+
+	public static final byte LIST = -1;
+	public static final byte ABSENT = -2;
+	public static final int NONE = -1;
+
+	// machine reference of declarations and operations of the machine itself
+	static final int OWN_MACHINE = -2;
+
+	private static final NodeKind[] KINDS = NodeKind.values();
+	// Class.getEnumConstants() copies the constants on every call
+	private static final ClassValue<Object[]> ENUM_CONSTANTS = new ClassValue<Object[]>() {
+		@Override
+		protected Object[] computeValue(Class<?> type) {
+			return type.getEnumConstants();
+		}
+	};
+
+	public enum MachineSection {
+		MACHINE_REFERENCES, OPERATION_REFERENCES, DEFERRED_SETS, ENUMERATED_SETS, CONSTANTS, VARIABLES,
+		INCLUDED_RENAMED_VARIABLES, PROPERTIES, INVARIANT, ASSERTIONS, INITIALISATION, OPERATIONS, VALUES,
+		DEFINITIONS, LTL_FORMULAS, EXTERNALS
+	}
+
+	/**
+	 * Resolves the declarations, operations and machines of other machines
+	 * when a compact machine is materialised. The methods may return
+	 * {@code null}, in which case a detached copy is created.
+	 */
+	public interface ExternalResolver {
+		DeclarationNode resolveDeclaration(String machine, String name, DeclarationNode.Kind kind);
+
+		OperationNode resolveOperation(String machine, String name);
+
+		MachineNode resolveMachine(String machine);
+	}
+
+	final int size;
+	final byte[] kinds;
+	final short[] operators;
+	final int[] data;
+	final int[] references;
+	final int[] firstChildren;
+	final int[] nextSiblings;
+	final int[] startLines;
+	final int[] startColumns;
+	final int[] endLines;
+	final int[] endColumns;
+	final int[] types;
+
+	final Symbol[] symbols;
+	final Object[] constants;
+	final BType[] typeTable;
+
+	CompactAST(int size, byte[] kinds, short[] operators, int[] data, int[] references, int[] firstChildren,
+			int[] nextSiblings, int[] startLines, int[] startColumns, int[] endLines, int[] endColumns, int[] types,
+			Symbol[] symbols, Object[] constants, BType[] typeTable) {
+		this.size = size;
+		this.kinds = kinds;
+		this.operators = operators;
+		this.data = data;
+		this.references = references;
+		this.firstChildren = firstChildren;
+		this.nextSiblings = nextSiblings;
+		this.startLines = startLines;
+		this.startColumns = startColumns;
+		this.endLines = endLines;
+		this.endColumns = endColumns;
+		this.types = types;
+		this.symbols = symbols;
+		this.constants = constants;
+		this.typeTable = typeTable;
+	}
+
+	/**
+	 * Encodes a machine after it has been created and type checked. The
+	 * object AST is not released, the caller has to drop it to save memory.
+	 */
+	public static CompactAST encode(MachineNode machineNode) {
+		return new CompactASTEncoder().encodeMachine(machineNode);
+	}
+
+	/**
+	 * Starts encoding a checked machine without its operations, which are
+	 * added one at a time.
+	 */
+	public static Builder builder(MachineNode machineNode) {
+		return new Builder(machineNode);
+	}
+
+	public static final class Builder {
+		private final CompactASTEncoder encoder = new CompactASTEncoder();
+
+		private Builder(MachineNode machineNode) {
+			encoder.beginMachine(machineNode);
+		}
+
+		/**
+		 * Encodes a checked operation of the machine that has not been added to
+		 * it. The operation is not retained by the builder.
+		 */
+		public Builder addOperation(OperationNode operation) {
+			encoder.addOperation(operation);
+			return this;
+		}
+
+		public CompactAST build() {
+			return encoder.finish();
+		}
+	}
+
+	public void write(DataOutputStream out) throws IOException {
+		CompactASTSerializer.write(this, out);
+	}
+
+	public static CompactAST read(DataInputStream in) throws IOException {
+		return CompactASTSerializer.read(in);
+	}
+
+	public MachineNode toMachineNode() {
+		return toMachineNode(null);
+	}
+
+	public MachineNode toMachineNode(ExternalResolver resolver) {
+		return new CompactASTDecoder(this, resolver).decodeMachine(getRoot());
+	}
+
+	/**
+	 * Materialises the subtree of the given node. Declarations outside of the
+	 * subtree referenced by identifiers in it are materialised without a
+	 * surrounding machine.
+	 */
+	public Node toNode(int node) {
+		return new CompactASTDecoder(this, null).decode(node);
+	}
+
+	public List<Node> toNodes(int list) {
+		return new CompactASTDecoder(this, null).decodeList(list);
+	}
+
+	public CompactASTCursor cursor(int node) {
+		return new CompactASTCursor(this, node);
+	}
+
+	/**
+	 * Applies the visitor to the node, without materialising it.
+	 */
+	public <R, P> R accept(int node, CompactASTVisitor<R, P> visitor, P expected) {
+		return visitor.visit(cursor(node), expected);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getRoot() {
+		return 0;
+	}
+
+	public int getSection(MachineSection section) {
+		return getChild(getRoot(), section.ordinal());
+	}
+
+	public boolean isList(int node) {
+		return kinds[node] == LIST;
+	}
+
+	public boolean isAbsent(int node) {
+		return kinds[node] == ABSENT;
+	}
+
+	/**
+	 * Returns the kind of the node, or {@code null} for {@link #LIST} and
+	 * {@link #ABSENT} nodes.
+	 */
+	public NodeKind getKind(int node) {
+		byte kind = kinds[node];
+		return kind < 0 ? null : KINDS[kind];
+	}
+
+	/**
+	 * Returns the ordinal of the operator or kind enum constant of the node,
+	 * e.g. of its {@code ExpressionOperator}, or {@link #NONE}.
+	 */
+	public int getOperatorOrdinal(int node) {
+		return operators[node];
+	}
+
+	public <E extends Enum<E>> E getOperator(int node, Class<E> operatorClass) {
+		short ordinal = operators[node];
+		return ordinal < 0 ? null : operatorClass.cast(ENUM_CONSTANTS.get(operatorClass)[ordinal]);
+	}
+
+	public int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+
+	public int getNextSibling(int node) {
+		return nextSiblings[node];
+	}
+
+	public int getChildCount(int node) {
+		int count = 0;
+		for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+			count++;
+		}
+		return count;
+	}
+
+	public int getChild(int node, int index) {
+		int child = firstChildren[node];
+		for (int i = 0; i < index && child != NONE; i++) {
+			child = nextSiblings[child];
+		}
+		return child;
+	}
+
+	/**
+	 * Returns the name of an identifier, declaration, operation, definition,
+	 * reference or machine node, or {@code null}. The name of an operation
+	 * call is the dot-separated list of its names.
+	 */
+	public Symbol getSymbol(int node) {
+		return kinds[node] >= 0 && !isConstant(node) && data[node] != NONE ? symbols[data[node]] : null;
+	}
+
+	/**
+	 * Returns the value of a number, real number or string node.
+	 */
+	public Object getConstant(int node) {
+		return isConstant(node) ? constants[data[node]] : null;
+	}
+
+	private boolean isConstant(int node) {
+		NodeKind kind = getKind(node);
+		return kind == NodeKind.NUMBER || kind == NodeKind.REAL_NUMBER || kind == NodeKind.STRING;
+	}
+
+	/**
+	 * Returns the prefix of a machine, machine reference or operation
+	 * reference node, or {@code null}.
+	 */
+	public Symbol getPrefix(int node) {
+		NodeKind kind = getKind(node);
+		if (kind == NodeKind.MACHINE || kind == NodeKind.MACHINE_REFERENCE || kind == NodeKind.OPERATION_REFERENCE) {
+			int prefix = references[node];
+			return prefix == NONE ? null : symbols[prefix];
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the declaration an identifier refers to or the operation an
+	 * operation call refers to, or {@link #NONE}.
+	 */
+	public int getReferencedNode(int node) {
+		NodeKind kind = getKind(node);
+		if (kind == NodeKind.IDENTIFIER_EXPRESSION || kind == NodeKind.IDENTIFIER_PREDICATE
+				|| kind == NodeKind.OPERATION_CALL_SUBSTITUTION) {
+			return references[node];
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the name of the machine surrounding a declaration or operation
+	 * of another machine, or {@code null} if it is the machine itself or
+	 * unknown.
+	 */
+	public Symbol getMachineReference(int node) {
+		NodeKind kind = getKind(node);
+		if (kind == NodeKind.DECLARATION || kind == NodeKind.OPERATION) {
+			int machine = references[node];
+			return machine < 0 ? null : symbols[machine];
+		}
+		return null;
+	}
+
+	public boolean isForeign(int node) {
+		return getMachineReference(node) != null;
+	}
+
+	public boolean isPrimed(int node) {
+		return getKind(node) == NodeKind.IDENTIFIER_EXPRESSION && operators[node] == 1;
+	}
+
+	public boolean hasPosition(int node) {
+		return startLines[node] != NONE;
+	}
+
+	public int getStartLine(int node) {
+		return startLines[node];
+	}
+
+	public int getStartColumn(int node) {
+		return startColumns[node];
+	}
+
+	public int getEndLine(int node) {
+		return endLines[node];
+	}
+
+	public int getEndColumn(int node) {
+		return endColumns[node];
+	}
+
+	public int getTypeId(int node) {
+		return types[node];
+	}
+
+	/**
+	 * Returns the type of the node. The type is shared by all nodes with the
+	 * same type id and must not be unified or observed.
+	 */
+	public BType getType(int node) {
+		int type = types[node];
+		return type == NONE ? null : typeTable[type];
+	}
+
+	public int getTypeCount() {
+		return typeTable.length;
+	}
+
+	public int getSymbolCount() {
+		return symbols.length;
+	}
+
+}
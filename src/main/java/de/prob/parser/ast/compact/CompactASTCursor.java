@@ -0,0 +1,128 @@
+package de.prob.parser.ast.compact;
+
+import static de.prob.parser.ast.compact.CompactAST.NONE;
+
+import java.util.Arrays;
+
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.types.BType;
+
+/**
+ * A position in a {@link CompactAST} that is moved over the nodes instead of
+ * materialising them. The cursor keeps the path from the node it has been
+ * created at, so it can move back to the parent, but not beyond that node.
+ */
+public final class CompactASTCursor {
+
+	private final CompactAST ast;
+	private int node;
+	private int[] path = new int[16];
+	private int depth;
+
+	CompactASTCursor(CompactAST ast, int node) {
+		this.ast = ast;
+		this.node = node;
+	}
+
+	public CompactAST getAST() {
+		return ast;
+	}
+
+	public int getNode() {
+		return node;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public boolean gotoFirstChild() {
+		int child = ast.firstChildren[node];
+		if (child == NONE) {
+			return false;
+		}
+		if (depth == path.length) {
+			path = Arrays.copyOf(path, depth * 2);
+		}
+		path[depth++] = node;
+		node = child;
+		return true;
+	}
+
+	public boolean gotoNextSibling() {
+		int sibling = ast.nextSiblings[node];
+		if (depth == 0 || sibling == NONE) {
+			return false;
+		}
+		node = sibling;
+		return true;
+	}
+
+	public boolean gotoParent() {
+		if (depth == 0) {
+			return false;
+		}
+		node = path[--depth];
+		return true;
+	}
+
+	public boolean gotoChild(int index) {
+		if (!gotoFirstChild()) {
+			return false;
+		}
+		for (int i = 0; i < index; i++) {
+			if (!gotoNextSibling()) {
+				gotoParent();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean isList() {
+		return ast.isList(node);
+	}
+
+	public boolean isAbsent() {
+		return ast.isAbsent(node);
+	}
+
+	public NodeKind getKind() {
+		return ast.getKind(node);
+	}
+
+	public <E extends Enum<E>> E getOperator(Class<E> operatorClass) {
+		return ast.getOperator(node, operatorClass);
+	}
+
+	public Symbol getSymbol() {
+		return ast.getSymbol(node);
+	}
+
+	public Object getConstant() {
+		return ast.getConstant(node);
+	}
+
+	public int getReferencedNode() {
+		return ast.getReferencedNode(node);
+	}
+
+	public BType getType() {
+		return ast.getType(node);
+	}
+
+	public int getStartLine() {
+		return ast.getStartLine(node);
+	}
+
+	public int getStartColumn() {
+		return ast.getStartColumn(node);
+	}
+
+	@Override
+	public String toString() {
+		return node + ":" + (isList() ? "LIST" : isAbsent() ? "ABSENT" : getKind());
+	}
+
+}
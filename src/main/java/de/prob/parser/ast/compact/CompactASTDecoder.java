@@ -0,0 +1,432 @@
+package de.prob.parser.ast.compact;
+
+import static de.prob.parser.ast.compact.CompactAST.ABSENT;
+import static de.prob.parser.ast.compact.CompactAST.NONE;
+import static de.prob.parser.ast.compact.CompactAST.OWN_MACHINE;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.DefinitionNode;
+import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.MachineReferenceNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.nodes.OperationReferenceNode;
+import de.prob.parser.ast.nodes.TypedNode;
+import de.prob.parser.ast.nodes.expression.ExprNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode.ExpressionOperator;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.expression.IfExpressionNode;
+import de.prob.parser.ast.nodes.expression.LambdaNode;
+import de.prob.parser.ast.nodes.expression.LetExpressionNode;
+import de.prob.parser.ast.nodes.expression.NumberNode;
+import de.prob.parser.ast.nodes.expression.QuantifiedExpressionNode;
+import de.prob.parser.ast.nodes.expression.QuantifiedExpressionNode.QuantifiedExpressionOperator;
+import de.prob.parser.ast.nodes.expression.RealNumberNode;
+import de.prob.parser.ast.nodes.expression.RecordFieldAccessNode;
+import de.prob.parser.ast.nodes.expression.RecordNode;
+import de.prob.parser.ast.nodes.expression.SetComprehensionNode;
+import de.prob.parser.ast.nodes.expression.StringNode;
+import de.prob.parser.ast.nodes.expression.StructNode;
+import de.prob.parser.ast.nodes.ltl.LTLBPredicateNode;
+import de.prob.parser.ast.nodes.ltl.LTLFormula;
+import de.prob.parser.ast.nodes.ltl.LTLInfixOperatorNode;
+import de.prob.parser.ast.nodes.ltl.LTLKeywordNode;
+import de.prob.parser.ast.nodes.ltl.LTLNode;
+import de.prob.parser.ast.nodes.ltl.LTLPrefixOperatorNode;
+import de.prob.parser.ast.nodes.predicate.CastPredicateExpressionNode;
+import de.prob.parser.ast.nodes.predicate.IdentifierPredicateNode;
+import de.prob.parser.ast.nodes.predicate.IfPredicateNode;
+import de.prob.parser.ast.nodes.predicate.LetPredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode.PredicateOperator;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode.PredOperatorExprArgs;
+import de.prob.parser.ast.nodes.predicate.QuantifiedPredicateNode;
+import de.prob.parser.ast.nodes.predicate.QuantifiedPredicateNode.QuantifiedPredicateOperator;
+import de.prob.parser.ast.nodes.substitution.AnySubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.AssignSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesElementOfSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesSuchThatSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ChoiceSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ConditionSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.IfOrSelectSubstitutionsNode;
+import de.prob.parser.ast.nodes.substitution.LetSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ListSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.OperationCallSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SkipSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.VarSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.WhileSubstitutionNode;
+import de.prob.parser.ast.types.BType;
+
+/**
+ * Materialises nodes of a {@link CompactAST}. Declarations and operations are
+ * created once per decoder, so that all identifiers referring to the same
+ * declaration share it. The types of the compact AST are copied once per
+ * decoder, so that the materialised nodes can be unified. Only types with
+ * untyped parts are observed by the nodes; complete types are shared by many
+ * nodes and are not observed.
+ */
+class CompactASTDecoder {
+
+	private final CompactAST ast;
+	private final CompactAST.ExternalResolver resolver;
+	private final Map<Integer, Node> shared = new HashMap<>();
+	private final BType[] types;
+	private final boolean[] completeTypes;
+	private MachineNode machineNode;
+
+	CompactASTDecoder(CompactAST ast, CompactAST.ExternalResolver resolver) {
+		this.ast = ast;
+		this.resolver = resolver;
+		this.types = new BType[ast.typeTable.length];
+		this.completeTypes = new boolean[ast.typeTable.length];
+	}
+
+	MachineNode decodeMachine(int node) {
+		machineNode = new MachineNode(position(node));
+		machineNode.setName(name(node));
+		machineNode.setPrefix(symbol(ast.references[node]));
+		int[] sections = children(node);
+		for (MachineReferenceNode reference : this.<MachineReferenceNode>decodeList(sections[0])) {
+			machineNode.addMachineReferenceNode(reference);
+		}
+		for (OperationReferenceNode reference : this.<OperationReferenceNode>decodeList(sections[1])) {
+			machineNode.addOperationReferenceNode(reference);
+		}
+		for (DeclarationNode deferredSet : this.<DeclarationNode>decodeList(sections[2])) {
+			machineNode.addDeferredSet(deferredSet);
+		}
+		for (EnumeratedSetDeclarationNode enumSet : this.<EnumeratedSetDeclarationNode>decodeList(sections[3])) {
+			machineNode.addSetEnumeration(enumSet);
+		}
+		machineNode.addConstants(decodeList(sections[4]));
+		machineNode.addVariables(decodeList(sections[5]));
+		machineNode.setIncludedRenamedVariables(decodeList(sections[6]));
+		if (!isAbsent(sections[7])) {
+			machineNode.setProperties((PredicateNode) decode(sections[7]));
+		}
+		if (!isAbsent(sections[8])) {
+			machineNode.setInvariant((PredicateNode) decode(sections[8]));
+		}
+		if (!isAbsent(sections[9])) {
+			machineNode.setAssertions(decodeList(sections[9]));
+		}
+		if (!isAbsent(sections[10])) {
+			machineNode.setInitialisation((SubstitutionNode) decode(sections[10]));
+		}
+		for (OperationNode operation : this.<OperationNode>decodeList(sections[11])) {
+			machineNode.addOperation(operation);
+		}
+		for (SubstitutionNode value : this.<SubstitutionNode>decodeList(sections[12])) {
+			machineNode.addValues(value);
+		}
+		for (DefinitionNode definition : this.<DefinitionNode>decodeList(sections[13])) {
+			machineNode.addDefinition(definition);
+		}
+		for (LTLFormula formula : this.<LTLFormula>decodeList(sections[14])) {
+			machineNode.addLTLFormula(formula);
+		}
+		return machineNode;
+	}
+
+	@SuppressWarnings("unchecked")
+	<T extends Node> List<T> decodeList(int list) {
+		if (isAbsent(list)) {
+			return null;
+		}
+		List<T> nodes = new ArrayList<>();
+		for (int child = ast.firstChildren[list]; child != NONE; child = ast.nextSiblings[child]) {
+			nodes.add((T) decode(child));
+		}
+		return nodes;
+	}
+
+	Node decode(int node) {
+		if (isAbsent(node)) {
+			return null;
+		}
+		NodeKind kind = ast.getKind(node);
+		if (kind == null) {
+			throw new IllegalArgumentException("Node " + node + " is a list");
+		}
+		int[] children = children(node);
+		switch (kind) {
+		case DECLARATION:
+			return declaration(node);
+		case OPERATION:
+			return operation(node);
+		case ENUMERATED_SET_DECLARATION:
+			return new EnumeratedSetDeclarationNode(position(node), declaration(children[0]),
+					decodeList(children[1]));
+		case DEFINITION:
+			return typed(new DefinitionNode(position(node), name(node), decodeList(children[0]),
+					decode(children[1])), node);
+		case MACHINE_REFERENCE: {
+			MachineReferenceNode reference = new MachineReferenceNode(position(node), name(node),
+					ast.getOperator(node, MachineReferenceNode.Kind.class), symbol(ast.references[node]), false);
+			if (resolver != null) {
+				reference.setMachineNode(resolver.resolveMachine(reference.toString()));
+			}
+			return reference;
+		}
+		case OPERATION_REFERENCE:
+			return new OperationReferenceNode(position(node), name(node), symbol(ast.references[node]), false);
+		case LTL_FORMULA: {
+			LTLFormula formula = new LTLFormula(position(node));
+			formula.setName(name(node));
+			formula.setImplicitDeclarations(decodeList(children[0]));
+			formula.setFormula((LTLNode) decode(children[1]));
+			return formula;
+		}
+		case EXPRESSION_OPERATOR:
+			return typed(new ExpressionOperatorNode(position(node), decodeAll(children),
+					ast.getOperator(node, ExpressionOperator.class)), node);
+		case IDENTIFIER_EXPRESSION: {
+			IdentifierExprNode identifier = new IdentifierExprNode(position(node), name(node),
+					ast.operators[node] == 1);
+			if (ast.references[node] != NONE) {
+				identifier.setDeclarationNode(declaration(ast.references[node]));
+			}
+			return typed(identifier, node);
+		}
+		case NUMBER:
+			return typed(new NumberNode(position(node), (BigInteger) ast.constants[ast.data[node]]), node);
+		case REAL_NUMBER:
+			return typed(new RealNumberNode(position(node), (BigDecimal) ast.constants[ast.data[node]]), node);
+		case STRING:
+			return typed(new StringNode(position(node), (String) ast.constants[ast.data[node]]), node);
+		case SET_COMPREHENSION:
+			return typed(new SetComprehensionNode(position(node), decodeList(children[0]),
+					(PredicateNode) decode(children[1])), node);
+		case QUANTIFIED_EXPRESSION:
+			return typed(new QuantifiedExpressionNode(position(node),
+					ast.getOperator(node, QuantifiedExpressionOperator.class), decodeList(children[0]),
+					(PredicateNode) decode(children[1]), (ExprNode) decode(children[2])), node);
+		case LAMBDA:
+			return typed(new LambdaNode(position(node), decodeList(children[0]), (PredicateNode) decode(children[1]),
+					(ExprNode) decode(children[2])), node);
+		case LET_EXPRESSION:
+			return typed(new LetExpressionNode(position(node), decodeList(children[0]),
+					(PredicateNode) decode(children[1]), (ExprNode) decode(children[2])), node);
+		case IF_EXPRESSION:
+			return typed(new IfExpressionNode(position(node), (PredicateNode) decode(children[0]),
+					(ExprNode) decode(children[1]), (ExprNode) decode(children[2])), node);
+		case RECORD:
+			return typed(new RecordNode(position(node), decodeList(children[0]), decodeList(children[1])), node);
+		case STRUCT:
+			return typed(new StructNode(position(node), decodeList(children[0]), decodeList(children[1])), node);
+		case RECORD_FIELD_ACCESS:
+			return typed(new RecordFieldAccessNode(position(node), (ExprNode) decode(children[0]),
+					declaration(children[1])), node);
+		case CAST_PREDICATE_EXPRESSION:
+			return typed(new CastPredicateExpressionNode(position(node), (PredicateNode) decode(children[0])), node);
+		case IDENTIFIER_PREDICATE: {
+			IdentifierPredicateNode identifier = new IdentifierPredicateNode(position(node), name(node));
+			if (ast.references[node] != NONE) {
+				identifier.setDeclarationNode(declaration(ast.references[node]));
+			}
+			return typed(identifier, node);
+		}
+		case PREDICATE_OPERATOR:
+			return typed(new PredicateOperatorNode(position(node), ast.getOperator(node, PredicateOperator.class),
+					decodeAll(children)), node);
+		case PREDICATE_OPERATOR_WITH_EXPR_ARGS:
+			return typed(new PredicateOperatorWithExprArgsNode(position(node),
+					ast.getOperator(node, PredOperatorExprArgs.class), decodeAll(children)), node);
+		case QUANTIFIED_PREDICATE:
+			return typed(new QuantifiedPredicateNode(position(node), decodeList(children[0]),
+					(PredicateNode) decode(children[1]), ast.getOperator(node, QuantifiedPredicateOperator.class)),
+					node);
+		case LET_PREDICATE:
+			return typed(new LetPredicateNode(position(node), decodeList(children[0]),
+					(PredicateNode) decode(children[1]), (PredicateNode) decode(children[2])), node);
+		case IF_PREDICATE:
+			return typed(new IfPredicateNode(position(node), (PredicateNode) decode(children[0]),
+					(PredicateNode) decode(children[1]), (PredicateNode) decode(children[2])), node);
+		case ANY_SUBSTITUTION:
+			return new AnySubstitutionNode(position(node), decodeList(children[0]),
+					(PredicateNode) decode(children[1]), (SubstitutionNode) decode(children[2]));
+		case ASSIGN_SUBSTITUTION:
+			return new AssignSubstitutionNode(position(node), decodeList(children[0]), decodeList(children[1]));
+		case BECOMES_ELEMENT_OF_SUBSTITUTION:
+			return new BecomesElementOfSubstitutionNode(position(node), decodeList(children[0]),
+					(ExprNode) decode(children[1]));
+		case BECOMES_SUCH_THAT_SUBSTITUTION:
+			return new BecomesSuchThatSubstitutionNode(position(node), decodeList(children[0]),
+					(PredicateNode) decode(children[1]));
+		case CHOICE_SUBSTITUTION:
+			return new ChoiceSubstitutionNode(position(node), decodeAll(children));
+		case CONDITION_SUBSTITUTION:
+			return new ConditionSubstitutionNode(position(node),
+					ast.getOperator(node, ConditionSubstitutionNode.Kind.class), (PredicateNode) decode(children[0]),
+					(SubstitutionNode) decode(children[1]));
+		case IF_OR_SELECT_SUBSTITUTION:
+			return new IfOrSelectSubstitutionsNode(position(node),
+					ast.getOperator(node, IfOrSelectSubstitutionsNode.Operator.class), decodeList(children[0]),
+					decodeList(children[1]), (SubstitutionNode) decode(children[2]));
+		case LET_SUBSTITUTION:
+			return new LetSubstitutionNode(position(node), decodeList(children[0]),
+					(PredicateNode) decode(children[1]), (SubstitutionNode) decode(children[2]));
+		case LIST_SUBSTITUTION:
+			return new ListSubstitutionNode(position(node),
+					ast.getOperator(node, ListSubstitutionNode.ListOperator.class), decodeAll(children));
+		case OPERATION_CALL_SUBSTITUTION: {
+			OperationCallSubstitutionNode call = new OperationCallSubstitutionNode(position(node),
+					new ArrayList<>(Arrays.asList(name(node).split("\\."))), decodeList(children[0]),
+					decodeList(children[1]));
+			if (ast.references[node] != NONE) {
+				call.setOperationsNode(operation(ast.references[node]));
+			}
+			return call;
+		}
+		case SKIP_SUBSTITUTION:
+			return new SkipSubstitutionNode(position(node));
+		case VAR_SUBSTITUTION:
+			return new VarSubstitutionNode(position(node), decodeList(children[0]),
+					(SubstitutionNode) decode(children[1]));
+		case WHILE_SUBSTITUTION:
+			return new WhileSubstitutionNode(position(node), (PredicateNode) decode(children[0]),
+					(SubstitutionNode) decode(children[1]), (PredicateNode) decode(children[2]),
+					(ExprNode) decode(children[3]));
+		case LTL_PREFIX_OPERATOR:
+			return new LTLPrefixOperatorNode(position(node), ast.getOperator(node, LTLPrefixOperatorNode.Kind.class),
+					(LTLNode) decode(children[0]));
+		case LTL_INFIX_OPERATOR:
+			return new LTLInfixOperatorNode(position(node), ast.getOperator(node, LTLInfixOperatorNode.Kind.class),
+					(LTLNode) decode(children[0]), (LTLNode) decode(children[1]));
+		case LTL_KEYWORD:
+			return new LTLKeywordNode(position(node), ast.getOperator(node, LTLKeywordNode.Kind.class));
+		case LTL_B_PREDICATE:
+			return new LTLBPredicateNode(position(node), (PredicateNode) decode(children[0]));
+		default:
+			throw new AssertionError(kind);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Node> List<T> decodeAll(int[] children) {
+		List<T> nodes = new ArrayList<>(children.length);
+		for (int child : children) {
+			nodes.add((T) decode(child));
+		}
+		return nodes;
+	}
+
+	private DeclarationNode declaration(int node) {
+		DeclarationNode declaration = (DeclarationNode) shared.get(node);
+		if (declaration != null) {
+			return declaration;
+		}
+		DeclarationNode.Kind kind = ast.getOperator(node, DeclarationNode.Kind.class);
+		int machine = ast.references[node];
+		if (machine >= 0 && resolver != null) {
+			declaration = resolver.resolveDeclaration(symbol(machine), name(node), kind);
+			if (declaration != null && declaration.getType() == null) {
+				typed(declaration, node);
+			}
+		}
+		if (declaration == null) {
+			declaration = typed(new DeclarationNode(position(node), name(node), kind, machine(machine)), node);
+		}
+		shared.put(node, declaration);
+		return declaration;
+	}
+
+	private OperationNode operation(int node) {
+		OperationNode operation = (OperationNode) shared.get(node);
+		if (operation != null) {
+			return operation;
+		}
+		int machine = ast.references[node];
+		if (machine >= 0 && resolver != null) {
+			operation = resolver.resolveOperation(symbol(machine), name(node));
+		}
+		if (operation == null) {
+			int[] children = children(node);
+			SubstitutionNode substitution = children.length > 2 ? (SubstitutionNode) decode(children[2]) : null;
+			if (substitution == null) {
+				// only the signature of operations of other machines is known
+				substitution = new SkipSubstitutionNode(position(node));
+			}
+			operation = new OperationNode(position(node), name(node), decodeList(children[0]), substitution,
+					decodeList(children[1]));
+		}
+		shared.put(node, operation);
+		return operation;
+	}
+
+	private MachineNode machine(int machine) {
+		if (machine == OWN_MACHINE) {
+			return machineNode;
+		} else if (machine >= 0 && resolver != null) {
+			return resolver.resolveMachine(symbol(machine));
+		}
+		return null;
+	}
+
+	private <T extends TypedNode> T typed(T typedNode, int node) {
+		int type = ast.types[node];
+		if (type != NONE) {
+			if (types[type] == null) {
+				types[type] = CompactASTEncoder.copyType(ast.typeTable[type]);
+				completeTypes[type] = !types[type].isUntyped();
+			}
+			if (completeTypes[type]) {
+				typedNode.setCompleteType(types[type]);
+			} else {
+				typedNode.setType(types[type]);
+			}
+		}
+		return typedNode;
+	}
+
+	private SourceCodePosition position(int node) {
+		if (ast.startLines[node] == NONE) {
+			return null;
+		}
+		SourceCodePosition position = new SourceCodePosition();
+		position.setStartLine(ast.startLines[node]);
+		position.setStartColumn(ast.startColumns[node]);
+		if (ast.endLines[node] != NONE) {
+			position.setEndLine(ast.endLines[node]);
+			position.setEndColumn(ast.endColumns[node]);
+		}
+		return position;
+	}
+
+	private String name(int node) {
+		return symbol(ast.data[node]);
+	}
+
+	private String symbol(int symbol) {
+		return symbol == NONE ? null : ast.symbols[symbol].getName();
+	}
+
+	private boolean isAbsent(int node) {
+		return ast.kinds[node] == ABSENT;
+	}
+
+	private int[] children(int node) {
+		int[] children = new int[ast.getChildCount(node)];
+		int i = 0;
+		for (int child = ast.firstChildren[node]; child != NONE; child = ast.nextSiblings[child]) {
+			children[i++] = child;
+		}
+		return children;
+	}
+
+}
@@ -0,0 +1,678 @@
+package de.prob.parser.ast.compact;
+
+import static de.prob.parser.ast.compact.CompactAST.ABSENT;
+import static de.prob.parser.ast.compact.CompactAST.LIST;
+import static de.prob.parser.ast.compact.CompactAST.NONE;
+import static de.prob.parser.ast.compact.CompactAST.OWN_MACHINE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.SymbolTable;
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.DefinitionNode;
+import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.MachineReferenceNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.nodes.OperationReferenceNode;
+import de.prob.parser.ast.nodes.TypedNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.expression.IfExpressionNode;
+import de.prob.parser.ast.nodes.expression.LambdaNode;
+import de.prob.parser.ast.nodes.expression.LetExpressionNode;
+import de.prob.parser.ast.nodes.expression.NumberNode;
+import de.prob.parser.ast.nodes.expression.QuantifiedExpressionNode;
+import de.prob.parser.ast.nodes.expression.RealNumberNode;
+import de.prob.parser.ast.nodes.expression.RecordFieldAccessNode;
+import de.prob.parser.ast.nodes.expression.RecordNode;
+import de.prob.parser.ast.nodes.expression.SetComprehensionNode;
+import de.prob.parser.ast.nodes.expression.StringNode;
+import de.prob.parser.ast.nodes.expression.StructNode;
+import de.prob.parser.ast.nodes.ltl.LTLBPredicateNode;
+import de.prob.parser.ast.nodes.ltl.LTLFormula;
+import de.prob.parser.ast.nodes.ltl.LTLInfixOperatorNode;
+import de.prob.parser.ast.nodes.ltl.LTLKeywordNode;
+import de.prob.parser.ast.nodes.ltl.LTLPrefixOperatorNode;
+import de.prob.parser.ast.nodes.predicate.CastPredicateExpressionNode;
+import de.prob.parser.ast.nodes.predicate.IdentifierPredicateNode;
+import de.prob.parser.ast.nodes.predicate.IfPredicateNode;
+import de.prob.parser.ast.nodes.predicate.LetPredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.predicate.QuantifiedPredicateNode;
+import de.prob.parser.ast.nodes.substitution.AnySubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.AssignSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesElementOfSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesSuchThatSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ChoiceSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ConditionSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.IfOrSelectSubstitutionsNode;
+import de.prob.parser.ast.nodes.substitution.LetSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ListSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.OperationCallSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SkipSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.VarSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.WhileSubstitutionNode;
+import de.prob.parser.ast.types.BType;
+import de.prob.parser.ast.types.CoupleType;
+import de.prob.parser.ast.types.RecordType;
+import de.prob.parser.ast.types.SetType;
+import de.prob.parser.ast.visitors.AbstractVisitor;
+
+/**
+ * Encodes a machine AST into the arrays of a {@link CompactAST}. Nodes are
+ * numbered in pre-order, except for operations added after the rest of the
+ * machine. References to declarations and operations are resolved after the
+ * whole machine has been encoded, or after the operation containing them.
+ */
+class CompactASTEncoder implements AbstractVisitor<Integer, Void> {
+
+	private int size;
+	private byte[] kinds = new byte[256];
+	private short[] operators = new short[256];
+	private int[] data = new int[256];
+	private int[] references = new int[256];
+	private int[] firstChildren = new int[256];
+	private int[] nextSiblings = new int[256];
+	private int[] startLines = new int[256];
+	private int[] startColumns = new int[256];
+	private int[] endLines = new int[256];
+	private int[] endColumns = new int[256];
+	private int[] types = new int[256];
+
+	private final Map<Symbol, Integer> symbolIndex = new HashMap<>();
+	private final List<Symbol> symbols = new ArrayList<>();
+	private final Map<Object, Integer> constantIndex = new HashMap<>();
+	private final List<Object> constants = new ArrayList<>();
+	private final Map<String, Integer> typeIndex = new HashMap<>();
+	private final List<BType> typeTable = new ArrayList<>();
+
+	// declarations and operations -> their index
+	private final Map<Node, Integer> encoded = new IdentityHashMap<>();
+	// nodes referring to a declaration or operation which may not be encoded yet
+	private final List<Integer> pendingNodes = new ArrayList<>();
+	private final List<Node> pendingTargets = new ArrayList<>();
+
+	// the declarations and operations encoded by addOperation
+	private List<Node> operationDeclarations;
+
+	private MachineNode machineNode;
+	private int operations;
+	private int lastOperation;
+	private int externals;
+
+	CompactAST encodeMachine(MachineNode machineNode) {
+		beginMachine(machineNode);
+		return finish();
+	}
+
+	/**
+	 * Encodes the machine with the operations it contains so far; further
+	 * operations are added by {@link #addOperation(OperationNode)}.
+	 */
+	void beginMachine(MachineNode machineNode) {
+		this.machineNode = machineNode;
+		int root = add(NodeKind.MACHINE, NONE, symbol(machineNode.getName()), machineNode);
+		references[root] = symbol(machineNode.getPrefix());
+		int last = append(root, NONE, list(machineNode.getMachineReferences()));
+		last = append(root, last, list(machineNode.getOperationReferences()));
+		last = append(root, last, list(machineNode.getDeferredSets()));
+		last = append(root, last, list(machineNode.getEnumeratedSets()));
+		last = append(root, last, list(machineNode.getConstants()));
+		last = append(root, last, list(machineNode.getVariables()));
+		last = append(root, last, list(machineNode.getIncludedRenamedVariables()));
+		last = append(root, last, encode(machineNode.getProperties()));
+		last = append(root, last, encode(machineNode.getInvariant()));
+		last = append(root, last, list(machineNode.getAssertions()));
+		last = append(root, last, encode(machineNode.getInitialisation()));
+		operations = list(machineNode.getOperations());
+		lastOperation = firstChildren[operations] == NONE ? NONE : getLastChild(operations);
+		last = append(root, last, operations);
+		last = append(root, last, list(machineNode.getValues()));
+		last = append(root, last, list(machineNode.getDefinitions()));
+		last = append(root, last, list(machineNode.getLTLFormulas()));
+		externals = addStructure(LIST);
+		append(root, last, externals);
+	}
+
+	/**
+	 * Encodes an operation of the machine that has not been added to it. The
+	 * references into the operation are resolved at once, so that no node of
+	 * the operation is retained afterwards.
+	 */
+	void addOperation(OperationNode operation) {
+		int pending = pendingNodes.size();
+		operationDeclarations = new ArrayList<>();
+		int index = encodeOperation(operation);
+		references[index] = OWN_MACHINE;
+		lastOperation = append(operations, lastOperation, index);
+		// only references to other machines remain pending
+		int kept = pending;
+		for (int i = pending; i < pendingNodes.size(); i++) {
+			Integer target = encoded.get(pendingTargets.get(i));
+			if (target != null) {
+				references[pendingNodes.get(i)] = target;
+			} else {
+				pendingNodes.set(kept, pendingNodes.get(i));
+				pendingTargets.set(kept, pendingTargets.get(i));
+				kept++;
+			}
+		}
+		pendingNodes.subList(kept, pendingNodes.size()).clear();
+		pendingTargets.subList(kept, pendingTargets.size()).clear();
+		for (Node declaration : operationDeclarations) {
+			encoded.remove(declaration);
+		}
+		operationDeclarations = null;
+	}
+
+	CompactAST finish() {
+		resolveReferences(externals);
+		return new CompactAST(size, Arrays.copyOf(kinds, size), Arrays.copyOf(operators, size),
+				Arrays.copyOf(data, size), Arrays.copyOf(references, size), Arrays.copyOf(firstChildren, size),
+				Arrays.copyOf(nextSiblings, size), Arrays.copyOf(startLines, size),
+				Arrays.copyOf(startColumns, size), Arrays.copyOf(endLines, size), Arrays.copyOf(endColumns, size),
+				Arrays.copyOf(types, size), symbols.toArray(new Symbol[0]), constants.toArray(),
+				typeTable.toArray(new BType[0]));
+	}
+
+	private void resolveReferences(int externals) {
+		int last = NONE;
+		for (int i = 0; i < pendingNodes.size(); i++) {
+			Node target = pendingTargets.get(i);
+			Integer index = encoded.get(target);
+			if (index == null) {
+				if (target instanceof OperationNode) {
+					index = encodeOperationSignature((OperationNode) target);
+				} else {
+					index = encodeDeclaration((DeclarationNode) target);
+				}
+				last = append(externals, last, index);
+			}
+			references[pendingNodes.get(i)] = index;
+		}
+	}
+
+	private int add(NodeKind kind, int operator, int data, Node node) {
+		int index = addStructure((byte) kind.ordinal());
+		this.operators[index] = (short) operator;
+		this.data[index] = data;
+		SourceCodePosition position = node.getSourceCodePosition();
+		if (position != null) {
+			startLines[index] = position.getStartLine();
+			startColumns[index] = position.getStartColumn();
+			if (position.hasEndPosition()) {
+				endLines[index] = position.getEndLine();
+				endColumns[index] = position.getEndColumn();
+			}
+		}
+		if (node instanceof TypedNode) {
+			types[index] = type(((TypedNode) node).getType());
+		}
+		return index;
+	}
+
+	private int addStructure(byte kind) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			operators = Arrays.copyOf(operators, capacity);
+			data = Arrays.copyOf(data, capacity);
+			references = Arrays.copyOf(references, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+			startLines = Arrays.copyOf(startLines, capacity);
+			startColumns = Arrays.copyOf(startColumns, capacity);
+			endLines = Arrays.copyOf(endLines, capacity);
+			endColumns = Arrays.copyOf(endColumns, capacity);
+			types = Arrays.copyOf(types, capacity);
+		}
+		int index = size++;
+		kinds[index] = kind;
+		operators[index] = NONE;
+		data[index] = NONE;
+		references[index] = NONE;
+		firstChildren[index] = NONE;
+		nextSiblings[index] = NONE;
+		startLines[index] = NONE;
+		startColumns[index] = NONE;
+		endLines[index] = NONE;
+		endColumns[index] = NONE;
+		types[index] = NONE;
+		return index;
+	}
+
+	private int append(int parent, int lastChild, int child) {
+		if (lastChild == NONE) {
+			firstChildren[parent] = child;
+		} else {
+			nextSiblings[lastChild] = child;
+		}
+		return child;
+	}
+
+	private int children(int parent, int... children) {
+		int last = NONE;
+		for (int child : children) {
+			last = append(parent, last, child);
+		}
+		return parent;
+	}
+
+	private int list(List<? extends Node> nodes) {
+		if (nodes == null) {
+			return addStructure(ABSENT);
+		}
+		int list = addStructure(LIST);
+		int last = NONE;
+		for (Node node : nodes) {
+			last = append(list, last, encode(node));
+		}
+		return list;
+	}
+
+	private int encode(Node node) {
+		if (node == null) {
+			return addStructure(ABSENT);
+		}
+		switch (node.getNodeKind()) {
+		case DECLARATION:
+			return encodeDeclaration((DeclarationNode) node);
+		case OPERATION:
+			return encodeOperation((OperationNode) node);
+		case ENUMERATED_SET_DECLARATION:
+			EnumeratedSetDeclarationNode enumSet = (EnumeratedSetDeclarationNode) node;
+			return children(add(NodeKind.ENUMERATED_SET_DECLARATION, NONE, NONE, node),
+					encode(enumSet.getSetDeclarationNode()), list(enumSet.getElements()));
+		case DEFINITION:
+			DefinitionNode definition = (DefinitionNode) node;
+			return children(add(NodeKind.DEFINITION, NONE, symbol(definition.getName()), node),
+					list(definition.getParams()), encode(definition.getBody()));
+		case MACHINE_REFERENCE: {
+			MachineReferenceNode reference = (MachineReferenceNode) node;
+			int index = add(NodeKind.MACHINE_REFERENCE, reference.getType().ordinal(),
+					symbol(reference.getMachineName()), node);
+			references[index] = symbol(reference.getPrefix());
+			return index;
+		}
+		case OPERATION_REFERENCE: {
+			OperationReferenceNode reference = (OperationReferenceNode) node;
+			int index = add(NodeKind.OPERATION_REFERENCE, NONE, symbol(reference.getOperationName()), node);
+			references[index] = symbol(reference.getPrefix());
+			return index;
+		}
+		case LTL_FORMULA:
+			LTLFormula formula = (LTLFormula) node;
+			return children(add(NodeKind.LTL_FORMULA, NONE, symbol(formula.getName()), node),
+					list(formula.getImplicitDeclarations()), encode(formula.getLTLNode()));
+		default:
+			return visitNode(node, null);
+		}
+	}
+
+	private int encodeDeclaration(DeclarationNode node) {
+		int index = add(NodeKind.DECLARATION, node.getKind().ordinal(), symbol(node.getSymbol()), node);
+		references[index] = machine(node.getSurroundingMachineNode());
+		// a declaration occurring twice keeps referring to its first occurrence
+		encodedNode(node, index);
+		return index;
+	}
+
+	private int encodeOperation(OperationNode node) {
+		int index = encodeOperationSignature(node);
+		int substitution = encode(node.getSubstitution());
+		append(index, getLastChild(index), substitution);
+		return index;
+	}
+
+	private int encodeOperationSignature(OperationNode node) {
+		int index = add(NodeKind.OPERATION, NONE, symbol(node.getName()), node);
+		Node parent = node.getParent();
+		references[index] = parent instanceof MachineNode ? machine((MachineNode) parent) : NONE;
+		encodedNode(node, index);
+		// the substitution of operations of other machines is not encoded
+		return children(index, list(node.getOutputParams()), list(node.getParams()));
+	}
+
+	private void encodedNode(Node node, int index) {
+		if (encoded.putIfAbsent(node, index) == null && operationDeclarations != null) {
+			operationDeclarations.add(node);
+		}
+	}
+
+	private int getLastChild(int node) {
+		int child = firstChildren[node];
+		while (nextSiblings[child] != NONE) {
+			child = nextSiblings[child];
+		}
+		return child;
+	}
+
+	private void refer(int node, Node target) {
+		if (target != null) {
+			pendingNodes.add(node);
+			pendingTargets.add(target);
+		}
+	}
+
+	private int machine(MachineNode machine) {
+		if (machine == null) {
+			return NONE;
+		} else if (machine == machineNode) {
+			return OWN_MACHINE;
+		}
+		return symbol(machine.toString());
+	}
+
+	private int symbol(String name) {
+		return name == null ? NONE : symbol(SymbolTable.intern(name));
+	}
+
+	private int symbol(Symbol symbol) {
+		Integer index = symbolIndex.get(symbol);
+		if (index == null) {
+			index = symbols.size();
+			symbols.add(symbol);
+			symbolIndex.put(symbol, index);
+		}
+		return index;
+	}
+
+	private int constant(Object value) {
+		Integer index = constantIndex.get(value);
+		if (index == null) {
+			index = constants.size();
+			constants.add(value);
+			constantIndex.put(value, index);
+		}
+		return index;
+	}
+
+	private int type(BType type) {
+		if (type == null || type.isUntyped()) {
+			// only final types are retained
+			return NONE;
+		}
+		String key = type.toString();
+		Integer index = typeIndex.get(key);
+		if (index == null) {
+			index = typeTable.size();
+			// copy the type, so that the compact AST does not keep the observing nodes alive
+			typeTable.add(copyType(type));
+			typeIndex.put(key, index);
+		}
+		return index;
+	}
+
+	static BType copyType(BType type) {
+		if (type instanceof SetType) {
+			return new SetType(copyType(((SetType) type).getSubType()));
+		} else if (type instanceof CoupleType) {
+			CoupleType couple = (CoupleType) type;
+			return new CoupleType(copyType(couple.getLeft()), copyType(couple.getRight()));
+		} else if (type instanceof RecordType) {
+			RecordType record = (RecordType) type;
+			List<BType> subtypes = new ArrayList<>();
+			for (BType subtype : record.getSubtypes()) {
+				subtypes.add(copyType(subtype));
+			}
+			return new RecordType(new ArrayList<>(record.getIdentifiers()), subtypes);
+		}
+		// basic types and set element types are immutable
+		return type;
+	}
+
+	private static int ordinal(Enum<?> operator) {
+		return operator == null ? NONE : operator.ordinal();
+	}
+
+	@Override
+	public Integer visitExprOperatorNode(ExpressionOperatorNode node, Void expected) {
+		int index = add(NodeKind.EXPRESSION_OPERATOR, ordinal(node.getOperator()), NONE, node);
+		int last = NONE;
+		for (Node child : node.getExpressionNodes()) {
+			last = append(index, last, encode(child));
+		}
+		return index;
+	}
+
+	@Override
+	public Integer visitIdentifierExprNode(IdentifierExprNode node, Void expected) {
+		int index = add(NodeKind.IDENTIFIER_EXPRESSION, node.isPrimed() ? 1 : 0, symbol(node.getSymbol()), node);
+		refer(index, node.getDeclarationNode());
+		return index;
+	}
+
+	@Override
+	public Integer visitCastPredicateExpressionNode(CastPredicateExpressionNode node, Void expected) {
+		return children(add(NodeKind.CAST_PREDICATE_EXPRESSION, NONE, NONE, node), encode(node.getPredicate()));
+	}
+
+	@Override
+	public Integer visitNumberNode(NumberNode node, Void expected) {
+		return add(NodeKind.NUMBER, NONE, constant(node.getValue()), node);
+	}
+
+	@Override
+	public Integer visitRealNumberNode(RealNumberNode node, Void expected) {
+		return add(NodeKind.REAL_NUMBER, NONE, constant(node.getValue()), node);
+	}
+
+	@Override
+	public Integer visitQuantifiedExpressionNode(QuantifiedExpressionNode node, Void expected) {
+		return children(add(NodeKind.QUANTIFIED_EXPRESSION, ordinal(node.getOperator()), NONE, node),
+				list(node.getDeclarationList()), encode(node.getPredicateNode()), encode(node.getExpressionNode()));
+	}
+
+	@Override
+	public Integer visitSetComprehensionNode(SetComprehensionNode node, Void expected) {
+		return children(add(NodeKind.SET_COMPREHENSION, NONE, NONE, node), list(node.getDeclarationList()),
+				encode(node.getPredicateNode()));
+	}
+
+	@Override
+	public Integer visitLambdaNode(LambdaNode node, Void expected) {
+		return children(add(NodeKind.LAMBDA, NONE, NONE, node), list(node.getDeclarations()),
+				encode(node.getPredicate()), encode(node.getExpression()));
+	}
+
+	@Override
+	public Integer visitLetExpressionNode(LetExpressionNode node, Void expected) {
+		return children(add(NodeKind.LET_EXPRESSION, NONE, NONE, node), list(node.getLocalIdentifiers()),
+				encode(node.getPredicate()), encode(node.getExpression()));
+	}
+
+	@Override
+	public Integer visitIfExpressionNode(IfExpressionNode node, Void expected) {
+		return children(add(NodeKind.IF_EXPRESSION, NONE, NONE, node), encode(node.getCondition()),
+				encode(node.getThenExpression()), encode(node.getElseExpression()));
+	}
+
+	@Override
+	public Integer visitStringNode(StringNode node, Void expected) {
+		return add(NodeKind.STRING, NONE, constant(node.getValue()), node);
+	}
+
+	@Override
+	public Integer visitRecordNode(RecordNode node, Void expected) {
+		return children(add(NodeKind.RECORD, NONE, NONE, node), list(node.getDeclarations()),
+				list(node.getExpressions()));
+	}
+
+	@Override
+	public Integer visitStructNode(StructNode node, Void expected) {
+		return children(add(NodeKind.STRUCT, NONE, NONE, node), list(node.getDeclarations()),
+				list(node.getExpressions()));
+	}
+
+	@Override
+	public Integer visitRecordFieldAccessNode(RecordFieldAccessNode node, Void expected) {
+		return children(add(NodeKind.RECORD_FIELD_ACCESS, NONE, NONE, node), encode(node.getRecord()),
+				encode(node.getIdentifier()));
+	}
+
+	@Override
+	public Integer visitIdentifierPredicateNode(IdentifierPredicateNode node, Void expected) {
+		int index = add(NodeKind.IDENTIFIER_PREDICATE, NONE, symbol(node.getSymbol()), node);
+		refer(index, node.getDeclarationNode());
+		return index;
+	}
+
+	@Override
+	public Integer visitPredicateOperatorNode(PredicateOperatorNode node, Void expected) {
+		int index = add(NodeKind.PREDICATE_OPERATOR, ordinal(node.getOperator()), NONE, node);
+		int last = NONE;
+		for (Node child : node.getPredicateArguments()) {
+			last = append(index, last, encode(child));
+		}
+		return index;
+	}
+
+	@Override
+	public Integer visitPredicateOperatorWithExprArgs(PredicateOperatorWithExprArgsNode node, Void expected) {
+		int index = add(NodeKind.PREDICATE_OPERATOR_WITH_EXPR_ARGS, ordinal(node.getOperator()), NONE, node);
+		int last = NONE;
+		for (Node child : node.getExpressionNodes()) {
+			last = append(index, last, encode(child));
+		}
+		return index;
+	}
+
+	@Override
+	public Integer visitQuantifiedPredicateNode(QuantifiedPredicateNode node, Void expected) {
+		return children(add(NodeKind.QUANTIFIED_PREDICATE, ordinal(node.getOperator()), NONE, node),
+				list(node.getDeclarationList()), encode(node.getPredicateNode()));
+	}
+
+	@Override
+	public Integer visitLetPredicateNode(LetPredicateNode node, Void expected) {
+		return children(add(NodeKind.LET_PREDICATE, NONE, NONE, node), list(node.getLocalIdentifiers()),
+				encode(node.getWherePredicate()), encode(node.getPredicate()));
+	}
+
+	@Override
+	public Integer visitIfPredicateNode(IfPredicateNode node, Void expected) {
+		return children(add(NodeKind.IF_PREDICATE, NONE, NONE, node), encode(node.getCondition()),
+				encode(node.getThenPredicate()), encode(node.getElsePredicate()));
+	}
+
+	@Override
+	public Integer visitVarSubstitutionNode(VarSubstitutionNode node, Void expected) {
+		return children(add(NodeKind.VAR_SUBSTITUTION, NONE, NONE, node), list(node.getLocalIdentifiers()),
+				encode(node.getBody()));
+	}
+
+	@Override
+	public Integer visitWhileSubstitutionNode(WhileSubstitutionNode node, Void expected) {
+		return children(add(NodeKind.WHILE_SUBSTITUTION, NONE, NONE, node), encode(node.getCondition()),
+				encode(node.getBody()), encode(node.getInvariant()), encode(node.getVariant()));
+	}
+
+	@Override
+	public Integer visitListSubstitutionNode(ListSubstitutionNode node, Void expected) {
+		int index = add(NodeKind.LIST_SUBSTITUTION, ordinal(node.getOperator()), NONE, node);
+		int last = NONE;
+		for (Node child : node.getSubstitutions()) {
+			last = append(index, last, encode(child));
+		}
+		return index;
+	}
+
+	@Override
+	public Integer visitIfOrSelectSubstitutionsNode(IfOrSelectSubstitutionsNode node, Void expected) {
+		return children(add(NodeKind.IF_OR_SELECT_SUBSTITUTION, ordinal(node.getOperator()), NONE, node),
+				list(node.getConditions()), list(node.getSubstitutions()), encode(node.getElseSubstitution()));
+	}
+
+	@Override
+	public Integer visitAssignSubstitutionNode(AssignSubstitutionNode node, Void expected) {
+		return children(add(NodeKind.ASSIGN_SUBSTITUTION, NONE, NONE, node), list(node.getLeftSide()),
+				list(node.getRightSide()));
+	}
+
+	@Override
+	public Integer visitSkipSubstitutionNode(SkipSubstitutionNode node, Void expected) {
+		return add(NodeKind.SKIP_SUBSTITUTION, NONE, NONE, node);
+	}
+
+	@Override
+	public Integer visitConditionSubstitutionNode(ConditionSubstitutionNode node, Void expected) {
+		return children(add(NodeKind.CONDITION_SUBSTITUTION, ordinal(node.getKind()), NONE, node),
+				encode(node.getCondition()), encode(node.getSubstitution()));
+	}
+
+	@Override
+	public Integer visitAnySubstitution(AnySubstitutionNode node, Void expected) {
+		return children(add(NodeKind.ANY_SUBSTITUTION, NONE, NONE, node), list(node.getParameters()),
+				encode(node.getWherePredicate()), encode(node.getThenSubstitution()));
+	}
+
+	@Override
+	public Integer visitLetSubstitution(LetSubstitutionNode node, Void expected) {
+		return children(add(NodeKind.LET_SUBSTITUTION, NONE, NONE, node), list(node.getLocalIdentifiers()),
+				encode(node.getPredicate()), encode(node.getBody()));
+	}
+
+	@Override
+	public Integer visitBecomesElementOfSubstitutionNode(BecomesElementOfSubstitutionNode node, Void expected) {
+		return children(add(NodeKind.BECOMES_ELEMENT_OF_SUBSTITUTION, NONE, NONE, node),
+				list(node.getIdentifiers()), encode(node.getExpression()));
+	}
+
+	@Override
+	public Integer visitBecomesSuchThatSubstitutionNode(BecomesSuchThatSubstitutionNode node, Void expected) {
+		return children(add(NodeKind.BECOMES_SUCH_THAT_SUBSTITUTION, NONE, NONE, node),
+				list(node.getIdentifiers()), encode(node.getPredicate()));
+	}
+
+	@Override
+	public Integer visitSubstitutionIdentifierCallNode(OperationCallSubstitutionNode node, Void expected) {
+		int index = add(NodeKind.OPERATION_CALL_SUBSTITUTION, NONE, symbol(String.join(".", node.getNames())),
+				node);
+		refer(index, node.getOperationNode());
+		return children(index, list(node.getArguments()), list(node.getAssignedVariables()));
+	}
+
+	@Override
+	public Integer visitChoiceSubstitutionNode(ChoiceSubstitutionNode node, Void expected) {
+		int index = add(NodeKind.CHOICE_SUBSTITUTION, NONE, NONE, node);
+		int last = NONE;
+		for (Node child : node.getSubstitutions()) {
+			last = append(index, last, encode(child));
+		}
+		return index;
+	}
+
+	@Override
+	public Integer visitLTLPrefixOperatorNode(LTLPrefixOperatorNode node, Void expected) {
+		return children(add(NodeKind.LTL_PREFIX_OPERATOR, ordinal(node.getKind()), NONE, node),
+				encode(node.getArgument()));
+	}
+
+	@Override
+	public Integer visitLTLKeywordNode(LTLKeywordNode node, Void expected) {
+		return add(NodeKind.LTL_KEYWORD, ordinal(node.getKind()), NONE, node);
+	}
+
+	@Override
+	public Integer visitLTLInfixOperatorNode(LTLInfixOperatorNode node, Void expected) {
+		return children(add(NodeKind.LTL_INFIX_OPERATOR, ordinal(node.getKind()), NONE, node),
+				encode(node.getLeft()), encode(node.getRight()));
+	}
+
+	@Override
+	public Integer visitLTLBPredicateNode(LTLBPredicateNode node, Void expected) {
+		return children(add(NodeKind.LTL_B_PREDICATE, NONE, NONE, node), encode(node.getPredicate()));
+	}
+
+}
@@ -0,0 +1,396 @@
+package de.prob.parser.ast.compact;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.SymbolTable;
+import de.prob.parser.ast.types.BType;
+import de.prob.parser.ast.types.BoolType;
+import de.prob.parser.ast.types.CoupleType;
+import de.prob.parser.ast.types.DeferredSetElementType;
+import de.prob.parser.ast.types.EnumeratedSetElementType;
+import de.prob.parser.ast.types.IntegerType;
+import de.prob.parser.ast.types.RealType;
+import de.prob.parser.ast.types.RecordType;
+import de.prob.parser.ast.types.SetElementType;
+import de.prob.parser.ast.types.SetType;
+import de.prob.parser.ast.types.StringType;
+
+/**
+ * Writes the arrays and tables of a {@link CompactAST} in binary form. A
+ * machine is written as one block of bytes holding its tables and node arrays
+ * as variable-length integers, which is read from the stream at once and then
+ * decoded from memory.
+ */
+final class CompactASTSerializer {
+
+	private static final byte INTEGER = 'I';
+	private static final byte REAL = 'R';
+	private static final byte STRING = 'S';
+
+	private static final byte INTEGER_TYPE = 'Z';
+	private static final byte BOOL_TYPE = 'B';
+	private static final byte STRING_TYPE = 'S';
+	private static final byte REAL_TYPE = 'R';
+	private static final byte SET_TYPE = 'P';
+	private static final byte COUPLE_TYPE = 'C';
+	private static final byte RECORD_TYPE = 'Q';
+	private static final byte ENUMERATED_SET_TYPE = 'E';
+	private static final byte DEFERRED_SET_TYPE = 'D';
+	private static final byte SET_ELEMENT_TYPE = 'G';
+
+	private CompactASTSerializer() {
+	}
+
+	static void write(CompactAST ast, DataOutputStream out) throws IOException {
+		int size = ast.size;
+		VarIntWriter ints = new VarIntWriter(size);
+		ints.write(ast.symbols.length);
+		for (Symbol symbol : ast.symbols) {
+			ints.writeString(symbol.getName());
+		}
+		ints.write(ast.constants.length);
+		for (Object constant : ast.constants) {
+			writeConstant(ints, constant);
+		}
+		ints.write(ast.typeTable.length);
+		for (BType type : ast.typeTable) {
+			writeType(ints, type);
+		}
+		ints.write(size);
+		ints.writeBytes(ast.kinds, size);
+		for (int i = 0; i < size; i++) {
+			ints.write(ast.operators[i] + 1);
+		}
+		ints.writeOptional(ast.data, size);
+		ints.writeOptional(ast.references, size);
+		ints.writeChildren(ast.firstChildren, size);
+		ints.writeChildren(ast.nextSiblings, size);
+		ints.writeDeltas(ast.startLines, size);
+		ints.writeDeltas(ast.startColumns, size);
+		ints.writeDeltas(ast.endLines, size);
+		ints.writeDeltas(ast.endColumns, size);
+		ints.writeOptional(ast.types, size);
+		out.writeInt(ints.length);
+		out.write(ints.bytes, 0, ints.length);
+	}
+
+	static CompactAST read(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		VarIntReader ints = new VarIntReader(bytes);
+		try {
+			Symbol[] symbols = new Symbol[ints.read()];
+			for (int i = 0; i < symbols.length; i++) {
+				symbols[i] = SymbolTable.intern(ints.readString());
+			}
+			Object[] constants = new Object[ints.read()];
+			for (int i = 0; i < constants.length; i++) {
+				constants[i] = readConstant(ints);
+			}
+			BType[] typeTable = new BType[ints.read()];
+			for (int i = 0; i < typeTable.length; i++) {
+				typeTable[i] = readType(ints);
+			}
+			int size = ints.read();
+			byte[] kinds = ints.readBytes(size);
+			short[] operators = new short[size];
+			for (int i = 0; i < size; i++) {
+				operators[i] = (short) (ints.read() - 1);
+			}
+			int[] data = ints.readOptional(size);
+			int[] references = ints.readOptional(size);
+			int[] firstChildren = ints.readChildren(size);
+			int[] nextSiblings = ints.readChildren(size);
+			int[] startLines = ints.readDeltas(size);
+			int[] startColumns = ints.readDeltas(size);
+			int[] endLines = ints.readDeltas(size);
+			int[] endColumns = ints.readDeltas(size);
+			int[] types = ints.readOptional(size);
+			return new CompactAST(size, kinds, operators, data, references, firstChildren, nextSiblings, startLines,
+					startColumns, endLines, endColumns, types, symbols, constants, typeTable);
+		} catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new IOException("Truncated or corrupt serialized AST", e);
+		}
+	}
+
+	/**
+	 * Writes unsigned variable-length integers, seven bits per byte. Optional
+	 * values are shifted by one, so that {@link CompactAST#NONE} becomes 0;
+	 * children are stored relative to their parent, which precedes them in
+	 * pre-order; positions are stored as zig-zag encoded differences to the
+	 * previous node. Strings and byte arrays are written as their length
+	 * followed by their bytes.
+	 */
+	private static final class VarIntWriter {
+		private byte[] bytes;
+		private int length;
+
+		VarIntWriter(int size) {
+			this.bytes = new byte[Math.max(16, size * 8)];
+		}
+
+		private void ensureCapacity(int count) {
+			if (length + count > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+			}
+		}
+
+		void write(int value) {
+			ensureCapacity(5);
+			while ((value & ~0x7f) != 0) {
+				bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		void writeSigned(int value) {
+			write((value << 1) ^ (value >> 31));
+		}
+
+		void writeByte(byte value) {
+			ensureCapacity(1);
+			bytes[length++] = value;
+		}
+
+		void writeBytes(byte[] values, int count) {
+			ensureCapacity(count);
+			System.arraycopy(values, 0, bytes, length, count);
+			length += count;
+		}
+
+		void writeBytes(byte[] values) {
+			write(values.length);
+			writeBytes(values, values.length);
+		}
+
+		void writeString(String string) {
+			writeBytes(string.getBytes(StandardCharsets.UTF_8));
+		}
+
+		void writeOptional(int[] values, int size) {
+			for (int i = 0; i < size; i++) {
+				write(values[i] + 1);
+			}
+		}
+
+		void writeChildren(int[] values, int size) {
+			for (int i = 0; i < size; i++) {
+				write(values[i] == CompactAST.NONE ? 0 : values[i] - i);
+			}
+		}
+
+		void writeDeltas(int[] values, int size) {
+			int previous = 0;
+			for (int i = 0; i < size; i++) {
+				writeSigned(values[i] - previous);
+				previous = values[i];
+			}
+		}
+	}
+
+	private static final class VarIntReader {
+		private final byte[] bytes;
+		private int index;
+
+		VarIntReader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		int read() {
+			byte b = bytes[index++];
+			if (b >= 0) {
+				// most values fit into one byte
+				return b;
+			}
+			int value = b & 0x7f;
+			int shift = 7;
+			do {
+				b = bytes[index++];
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		int readSigned() {
+			int zigZag = read();
+			return (zigZag >>> 1) ^ -(zigZag & 1);
+		}
+
+		byte readByte() {
+			return bytes[index++];
+		}
+
+		byte[] readBytes(int count) {
+			byte[] values = Arrays.copyOfRange(bytes, index, index + count);
+			index += count;
+			return values;
+		}
+
+		byte[] readBytes() {
+			return readBytes(read());
+		}
+
+		String readString() {
+			int count = read();
+			String string = new String(bytes, index, count, StandardCharsets.UTF_8);
+			index += count;
+			return string;
+		}
+
+		int[] readOptional(int size) {
+			int[] values = new int[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = read() - 1;
+			}
+			return values;
+		}
+
+		int[] readChildren(int size) {
+			int[] values = new int[size];
+			for (int i = 0; i < size; i++) {
+				int offset = read();
+				values[i] = offset == 0 ? CompactAST.NONE : i + offset;
+			}
+			return values;
+		}
+
+		int[] readDeltas(int size) {
+			int[] values = new int[size];
+			int previous = 0;
+			for (int i = 0; i < size; i++) {
+				previous += readSigned();
+				values[i] = previous;
+			}
+			return values;
+		}
+	}
+
+	private static void writeConstant(VarIntWriter out, Object constant) {
+		if (constant instanceof BigInteger) {
+			out.writeByte(INTEGER);
+			out.writeBytes(((BigInteger) constant).toByteArray());
+		} else if (constant instanceof BigDecimal) {
+			BigDecimal real = (BigDecimal) constant;
+			out.writeByte(REAL);
+			out.writeSigned(real.scale());
+			out.writeBytes(real.unscaledValue().toByteArray());
+		} else {
+			out.writeByte(STRING);
+			out.writeString((String) constant);
+		}
+	}
+
+	private static Object readConstant(VarIntReader in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case INTEGER:
+			return new BigInteger(in.readBytes());
+		case REAL:
+			int scale = in.readSigned();
+			return new BigDecimal(new BigInteger(in.readBytes()), scale);
+		case STRING:
+			return in.readString();
+		default:
+			throw new IOException("Unknown constant tag " + tag);
+		}
+	}
+
+	private static void writeType(VarIntWriter out, BType type) throws IOException {
+		if (type instanceof IntegerType) {
+			out.writeByte(INTEGER_TYPE);
+		} else if (type instanceof BoolType) {
+			out.writeByte(BOOL_TYPE);
+		} else if (type instanceof StringType) {
+			out.writeByte(STRING_TYPE);
+		} else if (type instanceof RealType) {
+			out.writeByte(REAL_TYPE);
+		} else if (type instanceof SetType) {
+			out.writeByte(SET_TYPE);
+			writeType(out, ((SetType) type).getSubType());
+		} else if (type instanceof CoupleType) {
+			out.writeByte(COUPLE_TYPE);
+			writeType(out, ((CoupleType) type).getLeft());
+			writeType(out, ((CoupleType) type).getRight());
+		} else if (type instanceof RecordType) {
+			RecordType record = (RecordType) type;
+			out.writeByte(RECORD_TYPE);
+			out.write(record.getIdentifiers().size());
+			for (int i = 0; i < record.getIdentifiers().size(); i++) {
+				out.writeString(record.getIdentifiers().get(i));
+				writeType(out, record.getSubtypes().get(i));
+			}
+		} else if (type instanceof EnumeratedSetElementType) {
+			EnumeratedSetElementType enumSet = (EnumeratedSetElementType) type;
+			out.writeByte(ENUMERATED_SET_TYPE);
+			out.writeString(enumSet.getSetName());
+			out.write(enumSet.getElements().size());
+			for (String element : enumSet.getElements()) {
+				out.writeString(element);
+			}
+		} else if (type instanceof DeferredSetElementType) {
+			out.writeByte(DEFERRED_SET_TYPE);
+			out.writeString(((DeferredSetElementType) type).getSetName());
+		} else if (type instanceof SetElementType) {
+			out.writeByte(SET_ELEMENT_TYPE);
+			out.writeString(((SetElementType) type).getSetName());
+		} else {
+			throw new IOException("Cannot serialize type " + type);
+		}
+	}
+
+	private static BType readType(VarIntReader in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case INTEGER_TYPE:
+			return IntegerType.getInstance();
+		case BOOL_TYPE:
+			return BoolType.getInstance();
+		case STRING_TYPE:
+			return StringType.getInstance();
+		case REAL_TYPE:
+			return RealType.getInstance();
+		case SET_TYPE:
+			return new SetType(readType(in));
+		case COUPLE_TYPE:
+			BType left = readType(in);
+			return new CoupleType(left, readType(in));
+		case RECORD_TYPE: {
+			int count = in.read();
+			List<String> identifiers = new ArrayList<>(count);
+			List<BType> subtypes = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				identifiers.add(in.readString());
+				subtypes.add(readType(in));
+			}
+			return new RecordType(identifiers, subtypes);
+		}
+		case ENUMERATED_SET_TYPE: {
+			String name = in.readString();
+			int count = in.read();
+			List<String> elements = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				elements.add(in.readString());
+			}
+			return new EnumeratedSetElementType(name, elements);
+		}
+		case DEFERRED_SET_TYPE:
+			return new DeferredSetElementType(in.readString());
+		case SET_ELEMENT_TYPE:
+			return new SetElementType(in.readString());
+		default:
+			throw new IOException("Unknown type tag " + tag);
+		}
+	}
+
+}
@@ -0,0 +1,315 @@
+package de.prob.parser.ast.compact;
+
+import de.prob.parser.ast.nodes.NodeKind;
+
+/**
+ * Visits the nodes of a {@link CompactAST} with a {@link CompactASTCursor},
+ * the counterpart of the {@code AbstractVisitor} of the object AST. Every
+ * node kind has its own method, which is called with the cursor at the node
+ * and has to leave it there. By default, the children are visited and the
+ * result of the last child is returned. {@link CompactAST#LIST} and
+ * {@link CompactAST#ABSENT} nodes are passed to {@link #visitList}.
+ */
+public abstract class CompactASTVisitor<R, P> {
+
+	public R visit(CompactASTCursor cursor, P expected) {
+		NodeKind kind = cursor.getKind();
+		if (kind == null) {
+			return visitList(cursor, expected);
+		}
+		switch (kind) {
+		case EXPRESSION_OPERATOR:
+			return visitExpressionOperator(cursor, expected);
+		case IDENTIFIER_EXPRESSION:
+			return visitIdentifierExpression(cursor, expected);
+		case NUMBER:
+			return visitNumber(cursor, expected);
+		case REAL_NUMBER:
+			return visitRealNumber(cursor, expected);
+		case STRING:
+			return visitString(cursor, expected);
+		case SET_COMPREHENSION:
+			return visitSetComprehension(cursor, expected);
+		case QUANTIFIED_EXPRESSION:
+			return visitQuantifiedExpression(cursor, expected);
+		case LAMBDA:
+			return visitLambda(cursor, expected);
+		case LET_EXPRESSION:
+			return visitLetExpression(cursor, expected);
+		case IF_EXPRESSION:
+			return visitIfExpression(cursor, expected);
+		case RECORD:
+			return visitRecord(cursor, expected);
+		case STRUCT:
+			return visitStruct(cursor, expected);
+		case RECORD_FIELD_ACCESS:
+			return visitRecordFieldAccess(cursor, expected);
+		case CAST_PREDICATE_EXPRESSION:
+			return visitCastPredicateExpression(cursor, expected);
+		case IDENTIFIER_PREDICATE:
+			return visitIdentifierPredicate(cursor, expected);
+		case PREDICATE_OPERATOR:
+			return visitPredicateOperator(cursor, expected);
+		case PREDICATE_OPERATOR_WITH_EXPR_ARGS:
+			return visitPredicateOperatorWithExprArgs(cursor, expected);
+		case QUANTIFIED_PREDICATE:
+			return visitQuantifiedPredicate(cursor, expected);
+		case LET_PREDICATE:
+			return visitLetPredicate(cursor, expected);
+		case IF_PREDICATE:
+			return visitIfPredicate(cursor, expected);
+		case ANY_SUBSTITUTION:
+			return visitAnySubstitution(cursor, expected);
+		case ASSIGN_SUBSTITUTION:
+			return visitAssignSubstitution(cursor, expected);
+		case BECOMES_ELEMENT_OF_SUBSTITUTION:
+			return visitBecomesElementOfSubstitution(cursor, expected);
+		case BECOMES_SUCH_THAT_SUBSTITUTION:
+			return visitBecomesSuchThatSubstitution(cursor, expected);
+		case CHOICE_SUBSTITUTION:
+			return visitChoiceSubstitution(cursor, expected);
+		case CONDITION_SUBSTITUTION:
+			return visitConditionSubstitution(cursor, expected);
+		case IF_OR_SELECT_SUBSTITUTION:
+			return visitIfOrSelectSubstitution(cursor, expected);
+		case LET_SUBSTITUTION:
+			return visitLetSubstitution(cursor, expected);
+		case LIST_SUBSTITUTION:
+			return visitListSubstitution(cursor, expected);
+		case OPERATION_CALL_SUBSTITUTION:
+			return visitOperationCallSubstitution(cursor, expected);
+		case SKIP_SUBSTITUTION:
+			return visitSkipSubstitution(cursor, expected);
+		case VAR_SUBSTITUTION:
+			return visitVarSubstitution(cursor, expected);
+		case WHILE_SUBSTITUTION:
+			return visitWhileSubstitution(cursor, expected);
+		case LTL_PREFIX_OPERATOR:
+			return visitLTLPrefixOperator(cursor, expected);
+		case LTL_INFIX_OPERATOR:
+			return visitLTLInfixOperator(cursor, expected);
+		case LTL_KEYWORD:
+			return visitLTLKeyword(cursor, expected);
+		case LTL_B_PREDICATE:
+			return visitLTLBPredicate(cursor, expected);
+		case LTL_FORMULA:
+			return visitLTLFormula(cursor, expected);
+		case DECLARATION:
+			return visitDeclaration(cursor, expected);
+		case DEFINITION:
+			return visitDefinition(cursor, expected);
+		case OPERATION:
+			return visitOperation(cursor, expected);
+		case ENUMERATED_SET_DECLARATION:
+			return visitEnumeratedSetDeclaration(cursor, expected);
+		case MACHINE_REFERENCE:
+			return visitMachineReference(cursor, expected);
+		case OPERATION_REFERENCE:
+			return visitOperationReference(cursor, expected);
+		case MACHINE:
+			return visitMachine(cursor, expected);
+		default:
+			throw new AssertionError(kind);
+		}
+	}
+
+	public R visitChildren(CompactASTCursor cursor, P expected) {
+		R result = defaultResult();
+		if (cursor.gotoFirstChild()) {
+			do {
+				result = visit(cursor, expected);
+			} while (cursor.gotoNextSibling());
+			cursor.gotoParent();
+		}
+		return result;
+	}
+
+	protected R defaultResult() {
+		return null;
+	}
+
+	public R visitList(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitExpressionOperator(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitIdentifierExpression(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitNumber(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitRealNumber(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitString(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitSetComprehension(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitQuantifiedExpression(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLambda(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLetExpression(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitIfExpression(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitRecord(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitStruct(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitRecordFieldAccess(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitCastPredicateExpression(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitIdentifierPredicate(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitPredicateOperator(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitPredicateOperatorWithExprArgs(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitQuantifiedPredicate(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLetPredicate(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitIfPredicate(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitAnySubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitAssignSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitBecomesElementOfSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitBecomesSuchThatSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitChoiceSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitConditionSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitIfOrSelectSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLetSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitListSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitOperationCallSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitSkipSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitVarSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitWhileSubstitution(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLTLPrefixOperator(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLTLInfixOperator(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLTLKeyword(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLTLBPredicate(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitLTLFormula(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitDeclaration(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitDefinition(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitOperation(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitEnumeratedSetDeclaration(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitMachineReference(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitOperationReference(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+	public R visitMachine(CompactASTCursor cursor, P expected) {
+		return visitChildren(cursor, expected);
+	}
+
+}
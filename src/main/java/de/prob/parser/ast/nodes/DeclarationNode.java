@@ -1,30 +1,36 @@
 package de.prob.parser.ast.nodes;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.SymbolTable;
 
 public class DeclarationNode extends TypedNode {
 	public enum Kind {
 		VARIABLE, CONSTANT, ENUMERATED_SET, ENUMERATED_SET_ELEMENT, DEFERRED_SET, OP_OUTPUT_PARAMETER, OP_INPUT_PARAMETER, SUBSTITUION_IDENTIFIER
 	}
 
-	private final String name;
+	private final Symbol symbol;
 	private final Kind kind;
 	private final MachineNode surroundingMachineNode;
 
 	public DeclarationNode(SourceCodePosition sourceCodePosition, String name, Kind kind, MachineNode machineNode) {
 		super(sourceCodePosition);
-		this.name = name;
+		this.symbol = SymbolTable.intern(name);
 		this.kind = kind;
 		this.surroundingMachineNode = machineNode;
 	}
 
 	public String getName() {
-		return name;
+		return symbol.getName();
+	}
+
+	public Symbol getSymbol() {
+		return symbol;
 	}
 
 	@Override
 	public String toString() {
-		return name;
+		return symbol.getName();
 	}
 
 	public Kind getKind() {
@@ -40,4 +46,9 @@ public class DeclarationNode extends TypedNode {
 		// no child
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.DECLARATION;
+	}
+
 }
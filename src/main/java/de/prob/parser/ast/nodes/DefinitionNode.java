@@ -31,4 +31,9 @@ public class DefinitionNode extends TypedNode {
 		return this.body;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.DEFINITION;
+	}
+
 }
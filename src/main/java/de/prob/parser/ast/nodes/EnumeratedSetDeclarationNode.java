@@ -35,4 +35,9 @@ public class EnumeratedSetDeclarationNode extends Node {
 		elements.remove(child);
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.ENUMERATED_SET_DECLARATION;
+	}
+
 }
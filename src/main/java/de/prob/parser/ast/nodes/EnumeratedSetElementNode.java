@@ -31,4 +31,10 @@ public class EnumeratedSetElementNode extends ExprNode {
     public DeclarationNode getDeclarationNode() {
         return declarationNode;
     }
+
+    @Override
+    public NodeKind getNodeKind() {
+        return NodeKind.ENUMERATED_SET_ELEMENT;
+    }
+
 }
@@ -48,4 +48,9 @@ public class FormulaNode extends Node {
 		return this.warnings;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.FORMULA;
+	}
+
 }
@@ -1,12 +1,15 @@
 package de.prob.parser.ast.nodes;
 
+import de.prob.parser.ast.OperatorIndex;
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.ltl.LTLFormula;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 import de.prob.parser.ast.nodes.substitution.SubstitutionNode;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import files.BParser.FormulaContext;
@@ -35,6 +38,9 @@ public class MachineNode extends Node {
 
 	private List<LTLFormula> ltlFormulas = new ArrayList<>();
 
+	private OperatorIndex operatorIndex;
+	private List<File> definitionFiles = Collections.emptyList();
+
 	public String getName() {
 		return this.machineName;
 	}
@@ -52,6 +58,10 @@ public class MachineNode extends Node {
 		return includedRenamedVariables;
 	}
 
+	public void setIncludedRenamedVariables(List<DeclarationNode> includedRenamedVariables) {
+		this.includedRenamedVariables = includedRenamedVariables;
+	}
+
 	public MachineNode(SourceCodePosition sourceCodePosition) {
 		super(sourceCodePosition);
 	}
@@ -202,4 +212,33 @@ public class MachineNode extends Node {
 		this.definitions.add(definitionNode);
 	}
 
+	/**
+	 * The index of the operators of this machine, or null if the machine has been
+	 * created without one, see {@link OperatorIndex#of(MachineNode)}.
+	 */
+	public OperatorIndex getOperatorIndex() {
+		return operatorIndex;
+	}
+
+	public void setOperatorIndex(OperatorIndex operatorIndex) {
+		this.operatorIndex = operatorIndex;
+	}
+
+	/**
+	 * The definition files included by this machine, directly or by other
+	 * definition files.
+	 */
+	public List<File> getDefinitionFiles() {
+		return definitionFiles;
+	}
+
+	public void setDefinitionFiles(List<File> definitionFiles) {
+		this.definitionFiles = Collections.unmodifiableList(definitionFiles);
+	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.MACHINE;
+	}
+
 }
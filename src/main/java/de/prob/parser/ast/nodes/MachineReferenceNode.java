@@ -48,4 +48,10 @@ public class MachineReferenceNode extends Node {
 	public Kind getType() {
 		return this.kind;
 	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.MACHINE_REFERENCE;
+	}
+
 }
@@ -21,6 +21,10 @@ public abstract class Node {
 		this.parent = newParent;
 	}
 
+	/**
+	 * The node this node is a child of. A node shared by several parents, see
+	 * {@link de.prob.parser.ast.NodeInterner}, only knows the last of them.
+	 */
 	public Node getParent() {
 		return this.parent;
 	}
@@ -29,4 +33,10 @@ public abstract class Node {
 
 	}
 
+	/**
+	 * The concrete class of this node, used by the visitors to dispatch with a
+	 * switch instead of a chain of instanceof checks.
+	 */
+	public abstract NodeKind getNodeKind();
+
 }
@@ -0,0 +1,33 @@
+package de.prob.parser.ast.nodes;
+
+/**
+ * The concrete node classes of the AST, one constant per class, see
+ * {@link Node#getNodeKind()}. Used by the visitors for switch-based dispatch
+ * and where nodes are not represented by their objects, e.g. in the compact
+ * AST.
+ */
+public enum NodeKind {
+	// expressions
+	EXPRESSION_OPERATOR, IDENTIFIER_EXPRESSION, NUMBER, REAL_NUMBER, STRING, SET_COMPREHENSION,
+	QUANTIFIED_EXPRESSION, LAMBDA, LET_EXPRESSION, IF_EXPRESSION, RECORD, STRUCT, RECORD_FIELD_ACCESS,
+	CAST_PREDICATE_EXPRESSION, ENUMERATED_SET_ELEMENT,
+
+	// predicates
+	IDENTIFIER_PREDICATE, PREDICATE_OPERATOR, PREDICATE_OPERATOR_WITH_EXPR_ARGS, QUANTIFIED_PREDICATE,
+	LET_PREDICATE, IF_PREDICATE,
+
+	// substitutions
+	ANY_SUBSTITUTION, ASSIGN_SUBSTITUTION, BECOMES_ELEMENT_OF_SUBSTITUTION, BECOMES_SUCH_THAT_SUBSTITUTION,
+	CHOICE_SUBSTITUTION, CONDITION_SUBSTITUTION, IF_OR_SELECT_SUBSTITUTION, LET_SUBSTITUTION, LIST_SUBSTITUTION,
+	OPERATION_CALL_SUBSTITUTION, SKIP_SUBSTITUTION, VAR_SUBSTITUTION, WHILE_SUBSTITUTION,
+
+	// LTL
+	LTL_PREFIX_OPERATOR, LTL_INFIX_OPERATOR, LTL_KEYWORD, LTL_B_PREDICATE, LTL_FORMULA,
+
+	// machine structure
+	DECLARATION, DEFINITION, OPERATION, ENUMERATED_SET_DECLARATION, MACHINE_REFERENCE, OPERATION_REFERENCE,
+	FORMULA, MACHINE,
+
+	// rules machines
+	RULE_OPERATION, RULES_MACHINE
+}
@@ -1,5 +1,42 @@
 package de.prob.parser.ast.nodes;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
+import de.prob.parser.ast.nodes.expression.IfExpressionNode;
+import de.prob.parser.ast.nodes.expression.LambdaNode;
+import de.prob.parser.ast.nodes.expression.LetExpressionNode;
+import de.prob.parser.ast.nodes.expression.QuantifiedExpressionNode;
+import de.prob.parser.ast.nodes.expression.RecordFieldAccessNode;
+import de.prob.parser.ast.nodes.expression.RecordNode;
+import de.prob.parser.ast.nodes.expression.SetComprehensionNode;
+import de.prob.parser.ast.nodes.expression.StructNode;
+import de.prob.parser.ast.nodes.ltl.LTLBPredicateNode;
+import de.prob.parser.ast.nodes.ltl.LTLFormula;
+import de.prob.parser.ast.nodes.ltl.LTLInfixOperatorNode;
+import de.prob.parser.ast.nodes.ltl.LTLPrefixOperatorNode;
+import de.prob.parser.ast.nodes.predicate.CastPredicateExpressionNode;
+import de.prob.parser.ast.nodes.predicate.IfPredicateNode;
+import de.prob.parser.ast.nodes.predicate.LetPredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.predicate.QuantifiedPredicateNode;
+import de.prob.parser.ast.nodes.rules.RulesMachineNode;
+import de.prob.parser.ast.nodes.substitution.AnySubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.AssignSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesElementOfSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.BecomesSuchThatSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ChoiceSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ConditionSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.IfOrSelectSubstitutionsNode;
+import de.prob.parser.ast.nodes.substitution.LetSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ListSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.OperationCallSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.VarSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.WhileSubstitutionNode;
+
 public class NodeUtil {
     private NodeUtil() {
     }
@@ -11,4 +48,212 @@ public class NodeUtil {
             && node1.getClass() == node2.getClass());
     }
 
+    /**
+     * Returns the child nodes of a node in source order: the subexpressions,
+     * subpredicates and substitutions as well as the declarations a node
+     * introduces, but not the declarations an identifier refers to. For a
+     * machine, the contents of all its clauses are returned.
+     */
+    public static List<Node> getChildren(Node node) {
+        List<Node> children = new ArrayList<>();
+        switch (node.getNodeKind()) {
+        case EXPRESSION_OPERATOR:
+            addAll(children, ((ExpressionOperatorNode) node).getExpressionNodes());
+            break;
+        case SET_COMPREHENSION:
+            SetComprehensionNode comprehension = (SetComprehensionNode) node;
+            addAll(children, comprehension.getDeclarationList());
+            add(children, comprehension.getPredicateNode());
+            break;
+        case QUANTIFIED_EXPRESSION:
+            QuantifiedExpressionNode quantifiedExpression = (QuantifiedExpressionNode) node;
+            addAll(children, quantifiedExpression.getDeclarationList());
+            add(children, quantifiedExpression.getPredicateNode());
+            add(children, quantifiedExpression.getExpressionNode());
+            break;
+        case LAMBDA:
+            LambdaNode lambda = (LambdaNode) node;
+            addAll(children, lambda.getDeclarations());
+            add(children, lambda.getPredicate());
+            add(children, lambda.getExpression());
+            break;
+        case LET_EXPRESSION:
+            LetExpressionNode letExpression = (LetExpressionNode) node;
+            addAll(children, letExpression.getLocalIdentifiers());
+            add(children, letExpression.getPredicate());
+            add(children, letExpression.getExpression());
+            break;
+        case IF_EXPRESSION:
+            IfExpressionNode ifExpression = (IfExpressionNode) node;
+            add(children, ifExpression.getCondition());
+            add(children, ifExpression.getThenExpression());
+            add(children, ifExpression.getElseExpression());
+            break;
+        case RECORD:
+            addAll(children, ((RecordNode) node).getDeclarations());
+            addAll(children, ((RecordNode) node).getExpressions());
+            break;
+        case STRUCT:
+            addAll(children, ((StructNode) node).getDeclarations());
+            addAll(children, ((StructNode) node).getExpressions());
+            break;
+        case RECORD_FIELD_ACCESS:
+            add(children, ((RecordFieldAccessNode) node).getRecord());
+            add(children, ((RecordFieldAccessNode) node).getIdentifier());
+            break;
+        case CAST_PREDICATE_EXPRESSION:
+            add(children, ((CastPredicateExpressionNode) node).getPredicate());
+            break;
+        case PREDICATE_OPERATOR:
+            addAll(children, ((PredicateOperatorNode) node).getPredicateArguments());
+            break;
+        case PREDICATE_OPERATOR_WITH_EXPR_ARGS:
+            addAll(children, ((PredicateOperatorWithExprArgsNode) node).getExpressionNodes());
+            break;
+        case QUANTIFIED_PREDICATE:
+            QuantifiedPredicateNode quantifiedPredicate = (QuantifiedPredicateNode) node;
+            addAll(children, quantifiedPredicate.getDeclarationList());
+            add(children, quantifiedPredicate.getPredicateNode());
+            break;
+        case LET_PREDICATE:
+            LetPredicateNode letPredicate = (LetPredicateNode) node;
+            addAll(children, letPredicate.getLocalIdentifiers());
+            add(children, letPredicate.getWherePredicate());
+            add(children, letPredicate.getPredicate());
+            break;
+        case IF_PREDICATE:
+            IfPredicateNode ifPredicate = (IfPredicateNode) node;
+            add(children, ifPredicate.getCondition());
+            add(children, ifPredicate.getThenPredicate());
+            add(children, ifPredicate.getElsePredicate());
+            break;
+        case ANY_SUBSTITUTION:
+            AnySubstitutionNode any = (AnySubstitutionNode) node;
+            addAll(children, any.getParameters());
+            add(children, any.getWherePredicate());
+            add(children, any.getThenSubstitution());
+            break;
+        case ASSIGN_SUBSTITUTION:
+            addAll(children, ((AssignSubstitutionNode) node).getLeftSide());
+            addAll(children, ((AssignSubstitutionNode) node).getRightSide());
+            break;
+        case BECOMES_ELEMENT_OF_SUBSTITUTION:
+            addAll(children, ((BecomesElementOfSubstitutionNode) node).getIdentifiers());
+            add(children, ((BecomesElementOfSubstitutionNode) node).getExpression());
+            break;
+        case BECOMES_SUCH_THAT_SUBSTITUTION:
+            addAll(children, ((BecomesSuchThatSubstitutionNode) node).getIdentifiers());
+            add(children, ((BecomesSuchThatSubstitutionNode) node).getPredicate());
+            break;
+        case CHOICE_SUBSTITUTION:
+            addAll(children, ((ChoiceSubstitutionNode) node).getSubstitutions());
+            break;
+        case CONDITION_SUBSTITUTION:
+            add(children, ((ConditionSubstitutionNode) node).getCondition());
+            add(children, ((ConditionSubstitutionNode) node).getSubstitution());
+            break;
+        case IF_OR_SELECT_SUBSTITUTION:
+            IfOrSelectSubstitutionsNode ifOrSelect = (IfOrSelectSubstitutionsNode) node;
+            for (int i = 0; i < ifOrSelect.getConditions().size(); i++) {
+                add(children, ifOrSelect.getConditions().get(i));
+                add(children, ifOrSelect.getSubstitutions().get(i));
+            }
+            add(children, ifOrSelect.getElseSubstitution());
+            break;
+        case LET_SUBSTITUTION:
+            LetSubstitutionNode letSubstitution = (LetSubstitutionNode) node;
+            addAll(children, letSubstitution.getLocalIdentifiers());
+            add(children, letSubstitution.getPredicate());
+            add(children, letSubstitution.getBody());
+            break;
+        case LIST_SUBSTITUTION:
+            addAll(children, ((ListSubstitutionNode) node).getSubstitutions());
+            break;
+        case OPERATION_CALL_SUBSTITUTION:
+            addAll(children, ((OperationCallSubstitutionNode) node).getAssignedVariables());
+            addAll(children, ((OperationCallSubstitutionNode) node).getArguments());
+            break;
+        case VAR_SUBSTITUTION:
+            addAll(children, ((VarSubstitutionNode) node).getLocalIdentifiers());
+            add(children, ((VarSubstitutionNode) node).getBody());
+            break;
+        case WHILE_SUBSTITUTION:
+            WhileSubstitutionNode whileNode = (WhileSubstitutionNode) node;
+            add(children, whileNode.getCondition());
+            add(children, whileNode.getBody());
+            add(children, whileNode.getInvariant());
+            add(children, whileNode.getVariant());
+            break;
+        case LTL_PREFIX_OPERATOR:
+            add(children, ((LTLPrefixOperatorNode) node).getArgument());
+            break;
+        case LTL_INFIX_OPERATOR:
+            add(children, ((LTLInfixOperatorNode) node).getLeft());
+            add(children, ((LTLInfixOperatorNode) node).getRight());
+            break;
+        case LTL_B_PREDICATE:
+            add(children, ((LTLBPredicateNode) node).getPredicate());
+            break;
+        case LTL_FORMULA:
+            addAll(children, ((LTLFormula) node).getImplicitDeclarations());
+            add(children, ((LTLFormula) node).getLTLNode());
+            break;
+        case DEFINITION:
+            addAll(children, ((DefinitionNode) node).getParams());
+            add(children, ((DefinitionNode) node).getBody());
+            break;
+        case OPERATION:
+            OperationNode operation = (OperationNode) node;
+            addAll(children, operation.getOutputParams());
+            addAll(children, operation.getParams());
+            add(children, operation.getSubstitution());
+            break;
+        case ENUMERATED_SET_DECLARATION:
+            add(children, ((EnumeratedSetDeclarationNode) node).getSetDeclarationNode());
+            addAll(children, ((EnumeratedSetDeclarationNode) node).getElements());
+            break;
+        case FORMULA:
+            addAll(children, ((FormulaNode) node).getImplicitDeclarations());
+            add(children, ((FormulaNode) node).getFormula());
+            break;
+        case MACHINE:
+            MachineNode machine = (MachineNode) node;
+            addAll(children, machine.getMachineReferences());
+            addAll(children, machine.getOperationReferences());
+            addAll(children, machine.getDeferredSets());
+            addAll(children, machine.getEnumeratedSets());
+            addAll(children, machine.getConstants());
+            addAll(children, machine.getVariables());
+            add(children, machine.getProperties());
+            add(children, machine.getInvariant());
+            addAll(children, machine.getAssertions());
+            add(children, machine.getInitialisation());
+            addAll(children, machine.getOperations());
+            addAll(children, machine.getValues());
+            addAll(children, machine.getDefinitions());
+            addAll(children, machine.getLTLFormulas());
+            break;
+        case RULES_MACHINE:
+            addAll(children, ((RulesMachineNode) node).getOperations());
+            break;
+        default:
+            return Collections.emptyList();
+        }
+        return children;
+    }
+
+    private static void add(List<Node> children, Node child) {
+        if (child != null) {
+            children.add(child);
+        }
+    }
+
+    private static void addAll(List<Node> children, List<? extends Node> nodes) {
+        if (nodes != null) {
+            for (Node node : nodes) {
+                add(children, node);
+            }
+        }
+    }
+
 }
@@ -48,4 +48,10 @@ public class OperationNode extends Node {
 	public List<DeclarationNode> getParams() {
 		return params;
 	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.OPERATION;
+	}
+
 }
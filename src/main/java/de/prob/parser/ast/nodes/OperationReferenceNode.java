@@ -39,4 +39,9 @@ public class OperationReferenceNode extends Node {
 		return this.machineNode;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.OPERATION_REFERENCE;
+	}
+
 }
@@ -32,6 +32,18 @@ public abstract class TypedNode extends Node implements Observer {
 		}
 	}
 
+	/**
+	 * Sets a type without untyped parts without observing it. Unifying such a
+	 * type can only replace it by an equal one, so the node keeps a valid type
+	 * and does not have to be registered with a type shared by many nodes.
+	 */
+	public void setCompleteType(BType type) {
+		if (this.type instanceof Observable) {
+			((Observable) this.type).deleteObserver(this);
+		}
+		this.type = type;
+	}
+
 	@Override
 	public void update(Observable o, Object arg) {
 		o.deleteObserver(this);
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.OperatorNode;
 
 import java.util.ArrayList;
@@ -113,4 +114,9 @@ public class ExpressionOperatorNode extends ExprNode
 		this.expressionNodes = list;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.EXPRESSION_OPERATOR;
+	}
+
 }
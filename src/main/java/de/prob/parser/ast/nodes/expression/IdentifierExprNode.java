@@ -1,17 +1,20 @@
 package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.SymbolTable;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 
 public class IdentifierExprNode extends ExprNode {
 
-	final String name;
+	final Symbol symbol;
 	private DeclarationNode declarationNode;
 	private boolean isPrimed;
 
 	public IdentifierExprNode(SourceCodePosition sourceCodePosition, String name, boolean isPrimed) {
 		super(sourceCodePosition);
-		this.name = name;
+		this.symbol = SymbolTable.intern(name);
 		this.isPrimed = isPrimed;
 	}
 
@@ -24,7 +27,11 @@ public class IdentifierExprNode extends ExprNode {
 	}
 
 	public String getName() {
-		return this.name;
+		return this.symbol.getName();
+	}
+
+	public Symbol getSymbol() {
+		return this.symbol;
 	}
 
 	public boolean isPrimed() {
@@ -33,7 +40,12 @@ public class IdentifierExprNode extends ExprNode {
 
 	@Override
 	public String toString() {
-		return name;
+		return symbol.getName();
+	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.IDENTIFIER_EXPRESSION;
 	}
 
 }
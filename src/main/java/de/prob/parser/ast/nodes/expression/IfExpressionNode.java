@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
 public class IfExpressionNode extends ExprNode {
@@ -42,4 +43,9 @@ public class IfExpressionNode extends ExprNode {
 		return "IF " + condition + " THEN " + thenExpr + " ELSE " + elseExpr + " END";
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.IF_EXPRESSION;
+	}
+
 }
@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
 import java.util.List;
@@ -44,4 +45,9 @@ public class LetExpressionNode extends ExprNode {
 		return "LET " + localVariables + " BE " + predicate + " IN " + expression + " END";
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.LET_EXPRESSION;
+	}
+
 }
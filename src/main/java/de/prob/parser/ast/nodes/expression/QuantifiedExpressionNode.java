@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
 import java.util.List;
@@ -36,4 +37,9 @@ public class QuantifiedExpressionNode extends SetComprehensionNode {
 		return operator;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.QUANTIFIED_EXPRESSION;
+	}
+
 }
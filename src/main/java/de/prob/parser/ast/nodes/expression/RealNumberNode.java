@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 import java.math.BigDecimal;
 
@@ -22,4 +23,9 @@ public class RealNumberNode extends ExprNode {
 		return String.valueOf(value);
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.REAL_NUMBER;
+	}
+
 }
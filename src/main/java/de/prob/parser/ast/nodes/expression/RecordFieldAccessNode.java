@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 
 /**
  * Created by fabian on 30.05.19.
@@ -36,4 +37,10 @@ public class RecordFieldAccessNode extends ExprNode {
         sb.append(")");
         return sb.toString();
     }
+
+    @Override
+    public NodeKind getNodeKind() {
+        return NodeKind.RECORD_FIELD_ACCESS;
+    }
+
 }
@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
 import java.util.List;
@@ -43,4 +44,10 @@ public class SetComprehensionNode extends ExprNode {
 		sb.append(")");
 		return sb.toString();
 	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.SET_COMPREHENSION;
+	}
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.expression;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 /**
  * Created by fabian on 16.05.19.
@@ -23,4 +24,9 @@ public class StringNode extends ExprNode {
         return value;
     }
 
+    @Override
+    public NodeKind getNodeKind() {
+        return NodeKind.STRING;
+    }
+
 }
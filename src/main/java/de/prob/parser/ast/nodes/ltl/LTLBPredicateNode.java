@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.ltl;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
 public class LTLBPredicateNode extends LTLNode {
@@ -26,4 +27,9 @@ public class LTLBPredicateNode extends LTLNode {
 		return this.predicate.toString();
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.LTL_B_PREDICATE;
+	}
+
 }
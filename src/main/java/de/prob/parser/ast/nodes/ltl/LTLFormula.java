@@ -5,6 +5,7 @@ import java.util.List;
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
 import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
 
 public class LTLFormula extends Node {
 
@@ -40,4 +41,9 @@ public class LTLFormula extends Node {
 		this.name = name;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.LTL_FORMULA;
+	}
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.ltl;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 public class LTLInfixOperatorNode extends LTLNode {
 
@@ -45,4 +46,10 @@ public class LTLInfixOperatorNode extends LTLNode {
 	public String toString() {
 		return this.kind + "(" + this.left + "," + this.right + ")";
 	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.LTL_INFIX_OPERATOR;
+	}
+
 }
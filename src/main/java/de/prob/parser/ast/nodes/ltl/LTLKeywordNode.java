@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.ltl;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 public class LTLKeywordNode extends LTLNode {
 
@@ -23,4 +24,9 @@ public class LTLKeywordNode extends LTLNode {
 		return this.kind.toString();
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.LTL_KEYWORD;
+	}
+
 }
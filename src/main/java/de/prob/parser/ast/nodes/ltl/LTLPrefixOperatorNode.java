@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.ltl;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 public class LTLPrefixOperatorNode extends LTLNode {
 
@@ -35,4 +36,9 @@ public class LTLPrefixOperatorNode extends LTLNode {
 		return this.kind + "(" + this.argument + ")";
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.LTL_PREFIX_OPERATOR;
+	}
+
 }
@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.predicate;
 
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.expression.ExprNode;
 
 public class CastPredicateExpressionNode extends ExprNode {
@@ -30,4 +31,9 @@ public class CastPredicateExpressionNode extends ExprNode {
 		this.predicate = arg;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.CAST_PREDICATE_EXPRESSION;
+	}
+
 }
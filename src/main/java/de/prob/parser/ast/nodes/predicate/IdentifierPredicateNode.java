@@ -1,16 +1,19 @@
 package de.prob.parser.ast.nodes.predicate;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.SymbolTable;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 
 public class IdentifierPredicateNode extends PredicateNode {
 
-	private final String name;
+	private final Symbol symbol;
 	private DeclarationNode declarationNode;
 
 	public IdentifierPredicateNode(SourceCodePosition sourceCodePosition, String name) {
 		super(sourceCodePosition);
-		this.name = name;
+		this.symbol = SymbolTable.intern(name);
 	}
 
 	public void setDeclarationNode(DeclarationNode declarationNode) {
@@ -22,11 +25,21 @@ public class IdentifierPredicateNode extends PredicateNode {
 	}
 
 	public String getName() {
-		return this.name;
+		return this.symbol.getName();
+	}
+
+	public Symbol getSymbol() {
+		return this.symbol;
 	}
 
 	@Override
 	public String toString() {
-		return name;
+		return symbol.getName();
+	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.IDENTIFIER_PREDICATE;
 	}
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.predicate;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 public class IfPredicateNode extends PredicateNode {
 
@@ -44,4 +45,9 @@ public class IfPredicateNode extends PredicateNode {
 		return sb.toString();
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.IF_PREDICATE;
+	}
+
 }
@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.predicate;
 
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 
 import java.util.List;
 
@@ -43,4 +44,9 @@ public class LetPredicateNode extends PredicateNode {
 		return "LET " + localVariables + " BE " + wherePredicate + " IN " + predicate + " END";
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.LET_PREDICATE;
+	}
+
 }
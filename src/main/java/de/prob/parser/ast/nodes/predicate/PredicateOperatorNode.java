@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.predicate;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.OperatorNode;
 
 import java.util.Iterator;
@@ -59,4 +60,9 @@ public class PredicateOperatorNode extends PredicateNode
 		this.predicateArguments = list;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.PREDICATE_OPERATOR;
+	}
+
 }
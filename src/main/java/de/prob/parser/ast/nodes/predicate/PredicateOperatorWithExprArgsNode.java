@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.predicate;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.OperatorNode;
 import de.prob.parser.ast.nodes.expression.ExprNode;
 
@@ -59,4 +60,9 @@ public class PredicateOperatorWithExprArgsNode extends PredicateNode
 		this.expressionNodes = argumentList;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.PREDICATE_OPERATOR_WITH_EXPR_ARGS;
+	}
+
 }
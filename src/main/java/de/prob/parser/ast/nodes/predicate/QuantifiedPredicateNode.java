@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.predicate;
 
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -57,4 +58,9 @@ public class QuantifiedPredicateNode extends PredicateNode {
 		this.predicateNode = pred;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.QUANTIFIED_PREDICATE;
+	}
+
 }
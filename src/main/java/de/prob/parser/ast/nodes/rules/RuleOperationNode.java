@@ -0,0 +1,167 @@
+package de.prob.parser.ast.nodes.rules;
+
+import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A RULE, COMPUTATION or FUNCTION of a rules machine with its attributes.
+ * Formulas are kept as their source text.
+ */
+public class RuleOperationNode extends Node {
+
+	public enum Kind {
+		RULE, COMPUTATION, FUNCTION
+	}
+
+	private final Kind kind;
+	private final String name;
+	private final List<String> parameters;
+	private final List<String> returnValues;
+	private final String body;
+
+	private final List<String> dependsOnRules = new ArrayList<>();
+	private final List<String> dependsOnComputations = new ArrayList<>();
+	private int errorTypes = 1;
+	private String ruleId;
+	private String classification;
+	private final List<String> tags = new ArrayList<>();
+	private String precondition;
+	private String activation;
+
+	private final Set<String> referencedRules = new LinkedHashSet<>();
+	private final Set<String> definedVariables = new LinkedHashSet<>();
+
+	public RuleOperationNode(SourceCodePosition sourceCodePosition, Kind kind, String name, List<String> parameters,
+			List<String> returnValues, String body) {
+		super(sourceCodePosition);
+		this.kind = kind;
+		this.name = name;
+		this.parameters = parameters;
+		this.returnValues = returnValues;
+		this.body = body;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getParameters() {
+		return parameters;
+	}
+
+	public List<String> getReturnValues() {
+		return returnValues;
+	}
+
+	public String getBody() {
+		return body;
+	}
+
+	public List<String> getDependsOnRules() {
+		return dependsOnRules;
+	}
+
+	public void addDependsOnRules(List<String> rules) {
+		this.dependsOnRules.addAll(rules);
+	}
+
+	public List<String> getDependsOnComputations() {
+		return dependsOnComputations;
+	}
+
+	public void addDependsOnComputations(List<String> computations) {
+		this.dependsOnComputations.addAll(computations);
+	}
+
+	public int getErrorTypes() {
+		return errorTypes;
+	}
+
+	public void setErrorTypes(int errorTypes) {
+		this.errorTypes = errorTypes;
+	}
+
+	public String getRuleId() {
+		return ruleId;
+	}
+
+	public void setRuleId(String ruleId) {
+		this.ruleId = ruleId;
+	}
+
+	public String getClassification() {
+		return classification;
+	}
+
+	public void setClassification(String classification) {
+		this.classification = classification;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+	public void addTags(List<String> tags) {
+		this.tags.addAll(tags);
+	}
+
+	public String getPrecondition() {
+		return precondition;
+	}
+
+	public void setPrecondition(String precondition) {
+		this.precondition = precondition;
+	}
+
+	public String getActivation() {
+		return activation;
+	}
+
+	public void setActivation(String activation) {
+		this.activation = activation;
+	}
+
+	/**
+	 * The rules whose results are used in the attributes or the body, e.g. by
+	 * SUCCEEDED_RULE(rule).
+	 */
+	public Set<String> getReferencedRules() {
+		return referencedRules;
+	}
+
+	public void addReferencedRule(String rule) {
+		this.referencedRules.add(rule);
+	}
+
+	/**
+	 * The variables defined by the DEFINE substitutions of a computation.
+	 */
+	public Set<String> getDefinedVariables() {
+		return definedVariables;
+	}
+
+	public void addDefinedVariable(String variable) {
+		this.definedVariables.add(variable);
+	}
+
+	@Override
+	public String toString() {
+		return kind + " " + name;
+	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.RULE_OPERATION;
+	}
+
+}
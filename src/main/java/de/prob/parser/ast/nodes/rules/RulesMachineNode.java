@@ -0,0 +1,97 @@
+package de.prob.parser.ast.nodes.rules;
+
+import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class RulesMachineNode extends Node {
+
+	private String name;
+	private boolean rulesMachine;
+	private final Map<String, RuleOperationNode> operations = new LinkedHashMap<>();
+	private final List<String> classicalOperations = new ArrayList<>();
+
+	public RulesMachineNode(SourceCodePosition sourceCodePosition) {
+		super(sourceCodePosition);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * True for a RULES_MACHINE, false for a MACHINE parsed with the rules
+	 * grammar.
+	 */
+	public boolean isRulesMachine() {
+		return rulesMachine;
+	}
+
+	public void setRulesMachine(boolean rulesMachine) {
+		this.rulesMachine = rulesMachine;
+	}
+
+	public void addOperation(RuleOperationNode operation) {
+		if (operations.putIfAbsent(operation.getName(), operation) != null) {
+			throw new RuntimeException("Duplicate operation: " + operation.getName());
+		}
+		operation.setParent(this);
+	}
+
+	public List<RuleOperationNode> getOperations() {
+		return new ArrayList<>(operations.values());
+	}
+
+	public RuleOperationNode getOperation(String name) {
+		return operations.get(name);
+	}
+
+	public List<RuleOperationNode> getRules() {
+		return getOperations(RuleOperationNode.Kind.RULE);
+	}
+
+	public List<RuleOperationNode> getComputations() {
+		return getOperations(RuleOperationNode.Kind.COMPUTATION);
+	}
+
+	public List<RuleOperationNode> getFunctions() {
+		return getOperations(RuleOperationNode.Kind.FUNCTION);
+	}
+
+	private List<RuleOperationNode> getOperations(RuleOperationNode.Kind kind) {
+		return operations.values().stream().filter(operation -> operation.getKind() == kind)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * The names of the ordinary B operations of the machine.
+	 */
+	public List<String> getClassicalOperations() {
+		return classicalOperations;
+	}
+
+	public void addClassicalOperation(String name) {
+		this.classicalOperations.add(name);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.RULES_MACHINE;
+	}
+
+}
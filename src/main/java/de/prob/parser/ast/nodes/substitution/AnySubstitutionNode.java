@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
 import java.util.List;
@@ -48,4 +49,9 @@ public class AnySubstitutionNode extends SubstitutionNode {
 		return "ANY " + parameters + " WHERE " + wherePredicate + " THEN " + thenSubstitution + " END";
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.ANY_SUBSTITUTION;
+	}
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.expression.ExprNode;
 
 import java.util.List;
@@ -53,4 +54,9 @@ public class AssignSubstitutionNode extends SubstitutionNode {
 		return sb.toString();
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.ASSIGN_SUBSTITUTION;
+	}
+
 }
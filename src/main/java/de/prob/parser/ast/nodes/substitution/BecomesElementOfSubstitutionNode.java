@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.expression.ExprNode;
 import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
 
@@ -37,4 +38,9 @@ public class BecomesElementOfSubstitutionNode extends SubstitutionNode {
 		return identifiers.stream().map(Object::toString).collect(Collectors.joining(",")) + " :( " + expression + ")";
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.BECOMES_ELEMENT_OF_SUBSTITUTION;
+	}
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
@@ -37,4 +38,9 @@ public class BecomesSuchThatSubstitutionNode extends SubstitutionNode {
 		return identifiers.stream().map(Object::toString).collect(Collectors.joining(",")) + " :( " + predicate + ")";
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.BECOMES_SUCH_THAT_SUBSTITUTION;
+	}
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 import java.util.List;
 
@@ -20,4 +21,10 @@ public class ChoiceSubstitutionNode extends SubstitutionNode {
     public List<SubstitutionNode> getSubstitutions() {
         return substitutions;
     }
+
+    @Override
+    public NodeKind getNodeKind() {
+        return NodeKind.CHOICE_SUBSTITUTION;
+    }
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
 public class ConditionSubstitutionNode extends SubstitutionNode {
@@ -51,4 +52,9 @@ public class ConditionSubstitutionNode extends SubstitutionNode {
 		this.condition = predicate;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.CONDITION_SUBSTITUTION;
+	}
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
 import java.util.List;
@@ -81,4 +82,9 @@ public class IfOrSelectSubstitutionsNode extends SubstitutionNode {
 		return sb.toString();
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.IF_OR_SELECT_SUBSTITUTION;
+	}
+
 }
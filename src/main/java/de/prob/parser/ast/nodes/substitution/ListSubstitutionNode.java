@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 import java.util.List;
 
@@ -48,4 +49,9 @@ public class ListSubstitutionNode extends SubstitutionNode {
 		return sb.toString();
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.LIST_SUBSTITUTION;
+	}
+
 }
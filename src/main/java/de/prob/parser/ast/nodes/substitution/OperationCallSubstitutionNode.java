@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.OperationNode;
 import de.prob.parser.ast.nodes.expression.ExprNode;
 
@@ -53,4 +54,10 @@ public class OperationCallSubstitutionNode extends SubstitutionNode {
 	public String toString() {
 		return names + "(" + arguments + ")";
 	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.OPERATION_CALL_SUBSTITUTION;
+	}
+
 }
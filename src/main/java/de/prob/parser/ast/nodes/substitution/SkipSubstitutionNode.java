@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 
 
 public class SkipSubstitutionNode extends SubstitutionNode {
@@ -12,4 +13,10 @@ public class SkipSubstitutionNode extends SubstitutionNode {
 	public String toString() {
 		return "skip";
 	}
+
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.SKIP_SUBSTITUTION;
+	}
+
 }
@@ -2,6 +2,7 @@ package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
 import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.NodeKind;
 
 import java.util.List;
 
@@ -36,4 +37,9 @@ public class VarSubstitutionNode extends SubstitutionNode {
 		return "VAR " + localVariables + " THEN " + body + " END";
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.VAR_SUBSTITUTION;
+	}
+
 }
@@ -1,6 +1,7 @@
 package de.prob.parser.ast.nodes.substitution;
 
 import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.NodeKind;
 import de.prob.parser.ast.nodes.expression.ExprNode;
 import de.prob.parser.ast.nodes.predicate.PredicateNode;
 
@@ -39,4 +40,9 @@ public class WhileSubstitutionNode extends SubstitutionNode {
 		return invariant;
 	}
 
+	@Override
+	public NodeKind getNodeKind() {
+		return NodeKind.WHILE_SUBSTITUTION;
+	}
+
 }
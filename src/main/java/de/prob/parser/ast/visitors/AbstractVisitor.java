@@ -14,16 +14,51 @@ public interface AbstractVisitor<R, P>
 		extends ParametrisedPredicateVisitor<R, P>, ParametrisedExpressionVisitor<R, P>, ParametrisedSubstitutionVisitor<R, P>, ParametrisedLTLVisitor<R, P> {
 
 	default R visitNode(Node node, P expected) {
-		if (node instanceof ExprNode) {
+		switch (node.getNodeKind()) {
+		case EXPRESSION_OPERATOR:
+		case IDENTIFIER_EXPRESSION:
+		case NUMBER:
+		case REAL_NUMBER:
+		case STRING:
+		case SET_COMPREHENSION:
+		case QUANTIFIED_EXPRESSION:
+		case LAMBDA:
+		case LET_EXPRESSION:
+		case IF_EXPRESSION:
+		case RECORD:
+		case STRUCT:
+		case RECORD_FIELD_ACCESS:
+		case CAST_PREDICATE_EXPRESSION:
 			return visitExprNode((ExprNode) node, expected);
-		} else if (node instanceof PredicateNode) {
+		case IDENTIFIER_PREDICATE:
+		case PREDICATE_OPERATOR:
+		case PREDICATE_OPERATOR_WITH_EXPR_ARGS:
+		case QUANTIFIED_PREDICATE:
+		case LET_PREDICATE:
+		case IF_PREDICATE:
 			return visitPredicateNode((PredicateNode) node, expected);
-		} else if (node instanceof SubstitutionNode) {
+		case ANY_SUBSTITUTION:
+		case ASSIGN_SUBSTITUTION:
+		case BECOMES_ELEMENT_OF_SUBSTITUTION:
+		case BECOMES_SUCH_THAT_SUBSTITUTION:
+		case CHOICE_SUBSTITUTION:
+		case CONDITION_SUBSTITUTION:
+		case IF_OR_SELECT_SUBSTITUTION:
+		case LET_SUBSTITUTION:
+		case LIST_SUBSTITUTION:
+		case OPERATION_CALL_SUBSTITUTION:
+		case SKIP_SUBSTITUTION:
+		case VAR_SUBSTITUTION:
+		case WHILE_SUBSTITUTION:
 			return visitSubstitutionNode((SubstitutionNode) node, expected);
-		} else if (node instanceof LTLNode) {
+		case LTL_PREFIX_OPERATOR:
+		case LTL_INFIX_OPERATOR:
+		case LTL_KEYWORD:
+		case LTL_B_PREDICATE:
 			return visitLTLNode((LTLNode) node, expected);
+		default:
+			throw new AssertionError(node.getClass());
 		}
-		throw new AssertionError();
 	}
 
 }
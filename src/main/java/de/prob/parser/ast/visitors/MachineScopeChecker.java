@@ -2,6 +2,8 @@ package de.prob.parser.ast.visitors;
 
 import de.prob.parser.antlr.ScopeException;
 import de.prob.parser.antlr.VisitorException;
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.SymbolTable;
 import de.prob.parser.ast.nodes.DeclarationNode;
 import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
 import de.prob.parser.ast.nodes.MachineNode;
@@ -30,18 +32,25 @@ import de.prob.parser.ast.nodes.substitution.OperationCallSubstitutionNode;
 import de.prob.parser.ast.nodes.substitution.VarSubstitutionNode;
 import de.prob.parser.ast.visitors.generic.ASTVisitor;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 public class MachineScopeChecker {
-	private final LinkedList<Map<String, DeclarationNode>> scopeTable = new LinkedList<>();
+	// flat symbol table: every symbol maps to the stack of its bindings, the
+	// innermost binding on top; scopes records what each scope has pushed
+	private final Map<Symbol, ArrayDeque<DeclarationNode>> symbolTable = new HashMap<>();
+	private final ArrayDeque<List<DeclarationNode>> scopes = new ArrayDeque<>();
 	private final Map<String, OperationNode> operationsInScope = new TreeMap<>();
 
 	private MachineNode machineNode;
+	private final MachineScopeViews scopeViews;
 
 	private List<MachineNode> machinesInScope;
 	private List<DeclarationNode> setsInScope;
@@ -49,7 +58,12 @@ public class MachineScopeChecker {
 	private List<DeclarationNode> variablesInScope;
 
 	public MachineScopeChecker(MachineNode machineNode) throws ScopeException {
+		this(machineNode, new MachineScopeViews());
+	}
+
+	public MachineScopeChecker(MachineNode machineNode, MachineScopeViews scopeViews) throws ScopeException {
 		this.machineNode = machineNode;
+		this.scopeViews = scopeViews;
 		try {
 			check();
 		} catch (VisitorException e) {
@@ -72,25 +86,49 @@ public class MachineScopeChecker {
 		formulaScopeChecker.visitPredicateNode(predicateNode);
 	}
 
+	/**
+	 * Checks an operation of the machine that has not been added to it, after
+	 * the rest of the machine has been checked, see
+	 * {@link de.prob.parser.antlr.MachineASTCreator#createMachineASTWithoutOperations}.
+	 */
+	public void checkOperation(OperationNode op) throws ScopeException {
+		try {
+			checkOperation(new FormulaScopeChecker(), op);
+		} catch (VisitorException e) {
+			throw (ScopeException) e.getCause();
+		}
+	}
+
+	private void checkOperation(FormulaScopeChecker formulaScopeChecker, OperationNode op) {
+		clearScopes();
+		createNewScope(getSetsInScope());
+		createNewScope(getConstantsInScope());
+		createNewScope(getVariablesInScope());
+		createNewScope(op.getParams());
+		createNewScope(op.getOutputParams());
+		formulaScopeChecker.visitSubstitutionNode(op.getSubstitution());
+	}
+
 	private void check() {
 		FormulaScopeChecker formulaScopeChecker = new FormulaScopeChecker();
+		machineNode.setIncludedRenamedVariables(getIncludedRenamedVariables(getMachinesInScope()));
 
 		if (machineNode.getProperties() != null) {
-			scopeTable.clear();
+			clearScopes();
 			createNewScope(getSetsInScope());
 			createNewScope(getConstantsInScope());
 			formulaScopeChecker.visitPredicateNode(machineNode.getProperties());
 		}
 
 		if (machineNode.getValues() != null) {
-			scopeTable.clear();
+			clearScopes();
 			createNewScope(getSetsInScope());
 			createNewScope(getConstantsInScope());
 			machineNode.getValues().forEach(formulaScopeChecker::visitSubstitutionNode);
 		}
 
 		if (machineNode.getInvariant() != null) {
-			scopeTable.clear();
+			clearScopes();
 			createNewScope(getSetsInScope());
 			createNewScope(getConstantsInScope());
 			createNewScope(getVariablesInScope());
@@ -98,7 +136,7 @@ public class MachineScopeChecker {
 		}
 
 		if (machineNode.getAssertions() != null) {
-			scopeTable.clear();
+			clearScopes();
 			createNewScope(getSetsInScope());
 			createNewScope(getConstantsInScope());
 			createNewScope(getVariablesInScope());
@@ -107,7 +145,7 @@ public class MachineScopeChecker {
 
 		addOperationsToScope(machineNode, true);
 		if (machineNode.getInitialisation() != null) {
-			scopeTable.clear();
+			clearScopes();
 			createNewScope(getSetsInScope());
 			createNewScope(getConstantsInScope());
 			createNewScope(getVariablesInScope());
@@ -115,12 +153,7 @@ public class MachineScopeChecker {
 		}
 
 		for (OperationNode op : machineNode.getOperations()) {
-			createNewScope(getSetsInScope());
-			createNewScope(getConstantsInScope());
-			createNewScope(getVariablesInScope());
-			createNewScope(op.getParams());
-			createNewScope(op.getOutputParams());
-			formulaScopeChecker.visitSubstitutionNode(op.getSubstitution());
+			checkOperation(formulaScopeChecker, op);
 		}
 	}
 
@@ -160,15 +193,8 @@ public class MachineScopeChecker {
 	public List<DeclarationNode> getConstantsInScope(List<MachineNode> list) {
 		List<DeclarationNode> result = new ArrayList<>();
 		for (MachineNode machine : list) {
-			if(machine.getPrefix() != null && !machineNode.equals(machine)) {
-				result.addAll(machine.getConstants().stream()
-					.map(decl -> {
-						DeclarationNode newNode = new DeclarationNode(decl.getSourceCodePosition(), machine.getPrefix() + "." + decl.getName(), DeclarationNode.Kind.VARIABLE, decl.getSurroundingMachineNode());
-						newNode.setType(decl.getType());
-						newNode.setParent(decl.getParent());
-						return newNode;
-					})
-					.collect(Collectors.toList()));
+			if (isRenamed(machine)) {
+				result.addAll(scopeViews.getView(machine).getConstants());
 			} else {
 				result.addAll(machine.getConstants());
 			}
@@ -184,27 +210,25 @@ public class MachineScopeChecker {
 	}
 
 	public List<DeclarationNode> getVariablesInScope(List<MachineNode> list) {
-		List<DeclarationNode> result = new ArrayList<>();
+		List<DeclarationNode> result = getIncludedRenamedVariables(list);
+		for (int i = list.size() - 1; i >= 0; i--) {
+			result.addAll(list.get(i).getVariables());
+		}
+		return result;
+	}
+
+	private List<DeclarationNode> getIncludedRenamedVariables(List<MachineNode> list) {
+		Set<DeclarationNode> result = new LinkedHashSet<>();
 		for (int i = list.size() - 1; i >= 0; i--) {
 			MachineNode machine = list.get(i);
-			if(machine.getPrefix() != null && !machineNode.equals(machine)) {
-				List<DeclarationNode> includedRenamedVariables = machine.getVariables().stream()
-						.map(decl -> {
-							DeclarationNode newNode = new DeclarationNode(decl.getSourceCodePosition(), machine.getPrefix() + "." + decl.getName(), DeclarationNode.Kind.VARIABLE, decl.getSurroundingMachineNode());
-							newNode.setParent(decl.getParent());
-							return newNode;
-						})
-						.collect(Collectors.toList());
-				result.addAll(includedRenamedVariables);
-				machineNode.getIncludedRenamedVariables().addAll(includedRenamedVariables);
+			if (isRenamed(machine)) {
+				result.addAll(scopeViews.getView(machine).getVariables());
 			}
-			if(machine.getIncludedRenamedVariables() != null) {
+			if (!machineNode.equals(machine)) {
 				result.addAll(machine.getIncludedRenamedVariables());
-				machineNode.getIncludedRenamedVariables().addAll(machine.getIncludedRenamedVariables());
 			}
-			result.addAll(machine.getVariables());
 		}
-		return result;
+		return new ArrayList<>(result);
 	}
 
 	private List<DeclarationNode> getSetsInScope() {
@@ -220,22 +244,19 @@ public class MachineScopeChecker {
 			for (EnumeratedSetDeclarationNode enumSet : machine.getEnumeratedSets()) {
 				result.add(enumSet.getSetDeclarationNode());
 				result.addAll(enumSet.getElements());
-				if(machine.getPrefix() != null && !machineNode.equals(machine)) {
-					result.addAll(enumSet.getElements().stream()
-							.map(decl -> {
-								DeclarationNode newNode = new DeclarationNode(decl.getSourceCodePosition(), machine.getPrefix() + "." + decl.getName(), DeclarationNode.Kind.ENUMERATED_SET_ELEMENT, decl.getSurroundingMachineNode());
-								newNode.setType(decl.getType());
-								newNode.setParent(decl.getParent());
-								return newNode;
-							})
-							.collect(Collectors.toList()));
-				}
+			}
+			if (isRenamed(machine)) {
+				result.addAll(scopeViews.getView(machine).getEnumeratedSetElements());
 			}
 			result.addAll(machine.getDeferredSets());
 		}
 		return result;
 	}
 
+	private boolean isRenamed(MachineNode machine) {
+		return machine.getPrefix() != null && !machineNode.equals(machine);
+	}
+
 	private List<MachineNode> getMachinesInScope() {
 		if (this.machinesInScope == null) {
 			machinesInScope = new ArrayList<>();
@@ -267,18 +288,34 @@ public class MachineScopeChecker {
 	}
 
 	private void createNewScope(List<DeclarationNode> list) {
-		Map<String, DeclarationNode> scope = new TreeMap<>();
 		for (DeclarationNode declarationNode : list) {
-			scope.put(declarationNode.getName(), declarationNode);
+			symbolTable.computeIfAbsent(declarationNode.getSymbol(), symbol -> new ArrayDeque<>()).push(declarationNode);
 		}
-		this.scopeTable.add(scope);
+		scopes.push(list);
+	}
+
+	private void removeScope() {
+		List<DeclarationNode> list = scopes.pop();
+		for (int i = list.size() - 1; i >= 0; i--) {
+			Symbol symbol = list.get(i).getSymbol();
+			ArrayDeque<DeclarationNode> bindings = symbolTable.get(symbol);
+			bindings.pop();
+			if (bindings.isEmpty()) {
+				symbolTable.remove(symbol);
+			}
+		}
+	}
+
+	private void clearScopes() {
+		symbolTable.clear();
+		scopes.clear();
 	}
 
 	class FormulaScopeChecker extends ASTVisitor {
 
 		@Override
 		public void visitIdentifierExprNode(IdentifierExprNode node) {
-			DeclarationNode declarationNode = lookUpIdentifier(node.getName(), node);
+			DeclarationNode declarationNode = lookUpIdentifier(node.getSymbol(), node);
 			node.setDeclarationNode(declarationNode);
 		}
 
@@ -286,7 +323,7 @@ public class MachineScopeChecker {
 		public void visitVarSubstitutionNode(VarSubstitutionNode node) {
 			createNewScope(node.getLocalIdentifiers());
 			visitSubstitutionNode(node.getBody());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
@@ -308,7 +345,7 @@ public class MachineScopeChecker {
 			createNewScope(node.getDeclarationList());
 			visitPredicateNode(node.getPredicateNode());
 			visitExprNode(node.getExpressionNode());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
@@ -316,7 +353,7 @@ public class MachineScopeChecker {
 			//TODO: variables outside regular scope available
 			createNewScope(node.getDeclarationList());
 			visitPredicateNode(node.getPredicateNode());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
@@ -325,12 +362,12 @@ public class MachineScopeChecker {
 			createNewScope(node.getDeclarations());
 			visitPredicateNode(node.getPredicate());
 			visitExprNode(node.getExpression());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
 		public void visitIdentifierPredicateNode(IdentifierPredicateNode node) {
-			DeclarationNode declarationNode = lookUpIdentifier(node.getName(), node);
+			DeclarationNode declarationNode = lookUpIdentifier(node.getSymbol(), node);
 			node.setDeclarationNode(declarationNode);
 		}
 
@@ -339,7 +376,7 @@ public class MachineScopeChecker {
 			//TODO: variables outside regular scope available
 			createNewScope(node.getDeclarationList());
 			visitPredicateNode(node.getPredicateNode());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
@@ -347,7 +384,7 @@ public class MachineScopeChecker {
 			createNewScope(node.getParameters());
 			visitPredicateNode(node.getWherePredicate());
 			visitSubstitutionNode(node.getThenSubstitution());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
@@ -355,7 +392,7 @@ public class MachineScopeChecker {
 			createNewScope(node.getLocalIdentifiers());
 			visitPredicateNode(node.getPredicate());
 			visitSubstitutionNode(node.getBody());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
@@ -363,7 +400,7 @@ public class MachineScopeChecker {
 			createNewScope(node.getLocalIdentifiers());
 			visitPredicateNode(node.getPredicate());
 			visitExprNode(node.getExpression());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
@@ -371,7 +408,7 @@ public class MachineScopeChecker {
 			createNewScope(node.getLocalIdentifiers());
 			visitPredicateNode(node.getPredicate());
 			visitPredicateNode(node.getPredicate());
-			scopeTable.removeLast();
+			removeScope();
 		}
 
 		@Override
@@ -417,14 +454,20 @@ public class MachineScopeChecker {
 	}
 
 	public DeclarationNode lookUpIdentifier(String name, Node node) {
-		for (int i = scopeTable.size() - 1; i >= 0; i--) {
-			Map<String, DeclarationNode> map = scopeTable.get(i);
-			if (map.containsKey(name)) {
-				DeclarationNode declarationNode = map.get(name);
-				return declarationNode;
-			}
+		// a name that is not interned cannot be declared, do not intern it
+		Symbol symbol = SymbolTable.getGlobal().lookUp(name);
+		if (symbol == null) {
+			throw new VisitorException(new ScopeException("Unknown identifier: " + name));
+		}
+		return lookUpIdentifier(symbol, node);
+	}
+
+	public DeclarationNode lookUpIdentifier(Symbol symbol, Node node) {
+		ArrayDeque<DeclarationNode> bindings = symbolTable.get(symbol);
+		if (bindings != null) {
+			return bindings.peek();
 		}
-		throw new VisitorException(new ScopeException("Unknown identifier: " + name));
+		throw new VisitorException(new ScopeException("Unknown identifier: " + symbol.getName()));
 	}
 
 }
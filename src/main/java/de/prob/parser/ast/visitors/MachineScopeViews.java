@@ -0,0 +1,81 @@
+package de.prob.parser.ast.visitors;
+
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Project-wide cache of the declarations a renamed machine (e.g. a.M)
+ * contributes to the scope of other machines. The prefixed copies a.x of the
+ * constants, variables and enumerated set elements of M are created once per
+ * (machine, prefix) and shared by all scope checkers of the project.
+ */
+public class MachineScopeViews {
+
+	private final Map<MachineNode, Map<String, ScopeView>> views = new ConcurrentHashMap<>();
+
+	public ScopeView getView(MachineNode machine) {
+		String prefix = machine.getPrefix();
+		if (prefix == null) {
+			throw new IllegalArgumentException("Machine " + machine.getName() + " is not renamed");
+		}
+		return views.computeIfAbsent(machine, m -> new ConcurrentHashMap<>())
+				.computeIfAbsent(prefix, p -> new ScopeView(machine, p));
+	}
+
+	public static class ScopeView {
+		private final List<DeclarationNode> constants;
+		private final List<DeclarationNode> variables;
+		private final List<DeclarationNode> enumeratedSetElements;
+
+		private ScopeView(MachineNode machine, String prefix) {
+			List<DeclarationNode> renamedConstants = new ArrayList<>();
+			for (DeclarationNode decl : machine.getConstants()) {
+				renamedConstants.add(rename(prefix, decl, DeclarationNode.Kind.VARIABLE, true));
+			}
+			List<DeclarationNode> renamedVariables = new ArrayList<>();
+			for (DeclarationNode decl : machine.getVariables()) {
+				renamedVariables.add(rename(prefix, decl, DeclarationNode.Kind.VARIABLE, false));
+			}
+			List<DeclarationNode> renamedElements = new ArrayList<>();
+			for (EnumeratedSetDeclarationNode enumSet : machine.getEnumeratedSets()) {
+				for (DeclarationNode decl : enumSet.getElements()) {
+					renamedElements.add(rename(prefix, decl, DeclarationNode.Kind.ENUMERATED_SET_ELEMENT, true));
+				}
+			}
+			this.constants = Collections.unmodifiableList(renamedConstants);
+			this.variables = Collections.unmodifiableList(renamedVariables);
+			this.enumeratedSetElements = Collections.unmodifiableList(renamedElements);
+		}
+
+		private static DeclarationNode rename(String prefix, DeclarationNode decl, DeclarationNode.Kind kind,
+				boolean copyType) {
+			DeclarationNode newNode = new DeclarationNode(decl.getSourceCodePosition(), prefix + "." + decl.getName(),
+					kind, decl.getSurroundingMachineNode());
+			if (copyType) {
+				newNode.setType(decl.getType());
+			}
+			newNode.setParent(decl.getParent());
+			return newNode;
+		}
+
+		public List<DeclarationNode> getConstants() {
+			return constants;
+		}
+
+		public List<DeclarationNode> getVariables() {
+			return variables;
+		}
+
+		public List<DeclarationNode> getEnumeratedSetElements() {
+			return enumeratedSetElements;
+		}
+	}
+
+}
@@ -0,0 +1,375 @@
+package de.prob.parser.ast.visitors;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Set;
+import java.util.TreeMap;
+
+import de.prob.parser.antlr.BProject;
+import de.prob.parser.ast.SourceCodePosition;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeUtil;
+import de.prob.parser.ast.types.BType;
+
+/**
+ * Estimates the memory used by the ASTs of a project, per node class and per
+ * machine. The shallow size of a node is the size of the node object itself;
+ * its retained size additionally includes the objects it owns: source code
+ * positions, strings, lists, types and the observer lists of types. An object
+ * reachable from several nodes, e.g. a type or a shared subtree, is charged
+ * once, to the first node reaching it.
+ * <p>
+ * The sizes are estimated for a 64 bit JVM with compressed references and
+ * compact strings, from the declared fields of the classes; the capacity of
+ * lists is assumed to equal their size. The numbers are meant for sizing heaps
+ * and comparing versions, not as exact heap measurements.
+ */
+public final class MemoryFootprint {
+
+	private static final int HEADER = 12;
+	private static final int ARRAY_HEADER = 16;
+	private static final int REFERENCE = 4;
+	private static final int VECTOR_CAPACITY = 10;
+
+	public enum Category {
+		NODES, POSITIONS, TEXT, LISTS, TYPES, OBSERVERS, OTHER
+	}
+
+	public static final class Entry {
+		private int count;
+		private long shallowBytes;
+		private long retainedBytes;
+
+		public int getCount() {
+			return count;
+		}
+
+		public long getShallowBytes() {
+			return shallowBytes;
+		}
+
+		public long getRetainedBytes() {
+			return retainedBytes;
+		}
+
+		private void add(long shallow, long retained) {
+			count++;
+			shallowBytes += shallow;
+			retainedBytes += retained;
+		}
+	}
+
+	private final Map<String, Entry> nodeClasses = new TreeMap<>();
+	private final Map<String, Entry> machines = new LinkedHashMap<>();
+	private final Map<Category, Long> categories = new EnumMap<>(Category.class);
+	private final Entry total = new Entry();
+	private int duplicateStrings;
+	private long duplicateStringBytes;
+	private int duplicateTypes;
+
+	private MemoryFootprint() {
+		for (Category category : Category.values()) {
+			categories.put(category, 0L);
+		}
+	}
+
+	public static MemoryFootprint analyse(BProject project) {
+		return analyse(project.getMachines());
+	}
+
+	public static MemoryFootprint analyse(Collection<MachineNode> machineNodes) {
+		MemoryFootprint footprint = new MemoryFootprint();
+		new Analyser(footprint).analyse(machineNodes);
+		return footprint;
+	}
+
+	/**
+	 * The nodes per simple class name, in alphabetical order.
+	 */
+	public Map<String, Entry> getNodeClasses() {
+		return Collections.unmodifiableMap(nodeClasses);
+	}
+
+	/**
+	 * The nodes per machine, in the order of the machines in the project.
+	 */
+	public Map<String, Entry> getMachines() {
+		return Collections.unmodifiableMap(machines);
+	}
+
+	/**
+	 * The retained bytes of all nodes, split by the kind of object.
+	 */
+	public Map<Category, Long> getCategories() {
+		return Collections.unmodifiableMap(categories);
+	}
+
+	public Entry getTotal() {
+		return total;
+	}
+
+	/**
+	 * The number of strings equal to a string seen before, but not identical.
+	 */
+	public int getDuplicateStrings() {
+		return duplicateStrings;
+	}
+
+	public long getDuplicateStringBytes() {
+		return duplicateStringBytes;
+	}
+
+	/**
+	 * The number of types printed like a type seen before, but not identical.
+	 */
+	public int getDuplicateTypes() {
+		return duplicateTypes;
+	}
+
+	/**
+	 * Writes the footprint as a table, starting every line with the given prefix.
+	 */
+	public void write(Writer out, String linePrefix) throws IOException {
+		writeLine(out, linePrefix, String.format("%-36s %10s %12s %12s", "Node class", "Count", "Shallow", "Retained"));
+		List<Map.Entry<String, Entry>> classes = new ArrayList<>(nodeClasses.entrySet());
+		classes.sort((a, b) -> Long.compare(b.getValue().retainedBytes, a.getValue().retainedBytes));
+		for (Map.Entry<String, Entry> entry : classes) {
+			writeEntry(out, linePrefix, entry.getKey(), entry.getValue());
+		}
+		writeEntry(out, linePrefix, "Total", total);
+		writeLine(out, linePrefix, "");
+		writeLine(out, linePrefix, String.format("%-36s %10s %12s %12s", "Machine", "Nodes", "Shallow", "Retained"));
+		for (Map.Entry<String, Entry> entry : machines.entrySet()) {
+			writeEntry(out, linePrefix, entry.getKey(), entry.getValue());
+		}
+		writeLine(out, linePrefix, "");
+		for (Map.Entry<Category, Long> entry : categories.entrySet()) {
+			writeLine(out, linePrefix, String.format("%-36s %36d", entry.getKey(), entry.getValue()));
+		}
+		writeLine(out, linePrefix,
+				String.format("%-36s %10d %25d", "Duplicate strings", duplicateStrings, duplicateStringBytes));
+		writeLine(out, linePrefix, String.format("%-36s %10d", "Duplicate types", duplicateTypes));
+	}
+
+	private static void writeEntry(Writer out, String linePrefix, String name, Entry entry) throws IOException {
+		writeLine(out, linePrefix,
+				String.format("%-36s %10d %12d %12d", name, entry.count, entry.shallowBytes, entry.retainedBytes));
+	}
+
+	private static void writeLine(Writer out, String linePrefix, String line) throws IOException {
+		out.write(linePrefix + line + System.lineSeparator());
+	}
+
+	private static final class Analyser {
+		private final MemoryFootprint footprint;
+		private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final Set<String> strings = new HashSet<>();
+		private final Set<String> types = new HashSet<>();
+		private final Map<Class<?>, Long> shallowSizes = new HashMap<>();
+		private final Map<Class<?>, List<Field>> referenceFields = new HashMap<>();
+		private final Map<Category, Long> categories;
+
+		Analyser(MemoryFootprint footprint) {
+			this.footprint = footprint;
+			this.categories = footprint.categories;
+		}
+
+		void analyse(Collection<MachineNode> machineNodes) {
+			for (MachineNode machineNode : machineNodes) {
+				Entry machineEntry = new Entry();
+				Deque<Node> stack = new ArrayDeque<>();
+				stack.push(machineNode);
+				while (!stack.isEmpty()) {
+					Node node = stack.pop();
+					if (!seen.add(node)) {
+						continue;
+					}
+					long shallow = shallowSize(node.getClass());
+					charge(Category.NODES, shallow);
+					long retained = shallow + owned(node);
+					footprint.nodeClasses.computeIfAbsent(node.getClass().getSimpleName(), k -> new Entry())
+							.add(shallow, retained);
+					machineEntry.add(shallow, retained);
+					footprint.total.add(shallow, retained);
+					List<Node> children = NodeUtil.getChildren(node);
+					for (int i = children.size() - 1; i >= 0; i--) {
+						stack.push(children.get(i));
+					}
+				}
+				footprint.machines.put(machineNode.getName(), machineEntry);
+			}
+		}
+
+		/**
+		 * The bytes of the objects referenced by the fields of the given object
+		 * which have not been charged before. Nodes are charged separately.
+		 */
+		private long owned(Object object) {
+			long bytes = 0;
+			for (Field field : getReferenceFields(object.getClass())) {
+				try {
+					bytes += measure(field.get(object));
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			if (object instanceof Observable) {
+				bytes += observers((Observable) object);
+			}
+			return bytes;
+		}
+
+		private long measure(Object value) {
+			if (value == null || value instanceof Node || value instanceof Enum || value instanceof Boolean
+					|| value instanceof Class || !seen.add(value)) {
+				return 0;
+			}
+			if (value instanceof String) {
+				return measureString((String) value);
+			} else if (value instanceof Integer) {
+				int i = (Integer) value;
+				return i >= -128 && i <= 127 ? 0 : charge(Category.POSITIONS, 16);
+			} else if (value instanceof Collection) {
+				Collection<?> collection = (Collection<?>) value;
+				long bytes = charge(Category.LISTS, collectionSize(collection));
+				for (Object element : collection) {
+					bytes += measure(element);
+				}
+				return bytes;
+			} else if (value instanceof SourceCodePosition) {
+				return charge(Category.POSITIONS, shallowSize(value.getClass())) + owned(value);
+			} else if (value instanceof BType) {
+				String name = value.toString();
+				if (!types.add(name)) {
+					footprint.duplicateTypes++;
+				}
+				return charge(Category.TYPES, shallowSize(value.getClass())) + owned(value);
+			} else if (value instanceof BigInteger) {
+				return charge(Category.OTHER, bigIntegerSize((BigInteger) value));
+			} else if (value instanceof BigDecimal) {
+				BigDecimal decimal = (BigDecimal) value;
+				return charge(Category.OTHER, shallowSize(BigDecimal.class) + bigIntegerSize(decimal.unscaledValue()));
+			}
+			long bytes = charge(Category.OTHER, shallowSize(value.getClass()));
+			if (value.getClass().getName().startsWith("de.prob.parser.")) {
+				bytes += owned(value);
+			}
+			return bytes;
+		}
+
+		private long measureString(String string) {
+			boolean latin1 = true;
+			for (int i = 0; i < string.length() && latin1; i++) {
+				latin1 = string.charAt(i) < 256;
+			}
+			long bytes = align(HEADER + REFERENCE + 4 + 2) + align(ARRAY_HEADER + (latin1 ? 1 : 2) * string.length());
+			if (!strings.add(string)) {
+				footprint.duplicateStrings++;
+				footprint.duplicateStringBytes += bytes;
+			}
+			return charge(Category.TEXT, bytes);
+		}
+
+		/**
+		 * The vector holding the observers of a type or node.
+		 */
+		private long observers(Observable observable) {
+			int capacity = VECTOR_CAPACITY;
+			while (capacity < observable.countObservers()) {
+				capacity *= 2;
+			}
+			return charge(Category.OBSERVERS, align(HEADER + REFERENCE + 3 * 4) + array(capacity));
+		}
+
+		private static long collectionSize(Collection<?> collection) {
+			if (collection.isEmpty() && !(collection instanceof ArrayList)) {
+				// the shared immutable empty collections
+				return 0;
+			} else if (collection instanceof ArrayList) {
+				return align(HEADER + REFERENCE + 2 * 4) + array(collection.size());
+			} else if (collection instanceof LinkedList) {
+				return align(HEADER + 2 * REFERENCE + 2 * 4) + collection.size() * align(HEADER + 3 * REFERENCE);
+			}
+			return align(HEADER + REFERENCE) + array(collection.size());
+		}
+
+		private long bigIntegerSize(BigInteger integer) {
+			return shallowSize(BigInteger.class) + align(ARRAY_HEADER + 4 * (integer.bitLength() / 32 + 1));
+		}
+
+		private long charge(Category category, long bytes) {
+			categories.merge(category, bytes, Long::sum);
+			return bytes;
+		}
+
+		private long shallowSize(Class<?> type) {
+			return shallowSizes.computeIfAbsent(type, t -> {
+				long size = HEADER;
+				for (Class<?> c = t; c != null; c = c.getSuperclass()) {
+					for (Field field : c.getDeclaredFields()) {
+						if (!Modifier.isStatic(field.getModifiers())) {
+							size += fieldSize(field.getType());
+						}
+					}
+				}
+				return align(size);
+			});
+		}
+
+		private List<Field> getReferenceFields(Class<?> type) {
+			return referenceFields.computeIfAbsent(type, t -> {
+				List<Field> fields = new ArrayList<>();
+				for (Class<?> c = t; c != null && c.getName().startsWith("de.prob.parser."); c = c.getSuperclass()) {
+					for (Field field : c.getDeclaredFields()) {
+						if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+							field.setAccessible(true);
+							fields.add(field);
+						}
+					}
+				}
+				return fields;
+			});
+		}
+
+		private static int fieldSize(Class<?> type) {
+			if (type == long.class || type == double.class) {
+				return 8;
+			} else if (type == int.class || type == float.class) {
+				return 4;
+			} else if (type == short.class || type == char.class) {
+				return 2;
+			} else if (type == byte.class || type == boolean.class) {
+				return 1;
+			}
+			return REFERENCE;
+		}
+
+		private static long array(int length) {
+			return align(ARRAY_HEADER + (long) REFERENCE * length);
+		}
+
+		private static long align(long size) {
+			return (size + 7) & ~7L;
+		}
+	}
+
+}
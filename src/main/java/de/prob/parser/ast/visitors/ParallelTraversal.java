@@ -0,0 +1,169 @@
+package de.prob.parser.ast.visitors;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.nodes.NodeUtil;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.predicate.IdentifierPredicateNode;
+
+/**
+ * Read-only traversal of an AST on a fork-join pool. Nodes with more than
+ * {@link #getSplitThreshold()} children (large conjunctions, the operations of
+ * a machine, large set enumerations, ...) are split into tasks; all other
+ * nodes are visited sequentially by the task that reaches them.
+ * <p>
+ * Every task collects into its own result created by {@link #createResult()},
+ * so {@link #visit(Node, Object)} only needs to be thread-safe with respect to
+ * the AST, which must not be modified during the traversal. Results are
+ * combined in pre-order: the result of a traversal is the same as if all nodes
+ * had been visited sequentially, provided {@link #combine(Object, Object)} is
+ * associative. Nodes shared by several parents are visited once per parent.
+ */
+public abstract class ParallelTraversal<R> {
+
+	public static final int DEFAULT_SPLIT_THRESHOLD = 8;
+
+	private final ForkJoinPool pool;
+	private final int splitThreshold;
+
+	protected ParallelTraversal() {
+		this(ForkJoinPool.commonPool(), DEFAULT_SPLIT_THRESHOLD);
+	}
+
+	protected ParallelTraversal(ForkJoinPool pool, int splitThreshold) {
+		if (splitThreshold < 1) {
+			throw new IllegalArgumentException("Split threshold must be positive: " + splitThreshold);
+		}
+		this.pool = pool;
+		this.splitThreshold = splitThreshold;
+	}
+
+	protected abstract R createResult();
+
+	/**
+	 * Adds the information of a single node, not of its children, to the result
+	 * of the current task.
+	 */
+	protected abstract void visit(Node node, R result);
+
+	/**
+	 * Combines the results of two consecutive parts of the AST. May modify and
+	 * return the left result.
+	 */
+	protected abstract R combine(R left, R right);
+
+	public int getSplitThreshold() {
+		return splitThreshold;
+	}
+
+	public R traverse(Node root) {
+		return traverse(Collections.singletonList(root));
+	}
+
+	public R traverse(List<? extends Node> nodes) {
+		return pool.invoke(new TraversalTask(nodes, 0, nodes.size()));
+	}
+
+	private final class TraversalTask extends RecursiveTask<R> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends Node> nodes;
+		private final int from;
+		private final int to;
+
+		TraversalTask(List<? extends Node> nodes, int from, int to) {
+			this.nodes = nodes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected R compute() {
+			if (to - from > splitThreshold) {
+				int middle = (from + to) >>> 1;
+				TraversalTask right = new TraversalTask(nodes, middle, to);
+				right.fork();
+				R left = new TraversalTask(nodes, from, middle).compute();
+				return combine(left, right.join());
+			}
+			R result = createResult();
+			for (int i = from; i < to; i++) {
+				result = traverse(nodes.get(i), result);
+			}
+			return result;
+		}
+
+		private R traverse(Node node, R result) {
+			visit(node, result);
+			List<Node> children = NodeUtil.getChildren(node);
+			if (children.size() > splitThreshold) {
+				return combine(result, new TraversalTask(children, 0, children.size()).compute());
+			}
+			for (Node child : children) {
+				result = traverse(child, result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Counts the nodes of each kind below and including the given nodes.
+	 */
+	public static Map<NodeKind, Integer> countNodes(List<? extends Node> nodes) {
+		return new ParallelTraversal<Map<NodeKind, Integer>>() {
+			@Override
+			protected Map<NodeKind, Integer> createResult() {
+				return new EnumMap<>(NodeKind.class);
+			}
+
+			@Override
+			protected void visit(Node node, Map<NodeKind, Integer> result) {
+				result.merge(node.getNodeKind(), 1, Integer::sum);
+			}
+
+			@Override
+			protected Map<NodeKind, Integer> combine(Map<NodeKind, Integer> left, Map<NodeKind, Integer> right) {
+				right.forEach((kind, count) -> left.merge(kind, count, Integer::sum));
+				return left;
+			}
+		}.traverse(nodes);
+	}
+
+	/**
+	 * Collects the names of all identifiers used in the given nodes, in order of
+	 * their first occurrence.
+	 */
+	public static Set<String> collectIdentifiers(List<? extends Node> nodes) {
+		return new ParallelTraversal<Set<String>>() {
+			@Override
+			protected Set<String> createResult() {
+				return new LinkedHashSet<>();
+			}
+
+			@Override
+			protected void visit(Node node, Set<String> result) {
+				if (node instanceof IdentifierExprNode) {
+					result.add(((IdentifierExprNode) node).getName());
+				} else if (node instanceof IdentifierPredicateNode) {
+					result.add(((IdentifierPredicateNode) node).getName());
+				}
+			}
+
+			@Override
+			protected Set<String> combine(Set<String> left, Set<String> right) {
+				left.addAll(right);
+				return left;
+			}
+		}.traverse(nodes);
+	}
+
+}
@@ -0,0 +1,80 @@
+package de.prob.parser.ast.visitors;
+
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.MachineReferenceNode;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps (renamed machine, variable name) to the declaration of the variable in
+ * the machine, e.g. (a.M, "x") to the variable x of a machine included as a.M.
+ * Machines are keyed by identity, so two machines renamed with the same prefix
+ * do not share entries. Built once per project and shared by the type checkers
+ * of all machines.
+ */
+public class RenamedVariablesIndex {
+
+	private final Map<MachineNode, Map<String, DeclarationNode>> variablesByMachine = new IdentityHashMap<>();
+
+	public RenamedVariablesIndex(Collection<MachineNode> machines) {
+		for (MachineNode machine : machines) {
+			if (machine.getPrefix() == null || variablesByMachine.containsKey(machine)) {
+				continue;
+			}
+			Map<String, DeclarationNode> variables = new HashMap<>();
+			for (DeclarationNode variable : machine.getVariables()) {
+				variables.putIfAbsent(variable.getName(), variable);
+			}
+			variablesByMachine.put(machine, variables);
+		}
+	}
+
+	public static RenamedVariablesIndex create(MachineNode machineNode) {
+		Set<MachineNode> machines = new LinkedHashSet<>();
+		collectReferencedMachines(machineNode, machines);
+		return new RenamedVariablesIndex(machines);
+	}
+
+	private static void collectReferencedMachines(MachineNode machineNode, Set<MachineNode> machines) {
+		if (machineNode == null || !machines.add(machineNode)) {
+			return;
+		}
+		for (MachineReferenceNode reference : machineNode.getMachineReferences()) {
+			collectReferencedMachines(reference.getMachineNode(), machines);
+		}
+	}
+
+	/**
+	 * Returns the variable of the renamed machine with the given name, without
+	 * the prefix, or {@code null} if the machine has no such variable.
+	 */
+	public DeclarationNode lookUp(MachineNode machine, String name) {
+		Map<String, DeclarationNode> variables = variablesByMachine.get(machine);
+		return variables == null ? null : variables.get(name);
+	}
+
+	/**
+	 * Returns the original declaration of a renamed variable such as a.x, or
+	 * {@code null} if the variable does not stem from a renamed machine.
+	 */
+	public DeclarationNode lookUpSource(DeclarationNode renamedVariable) {
+		MachineNode machine = renamedVariable.getSurroundingMachineNode();
+		if (machine == null || machine.getPrefix() == null) {
+			return null;
+		}
+		String prefix = machine.getPrefix();
+		String name = renamedVariable.getName();
+		if (name.length() <= prefix.length() || name.charAt(prefix.length()) != '.'
+				|| !name.startsWith(prefix)) {
+			return null;
+		}
+		return lookUp(machine, name.substring(prefix.length() + 1));
+	}
+
+}
@@ -0,0 +1,238 @@
+package de.prob.parser.ast.visitors;
+
+import de.prob.parser.antlr.IPrologTermOutput;
+import de.prob.parser.ast.nodes.rules.RuleOperationNode;
+import de.prob.parser.ast.nodes.rules.RulesMachineNode;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dependency graph of the rules and computations of a rules machine.
+ *
+ * An operation depends on the rules and computations named by its
+ * DEPENDS_ON_RULE and DEPENDS_ON_COMPUTATION attributes and on the rules whose
+ * results it uses, e.g. by SUCCEEDED_RULE(rule). The execution levels group
+ * the operations that can be executed concurrently: every operation is on the
+ * level after the highest level of its dependencies. Operations on a cycle,
+ * or depending on one, have no level.
+ */
+public class RuleDependencyGraph {
+
+	private final Map<String, RuleOperationNode> operations = new LinkedHashMap<>();
+	private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+	private final List<String> errors = new ArrayList<>();
+	private final List<List<String>> levels = new ArrayList<>();
+	private final Map<String, Integer> levelOf = new LinkedHashMap<>();
+	private final List<List<String>> cycles = new ArrayList<>();
+
+	public static RuleDependencyGraph analyse(RulesMachineNode machine) {
+		return new RuleDependencyGraph(machine);
+	}
+
+	private RuleDependencyGraph(RulesMachineNode machine) {
+		for (RuleOperationNode operation : machine.getOperations()) {
+			if (operation.getKind() != RuleOperationNode.Kind.FUNCTION) {
+				operations.put(operation.getName(), operation);
+			}
+		}
+		for (RuleOperationNode operation : operations.values()) {
+			Set<String> set = new LinkedHashSet<>();
+			addDependencies(operation, operation.getDependsOnRules(), RuleOperationNode.Kind.RULE, set);
+			addDependencies(operation, operation.getDependsOnComputations(), RuleOperationNode.Kind.COMPUTATION, set);
+			addDependencies(operation, operation.getReferencedRules(), RuleOperationNode.Kind.RULE, set);
+			dependencies.put(operation.getName(), set);
+		}
+		computeLevels();
+		if (levelOf.size() < operations.size()) {
+			findCycles();
+		}
+	}
+
+	private void addDependencies(RuleOperationNode operation, Iterable<String> names, RuleOperationNode.Kind kind,
+			Set<String> set) {
+		for (String name : names) {
+			RuleOperationNode dependency = operations.get(name);
+			if (dependency == null || dependency.getKind() != kind) {
+				errors.add(operation.getName() + " depends on unknown " + kind.name().toLowerCase() + " " + name);
+			} else {
+				set.add(name);
+			}
+		}
+	}
+
+	/**
+	 * Kahn's algorithm, level by level.
+	 */
+	private void computeLevels() {
+		Map<String, Integer> missing = new LinkedHashMap<>();
+		Map<String, List<String>> dependents = new LinkedHashMap<>();
+		List<String> level = new ArrayList<>();
+		for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+			missing.put(entry.getKey(), entry.getValue().size());
+			for (String dependency : entry.getValue()) {
+				dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(entry.getKey());
+			}
+			if (entry.getValue().isEmpty()) {
+				level.add(entry.getKey());
+			}
+		}
+		while (!level.isEmpty()) {
+			List<String> next = new ArrayList<>();
+			for (String name : level) {
+				levelOf.put(name, levels.size());
+				for (String dependent : dependents.getOrDefault(name, Collections.emptyList())) {
+					if (missing.merge(dependent, -1, Integer::sum) == 0) {
+						next.add(dependent);
+					}
+				}
+			}
+			levels.add(Collections.unmodifiableList(level));
+			level = next;
+		}
+	}
+
+	/**
+	 * Tarjan's algorithm for the strongly connected components, without
+	 * recursion since dependency chains can be long.
+	 */
+	private void findCycles() {
+		Map<String, Integer> index = new LinkedHashMap<>();
+		Map<String, Integer> lowLink = new LinkedHashMap<>();
+		Set<String> onStack = new LinkedHashSet<>();
+		Deque<String> stack = new ArrayDeque<>();
+		for (String root : dependencies.keySet()) {
+			if (levelOf.containsKey(root) || index.containsKey(root)) {
+				continue;
+			}
+			Deque<Map.Entry<String, List<String>>> work = new ArrayDeque<>();
+			visit(root, index, lowLink, onStack, stack, work);
+			while (!work.isEmpty()) {
+				Map.Entry<String, List<String>> frame = work.peek();
+				String name = frame.getKey();
+				List<String> successors = frame.getValue();
+				if (!successors.isEmpty()) {
+					String successor = successors.remove(successors.size() - 1);
+					if (!index.containsKey(successor)) {
+						visit(successor, index, lowLink, onStack, stack, work);
+					} else if (onStack.contains(successor)) {
+						lowLink.put(name, Math.min(lowLink.get(name), index.get(successor)));
+					}
+					continue;
+				}
+				work.pop();
+				if (!work.isEmpty()) {
+					String parent = work.peek().getKey();
+					lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(name)));
+				}
+				if (lowLink.get(name).equals(index.get(name))) {
+					List<String> component = new ArrayList<>();
+					String member;
+					do {
+						member = stack.pop();
+						onStack.remove(member);
+						component.add(member);
+					} while (!member.equals(name));
+					if (component.size() > 1 || dependencies.get(name).contains(name)) {
+						Collections.reverse(component);
+						cycles.add(Collections.unmodifiableList(component));
+					}
+				}
+			}
+		}
+	}
+
+	private void visit(String name, Map<String, Integer> index, Map<String, Integer> lowLink, Set<String> onStack,
+			Deque<String> stack, Deque<Map.Entry<String, List<String>>> work) {
+		index.put(name, index.size());
+		lowLink.put(name, index.get(name));
+		stack.push(name);
+		onStack.add(name);
+		List<String> successors = new ArrayList<>();
+		for (String dependency : dependencies.get(name)) {
+			if (!levelOf.containsKey(dependency)) {
+				successors.add(dependency);
+			}
+		}
+		work.push(new AbstractMap.SimpleEntry<>(name, successors));
+	}
+
+	/**
+	 * The rules and computations by execution level; the operations of a level
+	 * only depend on operations of lower levels.
+	 */
+	public List<List<String>> getLevels() {
+		return Collections.unmodifiableList(levels);
+	}
+
+	/**
+	 * Returns the execution level of the operation or -1 if it is on or depends
+	 * on a cycle.
+	 */
+	public int getLevel(String name) {
+		return levelOf.getOrDefault(name, -1);
+	}
+
+	public Set<String> getDependencies(String name) {
+		return Collections.unmodifiableSet(dependencies.get(name));
+	}
+
+	public List<List<String>> getCycles() {
+		return Collections.unmodifiableList(cycles);
+	}
+
+	public boolean hasCycles() {
+		return !cycles.isEmpty();
+	}
+
+	/**
+	 * Dependencies on operations that do not exist or are of the wrong kind.
+	 */
+	public List<String> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+
+	/**
+	 * Writes the facts rule_execution_level(Level,Operations) and
+	 * rule_dependency_cycle(Operations), each terminated by a full stop.
+	 */
+	public void write(IPrologTermOutput pout) {
+		for (int i = 0; i < levels.size(); i++) {
+			pout.openTerm("rule_execution_level", 2, true);
+			pout.integer(i);
+			writeAtoms(pout, levels.get(i));
+			pout.closeTerm();
+			pout.fullStop();
+		}
+		for (List<String> cycle : cycles) {
+			pout.openTerm("rule_dependency_cycle", 1, true);
+			writeAtoms(pout, cycle);
+			pout.closeTerm();
+			pout.fullStop();
+		}
+	}
+
+	private static void writeAtoms(IPrologTermOutput pout, List<String> names) {
+		pout.openList();
+		for (String name : names) {
+			// names like ComputeX have to be quoted
+			pout.quotedAtom(name);
+		}
+		pout.closeList();
+	}
+
+	@Override
+	public String toString() {
+		return "levels: " + levels + (cycles.isEmpty() ? "" : ", cycles: " + cycles)
+				+ (errors.isEmpty() ? "" : ", errors: " + errors);
+	}
+
+}
@@ -4,13 +4,13 @@ import de.prob.parser.ast.nodes.DeclarationNode;
 import de.prob.parser.ast.nodes.EnumeratedSetDeclarationNode;
 import de.prob.parser.ast.nodes.FormulaNode;
 import de.prob.parser.ast.nodes.MachineNode;
-import de.prob.parser.ast.nodes.MachineReferenceNode;
 import de.prob.parser.ast.nodes.Node;
 import de.prob.parser.ast.nodes.OperationNode;
 import de.prob.parser.ast.nodes.expression.RealNumberNode;
 import de.prob.parser.ast.nodes.expression.RecordFieldAccessNode;
 import de.prob.parser.ast.nodes.expression.RecordNode;
 import de.prob.parser.ast.nodes.expression.StructNode;
+import de.prob.parser.ast.nodes.NodeUtil;
 import de.prob.parser.ast.nodes.TypedNode;
 import de.prob.parser.ast.nodes.expression.ExprNode;
 import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
@@ -66,6 +66,7 @@ import de.prob.parser.ast.types.UntypedType;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Observable;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -78,10 +79,16 @@ public class TypeChecker implements AbstractVisitor<BType, BType> {
 	private Set<ExpressionOperatorNode> minusNodes = new HashSet<>();
 	private Set<ExpressionOperatorNode> multOrCartNodes = new HashSet<>();
 	private Set<TypedNode> typedNodes = new HashSet<>();
+	private RenamedVariablesIndex renamedVariables;
 
 	// TODO: Implement type checking for reals
 
 	public TypeChecker(MachineNode machineNode) throws TypeErrorException {
+		this(machineNode, RenamedVariablesIndex.create(machineNode));
+	}
+
+	public TypeChecker(MachineNode machineNode, RenamedVariablesIndex renamedVariables) throws TypeErrorException {
+		this.renamedVariables = renamedVariables;
 		try {
 			checkMachineNode(machineNode);
 		} catch (TypeCheckerVisitorException e) {
@@ -249,47 +256,72 @@ public class TypeChecker implements AbstractVisitor<BType, BType> {
 	}
 
 	private void typecheckRenamedVariables(MachineNode machineNode) {
-		if(machineNode.getIncludedRenamedVariables() != null) {
-			for (MachineReferenceNode reference : machineNode.getMachineReferences()) {
-				if (reference.getPrefix() != null) {
-					String prefix = reference.getPrefix() + ".";
-					for (DeclarationNode variable : machineNode.getIncludedRenamedVariables()) {
-						if (variable.getName().startsWith(prefix)) {
-							String identifier = variable.getName().replaceFirst(prefix, "");
-							for (DeclarationNode otherVariable : reference.getMachineNode().getVariables()) {
-								if (identifier.equals(otherVariable.getName())) {
-									variable.setType(otherVariable.getType());
-								}
-							}
-						}
-						for (DeclarationNode otherVariable : machineNode.getIncludedRenamedVariables()) {
-							String includedMachinePrefix = variable.getSurroundingMachineNode().getPrefix();
-							if(includedMachinePrefix != null) {
-								if (variable.getName().startsWith(includedMachinePrefix) && otherVariable.getName().startsWith(includedMachinePrefix) && variable.getName().equals(otherVariable.getName())) {
-									variable.setType(otherVariable.getType());
-								}
-							}
-						}
-					}
-				} else {
-					for (DeclarationNode variable : machineNode.getIncludedRenamedVariables()) {
-						for (DeclarationNode otherVariable : reference.getMachineNode().getIncludedRenamedVariables()) {
-							if (variable.getName().equals(otherVariable.getName())) {
-								variable.setType(otherVariable.getType());
-							}
-						}
-					}
-				}
-
+		for (DeclarationNode variable : machineNode.getIncludedRenamedVariables()) {
+			DeclarationNode source = renamedVariables.lookUpSource(variable);
+			if (source != null) {
+				variable.setType(source.getType());
 			}
 		}
 	}
 
 	private void visitOperations(MachineNode machineNode) {
 		for (OperationNode operationsNode : machineNode.getOperations()) {
-			setDeclarationTypes(operationsNode.getOutputParams());
-			setDeclarationTypes(operationsNode.getParams());
-			visitSubstitutionNode(operationsNode.getSubstitution(), null);
+			visitOperation(operationsNode);
+		}
+	}
+
+	private void visitOperation(OperationNode operationsNode) {
+		setDeclarationTypes(operationsNode.getOutputParams());
+		setDeclarationTypes(operationsNode.getParams());
+		visitSubstitutionNode(operationsNode.getSubstitution(), null);
+	}
+
+	/**
+	 * Checks an operation of the machine that has not been added to it, after
+	 * the rest of the machine has been checked, see
+	 * {@link de.prob.parser.antlr.MachineASTCreator#createMachineASTWithoutOperations}.
+	 * No node of the operation is retained afterwards.
+	 */
+	public void checkOperation(OperationNode operationNode) throws TypeErrorException {
+		try {
+			visitOperation(operationNode);
+			performPostActions();
+			releaseTypes(operationNode);
+		} catch (TypeCheckerVisitorException e) {
+			throw e.getTypeErrorException();
+		} finally {
+			typedNodes.clear();
+			minusNodes.clear();
+			multOrCartNodes.clear();
+		}
+	}
+
+	/**
+	 * The nodes of the operation observe the types they share with the
+	 * declarations of the machine. The complete types do not change anymore,
+	 * so their observers are removed and the operation can be collected.
+	 */
+	private static void releaseTypes(Node node) {
+		if (node instanceof TypedNode) {
+			releaseType(((TypedNode) node).getType());
+		}
+		for (Node child : NodeUtil.getChildren(node)) {
+			releaseTypes(child);
+		}
+	}
+
+	private static void releaseType(BType type) {
+		if (type == null || type.isUntyped() || !(type instanceof Observable)) {
+			return;
+		}
+		((Observable) type).deleteObservers();
+		if (type instanceof SetType) {
+			releaseType(((SetType) type).getSubType());
+		} else if (type instanceof CoupleType) {
+			releaseType(((CoupleType) type).getLeft());
+			releaseType(((CoupleType) type).getRight());
+		} else if (type instanceof RecordType) {
+			((RecordType) type).getSubtypes().forEach(TypeChecker::releaseType);
 		}
 	}
 
@@ -18,36 +18,49 @@ import de.prob.parser.ast.nodes.predicate.CastPredicateExpressionNode;
 public interface ExpressionVisitor {
 
 	default void visitExprNode(ExprNode node) {
-		if (node instanceof ExpressionOperatorNode) {
+		switch (node.getNodeKind()) {
+		case EXPRESSION_OPERATOR:
 			visitExprOperatorNode((ExpressionOperatorNode) node);
-		} else if (node instanceof IdentifierExprNode) {
+			break;
+		case IDENTIFIER_EXPRESSION:
 			visitIdentifierExprNode((IdentifierExprNode) node);
-		} else if (node instanceof NumberNode) {
+			break;
+		case NUMBER:
 			visitNumberNode((NumberNode) node);
-		} else if (node instanceof QuantifiedExpressionNode) {
+			break;
+		case QUANTIFIED_EXPRESSION:
 			visitQuantifiedExpressionNode((QuantifiedExpressionNode) node);
-		} else if (node instanceof SetComprehensionNode) {
+			break;
+		case SET_COMPREHENSION:
 			visitSetComprehensionNode((SetComprehensionNode) node);
-		} else if (node instanceof CastPredicateExpressionNode) {
+			break;
+		case CAST_PREDICATE_EXPRESSION:
 			visitCastPredicateExpressionNode((CastPredicateExpressionNode) node);
-		} else if(node instanceof LambdaNode) {
+			break;
+		case LAMBDA:
 			visitLambdaNode((LambdaNode) node);
-		} else if(node instanceof LetExpressionNode) {
+			break;
+		case LET_EXPRESSION:
 			visitLetExpressionNode((LetExpressionNode) node);
-		} else if(node instanceof IfExpressionNode) {
+			break;
+		case IF_EXPRESSION:
 			visitIfExpressionNode((IfExpressionNode) node);
-		} else if(node instanceof StringNode) {
+			break;
+		case STRING:
 			visitStringNode((StringNode) node);
-		} else if(node instanceof RecordNode) {
+			break;
+		case RECORD:
 			visitRecordNode((RecordNode) node);
-		} else if(node instanceof StructNode) {
+			break;
+		case STRUCT:
 			visitStructNode((StructNode) node);
-		} else if(node instanceof RecordFieldAccessNode) {
+			break;
+		case RECORD_FIELD_ACCESS:
 			visitRecordFieldAccessNode((RecordFieldAccessNode) node);
-		} else {
+			break;
+		default:
 			throw new AssertionError(node.getClass());
 		}
-		
 	}
 
 	void visitExprOperatorNode(ExpressionOperatorNode node);
@@ -19,36 +19,38 @@ import de.prob.parser.ast.nodes.predicate.CastPredicateExpressionNode;
 public interface ParametrisedExpressionVisitor<R, P> {
 
 	default R visitExprNode(ExprNode node, P expected) {
-		if (node instanceof ExpressionOperatorNode) {
+		switch (node.getNodeKind()) {
+		case EXPRESSION_OPERATOR:
 			return visitExprOperatorNode((ExpressionOperatorNode) node, expected);
-		} else if (node instanceof IdentifierExprNode) {
+		case IDENTIFIER_EXPRESSION:
 			return visitIdentifierExprNode((IdentifierExprNode) node, expected);
-		} else if (node instanceof NumberNode) {
+		case NUMBER:
 			return visitNumberNode((NumberNode) node, expected);
-		} else if(node instanceof RealNumberNode) {
+		case REAL_NUMBER:
 			return visitRealNumberNode((RealNumberNode) node, expected);
-		} else if (node instanceof QuantifiedExpressionNode) {
+		case QUANTIFIED_EXPRESSION:
 			return visitQuantifiedExpressionNode((QuantifiedExpressionNode) node, expected);
-		} else if (node instanceof SetComprehensionNode) {
+		case SET_COMPREHENSION:
 			return visitSetComprehensionNode((SetComprehensionNode) node, expected);
-		} else if (node instanceof CastPredicateExpressionNode) {
+		case CAST_PREDICATE_EXPRESSION:
 			return visitCastPredicateExpressionNode((CastPredicateExpressionNode) node, expected);
-		} else if (node instanceof LambdaNode) {
+		case LAMBDA:
 			return visitLambdaNode((LambdaNode) node, expected);
-		} else if(node instanceof LetExpressionNode) {
+		case LET_EXPRESSION:
 			return visitLetExpressionNode((LetExpressionNode) node, expected);
-		} else if(node instanceof IfExpressionNode) {
+		case IF_EXPRESSION:
 			return visitIfExpressionNode((IfExpressionNode) node, expected);
-		} else if(node instanceof StringNode) {
+		case STRING:
 			return visitStringNode((StringNode) node, expected);
-		} else if(node instanceof RecordNode) {
+		case RECORD:
 			return visitRecordNode((RecordNode) node, expected);
-		} else if(node instanceof StructNode) {
+		case STRUCT:
 			return visitStructNode((StructNode) node, expected);
-		} else if(node instanceof RecordFieldAccessNode) {
+		case RECORD_FIELD_ACCESS:
 			return visitRecordFieldAccessNode((RecordFieldAccessNode) node, expected);
+		default:
+			throw new AssertionError(node.getClass());
 		}
-		throw new AssertionError(node.getClass());
 	}
 
 	R visitExprOperatorNode(ExpressionOperatorNode node, P expected);
@@ -9,16 +9,18 @@ import de.prob.parser.ast.nodes.ltl.LTLPrefixOperatorNode;
 public interface ParametrisedLTLVisitor<R, P> {
 
 	default R visitLTLNode(LTLNode node, P expected) {
-		if (node instanceof LTLBPredicateNode) {
+		switch (node.getNodeKind()) {
+		case LTL_B_PREDICATE:
 			return visitLTLBPredicateNode((LTLBPredicateNode) node, expected);
-		} else if (node instanceof LTLInfixOperatorNode) {
+		case LTL_INFIX_OPERATOR:
 			return visitLTLInfixOperatorNode((LTLInfixOperatorNode) node, expected);
-		} else if (node instanceof LTLKeywordNode) {
+		case LTL_KEYWORD:
 			return visitLTLKeywordNode((LTLKeywordNode) node, expected);
-		} else if (node instanceof LTLPrefixOperatorNode) {
+		case LTL_PREFIX_OPERATOR:
 			return visitLTLPrefixOperatorNode((LTLPrefixOperatorNode) node, expected);
+		default:
+			throw new AssertionError(node.getClass());
 		}
-		throw new AssertionError(node.getClass());
 	}
 
 	R visitLTLPrefixOperatorNode(LTLPrefixOperatorNode node, P expected);
@@ -11,20 +11,22 @@ import de.prob.parser.ast.nodes.predicate.QuantifiedPredicateNode;
 public interface ParametrisedPredicateVisitor<R, P> {
 
 	default R visitPredicateNode(PredicateNode node, P expected) {
-		if (node instanceof PredicateOperatorNode) {
+		switch (node.getNodeKind()) {
+		case PREDICATE_OPERATOR:
 			return visitPredicateOperatorNode((PredicateOperatorNode) node, expected);
-		} else if (node instanceof PredicateOperatorWithExprArgsNode) {
+		case PREDICATE_OPERATOR_WITH_EXPR_ARGS:
 			return visitPredicateOperatorWithExprArgs((PredicateOperatorWithExprArgsNode) node, expected);
-		} else if (node instanceof IdentifierPredicateNode) {
+		case IDENTIFIER_PREDICATE:
 			return visitIdentifierPredicateNode((IdentifierPredicateNode) node, expected);
-		} else if (node instanceof QuantifiedPredicateNode) {
+		case QUANTIFIED_PREDICATE:
 			return visitQuantifiedPredicateNode((QuantifiedPredicateNode) node, expected);
-		} else if (node instanceof LetPredicateNode) {
+		case LET_PREDICATE:
 			return visitLetPredicateNode((LetPredicateNode) node, expected);
-		} else if (node instanceof IfPredicateNode) {
+		case IF_PREDICATE:
 			return visitIfPredicateNode((IfPredicateNode) node, expected);
+		default:
+			throw new AssertionError(node.getClass());
 		}
-		throw new AssertionError(node.getClass());
 	}
 
 	R visitIdentifierPredicateNode(IdentifierPredicateNode node, P expected);
@@ -18,34 +18,36 @@ import de.prob.parser.ast.nodes.substitution.WhileSubstitutionNode;
 public interface ParametrisedSubstitutionVisitor<R, P> {
 
 	default R visitSubstitutionNode(SubstitutionNode node, P expected) {
-		if (node instanceof IfOrSelectSubstitutionsNode) {
+		switch (node.getNodeKind()) {
+		case IF_OR_SELECT_SUBSTITUTION:
 			return visitIfOrSelectSubstitutionsNode((IfOrSelectSubstitutionsNode) node, expected);
-		} else if (node instanceof AnySubstitutionNode) {
+		case ANY_SUBSTITUTION:
 			return visitAnySubstitution((AnySubstitutionNode) node, expected);
-		} else if (node instanceof LetSubstitutionNode) {
+		case LET_SUBSTITUTION:
 			return visitLetSubstitution((LetSubstitutionNode) node, expected);
-		} else if (node instanceof BecomesSuchThatSubstitutionNode) {
+		case BECOMES_SUCH_THAT_SUBSTITUTION:
 			return visitBecomesSuchThatSubstitutionNode((BecomesSuchThatSubstitutionNode) node, expected);
-		} else if (node instanceof BecomesElementOfSubstitutionNode) {
+		case BECOMES_ELEMENT_OF_SUBSTITUTION:
 			return visitBecomesElementOfSubstitutionNode((BecomesElementOfSubstitutionNode) node, expected);
-		} else if (node instanceof ConditionSubstitutionNode) {
+		case CONDITION_SUBSTITUTION:
 			return visitConditionSubstitutionNode((ConditionSubstitutionNode) node, expected);
-		} else if (node instanceof SkipSubstitutionNode) {
+		case SKIP_SUBSTITUTION:
 			return visitSkipSubstitutionNode((SkipSubstitutionNode) node, expected);
-		} else if (node instanceof AssignSubstitutionNode) {
+		case ASSIGN_SUBSTITUTION:
 			return visitAssignSubstitutionNode((AssignSubstitutionNode) node, expected);
-		} else if (node instanceof ListSubstitutionNode) {
+		case LIST_SUBSTITUTION:
 			return visitListSubstitutionNode((ListSubstitutionNode) node, expected);
-		} else if (node instanceof OperationCallSubstitutionNode) {
+		case OPERATION_CALL_SUBSTITUTION:
 			return visitSubstitutionIdentifierCallNode((OperationCallSubstitutionNode) node, expected);
-		}else if (node instanceof WhileSubstitutionNode) {
+		case WHILE_SUBSTITUTION:
 			return visitWhileSubstitutionNode((WhileSubstitutionNode) node, expected);
-		}else if (node instanceof VarSubstitutionNode) {
+		case VAR_SUBSTITUTION:
 			return visitVarSubstitutionNode((VarSubstitutionNode) node, expected);
-		}else if(node instanceof ChoiceSubstitutionNode) {
+		case CHOICE_SUBSTITUTION:
 			return visitChoiceSubstitutionNode((ChoiceSubstitutionNode) node, expected);
+		default:
+			throw new AssertionError(node.getClass());
 		}
-		throw new AssertionError(node.getClass());
 	}
 
 	R visitVarSubstitutionNode(VarSubstitutionNode node, P expected);
@@ -11,19 +11,26 @@ import de.prob.parser.ast.nodes.predicate.QuantifiedPredicateNode;
 public interface PredicateVisitor {
 
 	default void visitPredicateNode(PredicateNode node) {
-		if (node instanceof PredicateOperatorNode) {
+		switch (node.getNodeKind()) {
+		case PREDICATE_OPERATOR:
 			visitPredicateOperatorNode((PredicateOperatorNode) node);
-		} else if (node instanceof PredicateOperatorWithExprArgsNode) {
+			break;
+		case PREDICATE_OPERATOR_WITH_EXPR_ARGS:
 			visitPredicateOperatorWithExprArgs((PredicateOperatorWithExprArgsNode) node);
-		} else if (node instanceof IdentifierPredicateNode) {
+			break;
+		case IDENTIFIER_PREDICATE:
 			visitIdentifierPredicateNode((IdentifierPredicateNode) node);
-		} else if (node instanceof QuantifiedPredicateNode) {
+			break;
+		case QUANTIFIED_PREDICATE:
 			visitQuantifiedPredicateNode((QuantifiedPredicateNode) node);
-		} else if (node instanceof LetPredicateNode) {
+			break;
+		case LET_PREDICATE:
 			visitLetPredicateNode((LetPredicateNode) node);
-		} else if (node instanceof IfPredicateNode) {
+			break;
+		case IF_PREDICATE:
 			visitIfPredicateNode((IfPredicateNode) node);
-		} else {
+			break;
+		default:
 			throw new AssertionError(node.getClass());
 		}
 	}
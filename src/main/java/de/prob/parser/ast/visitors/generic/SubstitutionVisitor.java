@@ -18,36 +18,49 @@ import de.prob.parser.ast.nodes.substitution.WhileSubstitutionNode;
 public interface SubstitutionVisitor {
 
 	default void visitSubstitutionNode(SubstitutionNode node) {
-		if (node instanceof ListSubstitutionNode) {
+		switch (node.getNodeKind()) {
+		case LIST_SUBSTITUTION:
 			visitListSubstitutionNode((ListSubstitutionNode) node);
-		} else if (node instanceof AnySubstitutionNode) {
+			break;
+		case ANY_SUBSTITUTION:
 			visitAnySubstitution((AnySubstitutionNode) node);
-		} else if (node instanceof LetSubstitutionNode) {
+			break;
+		case LET_SUBSTITUTION:
 			visitLetSubstitution((LetSubstitutionNode) node);
-		} else if (node instanceof BecomesSuchThatSubstitutionNode) {
+			break;
+		case BECOMES_SUCH_THAT_SUBSTITUTION:
 			visitBecomesSuchThatSubstitutionNode((BecomesSuchThatSubstitutionNode) node);
-		} else if (node instanceof BecomesElementOfSubstitutionNode) {
+			break;
+		case BECOMES_ELEMENT_OF_SUBSTITUTION:
 			visitBecomesElementOfSubstitutionNode((BecomesElementOfSubstitutionNode) node);
-		} else if (node instanceof ConditionSubstitutionNode) {
+			break;
+		case CONDITION_SUBSTITUTION:
 			visitConditionSubstitutionNode((ConditionSubstitutionNode) node);
-		} else if (node instanceof IfOrSelectSubstitutionsNode) {
+			break;
+		case IF_OR_SELECT_SUBSTITUTION:
 			visitIfOrSelectSubstitutionsNode((IfOrSelectSubstitutionsNode) node);
-		} else if (node instanceof SkipSubstitutionNode) {
+			break;
+		case SKIP_SUBSTITUTION:
 			visitSkipSubstitutionNode((SkipSubstitutionNode) node);
-		} else if (node instanceof AssignSubstitutionNode) {
+			break;
+		case ASSIGN_SUBSTITUTION:
 			visitAssignSubstitutionNode((AssignSubstitutionNode) node);
-		} else if (node instanceof OperationCallSubstitutionNode) {
+			break;
+		case OPERATION_CALL_SUBSTITUTION:
 			visitSubstitutionIdentifierCallNode((OperationCallSubstitutionNode) node);
-		} else if (node instanceof WhileSubstitutionNode) {
+			break;
+		case WHILE_SUBSTITUTION:
 			visitWhileSubstitutionNode((WhileSubstitutionNode) node);
-		} else if (node instanceof VarSubstitutionNode) {
+			break;
+		case VAR_SUBSTITUTION:
 			visitVarSubstitutionNode((VarSubstitutionNode) node);
-		} else if (node instanceof ChoiceSubstitutionNode) {
+			break;
+		case CHOICE_SUBSTITUTION:
 			visitChoiceSubstitutionNode((ChoiceSubstitutionNode) node);
-		} else {
+			break;
+		default:
 			throw new AssertionError(node.getClass());
 		}
-
 	}
 
 	void visitVarSubstitutionNode(VarSubstitutionNode node);
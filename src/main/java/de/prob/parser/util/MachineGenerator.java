@@ -0,0 +1,529 @@
+package de.prob.parser.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates syntactically and type-correct B machines for stress tests and
+ * benchmarks. The output only depends on the parameters and the seed.
+ *
+ * The main machine includes {@code includes} machines, each of them again
+ * includes {@code includes} machines, down to {@code includeDepth} levels. With
+ * {@code renamedInstances > 0} every included machine is included that many
+ * times under the prefixes r1, r2, .... The identifiers of every machine start
+ * with its name, so there are no clashes between machines. Every generated
+ * machine sees the {@code sees} context machines, which define enumerated sets
+ * and constants.
+ */
+public class MachineGenerator {
+
+	private long seed = 0;
+	private int constants = 10;
+	private int variables = 10;
+	private int operations = 10;
+	private int propertyConjuncts = 10;
+	private int depth = 3;
+	private int setSize = 5;
+	private int includes = 0;
+	private int includeDepth = 1;
+	private int sees = 0;
+	private int renamedInstances = 0;
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public void setConstants(int constants) {
+		this.constants = constants;
+	}
+
+	public void setVariables(int variables) {
+		this.variables = variables;
+	}
+
+	public void setOperations(int operations) {
+		this.operations = operations;
+	}
+
+	/**
+	 * The number of conjuncts in PROPERTIES in addition to the typing of the
+	 * constants.
+	 */
+	public void setPropertyConjuncts(int propertyConjuncts) {
+		this.propertyConjuncts = propertyConjuncts;
+	}
+
+	/**
+	 * The nesting depth of the generated expressions.
+	 */
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * The number of elements of set literals and enumerated sets.
+	 */
+	public void setSetSize(int setSize) {
+		this.setSize = Math.max(1, setSize);
+	}
+
+	/**
+	 * The number of machines included by each machine above the deepest
+	 * level.
+	 */
+	public void setIncludes(int includes) {
+		this.includes = includes;
+	}
+
+	public void setIncludeDepth(int includeDepth) {
+		this.includeDepth = includeDepth;
+	}
+
+	/**
+	 * The number of context machines seen by every machine.
+	 */
+	public void setSees(int sees) {
+		this.sees = sees;
+	}
+
+	public void setRenamedInstances(int renamedInstances) {
+		this.renamedInstances = renamedInstances;
+	}
+
+	/**
+	 * Returns the generated machines by name, the main machine first.
+	 */
+	public Map<String, String> generate() {
+		Map<String, String> machines = new LinkedHashMap<>();
+		for (String name : getMachineNames()) {
+			StringBuilder sb = new StringBuilder();
+			generate(name, sb);
+			machines.put(name, sb.toString());
+		}
+		return machines;
+	}
+
+	/**
+	 * Writes the machines into the directory and returns the file of the main
+	 * machine.
+	 */
+	public Path write(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		for (String name : getMachineNames()) {
+			try (Writer out = new BufferedWriter(Files.newBufferedWriter(directory.resolve(name + ".mch"),
+					StandardCharsets.UTF_8))) {
+				generate(name, out);
+			}
+		}
+		return directory.resolve("Main.mch");
+	}
+
+	public List<String> getMachineNames() {
+		List<String> names = new ArrayList<>();
+		addMachineNames("Main", 0, names);
+		for (int i = 1; i <= sees; i++) {
+			names.add("Ctx" + i);
+		}
+		return names;
+	}
+
+	private void addMachineNames(String name, int level, List<String> names) {
+		names.add(name);
+		for (String child : getIncludedMachines(name, level)) {
+			addMachineNames(child, level + 1, names);
+		}
+	}
+
+	private List<String> getIncludedMachines(String name, int level) {
+		List<String> children = new ArrayList<>();
+		if (level < includeDepth) {
+			String prefix = level == 0 ? "Inc" : name + "_";
+			for (int i = 1; i <= includes; i++) {
+				children.add(prefix + i);
+			}
+		}
+		return children;
+	}
+
+	private static int getLevel(String name) {
+		if (name.equals("Main")) {
+			return 0;
+		}
+		int level = 1;
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) == '_') {
+				level++;
+			}
+		}
+		return level;
+	}
+
+	private static String getPrefix(String instance) {
+		return instance.substring(0, instance.indexOf('.') + 1);
+	}
+
+	private static String getMachine(String instance) {
+		return instance.substring(instance.indexOf('.') + 1);
+	}
+
+	private static String variableName(String machine, int i) {
+		return machine.toLowerCase() + "_v" + i;
+	}
+
+	private static String operationName(String machine, int i) {
+		return machine.toLowerCase() + "_op" + i;
+	}
+
+	/**
+	 * Writes the machine with the given name, one of
+	 * {@link #getMachineNames()}.
+	 */
+	public void generate(String name, Appendable out) {
+		try {
+			new Machine(name, out).write();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private class Machine {
+		private final String name;
+		private final Appendable out;
+		private final Random random;
+		private final boolean context;
+		// identifiers usable in the current clause
+		private final List<String> integers = new ArrayList<>();
+		private final List<String> sets = new ArrayList<>();
+		private int boundVariables = 0;
+
+		Machine(String name, Appendable out) {
+			this.name = name;
+			this.out = out;
+			this.random = new Random(seed * 31 + name.hashCode());
+			this.context = name.startsWith("Ctx");
+		}
+
+		void write() throws IOException {
+			out.append("MACHINE ").append(name).append('\n');
+			List<String> instances = new ArrayList<>();
+			if (!context) {
+				for (String child : getIncludedMachines(name, getLevel(name))) {
+					if (renamedInstances == 0) {
+						instances.add(child);
+					}
+					for (int i = 1; i <= renamedInstances; i++) {
+						instances.add("r" + i + "." + child);
+					}
+				}
+				if (!instances.isEmpty()) {
+					out.append("INCLUDES ").append(String.join(", ", instances)).append('\n');
+				}
+				if (sees > 0) {
+					out.append("SEES ");
+					for (int i = 1; i <= sees; i++) {
+						out.append(i == 1 ? "" : ", ").append("Ctx").append(Integer.toString(i));
+					}
+					out.append('\n');
+					for (int i = 1; i <= sees; i++) {
+						addConstants("Ctx" + i);
+					}
+				}
+			}
+			if (context) {
+				out.append("SETS ").append(name).append("_SET = {");
+				for (int i = 0; i < setSize; i++) {
+					out.append(i == 0 ? "" : ", ").append(name.toLowerCase()).append("_e")
+							.append(Integer.toString(i));
+				}
+				out.append("}\n");
+			}
+			if (constants > 0) {
+				writeConstants();
+			}
+			if (!context && variables > 0) {
+				writeVariables(instances);
+			}
+			if (!context && operations > 0) {
+				writeOperations(instances);
+			}
+			out.append("END\n");
+		}
+
+		private void addConstants(String machine) {
+			for (int i = 0; i < constants; i++) {
+				(i % 2 == 0 ? integers : sets).add(constantName(machine, i));
+			}
+		}
+
+		private String constantName(String machine, int i) {
+			return machine.toLowerCase() + "_c" + i;
+		}
+
+		private void writeConstants() throws IOException {
+			out.append("CONSTANTS ");
+			for (int i = 0; i < constants; i++) {
+				out.append(i == 0 ? "" : ", ").append(constantName(name, i));
+			}
+			out.append("\nPROPERTIES\n");
+			addConstants(name);
+			for (int i = 0; i < constants; i++) {
+				out.append(i == 0 ? "  " : " &\n  ").append(constantName(name, i))
+						.append(i % 2 == 0 ? " : NATURAL" : " <: INTEGER");
+			}
+			for (int i = 0; i < propertyConjuncts; i++) {
+				out.append(" &\n  ");
+				predicate(depth);
+			}
+			out.append('\n');
+		}
+
+		private void writeVariables(List<String> instances) throws IOException {
+			out.append("VARIABLES ");
+			for (int i = 0; i < variables; i++) {
+				out.append(i == 0 ? "" : ", ").append(variableName(name, i));
+			}
+			out.append("\nINVARIANT\n");
+			for (int i = 0; i < variables; i++) {
+				out.append(i == 0 ? "  " : " &\n  ").append(variableName(name, i))
+						.append(i % 2 == 0 ? " : INTEGER" : " : POW(INTEGER)");
+			}
+			for (int i = 0; i < variables; i++) {
+				(i % 2 == 0 ? integers : sets).add(variableName(name, i));
+			}
+			for (String instance : instances) {
+				// the first variable of every included machine is an integer
+				out.append(" &\n  ").append(getPrefix(instance)).append(variableName(getMachine(instance), 0))
+						.append(" : INTEGER");
+			}
+			out.append("\nINITIALISATION\n  ");
+			for (int i = 0; i < variables; i++) {
+				out.append(i == 0 ? "" : " ||\n  ").append(variableName(name, i)).append(" := ");
+				if (i % 2 == 0) {
+					out.append(Integer.toString(random.nextInt(100)));
+				} else {
+					setLiteral();
+				}
+			}
+			out.append('\n');
+		}
+
+		private void writeOperations(List<String> instances) throws IOException {
+			out.append("OPERATIONS\n");
+			integers.add("p");
+			for (int i = 0; i < operations; i++) {
+				out.append(i == 0 ? "" : ";\n").append("  ").append(operationName(name, i))
+						.append("(p) =\n    PRE p : INTEGER & ");
+				predicate(depth);
+				out.append(" THEN\n      ");
+				if (variables > 0) {
+					int variable = random.nextInt(variables);
+					out.append(variableName(name, variable)).append(" := ");
+					if (variable % 2 == 0) {
+						integerExpression(depth);
+					} else {
+						setExpression(depth);
+					}
+				} else {
+					out.append("skip");
+				}
+				if (!instances.isEmpty()) {
+					String instance = instances.get(random.nextInt(instances.size()));
+					out.append(" ;\n      ").append(getPrefix(instance))
+							.append(operationName(getMachine(instance), random.nextInt(operations))).append("(");
+					integerExpression(Math.min(depth, 1));
+					out.append(")");
+				}
+				out.append("\n    END");
+			}
+			integers.remove("p");
+			out.append('\n');
+		}
+
+		private void predicate(int d) throws IOException {
+			switch (random.nextInt(d == 0 ? 3 : 5)) {
+			case 0:
+				integerExpression(d);
+				out.append(random.nextBoolean() ? " <= " : " /= ");
+				integerExpression(d);
+				break;
+			case 1:
+				integerExpression(d);
+				out.append(" : ");
+				setExpression(d);
+				break;
+			case 2:
+				setExpression(d);
+				out.append(" <: ");
+				setExpression(d);
+				break;
+			case 3:
+				out.append('(');
+				predicate(d - 1);
+				out.append(random.nextBoolean() ? " or " : " => ");
+				predicate(d - 1);
+				out.append(')');
+				break;
+			default:
+				String x = "x" + boundVariables++;
+				out.append(random.nextBoolean() ? "!" : "#").append(x).append(".(").append(x).append(" : ");
+				setExpression(d - 1);
+				out.append(random.nextBoolean() ? " => " : " & ");
+				integers.add(x);
+				predicate(d - 1);
+				integers.remove(integers.size() - 1);
+				out.append(')');
+			}
+		}
+
+		private void integerExpression(int d) throws IOException {
+			if (d == 0 || random.nextInt(4) == 0) {
+				if (integers.isEmpty() || random.nextInt(3) == 0) {
+					out.append(Integer.toString(random.nextInt(1000)));
+				} else {
+					out.append(integers.get(random.nextInt(integers.size())));
+				}
+				return;
+			}
+			switch (random.nextInt(5)) {
+			case 0:
+				out.append("card(");
+				setExpression(d - 1);
+				out.append(')');
+				break;
+			case 1:
+				out.append('(');
+				integerExpression(d - 1);
+				out.append(" mod ").append(Integer.toString(random.nextInt(9) + 2)).append(')');
+				break;
+			default:
+				out.append('(');
+				integerExpression(d - 1);
+				out.append(" ").append("+-*".charAt(random.nextInt(3))).append(" ");
+				integerExpression(d - 1);
+				out.append(')');
+			}
+		}
+
+		private void setExpression(int d) throws IOException {
+			if (d == 0 || random.nextInt(4) == 0) {
+				int choice = random.nextInt(3);
+				if (choice == 0 && !sets.isEmpty()) {
+					out.append(sets.get(random.nextInt(sets.size())));
+				} else if (choice == 1) {
+					// .. binds weaker than + and -
+					int from = random.nextInt(100);
+					out.append('(').append(Integer.toString(from)).append("..").append(Integer.toString(from + setSize))
+							.append(')');
+				} else {
+					setLiteral();
+				}
+				return;
+			}
+			switch (random.nextInt(4)) {
+			case 0:
+				String x = "x" + boundVariables++;
+				out.append('{').append(x).append(" | ").append(x).append(" : ");
+				setExpression(d - 1);
+				out.append(" & ");
+				integers.add(x);
+				predicate(d - 1);
+				integers.remove(integers.size() - 1);
+				out.append('}');
+				break;
+			default:
+				out.append('(');
+				setExpression(d - 1);
+				out.append(" ").append(new String[] { "\\/", "/\\", "-" }[random.nextInt(3)]).append(" ");
+				setExpression(d - 1);
+				out.append(')');
+			}
+		}
+
+		private void setLiteral() throws IOException {
+			out.append('{');
+			for (int i = 0; i < setSize; i++) {
+				out.append(i == 0 ? "" : ", ").append(Integer.toString(random.nextInt(1000)));
+			}
+			out.append('}');
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		MachineGenerator generator = new MachineGenerator();
+		Path directory = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (!arg.startsWith("-")) {
+					directory = Paths.get(arg);
+					continue;
+				}
+				long value = Long.parseLong(args[++i]);
+				switch (arg) {
+				case "-seed":
+					generator.setSeed(value);
+					break;
+				case "-constants":
+					generator.setConstants((int) value);
+					break;
+				case "-variables":
+					generator.setVariables((int) value);
+					break;
+				case "-operations":
+					generator.setOperations((int) value);
+					break;
+				case "-properties":
+					generator.setPropertyConjuncts((int) value);
+					break;
+				case "-depth":
+					generator.setDepth((int) value);
+					break;
+				case "-setsize":
+					generator.setSetSize((int) value);
+					break;
+				case "-includes":
+					generator.setIncludes((int) value);
+					break;
+				case "-includedepth":
+					generator.setIncludeDepth((int) value);
+					break;
+				case "-sees":
+					generator.setSees((int) value);
+					break;
+				case "-renamed":
+					generator.setRenamedInstances((int) value);
+					break;
+				default:
+					throw new IllegalArgumentException(arg);
+				}
+			}
+		} catch (RuntimeException e) {
+			directory = null;
+		}
+		if (directory == null) {
+			System.out.println("Use java -cp antlr-parser-VERSION.jar " + MachineGenerator.class.getName()
+					+ " [-seed N] [-constants N] [-variables N] [-operations N] [-properties N] [-depth N]"
+					+ " [-setsize N] [-includes N] [-includedepth N] [-sees N] [-renamed N] DIR");
+			System.out.println(" writes the generated machines into DIR, the main machine is DIR/Main.mch");
+			return;
+		}
+		generator.write(directory);
+		long size = 0;
+		for (String name : generator.getMachineNames()) {
+			size += Files.size(directory.resolve(name + ".mch"));
+		}
+		System.out.println("Generated " + generator.getMachineNames().size() + " machines, " + size / 1024 + " KB");
+	}
+
+}
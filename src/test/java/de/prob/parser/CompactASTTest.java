@@ -0,0 +1,305 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.BProject;
+import de.prob.parser.antlr.BProjectSerializer;
+import de.prob.parser.antlr.DefinitionFileCache;
+import de.prob.parser.antlr.MachineASTCreator;
+import de.prob.parser.antlr.PrologASTPrinter;
+import de.prob.parser.antlr.PrologTermWriter;
+import de.prob.parser.ast.compact.CompactAST;
+import de.prob.parser.ast.compact.CompactAST.MachineSection;
+import de.prob.parser.ast.compact.CompactASTCursor;
+import de.prob.parser.ast.compact.CompactASTVisitor;
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode.ExpressionOperator;
+import de.prob.parser.ast.nodes.predicate.PredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.substitution.AnySubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ListSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.OperationCallSubstitutionNode;
+import de.prob.parser.ast.visitors.MachineScopeChecker;
+import de.prob.parser.ast.visitors.TypeChecker;
+import de.prob.parser.ast.visitors.TypeErrorException;
+
+public class CompactASTTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static String getMainMachine() {
+		String machine = "MACHINE Main\n";
+		machine += "INCLUDES Counter\n";
+		machine += "SETS E = {e1, e2}\n";
+		machine += "CONSTANTS k\n";
+		machine += "PROPERTIES k = 3 & k : NATURAL\n";
+		machine += "VARIABLES x, y, f\n";
+		machine += "INVARIANT x : INTEGER & y : E & f : INTEGER +-> BOOL & count <= x\n";
+		machine += "INITIALISATION x := 1 || y := e1 || f := {}\n";
+		machine += "OPERATIONS\n";
+		machine += "  r <-- Get(p) = PRE p : INTEGER THEN r := x + p END;\n";
+		machine += "  Choose = ANY a WHERE a : 1..k & a /= x THEN x := a ; Tick END;\n";
+		machine += "  Set = f(1) := bool(!z.(z : 1..x => z > 0))\n";
+		machine += "END";
+		return machine;
+	}
+
+	private static String getCounterMachine() {
+		String counter = "MACHINE Counter\n";
+		counter += "VARIABLES count\n";
+		counter += "INVARIANT count : NATURAL\n";
+		counter += "INITIALISATION count := 0\n";
+		counter += "OPERATIONS\n";
+		counter += "  Tick = count := count + 1\n";
+		counter += "END";
+		return counter;
+	}
+
+	private BProject getProject() throws Exception {
+		return Antlr4BParser.createBProjectFromMachineStrings(getMainMachine(), getCounterMachine());
+	}
+
+	private File writeProject(String main) throws IOException {
+		File file = new File(folder.getRoot(), "Main.mch");
+		Files.write(file.toPath(), main.getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(folder.getRoot(), "Counter.mch").toPath(),
+				getCounterMachine().getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static String print(MachineNode machineNode) {
+		StringBuilder sb = new StringBuilder();
+		PrologTermWriter writer = new PrologTermWriter(sb);
+		writer.setPositions(true);
+		writer.visitMachineNode(machineNode);
+		return sb.toString();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		MachineNode machine = getProject().getMainMachine();
+		CompactAST ast = CompactAST.encode(machine);
+		MachineNode decoded = ast.toMachineNode();
+
+		assertEquals(print(machine), print(decoded));
+		for (int i = 0; i < machine.getVariables().size(); i++) {
+			DeclarationNode variable = decoded.getVariables().get(i);
+			assertEquals(machine.getVariables().get(i).getType().toString(), variable.getType().toString());
+			assertSame(decoded, variable.getSurroundingMachineNode());
+		}
+	}
+
+	@Test
+	public void testFlyweightAccessors() throws Exception {
+		MachineNode machine = getProject().getMainMachine();
+		CompactAST ast = CompactAST.encode(machine);
+
+		assertEquals(NodeKind.MACHINE, ast.getKind(ast.getRoot()));
+		assertEquals("Main", ast.getSymbol(ast.getRoot()).getName());
+		int operations = ast.getSection(MachineSection.OPERATIONS);
+		assertEquals(3, ast.getChildCount(operations));
+		int get = ast.getFirstChild(operations);
+		assertEquals(NodeKind.OPERATION, ast.getKind(get));
+		assertEquals("Get", ast.getSymbol(get).getName());
+
+		// r := x + p
+		int precondition = ast.getChild(get, 2);
+		int assignment = ast.getChild(precondition, 1);
+		assertEquals(NodeKind.ASSIGN_SUBSTITUTION, ast.getKind(assignment));
+		int plus = ast.getFirstChild(ast.getChild(assignment, 1));
+		assertEquals(ExpressionOperator.PLUS, ast.getOperator(plus, ExpressionOperator.class));
+		assertEquals("INTEGER", ast.getType(plus).toString());
+		int x = ast.getFirstChild(plus);
+		int declaration = ast.getReferencedNode(x);
+		assertEquals(NodeKind.DECLARATION, ast.getKind(declaration));
+		assertEquals(ast.getFirstChild(ast.getSection(MachineSection.VARIABLES)), declaration);
+
+		// count is declared in the included machine
+		int externals = ast.getSection(MachineSection.EXTERNALS);
+		assertNotEquals(CompactAST.NONE, ast.getFirstChild(externals));
+
+		int properties = ast.getSection(MachineSection.PROPERTIES);
+		int three = ast.getChild(ast.getFirstChild(properties), 1);
+		assertEquals(BigInteger.valueOf(3), ast.getConstant(three));
+	}
+
+	@Test
+	public void testVisitSubtree() throws Exception {
+		MachineNode machine = getProject().getMainMachine();
+		CompactAST ast = CompactAST.encode(machine);
+		int invariant = ast.getSection(MachineSection.INVARIANT);
+		PrologASTPrinter printer = new PrologASTPrinter();
+		assertEquals(printer.visitPredicateNode(machine.getInvariant(), null),
+				printer.visitPredicateNode((PredicateNode) ast.toNode(invariant), null));
+
+		// the identifiers of the invariant and the kinds of their declarations, without materialising nodes
+		List<String> identifiers = new ArrayList<>();
+		ast.accept(invariant, new CompactASTVisitor<Void, Void>() {
+			@Override
+			public Void visitIdentifierExpression(CompactASTCursor cursor, Void expected) {
+				int declaration = cursor.getReferencedNode();
+				identifiers.add(cursor.getSymbol().getName() + ":"
+						+ ast.getOperator(declaration, DeclarationNode.Kind.class));
+				return null;
+			}
+		}, null);
+		assertEquals(Arrays.asList("x:VARIABLE", "y:VARIABLE", "E:ENUMERATED_SET", "f:VARIABLE", "count:VARIABLE",
+				"x:VARIABLE"), identifiers);
+
+		int depth = ast.accept(ast.getRoot(), new CompactASTVisitor<Integer, Void>() {
+			@Override
+			public Integer visitChildren(CompactASTCursor cursor, Void expected) {
+				int max = cursor.getDepth();
+				if (cursor.gotoFirstChild()) {
+					do {
+						max = Math.max(max, visit(cursor, expected));
+					} while (cursor.gotoNextSibling());
+					cursor.gotoParent();
+				}
+				return max;
+			}
+		}, null);
+		assertTrue(depth > 5);
+	}
+
+	@Test
+	public void testCursor() throws Exception {
+		CompactAST ast = CompactAST.encode(getProject().getMainMachine());
+		CompactASTCursor cursor = ast.cursor(ast.getSection(MachineSection.OPERATIONS));
+		assertTrue(cursor.isList());
+		assertFalse(cursor.gotoNextSibling());
+		assertTrue(cursor.gotoChild(1));
+		assertEquals("Choose", cursor.getSymbol().getName());
+		assertTrue(cursor.gotoNextSibling());
+		assertEquals("Set", cursor.getSymbol().getName());
+		assertFalse(cursor.gotoNextSibling());
+		assertFalse(cursor.gotoChild(5));
+		assertEquals("Set", cursor.getSymbol().getName());
+		assertTrue(cursor.gotoParent());
+		assertEquals(ast.getSection(MachineSection.OPERATIONS), cursor.getNode());
+		assertFalse(cursor.gotoParent());
+	}
+
+	@Test
+	public void testCreateCompactMachine() throws Exception {
+		File main = writeProject(getMainMachine());
+		CompactAST ast = Antlr4BParser.createCompactMachine(main);
+		MachineNode machine = Antlr4BParser.createBProjectFromMainMachineFile(main).getMainMachine();
+		assertEquals(print(machine), print(ast.toMachineNode()));
+		assertEquals(print(CompactAST.encode(machine).toMachineNode()), print(ast.toMachineNode()));
+
+		// x in r := x + p refers to the variable of the machine
+		int get = ast.getFirstChild(ast.getSection(MachineSection.OPERATIONS));
+		int assignment = ast.getChild(ast.getChild(get, 2), 1);
+		int x = ast.getFirstChild(ast.getFirstChild(ast.getChild(assignment, 1)));
+		assertEquals(ast.getFirstChild(ast.getSection(MachineSection.VARIABLES)), ast.getReferencedNode(x));
+		assertEquals("INTEGER", ast.getType(x).toString());
+	}
+
+	@Test
+	public void testOperationsAreReleased() throws Exception {
+		String functions = "MACHINE Functions\nVARIABLES f\nINVARIANT f : INTEGER +-> BOOL\n"
+				+ "INITIALISATION f := {}\nOPERATIONS\n  Add = f := f \\/ {1 |-> TRUE}\nEND";
+		MachineASTCreator creator = MachineASTCreator.createMachineASTWithoutOperations(Antlr4BParser.parse(functions),
+				null, DefinitionFileCache.getShared());
+		MachineNode machine = creator.getMachineNode();
+		MachineScopeChecker scopeChecker = new MachineScopeChecker(machine);
+		TypeChecker typeChecker = new TypeChecker(machine);
+		CompactAST.Builder builder = CompactAST.builder(machine);
+		OperationNode add = creator.createOperation(0);
+		scopeChecker.checkOperation(add);
+		typeChecker.checkOperation(add);
+		builder.addOperation(add);
+		// the nodes of the assignment observe the type of the variable f
+		WeakReference<Node> substitution = new WeakReference<>(add.getSubstitution());
+		add = null;
+		for (int i = 0; i < 50 && substitution.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(substitution.get());
+		assertEquals("Add", builder.build().toMachineNode().getOperations().get(0).getName());
+	}
+
+	@Test(expected = TypeErrorException.class)
+	public void testCreateCompactMachineTypeError() throws Exception {
+		File main = writeProject(getMainMachine().replace("END;\n  Set", "END;\n  Bad = x := TRUE;\n  Set"));
+		Antlr4BParser.createCompactMachine(main);
+	}
+
+	@Test
+	public void testProjectSerialization() throws Exception {
+		BProject project = getProject();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BProjectSerializer.write(project, bytes);
+		BProject loaded = BProjectSerializer.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+		assertEquals(project.getMachines().size(), loaded.getMachines().size());
+		for (int i = 0; i < project.getMachines().size(); i++) {
+			assertEquals(print(project.getMachines().get(i)), print(loaded.getMachines().get(i)));
+		}
+		MachineNode main = loaded.getMainMachine();
+		MachineNode counter = loaded.getMachineNode("Counter");
+		assertSame(counter, main.getMachineReferences().get(0).getMachineNode());
+
+		// count <= x refers to the variable of the loaded Counter machine
+		PredicateOperatorWithExprArgsNode lessEqual = (PredicateOperatorWithExprArgsNode) ((PredicateOperatorNode) main
+				.getInvariant()).getPredicateArguments().get(3);
+		IdentifierExprNode count = (IdentifierExprNode) lessEqual.getExpressionNodes().get(0);
+		assertSame(counter.getVariables().get(0), count.getDeclarationNode());
+		assertEquals("INTEGER", count.getType().toString());
+
+		// Tick refers to the operation of the loaded Counter machine
+		ListSubstitutionNode sequence = (ListSubstitutionNode) ((AnySubstitutionNode) main.getOperations().get(1)
+				.getSubstitution()).getThenSubstitution();
+		OperationCallSubstitutionNode tick = (OperationCallSubstitutionNode) sequence.getSubstitutions().get(1);
+		assertSame(counter.getOperations().get(0), tick.getOperationNode());
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsupportedVersion() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BProjectSerializer.write(getProject().getMainMachine(), bytes);
+		byte[] content = bytes.toByteArray();
+		content[7]++;
+		BProjectSerializer.readMachine(new ByteArrayInputStream(content));
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedMachine() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BProjectSerializer.write(getProject().getMainMachine(), bytes);
+		byte[] content = bytes.toByteArray();
+		BProjectSerializer.readMachine(new ByteArrayInputStream(Arrays.copyOf(content, content.length / 2)));
+	}
+
+}
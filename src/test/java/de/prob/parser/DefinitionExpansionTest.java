@@ -0,0 +1,194 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.ast.nodes.DefinitionNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.nodes.expression.ExprNode;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.expression.SetComprehensionNode;
+import de.prob.parser.ast.nodes.predicate.PredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.substitution.AssignSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SubstitutionNode;
+
+public class DefinitionExpansionTest {
+
+	private static final String MACHINE = "MACHINE Defs\n" //
+			+ "VARIABLES x, s\n" //
+			+ "INVARIANT x : NATURAL & s : POW(NATURAL)\n" //
+			+ "INITIALISATION x := 0 || s := {}\n" //
+			+ "OPERATIONS\n" //
+			+ "  Inc = PRE small(x) THEN x := twice(x) END;\n" //
+			+ "  Reset = reset;\n" //
+			+ "  Add(p) = add(p + 1);\n" //
+			+ "  Filter = s := positive(s) \\/ shadow(x);\n" //
+			+ "  Alias = x := same(x)\n" //
+			// the definitions are used before the clause
+			+ "DEFINITIONS\n" //
+			+ "  twice(a) == a + a;\n" //
+			+ "  small(v) == v < LIMIT;\n" //
+			+ "  LIMIT == 100;\n" //
+			+ "  reset == x := 0;\n" //
+			+ "  add(e) == s := s \\/ {e};\n" //
+			+ "  positive(t) == {y | y : t & y > 0};\n" //
+			+ "  shadow(y) == {y | y : NATURAL};\n" //
+			+ "  same(b) == twice(b)\n" //
+			+ "END";
+
+	private static MachineNode getMachine(String machine) throws Exception {
+		return Antlr4BParser.createBProjectFromMachineStrings(machine).getMainMachine();
+	}
+
+	private static String getBody(MachineNode machine, int operation) {
+		return machine.getOperations().get(operation).getSubstitution().toString();
+	}
+
+	@Test
+	public void testExpansion() throws Exception {
+		MachineNode machine = getMachine(MACHINE);
+		assertEquals("PRE LESS(x,100) THEN x:=PLUS(x,x) END", getBody(machine, 0));
+		assertEquals("x:=0", getBody(machine, 1));
+		assertEquals("s:=UNION(s,SET_ENUMERATION(PLUS(p,1)))", getBody(machine, 2));
+		// the bound variable y of shadow is not replaced by its argument
+		assertEquals("s:=UNION(SET_COMPREHENSION(y,AND(ELEMENT_OF(y,s),GREATER(y,0))),"
+				+ "SET_COMPREHENSION(y,ELEMENT_OF(y,NATURAL)))", getBody(machine, 3));
+		assertEquals("x:=PLUS(x,x)", getBody(machine, 4));
+
+		List<DefinitionNode> definitions = machine.getDefinitions();
+		assertEquals(8, definitions.size());
+		assertEquals("PLUS(a,a)", definitions.get(0).getBody().toString());
+		assertEquals("PLUS(b,b)", definitions.get(7).getBody().toString());
+	}
+
+	@Test
+	public void testEveryUseIsACopy() throws Exception {
+		MachineNode machine = getMachine(MACHINE);
+		AssignSubstitutionNode assignment = getAssignment(machine.getOperations().get(4));
+		ExpressionOperatorNode twice = (ExpressionOperatorNode) assignment.getRightSide().get(0);
+		assertNotSame(machine.getDefinitions().get(0).getBody(), twice);
+		assertSame(assignment, twice.getParent());
+		// both occurrences of the parameter have their own node
+		List<ExprNode> summands = twice.getExpressionNodes();
+		assertNotSame(summands.get(0), summands.get(1));
+		assertSame(twice, summands.get(0).getParent());
+		assertSame(twice, summands.get(1).getParent());
+	}
+
+	@Test
+	public void testPositionOfCall() throws Exception {
+		MachineNode machine = getMachine(MACHINE);
+		AssignSubstitutionNode assignment = getAssignment(machine.getOperations().get(4));
+		ExpressionOperatorNode twice = (ExpressionOperatorNode) assignment.getRightSide().get(0);
+		// same(x) in line 10, not a + a in line 12
+		assertEquals(10, twice.getSourceCodePosition().getStartLine());
+		assertEquals(15, twice.getSourceCodePosition().getStartColumn());
+		// the argument keeps its own position
+		assertEquals(20, twice.getExpressionNodes().get(0).getSourceCodePosition().getStartColumn());
+		assertEquals(12, machine.getDefinitions().get(0).getBody().getSourceCodePosition().getStartLine());
+	}
+
+	@Test
+	public void testKindOfListedDefinition() throws Exception {
+		// step calls an operation of Lib, which is only known from its use
+		MachineNode machine = Antlr4BParser.createBProjectFromMachineStrings(
+				"MACHINE Main\nINCLUDES Lib\nDEFINITIONS step == Inc\nOPERATIONS\n  Run = step\nEND",
+				"MACHINE Lib\nVARIABLES x\nINVARIANT x : NATURAL\nINITIALISATION x := 0\n"
+						+ "OPERATIONS\n  Inc = x := x + 1\nEND")
+				.getMainMachine();
+		assertTrue(machine.getDefinitions().get(0).getBody() instanceof SubstitutionNode);
+	}
+
+	@Test
+	public void testNoCapture() throws Exception {
+		// the bound x of SMALLER must not capture the machine variable x
+		MachineNode machine = getMachine("MACHINE Capture\nVARIABLES x, x_1\n"
+				+ "INVARIANT x : NATURAL & x_1 : NATURAL & SMALLER(x) <: NATURAL & SMALLER(x_1 + x) <: NATURAL\n"
+				+ "INITIALISATION x := 0 || x_1 := 0\n"
+				+ "DEFINITIONS SMALLER(a) == {x | x : 0..10 & x < a}\nEND");
+		List<PredicateNode> invariant = ((PredicateOperatorNode) machine.getInvariant()).getPredicateArguments();
+		SetComprehensionNode smaller = getComprehension(invariant.get(2));
+		assertEquals("SET_COMPREHENSION(x_1,AND(ELEMENT_OF(x_1,INTERVAL(0,10)),LESS(x_1,x)))", smaller.toString());
+		PredicateOperatorWithExprArgsNode less = (PredicateOperatorWithExprArgsNode) ((PredicateOperatorNode) smaller
+				.getPredicateNode()).getPredicateArguments().get(1);
+		assertSame(smaller.getDeclarationList().get(0),
+				((IdentifierExprNode) less.getExpressionNodes().get(0)).getDeclarationNode());
+		assertSame(machine.getVariables().get(0),
+				((IdentifierExprNode) less.getExpressionNodes().get(1)).getDeclarationNode());
+		// the fresh name does not clash with the argument either
+		assertEquals("SET_COMPREHENSION(x_2,AND(ELEMENT_OF(x_2,INTERVAL(0,10)),LESS(x_2,PLUS(x_1,x))))",
+				getComprehension(invariant.get(3)).toString());
+		// the template itself is not renamed
+		assertEquals("SET_COMPREHENSION(x,AND(ELEMENT_OF(x,INTERVAL(0,10)),LESS(x,a)))",
+				machine.getDefinitions().get(0).getBody().toString());
+	}
+
+	private static SetComprehensionNode getComprehension(PredicateNode subset) {
+		return (SetComprehensionNode) ((PredicateOperatorWithExprArgsNode) subset).getExpressionNodes().get(0);
+	}
+
+	private static AssignSubstitutionNode getAssignment(OperationNode operation) {
+		return (AssignSubstitutionNode) operation.getSubstitution();
+	}
+
+	@Test
+	public void testManyUses() throws Exception {
+		StringBuilder machine = new StringBuilder("MACHINE Many\nVARIABLES x\nINVARIANT x : NATURAL\n");
+		machine.append("INITIALISATION x := 0\nDEFINITIONS\n");
+		for (int i = 0; i < 100; i++) {
+			machine.append(i == 0 ? "" : ";\n").append("  d").append(i).append("(a) == a + ")
+					.append(i == 0 ? "0" : "d" + (i - 1) + "(a)");
+		}
+		machine.append("\nOPERATIONS\n");
+		for (int i = 0; i < 500; i++) {
+			machine.append(i == 0 ? "" : ";\n").append("  Op").append(i).append(" = x := d").append(i % 100)
+					.append("(x)");
+		}
+		machine.append("\nEND");
+		MachineNode machineNode = getMachine(machine.toString());
+		assertEquals(500, machineNode.getOperations().size());
+		assertTrue(getBody(machineNode, 499).startsWith("x:=PLUS(x,PLUS(x,"));
+	}
+
+	private static String getError(String machine) throws Exception {
+		try {
+			getMachine(machine);
+		} catch (RuntimeException e) {
+			return e.getMessage();
+		}
+		throw new AssertionError("no error for " + machine);
+	}
+
+	@Test
+	public void testWrongNumberOfArguments() throws Exception {
+		String error = getError("MACHINE Wrong\nVARIABLES x\nINVARIANT x : NATURAL\n"
+				+ "DEFINITIONS twice(a) == a + a\nINITIALISATION x := twice(1, 2)\nEND");
+		assertTrue(error, error.startsWith("Number of Parameter does not match"));
+	}
+
+	@Test
+	public void testWrongKind() throws Exception {
+		String error = getError("MACHINE Wrong\nVARIABLES x\nINVARIANT x : NATURAL & small\n"
+				+ "DEFINITIONS small == x + 1\nINITIALISATION x := 0\nEND");
+		assertTrue(error, error.startsWith("Invalid definition type"));
+	}
+
+	@Test
+	public void testCyclicDefinitions() throws Exception {
+		String error = getError("MACHINE Cyclic\nVARIABLES x\nINVARIANT x : NATURAL\n"
+				+ "DEFINITIONS one == two + 1; two == one + 1\nINITIALISATION x := one\nEND");
+		assertTrue(error, error.startsWith("Cyclic definition"));
+	}
+
+}
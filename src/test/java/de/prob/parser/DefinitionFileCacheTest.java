@@ -0,0 +1,123 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.DefinitionFileCache;
+import de.prob.parser.antlr.IDefinitions.DefinitionType;
+import de.prob.parser.antlr.MachineASTCreator;
+import de.prob.parser.ast.nodes.DefinitionNode;
+import de.prob.parser.ast.nodes.MachineNode;
+
+public class DefinitionFileCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(File directory, String name, String content) throws Exception {
+		File file = new File(directory, name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private MachineNode create(String machine, File directory, DefinitionFileCache cache) {
+		return MachineASTCreator.createMachineAST(Antlr4BParser.parse(machine), null, false, directory, cache);
+	}
+
+	private static String machine(String name) {
+		return "MACHINE " + name + "\nDEFINITIONS \"Lib.def\"; local == 1\n"
+				+ "VARIABLES x\nINVARIANT x : NATURAL & positive(x)\n"
+				+ "INITIALISATION x := twice(local)\nEND";
+	}
+
+	@Test
+	public void testFilesAreParsedOnce() throws Exception {
+		File directory = folder.getRoot();
+		write(directory, "Lib.def", "DEFINITIONS \"Base.def\"; twice(a) == a + a");
+		write(directory, "Base.def", "DEFINITIONS positive(a) == a > 0; \"Lib.def\"");
+		DefinitionFileCache cache = new DefinitionFileCache();
+
+		MachineNode first = create(machine("First"), directory, cache);
+		assertEquals("x:=PLUS(1,1)", first.getInitialisation().toString());
+		// the local definition and both definitions of the files, which include each other
+		assertEquals(3, first.getDefinitions().size());
+		for (int i = 0; i < 10; i++) {
+			create(machine("M" + i), directory, cache);
+		}
+		assertEquals(2, cache.getParseCount());
+		assertEquals(2, cache.size());
+
+		DefinitionFileCache.DefinitionFile lib = cache.get(new File(directory, "Lib.def"));
+		assertSame(lib, cache.get(new File(new File(directory, "."), "Lib.def")));
+		assertEquals(DefinitionType.EXPRESSION_DEFINITION, lib.getAnalysis().getDefinitionType("twice"));
+
+		// a changed file is parsed again
+		write(directory, "Lib.def", "DEFINITIONS \"Base.def\"; twice(a) == a * 2");
+		assertEquals("x:=MULT(1,2)", create(machine("Changed"), directory, cache).getInitialisation().toString());
+		assertEquals(3, cache.getParseCount());
+		assertNotSame(lib, cache.get(new File(directory, "Lib.def")));
+	}
+
+	@Test
+	public void testUsesInOtherFiles() throws Exception {
+		File directory = folder.getRoot();
+		// ambiguous definitions, only classified by their uses in the other file and the machine
+		write(directory, "Base.def", "DEFINITIONS one == ONE; ONE == 1; inc == Inc; alias == two");
+		write(directory, "Lib.def", "DEFINITIONS \"Base.def\"; twice(a) == a + one; two == twice(1)");
+		DefinitionFileCache cache = new DefinitionFileCache();
+		assertEquals(DefinitionType.UNKNOWN_TYPE,
+				cache.get(new File(directory, "Base.def")).getAnalysis().getDefinitionType("alias"));
+
+		MachineNode machine = create("MACHINE Uses\nDEFINITIONS \"Lib.def\"; Inc == x := x + 1\n"
+				+ "VARIABLES x\nINVARIANT x : NATURAL\nINITIALISATION x := twice(1)\n"
+				+ "OPERATIONS op = inc END", directory, cache);
+		assertEquals("x:=PLUS(1,1)", machine.getInitialisation().toString());
+		assertEquals("x:=PLUS(x,1)", machine.getOperations().get(0).getSubstitution().toString());
+		for (DefinitionNode definition : machine.getDefinitions()) {
+			if (definition.getName().equals("alias")) {
+				assertEquals("PLUS(1,1)", definition.getBody().toString());
+			}
+		}
+	}
+
+	@Test
+	public void testLibraryDirectories() throws Exception {
+		File library = folder.newFolder("stdlib");
+		write(library, "Lib.def", "DEFINITIONS twice(a) == a + a; positive(a) == a > 0");
+		DefinitionFileCache cache = new DefinitionFileCache();
+		cache.addLibraryDirectory(library);
+		MachineNode machine = create(machine("Library"), folder.newFolder("machines"), cache);
+		assertEquals("x:=PLUS(1,1)", machine.getInitialisation().toString());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedFilesAreEvicted() throws Exception {
+		File directory = folder.getRoot();
+		File a = write(directory, "A.def", "DEFINITIONS a == 1");
+		File b = write(directory, "B.def", "DEFINITIONS b == 2");
+		File c = write(directory, "C.def", "DEFINITIONS c == 3");
+		DefinitionFileCache cache = new DefinitionFileCache(2);
+		cache.get(a);
+		cache.get(b);
+		cache.get(a);
+		cache.get(c);
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.getParseCount());
+		// b has been evicted, a is still cached
+		cache.get(a);
+		assertEquals(3, cache.getParseCount());
+		cache.get(b);
+		assertEquals(4, cache.getParseCount());
+	}
+
+}
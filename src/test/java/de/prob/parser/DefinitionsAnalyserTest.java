@@ -0,0 +1,75 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.DefinitionsAnalyser;
+import de.prob.parser.antlr.DefinitionsAnalyser.Result;
+import de.prob.parser.antlr.IDefinitions.DefinitionType;
+
+public class DefinitionsAnalyserTest {
+
+	private static Result analyse(String machine) {
+		return new DefinitionsAnalyser(Antlr4BParser.parse(machine)).analyse();
+	}
+
+	@Test
+	public void testClassification() {
+		Result result = analyse("MACHINE Defs\nDEFINITIONS\n" //
+				+ "  alias == less;\n" //
+				+ "  less == 1 < 2;\n" //
+				+ "  subst == skip;\n" //
+				+ "  expr(a) == a + 1;\n" //
+				+ "  call(a) == expr(a);\n" //
+				+ "  open == undefined\n" //
+				+ "END");
+		assertEquals(DefinitionType.PREDICATE_DEFINITION, result.getDefinitionType("alias"));
+		assertEquals(DefinitionType.PREDICATE_DEFINITION, result.getDefinitionType("less"));
+		assertEquals(DefinitionType.SUBSTITUTION_DEFINITION, result.getDefinitionType("subst"));
+		assertEquals(DefinitionType.EXPRESSION_DEFINITION, result.getDefinitionType("call"));
+		assertEquals(Collections.singletonList("open"), result.getUnknownDefinitions());
+		assertFalse(result.hasCycles());
+		// every definition follows the definition it calls
+		assertEquals(Arrays.asList("less", "alias", "subst", "expr", "call", "open"),
+				Arrays.asList(result.getDefinitionTypes().keySet().toArray()));
+	}
+
+	@Test
+	public void testCycles() {
+		Result result = analyse("MACHINE Cyclic\nVARIABLES x\nINVARIANT x : NATURAL\nDEFINITIONS\n" //
+				+ "  before == one;\n" //
+				+ "  one == two;\n" //
+				+ "  two == three;\n" //
+				+ "  three == one;\n" //
+				+ "  self == self\n" //
+				+ "INITIALISATION x := two\nEND");
+		assertEquals(Arrays.asList(Arrays.asList("one", "two", "three"), Collections.singletonList("self")),
+				result.getCycles());
+		// the use of two as an expression is passed on along the cycle
+		assertEquals(DefinitionType.EXPRESSION_DEFINITION, result.getDefinitionType("one"));
+		assertEquals(DefinitionType.EXPRESSION_DEFINITION, result.getDefinitionType("three"));
+		assertEquals(DefinitionType.EXPRESSION_DEFINITION, result.getDefinitionType("before"));
+		assertEquals(Collections.singletonList("self"), result.getUnknownDefinitions());
+	}
+
+	@Test
+	public void testLongChain() {
+		StringBuilder machine = new StringBuilder("MACHINE Chain\nDEFINITIONS\n");
+		for (int i = 0; i < 5000; i++) {
+			machine.append("  d").append(i).append(" == d").append(i + 1).append(";\n");
+		}
+		machine.append("  d5000 == 1 = 1\nEND");
+		Result result = analyse(machine.toString());
+		assertEquals(5001, result.getDefinitionTypes().size());
+		assertTrue(result.getUnknownDefinitions().isEmpty());
+		assertEquals(DefinitionType.PREDICATE_DEFINITION, result.getDefinitionType("d0"));
+	}
+
+}
@@ -0,0 +1,74 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.util.MachineGenerator;
+
+public class MachineGeneratorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static MachineGenerator generator(long seed) {
+		MachineGenerator generator = new MachineGenerator();
+		generator.setSeed(seed);
+		generator.setIncludes(2);
+		generator.setIncludeDepth(2);
+		generator.setSees(2);
+		generator.setRenamedInstances(2);
+		generator.setConstants(4);
+		generator.setVariables(4);
+		generator.setOperations(4);
+		generator.setPropertyConjuncts(4);
+		return generator;
+	}
+
+	@Test
+	public void testDeterministic() {
+		Map<String, String> machines = generator(42).generate();
+		assertEquals(machines, generator(42).generate());
+		assertNotEquals(machines.get("Main"), generator(43).generate().get("Main"));
+		assertEquals("[Main, Inc1, Inc1_1, Inc1_2, Inc2, Inc2_1, Inc2_2, Ctx1, Ctx2]", machines.keySet().toString());
+		assertTrue(machines.get("Main").contains("INCLUDES r1.Inc1, r2.Inc1, r1.Inc2, r2.Inc2"));
+		assertTrue(machines.get("Main").contains("SEES Ctx1, Ctx2"));
+	}
+
+	@Test
+	public void testGeneratedMachinesTypeCheck() throws Exception {
+		for (long seed = 0; seed < 9; seed++) {
+			MachineGenerator generator = generator(seed);
+			generator.setDepth((int) (seed % 5));
+			generator.setRenamedInstances((int) (seed % 3));
+			Path main = generator.write(folder.newFolder().toPath());
+			Antlr4BParser.createBProjectFromMainMachineFile(main.toFile());
+		}
+	}
+
+	@Test
+	public void testSize() throws Exception {
+		MachineGenerator generator = new MachineGenerator();
+		generator.setOperations(100);
+		generator.setIncludes(1);
+		File directory = folder.newFolder();
+		generator.write(directory.toPath());
+		long size = Files.size(new File(directory, "Main.mch").toPath());
+		generator.setOperations(1000);
+		generator.write(directory.toPath());
+		long large = Files.size(new File(directory, "Main.mch").toPath());
+		assertTrue(size > 10 * 1024);
+		assertTrue(large > 8 * size);
+	}
+
+}
@@ -1,11 +1,21 @@
 package de.prob.parser;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import de.prob.parser.antlr.Antlr4BParser;
 
 public class MachineTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	public String getMainMachine() {
 		String machine = "MACHINE test\n";
 		machine += "CONSTANTS k\n";
@@ -73,6 +83,23 @@ public class MachineTest {
 		check(machine);
 	}
 
+	@Test
+	public void testRenamedMachinesWithSamePrefix() throws Exception {
+		// a.x is the INTEGER variable of M in Main and the BOOL variable of N in Sub
+		File directory = folder.newFolder();
+		write(directory, "M", "MACHINE M\nVARIABLES x\nINVARIANT x : INTEGER\nINITIALISATION x := 0\nEND");
+		write(directory, "N", "MACHINE N\nVARIABLES x\nINVARIANT x : BOOL\nINITIALISATION x := TRUE\nEND");
+		write(directory, "Sub", "MACHINE Sub\nINCLUDES a.N\nINVARIANT a.x = TRUE\nEND");
+		File main = write(directory, "Main", "MACHINE Main\nINCLUDES a.M, Sub\nINVARIANT a.x = 1\nEND");
+		Antlr4BParser.createBProjectFromMainMachineFile(main);
+	}
+
+	private File write(File directory, String name, String machine) throws IOException {
+		File file = new File(directory, name + ".mch");
+		Files.write(file.toPath(), machine.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
 	private void check(String main, String... others) throws Exception {
 		Antlr4BParser.createBProjectFromMachineStrings(main, others);
 	}
@@ -0,0 +1,70 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.BProject;
+import de.prob.parser.antlr.MachineASTCreator;
+import de.prob.parser.ast.NodeInterner;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.visitors.MemoryFootprint;
+import de.prob.parser.ast.visitors.MemoryFootprint.Category;
+import de.prob.parser.ast.visitors.ParallelTraversal;
+
+public class MemoryFootprintTest {
+
+	private static final String MACHINE = "MACHINE Footprint\n" //
+			+ "VARIABLES x, y\n" //
+			+ "INVARIANT x : NATURAL & y : NATURAL & x + y < 100\n" //
+			+ "INITIALISATION x := 0 || y := 0\n" //
+			+ "OPERATIONS\n" //
+			+ "  Inc = PRE x + y < 99 THEN x := x + 1 END;\n" //
+			+ "  Dec = PRE x + y < 99 & x > 0 THEN x := x - 1 END\n" //
+			+ "END";
+
+	private static BProject createProject(NodeInterner interner) throws Exception {
+		List<MachineNode> machines = new ArrayList<>();
+		machines.add(MachineASTCreator.createMachineAST(Antlr4BParser.parse(MACHINE), interner));
+		return Antlr4BParser.createBProject(machines);
+	}
+
+	@Test
+	public void testCountsAndSizes() throws Exception {
+		BProject project = createProject(null);
+		MemoryFootprint footprint = MemoryFootprint.analyse(project);
+		int nodes = ParallelTraversal.countNodes(Collections.singletonList(project.getMainMachine())).values()
+				.stream().mapToInt(Integer::intValue).sum();
+		assertEquals(nodes, footprint.getTotal().getCount());
+		assertEquals(nodes, footprint.getMachines().get("Footprint").getCount());
+		assertEquals(2, footprint.getNodeClasses().get("OperationNode").getCount());
+
+		long categories = footprint.getCategories().values().stream().mapToLong(Long::longValue).sum();
+		assertEquals(footprint.getTotal().getRetainedBytes(), categories);
+		assertEquals(footprint.getTotal().getShallowBytes(), (long) footprint.getCategories().get(Category.NODES));
+		assertTrue(footprint.getCategories().get(Category.POSITIONS) > 0);
+		assertTrue(footprint.getCategories().get(Category.TYPES) > 0);
+		// the names of x and y are stored by every occurrence
+		assertTrue(footprint.getDuplicateStrings() > 10);
+
+		StringWriter out = new StringWriter();
+		footprint.write(out, "% ");
+		assertTrue(out.toString().contains("% OperationNode"));
+	}
+
+	@Test
+	public void testSharingReducesFootprint() throws Exception {
+		MemoryFootprint unshared = MemoryFootprint.analyse(createProject(null));
+		MemoryFootprint shared = MemoryFootprint.analyse(createProject(new NodeInterner()));
+		assertTrue(shared.getTotal().getCount() < unshared.getTotal().getCount());
+		assertTrue(shared.getTotal().getRetainedBytes() < unshared.getTotal().getRetainedBytes());
+	}
+
+}
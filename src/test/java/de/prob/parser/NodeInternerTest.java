@@ -0,0 +1,142 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.BProject;
+import de.prob.parser.antlr.DefinitionFileCache;
+import de.prob.parser.antlr.MachineASTCreator;
+import de.prob.parser.antlr.PrologTermWriter;
+import de.prob.parser.ast.NodeInterner;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.OperationNode;
+import de.prob.parser.ast.nodes.expression.ExprNode;
+import de.prob.parser.ast.nodes.expression.SetComprehensionNode;
+import de.prob.parser.ast.nodes.predicate.PredicateNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.nodes.substitution.AssignSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ConditionSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.ListSubstitutionNode;
+import de.prob.parser.ast.nodes.substitution.SubstitutionNode;
+import de.prob.parser.ast.visitors.TypeErrorException;
+
+public class NodeInternerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String MACHINE = "MACHINE Shared\n" //
+			+ "VARIABLES x, f, s\n" //
+			+ "INVARIANT x : NATURAL & f : INTEGER +-> INTEGER & s : POW(INTEGER) & dom(f) <: s\n" //
+			+ "INITIALISATION x := 0 || f := {} || s := {}\n" //
+			+ "OPERATIONS\n" //
+			+ "  A(p) = PRE p : NATURAL & p : dom(f) THEN x := f(p) END;\n" //
+			+ "  B(p) = PRE p : BOOL & x : NATURAL THEN s := dom(f) END;\n" //
+			+ "  C = s := {y | y : dom(f) & y : NATURAL};\n" //
+			+ "  D = s := {y | y : dom(f) & y : NATURAL}\n" //
+			+ "END";
+
+	private static String print(MachineNode machineNode) {
+		StringBuilder sb = new StringBuilder();
+		new PrologTermWriter(sb).visitMachineNode(machineNode);
+		return sb.toString();
+	}
+
+	private static BProject createProject(NodeInterner interner) throws Exception {
+		List<MachineNode> machines = new ArrayList<>();
+		machines.add(MachineASTCreator.createMachineAST(Antlr4BParser.parse(MACHINE), interner));
+		return Antlr4BParser.createBProject(machines);
+	}
+
+	private static PredicateNode getPrecondition(OperationNode operation) {
+		return ((ConditionSubstitutionNode) operation.getSubstitution()).getCondition();
+	}
+
+	@Test
+	public void testSharedSubtrees() throws Exception {
+		NodeInterner interner = new NodeInterner();
+		MachineNode machine = createProject(interner).getMainMachine();
+		List<PredicateNode> invariant = ((PredicateOperatorNode) machine.getInvariant()).getPredicateArguments();
+		List<OperationNode> operations = machine.getOperations();
+		List<PredicateNode> preA = ((PredicateOperatorNode) getPrecondition(operations.get(0))).getPredicateArguments();
+		List<PredicateNode> preB = ((PredicateOperatorNode) getPrecondition(operations.get(1))).getPredicateArguments();
+
+		// x : NATURAL in the invariant and in the precondition of B
+		assertSame(invariant.get(0), preB.get(1));
+		// dom(f) in the invariant, in A and in B
+		ExprNode domain = ((PredicateOperatorWithExprArgsNode) invariant.get(3)).getExpressionNodes().get(0);
+		assertSame(domain, ((PredicateOperatorWithExprArgsNode) preA.get(1)).getExpressionNodes().get(1));
+		assertSame(domain, ((AssignSubstitutionNode) ((ConditionSubstitutionNode) operations.get(1).getSubstitution())
+				.getSubstitution()).getRightSide().get(0));
+		assertTrue(interner.isShared(domain));
+
+		// the parameters p of A and B are different variables with different types
+		assertNotSame(((PredicateOperatorWithExprArgsNode) preA.get(0)).getExpressionNodes().get(0),
+				((PredicateOperatorWithExprArgsNode) preB.get(0)).getExpressionNodes().get(0));
+		// as are the bound variables y in C and D, but not their fingerprints
+		PredicateNode comprehensionC = getComprehensionPredicate(operations.get(2));
+		PredicateNode comprehensionD = getComprehensionPredicate(operations.get(3));
+		assertNotSame(comprehensionC, comprehensionD);
+		assertEquals(interner.getFingerprint(comprehensionC), interner.getFingerprint(comprehensionD));
+
+		// the empty sets of f and s are typed differently
+		List<SubstitutionNode> initialisation = ((ListSubstitutionNode) machine.getInitialisation())
+				.getSubstitutions();
+		ExprNode emptyF = ((AssignSubstitutionNode) initialisation.get(1)).getRightSide().get(0);
+		ExprNode emptyS = ((AssignSubstitutionNode) initialisation.get(2)).getRightSide().get(0);
+		assertNotSame(emptyF, emptyS);
+		assertEquals("POW(INTEGER*INTEGER)", emptyF.getType().toString());
+	}
+
+	private static PredicateNode getComprehensionPredicate(OperationNode operation) {
+		ExprNode comprehension = ((AssignSubstitutionNode) operation.getSubstitution()).getRightSide().get(0);
+		return ((SetComprehensionNode) comprehension).getPredicateNode();
+	}
+
+	@Test
+	public void testSameResultAsUnshared() throws Exception {
+		NodeInterner interner = new NodeInterner();
+		assertEquals(print(createProject(null).getMainMachine()), print(createProject(interner).getMainMachine()));
+		assertTrue(interner.size() < interner.getRequests());
+	}
+
+	@Test
+	public void testTypeErrorAtSharedNode() throws Exception {
+		File file = folder.newFile("Error.mch");
+		Files.write(file.toPath(), ("MACHINE Error\nVARIABLES x, y\nINVARIANT x : INTEGER & y : BOOL & x + 1 > 0\n"
+				+ "INITIALISATION x := 0 || y := TRUE\nOPERATIONS\n  Op = y := x + 1\nEND")
+						.getBytes(StandardCharsets.UTF_8));
+		NodeInterner interner = new NodeInterner();
+		try {
+			Antlr4BParser.createBProjectFromMainMachineFile(file, true, true, new DefinitionFileCache(), interner);
+			fail("Expected a type error");
+		} catch (TypeErrorException e) {
+			// x + 1 is shared with the invariant, the error in the operation is
+			// reported at the first occurrence and not silently retried
+			assertTrue(e.getMessage(), e.getMessage().contains("line 3"));
+		}
+		assertTrue(interner.size() > 0);
+		try {
+			Antlr4BParser.createBProjectFromMainMachineFile(file, true, true, new DefinitionFileCache(), null);
+			fail("Expected a type error");
+		} catch (TypeErrorException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("line 6"));
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.DefinitionFileCache;
+import de.prob.parser.antlr.MachineASTCreator;
+import de.prob.parser.ast.NodeInterner;
+import de.prob.parser.ast.OperatorIndex;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.nodes.expression.ExpressionOperatorNode.ExpressionOperator;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorNode.PredicateOperator;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode.PredOperatorExprArgs;
+
+public class OperatorIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String MACHINE = "MACHINE Indexed\n" //
+			+ "DEFINITIONS twice(a) == a + a\n" //
+			+ "VARIABLES x, f\n" //
+			+ "INVARIANT x : NATURAL & f : INTEGER +-> INTEGER & !y.(y : dom(f) => f(y) > 0)\n" //
+			+ "INITIALISATION x := 0 || f := {}\n" //
+			+ "OPERATIONS\n" //
+			+ "  A(p) = PRE p : dom(f) & x : NATURAL THEN x := f(p) END;\n" //
+			+ "  B = x := f(twice(x))\n" //
+			+ "END";
+
+	private static MachineNode create(NodeInterner interner, boolean indexOperators) throws Exception {
+		return MachineASTCreator.createMachineAST(Antlr4BParser.parse(MACHINE), interner, indexOperators);
+	}
+
+	@Test
+	public void testIndexedDuringCreation() throws Exception {
+		OperatorIndex index = create(null, true).getOperatorIndex();
+		assertEquals(3, index.getNodes(ExpressionOperator.FUNCTION_CALL).size());
+		assertEquals(2, index.getNodes(ExpressionOperator.DOMAIN).size());
+		// the body of twice and its expansion x + x
+		assertEquals(2, index.getNodes(ExpressionOperator.PLUS).size());
+		assertEquals(2, index.getNodes(PredicateOperator.AND).size());
+		assertEquals(0, index.getNodes(PredicateOperator.OR).size());
+		assertEquals(5, index.getNodes(PredOperatorExprArgs.ELEMENT_OF).size());
+		assertEquals(1, index.getNodes(NodeKind.QUANTIFIED_PREDICATE).size());
+		assertEquals(2, index.getNodes(NodeKind.OPERATION).size());
+		assertEquals(1, index.getNodes(NodeKind.DEFINITION).size());
+		assertEquals(0, index.getNodes(NodeKind.DECLARATION).size());
+	}
+
+	@Test
+	public void testSameAsWalk() throws Exception {
+		for (NodeInterner interner : new NodeInterner[] { null, new NodeInterner() }) {
+			MachineNode machine = create(interner, true);
+			OperatorIndex created = machine.getOperatorIndex();
+			OperatorIndex walked = OperatorIndex.build(machine);
+			assertEquals(walked.size(), created.size());
+			for (NodeKind kind : NodeKind.values()) {
+				assertEquals(identitySet(walked.getNodes(kind)), identitySet(created.getNodes(kind)));
+			}
+		}
+		// sharing removes the second x : NATURAL and dom(f)
+		assertEquals(1, create(new NodeInterner(), true).getOperatorIndex().getNodes(ExpressionOperator.DOMAIN)
+				.size());
+	}
+
+	@Test
+	public void testBuiltOnDemand() throws Exception {
+		MachineNode machine = create(null, false);
+		assertNull(machine.getOperatorIndex());
+		OperatorIndex index = OperatorIndex.of(machine);
+		assertSame(index, machine.getOperatorIndex());
+		assertEquals(3, index.getNodes(ExpressionOperator.FUNCTION_CALL).size());
+	}
+
+	@Test
+	public void testIndexedWhenLoadingProject() throws Exception {
+		assertNull(Antlr4BParser.createBProjectFromMachineStrings(MACHINE).getMainMachine().getOperatorIndex());
+		MachineNode machine = Antlr4BParser.createBProjectFromMachineStrings(true, MACHINE).getMainMachine();
+		OperatorIndex created = machine.getOperatorIndex();
+		OperatorIndex walked = OperatorIndex.build(machine);
+		assertEquals(walked.size(), created.size());
+		assertEquals(3, created.getNodes(ExpressionOperator.FUNCTION_CALL).size());
+
+		File file = new File(folder.newFolder(), "Indexed.mch");
+		Files.write(file.toPath(), MACHINE.getBytes(StandardCharsets.UTF_8));
+		machine = Antlr4BParser.createBProjectFromMainMachineFile(file, true, true, DefinitionFileCache.getShared(),
+				null, true).getMainMachine();
+		assertEquals(walked.size(), machine.getOperatorIndex().size());
+	}
+
+	private static Set<Node> identitySet(List<Node> nodes) {
+		Set<Node> set = Collections.newSetFromMap(new IdentityHashMap<>());
+		set.addAll(nodes);
+		return set;
+	}
+
+}
@@ -0,0 +1,96 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.Node;
+import de.prob.parser.ast.nodes.NodeKind;
+import de.prob.parser.ast.nodes.expression.NumberNode;
+import de.prob.parser.ast.visitors.ParallelTraversal;
+
+public class ParallelTraversalTest {
+
+	private static MachineNode getMachine() throws Exception {
+		StringBuilder machine = new StringBuilder("MACHINE Large\nVARIABLES x, s\n");
+		machine.append("INVARIANT x : NATURAL & s : POW(INTEGER)");
+		for (int i = 0; i < 40; i++) {
+			machine.append(" & x /= ").append(i);
+		}
+		machine.append("\nINITIALISATION x := 0 || s := {");
+		for (int i = 0; i < 100; i++) {
+			machine.append(i == 0 ? "" : ", ").append(i);
+		}
+		machine.append("}\nOPERATIONS\n");
+		for (int i = 0; i < 30; i++) {
+			machine.append(i == 0 ? "" : ";\n").append("  Op").append(i).append("(p) = PRE p : s THEN x := p + ")
+					.append(i).append(" END");
+		}
+		machine.append("\nEND");
+		return Antlr4BParser.createBProjectFromMachineStrings(machine.toString()).getMainMachine();
+	}
+
+	/**
+	 * Collects the numbers in pre-order, splitting every node with more than one
+	 * child.
+	 */
+	private static class NumberCollector extends ParallelTraversal<List<Integer>> {
+		NumberCollector(ForkJoinPool pool, int splitThreshold) {
+			super(pool, splitThreshold);
+		}
+
+		@Override
+		protected List<Integer> createResult() {
+			return new ArrayList<>();
+		}
+
+		@Override
+		protected void visit(Node node, List<Integer> result) {
+			if (node instanceof NumberNode) {
+				result.add(((NumberNode) node).getValue().intValue());
+			}
+		}
+
+		@Override
+		protected List<Integer> combine(List<Integer> left, List<Integer> right) {
+			left.addAll(right);
+			return left;
+		}
+	}
+
+	@Test
+	public void testSameResultAsSequential() throws Exception {
+		MachineNode machine = getMachine();
+		List<Integer> sequential = new NumberCollector(new ForkJoinPool(1), Integer.MAX_VALUE).traverse(machine);
+		List<Integer> parallel = new NumberCollector(new ForkJoinPool(4), 1).traverse(machine);
+		assertEquals(40 + 1 + 100 + 30, sequential.size());
+		assertEquals(sequential, parallel);
+	}
+
+	@Test
+	public void testCountNodes() throws Exception {
+		MachineNode machine = getMachine();
+		Map<NodeKind, Integer> counts = ParallelTraversal.countNodes(Collections.singletonList(machine));
+		assertEquals(1, (int) counts.get(NodeKind.MACHINE));
+		assertEquals(30, (int) counts.get(NodeKind.OPERATION));
+		assertEquals(30, (int) counts.get(NodeKind.CONDITION_SUBSTITUTION));
+		// x, s and one parameter per operation
+		assertEquals(32, (int) counts.get(NodeKind.DECLARATION));
+		assertEquals(171, (int) counts.get(NodeKind.NUMBER));
+	}
+
+	@Test
+	public void testCollectIdentifiers() throws Exception {
+		MachineNode machine = getMachine();
+		assertEquals("[x, s, p]", ParallelTraversal.collectIdentifiers(Collections.singletonList(machine)).toString());
+	}
+
+}
@@ -0,0 +1,109 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.BProject;
+import de.prob.parser.antlr.ParserMetrics;
+import de.prob.parser.antlr.ParserMetrics.MachineMetrics;
+import de.prob.parser.antlr.ParserMetrics.Phase;
+
+public class ParserMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private BProject load() throws Exception {
+		File directory = folder.newFolder();
+		Files.write(new File(directory, "Lib.mch").toPath(),
+				"MACHINE Lib\nVARIABLES v\nINVARIANT v : INTEGER\nINITIALISATION v := 0\nEND"
+						.getBytes(StandardCharsets.UTF_8));
+		File main = new File(directory, "Main.mch");
+		Files.write(main.toPath(), ("MACHINE Main\nINCLUDES a.Lib\nVARIABLES x\nINVARIANT x : NATURAL & a.v : INTEGER\n"
+				+ "INITIALISATION x := 1 + 2\nEND").getBytes(StandardCharsets.UTF_8));
+		return Antlr4BParser.createBProjectFromMainMachineFile(main);
+	}
+
+	@Test
+	public void testMachineFiles() throws Exception {
+		ParserMetrics metrics = load().getMetrics();
+		assertEquals(2, metrics.getMachines().size());
+		MachineMetrics main = metrics.getMachine("Main");
+		MachineMetrics lib = metrics.getMachine("a.Lib");
+		for (MachineMetrics machine : metrics.getMachines()) {
+			assertTrue(machine.getBytes() > 40);
+			assertTrue(machine.getTokens() > 10);
+			assertTrue(machine.getNodes() > 5);
+			for (Phase phase : Phase.values()) {
+				assertTrue(machine.getNanos(phase) >= 0);
+			}
+			assertTrue(machine.getNanos(Phase.PARSE) > 0);
+			assertTrue(machine.getNanos(Phase.TYPE_CHECK) > 0);
+			assertEquals(0, machine.getNanos(Phase.PRINT));
+		}
+		assertTrue(main.getTokens() > lib.getTokens());
+		assertEquals(main.getTokens() + lib.getTokens(), metrics.getTokens());
+		assertTrue(metrics.getNanos(Phase.TYPE_CHECK) >= main.getNanos(Phase.TYPE_CHECK)
+				+ lib.getNanos(Phase.TYPE_CHECK));
+		long total = 0;
+		for (Phase phase : Phase.values()) {
+			total += metrics.getNanos(phase);
+		}
+		assertEquals(total, metrics.getTotalNanos());
+	}
+
+	@Test
+	public void testMachineStrings() throws Exception {
+		ParserMetrics metrics = Antlr4BParser.createBProjectFromMachineStrings("MACHINE M\nCONSTANTS k\nPROPERTIES k = 1\nEND")
+				.getMetrics();
+		assertEquals(0, metrics.getNanos(Phase.READ));
+		MachineMetrics machine = metrics.getMachine("M");
+		assertTrue(machine.getNanos(Phase.PARSE) > 0);
+		assertTrue(machine.getNanos(Phase.AST) > 0);
+		assertTrue(machine.getNanos(Phase.TYPE_CHECK) > 0);
+		assertTrue(machine.getTokens() > 0);
+		assertTrue(machine.getNodes() > 0);
+		assertNull(metrics.getMachine("N"));
+
+		// the nodes of machines created before are counted as well
+		ParserMetrics checked = Antlr4BParser
+				.createBProject(Antlr4BParser.parseMachines("MACHINE M\nCONSTANTS k\nPROPERTIES k = 1\nEND"))
+				.getMetrics();
+		assertEquals(machine.getNodes(), checked.getMachine("M").getNodes());
+		assertEquals(0, checked.getMachine("M").getTokens());
+	}
+
+	@Test
+	public void testOutput() throws Exception {
+		ParserMetrics metrics = new ParserMetrics();
+		metrics.add("Main", Phase.PARSE, 5);
+		metrics.add("a.Lib", Phase.PARSE, 3);
+		metrics.add(null, Phase.TYPE_CHECK, 2);
+		StringWriter json = new StringWriter();
+		metrics.writeJson(json);
+		assertEquals("{\"machines\":["
+				+ "{\"name\":\"Main\",\"bytes\":0,\"tokens\":0,\"nodes\":0,\"read\":0,\"lex\":0,\"parse\":5,\"ast\":0,"
+				+ "\"scope_check\":0,\"type_check\":0,\"print\":0,\"total\":5},"
+				+ "{\"name\":\"a.Lib\",\"bytes\":0,\"tokens\":0,\"nodes\":0,\"read\":0,\"lex\":0,\"parse\":3,\"ast\":0,"
+				+ "\"scope_check\":0,\"type_check\":0,\"print\":0,\"total\":3}],"
+				+ "\"total\":{\"bytes\":0,\"tokens\":0,\"nodes\":0,\"read\":0,\"lex\":0,\"parse\":8,\"ast\":0,"
+				+ "\"scope_check\":0,\"type_check\":2,\"print\":0,\"total\":10}}\n", json.toString());
+		StringWriter csv = new StringWriter();
+		metrics.writeCsv(csv);
+		assertEquals("machine,bytes,tokens,nodes,read,lex,parse,ast,scope_check,type_check,print,total\n"
+				+ "Main,0,0,0,0,0,5,0,0,0,0,5\n" + "a.Lib,0,0,0,0,0,3,0,0,0,0,3\n" + ",0,0,0,0,0,8,0,0,2,0,10\n",
+				csv.toString());
+	}
+
+}
@@ -0,0 +1,102 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.prob.parser.antlr.ProbFileBuilder;
+
+public class ProbFileBuilderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private void write(Path file, String content) throws Exception {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private ProbFileBuilder.BuildResult build() throws Exception {
+		return new ProbFileBuilder(folder.getRoot().toPath(), true, Collections.emptyList()).build();
+	}
+
+	@Test
+	public void testOnlyStaleOutputsAreRegenerated() throws Exception {
+		Path root = folder.getRoot().toPath();
+		write(root.resolve("Main.mch"), "MACHINE Main\nINCLUDES Counter\nOPERATIONS Inc = Tick\nEND");
+		write(root.resolve("Counter.mch"), "MACHINE Counter\nVARIABLES c\nINVARIANT c : INTEGER\n"
+				+ "INITIALISATION c := 0\nOPERATIONS Tick = c := c + 1\nEND");
+		write(root.resolve("sub/Other.mch"), "MACHINE Other\nCONSTANTS k\nPROPERTIES k = 1\nEND");
+
+		ProbFileBuilder.BuildResult result = build();
+		assertEquals(Arrays.asList(root.resolve("Main.mch"), root.resolve("sub/Other.mch")), result.getGenerated());
+		assertTrue(result.getFailed().isEmpty());
+		assertTrue(Files.exists(root.resolve("Main.prob")));
+		assertTrue(Files.exists(root.resolve("sub/Other.prob")));
+		assertTrue(Files.notExists(root.resolve("Counter.prob")));
+		assertTrue(new String(Files.readAllBytes(root.resolve("Main.prob")), StandardCharsets.UTF_8)
+				.contains("classical_b('Main',['Main.mch'])."));
+
+		result = build();
+		assertTrue(result.getGenerated().isEmpty());
+		assertEquals(2, result.getUpToDate().size());
+
+		// changing an included machine makes the including machine stale
+		write(root.resolve("Counter.mch"), "MACHINE Counter\nVARIABLES c\nINVARIANT c : NATURAL\n"
+				+ "INITIALISATION c := 0\nOPERATIONS Tick = c := c + 1\nEND");
+		result = build();
+		assertEquals(Collections.singletonList(root.resolve("Main.mch")), result.getGenerated());
+		assertEquals(Collections.singletonList(root.resolve("sub/Other.mch")), result.getUpToDate());
+
+		// deleted outputs are regenerated
+		Files.delete(root.resolve("sub/Other.prob"));
+		result = build();
+		assertEquals(Collections.singletonList(root.resolve("sub/Other.mch")), result.getGenerated());
+	}
+
+	@Test
+	public void testChangedDefinitionFilesMakeOutputsStale() throws Exception {
+		Path root = folder.getRoot().toPath();
+		write(root.resolve("Main.mch"), "MACHINE Main\nDEFINITIONS \"Lib.def\"\nCONSTANTS k\nPROPERTIES k = VAL\nEND");
+		write(root.resolve("Lib.def"), "DEFINITIONS \"Nested.def\"; VAL == NESTED");
+		write(root.resolve("Nested.def"), "DEFINITIONS NESTED == 1");
+		ProbFileBuilder.BuildResult result = build();
+		assertEquals(Collections.singletonList(root.resolve("Main.mch")), result.getGenerated());
+		assertTrue(build().getGenerated().isEmpty());
+
+		write(root.resolve("Lib.def"), "DEFINITIONS \"Nested.def\"; VAL == NESTED + 1");
+		result = build();
+		assertEquals(Collections.singletonList(root.resolve("Main.mch")), result.getGenerated());
+		assertTrue(new String(Files.readAllBytes(root.resolve("Main.prob")), StandardCharsets.UTF_8)
+				.contains("add("));
+
+		// nested includes are recorded as well
+		write(root.resolve("Nested.def"), "DEFINITIONS NESTED == 2");
+		result = build();
+		assertEquals(Collections.singletonList(root.resolve("Main.mch")), result.getGenerated());
+		assertTrue(build().getGenerated().isEmpty());
+	}
+
+	@Test
+	public void testFailedMachinesAreRetried() throws Exception {
+		Path root = folder.getRoot().toPath();
+		write(root.resolve("Bad.mch"), "MACHINE Bad\nCONSTANTS k\nPROPERTIES k = TRUE & k = 1\nEND");
+		ProbFileBuilder.BuildResult result = build();
+		assertEquals(Collections.singleton(root.resolve("Bad.mch")), result.getFailed().keySet());
+
+		write(root.resolve("Bad.mch"), "MACHINE Bad\nCONSTANTS k\nPROPERTIES k = 1\nEND");
+		result = build();
+		assertEquals(Collections.singletonList(root.resolve("Bad.mch")), result.getGenerated());
+		assertTrue(new File(root.toFile(), ProbFileBuilder.MANIFEST).exists());
+	}
+}
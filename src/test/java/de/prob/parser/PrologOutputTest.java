@@ -0,0 +1,225 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.BProject;
+import de.prob.parser.antlr.FastReadTermOutput;
+import de.prob.parser.antlr.PrologASTPrinter;
+import de.prob.parser.antlr.PrologTermWriter;
+import de.prob.parser.ast.SymbolTable;
+
+public class PrologOutputTest {
+
+	private String getMachine() {
+		String machine = "MACHINE test\n";
+		machine += "SETS S; E = {e1, e2}\n";
+		machine += "DEFINITIONS Limit == 10\n";
+		machine += "CONSTANTS k\n";
+		machine += "PROPERTIES k = 3 & k : NATURAL & k : {1, 2, 3}\n";
+		machine += "VARIABLES x, y, s\n";
+		machine += "INVARIANT x : INTEGER & y : E & s : seq(INTEGER)\n";
+		machine += "INITIALISATION x := 1 || y := e1 || s := [1, 2]\n";
+		machine += "OPERATIONS\n";
+		machine += "  IncX = SELECT x < 10 THEN x := x + 1 END;\n";
+		machine += "  r <-- Get(p) = PRE p : INTEGER THEN r := x + p END;\n";
+		machine += "  Choose = ANY a WHERE a : 1..k THEN x := a END;\n";
+		machine += "  Cond = IF x > 1 THEN x := 1 ELSIF x = 0 THEN x := 2 ELSE skip END\n";
+		machine += "END";
+		return machine;
+	}
+
+	@Test
+	public void testFastReadEncoding() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		FastReadTermOutput out = new FastReadTermOutput(bytes);
+		out.openTerm("f", 3, false);
+		out.atom("a");
+		out.openList();
+		out.atom("b");
+		out.atom(SymbolTable.intern("C"));
+		out.closeList();
+		out.integer(BigInteger.valueOf(-1));
+		out.closeTerm();
+		out.flush();
+		byte[] expected = "DSf\0\3Aa\0[Ab\0[AC\0]I-1\0".getBytes(StandardCharsets.UTF_8);
+		assertArrayEquals(expected, bytes.toByteArray());
+	}
+
+	@Test
+	public void testFastReadEncodesSameTermAsText() throws Exception {
+		BProject project = Antlr4BParser.createBProjectFromMachineStrings(getMachine());
+		String text = new PrologASTPrinter().visitMachineNode(project.getMainMachine());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		FastReadTermOutput out = new FastReadTermOutput(bytes);
+		new PrologTermWriter(out).visitMachineNode(project.getMainMachine());
+		out.flush();
+
+		assertEquals(text.replace(", ", ","), new FastReadDecoder(bytes.toByteArray()).decode());
+	}
+
+	private String getMachineWithManyOperations() {
+		StringBuilder machine = new StringBuilder("MACHINE many\n");
+		machine.append("CONSTANTS c\n");
+		machine.append("PROPERTIES c : NATURAL");
+		for (int i = 0; i < 40; i++) {
+			machine.append(" & c > ").append(i);
+		}
+		machine.append("\nVARIABLES x\n");
+		machine.append("INVARIANT x : INTEGER\n");
+		machine.append("INITIALISATION x := 0\n");
+		machine.append("OPERATIONS\n");
+		for (int i = 0; i < 50; i++) {
+			machine.append(i == 0 ? "  " : ";\n  ");
+			machine.append("Op").append(i).append(" = SELECT x < ").append(i).append(" THEN x := x + ").append(i)
+					.append(" END");
+		}
+		machine.append("\nEND");
+		return machine.toString();
+	}
+
+	private byte[] printFastRead(BProject project, boolean parallel) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		FastReadTermOutput out = new FastReadTermOutput(bytes);
+		PrologTermWriter writer = new PrologTermWriter(out);
+		writer.setParallel(parallel);
+		writer.visitMachineNode(project.getMainMachine());
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testParallelOutputIsIdentical() throws Exception {
+		BProject project = Antlr4BParser.createBProjectFromMachineStrings(getMachineWithManyOperations());
+		String sequential = new PrologASTPrinter().visitMachineNode(project.getMainMachine());
+		StringBuilder parallel = new StringBuilder();
+		PrologTermWriter writer = new PrologTermWriter(parallel);
+		writer.setParallel(true);
+		writer.visitMachineNode(project.getMainMachine());
+		assertEquals(sequential, parallel.toString());
+
+		assertArrayEquals(printFastRead(project, false), printFastRead(project, true));
+	}
+
+	@Test
+	public void testLargeConjunctionInFastRead() throws Exception {
+		StringBuilder machine = new StringBuilder("MACHINE large\nCONSTANTS c\nPROPERTIES c : NATURAL");
+		for (int i = 0; i < 300; i++) {
+			machine.append(" & c > ").append(i);
+		}
+		machine.append("\nEND");
+		BProject project = Antlr4BParser.createBProjectFromMachineStrings(machine.toString());
+		byte[] bytes = printFastRead(project, false);
+		assertArrayEquals(bytes, printFastRead(project, true));
+
+		String decoded = new FastReadDecoder(bytes).decode();
+		assertTrue(decoded, decoded.contains("properties(none,conjunct(none,member(none,"));
+		assertTrue(decoded, decoded.contains("integer(none,251)),conjunct(none,greater(none,identifier(none,c),integer(none,252))"));
+		assertTrue(decoded, decoded.contains("integer(none,299))))),initialisation("));
+	}
+
+	@Test
+	public void testFastReadStringEscapes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		FastReadTermOutput out = new FastReadTermOutput(bytes);
+		out.stringLiteral("\"a\\\"b\\n\"");
+		out.flush();
+		byte[] expected = "D[I97\0[I34\0[I98\0[I10\0]".getBytes(StandardCharsets.UTF_8);
+		assertArrayEquals(expected, bytes.toByteArray());
+	}
+
+	@Test
+	public void testPositions() throws Exception {
+		String machine = "MACHINE pos\n";
+		machine += "VARIABLES x\n";
+		machine += "INVARIANT x : INTEGER\n";
+		machine += "INITIALISATION x := 10\n";
+		machine += "END";
+		BProject project = Antlr4BParser.createBProjectFromMachineStrings(machine);
+		StringBuilder sb = new StringBuilder();
+		PrologTermWriter writer = new PrologTermWriter(sb);
+		writer.setPositions(true);
+		writer.visitMachineNode(project.getMainMachine());
+		String output = sb.toString();
+		assertTrue(output, output.contains("variables(none, [identifier(p4(1,2,11,12), x)])"));
+		assertTrue(output, output.contains("member(p4(1,3,11,22),identifier(p4(1,3,11,12), x), integer_set(p4(1,3,15,22)))"));
+		assertTrue(output, output.contains("integer(p4(1,4,21,23), 10)"));
+		assertTrue(output, output.startsWith("machine(abstract_machine(p5(1,1,1,5,4), "));
+	}
+
+	/**
+	 * Renders a term in fastrw format as textual Prolog without blanks.
+	 */
+	private static class FastReadDecoder {
+		private final byte[] bytes;
+		private int index = 0;
+
+		FastReadDecoder(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		String decode() {
+			assertEquals('D', bytes[index++]);
+			StringBuilder sb = new StringBuilder();
+			decodeTerm(sb);
+			assertEquals(bytes.length, index);
+			return sb.toString();
+		}
+
+		private String readString() {
+			int start = index;
+			while (bytes[index] != 0) {
+				index++;
+			}
+			return new String(bytes, start, index++ - start, StandardCharsets.UTF_8);
+		}
+
+		private void decodeTerm(StringBuilder sb) {
+			byte tag = bytes[index++];
+			switch (tag) {
+			case 'A':
+				sb.append(SymbolTable.intern(readString()).getPrologAtom());
+				break;
+			case 'I':
+			case 'F':
+				sb.append(readString());
+				break;
+			case 'S':
+				sb.append(readString()).append('(');
+				int arity = bytes[index++] & 0xff;
+				for (int i = 0; i < arity; i++) {
+					if (i > 0) {
+						sb.append(',');
+					}
+					decodeTerm(sb);
+				}
+				sb.append(')');
+				break;
+			case '[':
+			case ']':
+				sb.append('[');
+				index--;
+				while (bytes[index++] == '[') {
+					if (sb.charAt(sb.length() - 1) != '[') {
+						sb.append(',');
+					}
+					decodeTerm(sb);
+				}
+				sb.append(']');
+				break;
+			default:
+				throw new AssertionError("Unexpected tag " + (char) tag);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.PrologTermOutput;
+import de.prob.parser.antlr.RulesMachineASTCreator;
+import de.prob.parser.ast.visitors.RuleDependencyGraph;
+
+public class RuleDependencyGraphTest {
+
+	private static RuleDependencyGraph analyse(String operations) {
+		return RuleDependencyGraph.analyse(RulesMachineASTCreator.createRulesMachineAST(
+				Antlr4BParser.parseRulesMachine("RULES_MACHINE Rules\nOPERATIONS\n" + operations + "\nEND")));
+	}
+
+	private static String rule(String name, String attributes) {
+		return "RULE " + name + " " + attributes + " BODY RULE_FAIL(\"" + name + "\") END";
+	}
+
+	private static String computation(String name, String attributes) {
+		return "COMPUTATION " + name + " " + attributes + " BODY DEFINE v_" + name
+				+ " TYPE POW(INTEGER) VALUE {} END END";
+	}
+
+	@Test
+	public void testLevels() {
+		RuleDependencyGraph graph = analyse(String.join(";\n", //
+				computation("c1", ""), //
+				computation("Compute2", "DEPENDS_ON_COMPUTATION c1"), //
+				rule("r1", "DEPENDS_ON_COMPUTATION c1"), //
+				rule("r2", "DEPENDS_ON_COMPUTATION Compute2 DEPENDS_ON_RULE r1"), //
+				rule("r3", "PRECONDITION SUCCEEDED_RULE(r1)"), //
+				rule("r4", ""), //
+				"FUNCTION f BODY skip END"));
+		assertEquals(Arrays.asList(Arrays.asList("c1", "r4"), Arrays.asList("Compute2", "r1"),
+				Arrays.asList("r2", "r3")), graph.getLevels());
+		assertEquals(2, graph.getLevel("r3"));
+		assertFalse(graph.hasCycles());
+		assertTrue(graph.getErrors().isEmpty());
+
+		StringBuilder out = new StringBuilder();
+		graph.write(new PrologTermOutput(out));
+		assertEquals(String.join(System.lineSeparator(), "rule_execution_level(0,[c1, r4]).",
+				"rule_execution_level(1,['Compute2', r1]).", "rule_execution_level(2,[r2, r3]).",
+				""), out.toString());
+	}
+
+	@Test
+	public void testCycles() {
+		RuleDependencyGraph graph = analyse(String.join(";\n", //
+				rule("r1", ""), //
+				rule("r2", "DEPENDS_ON_RULE r1 DEPENDS_ON_RULE r4"), //
+				rule("r3", "DEPENDS_ON_RULE r2"), //
+				rule("r4", "DEPENDS_ON_RULE r3"), //
+				rule("r5", "DEPENDS_ON_RULE r4"), //
+				rule("r6", "DEPENDS_ON_RULE r6")));
+		assertEquals(Collections.singletonList(Collections.singletonList("r1")), graph.getLevels());
+		assertEquals(Arrays.asList(Arrays.asList("r2", "r4", "r3"), Collections.singletonList("r6")),
+				graph.getCycles());
+		// r5 is not on a cycle but depends on one
+		assertEquals(-1, graph.getLevel("r5"));
+	}
+
+	@Test
+	public void testUnknownDependencies() {
+		RuleDependencyGraph graph = analyse(String.join(";\n", //
+				computation("c1", "DEPENDS_ON_RULE c1"), //
+				rule("r1", "DEPENDS_ON_COMPUTATION missing")));
+		assertEquals(Arrays.asList("c1 depends on unknown rule c1", "r1 depends on unknown computation missing"),
+				graph.getErrors());
+		assertEquals(Collections.singletonList(Arrays.asList("c1", "r1")), graph.getLevels());
+	}
+
+	@Test
+	public void testLongChain() {
+		StringBuilder operations = new StringBuilder(rule("r0", ""));
+		for (int i = 1; i < 5000; i++) {
+			operations.append(";\n").append(rule("r" + i, "DEPENDS_ON_RULE r" + (i - 1)));
+		}
+		operations.append(";\n").append(rule("r5000", "DEPENDS_ON_RULE r5001"));
+		operations.append(";\n").append(rule("r5001", "DEPENDS_ON_RULE r5000"));
+		RuleDependencyGraph graph = analyse(operations.toString());
+		assertEquals(5000, graph.getLevels().size());
+		assertEquals(1, graph.getCycles().size());
+	}
+
+}
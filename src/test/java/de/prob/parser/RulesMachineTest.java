@@ -0,0 +1,97 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.RulesMachineASTCreator;
+import de.prob.parser.ast.nodes.rules.RuleOperationNode;
+import de.prob.parser.ast.nodes.rules.RulesMachineNode;
+
+public class RulesMachineTest {
+
+	private static final String MACHINE = "RULES_MACHINE Rules\n" //
+			+ "DEFINITIONS limit == 10\n" //
+			+ "OPERATIONS\n" //
+			+ "  COMPUTATION comp_values\n" //
+			+ "  BODY\n" //
+			+ "    DEFINE values TYPE POW(INTEGER) VALUE 1..limit END\n" //
+			+ "  END;\n" //
+			+ "  RULE rule_positive\n" //
+			+ "  DEPENDS_ON_COMPUTATION comp_values\n" //
+			+ "  RULEID id_1\n" //
+			+ "  CLASSIFICATION \"check\"\n" //
+			+ "  TAGS \"fast\", \"small\"\n" //
+			+ "  ERROR_TYPES 2\n" //
+			+ "  ACTIVATION 1 = 1\n" //
+			+ "  BODY\n" //
+			+ "    RULE_FORALL x WHERE x : values EXPECT x > 0\n" //
+			+ "    COUNTEREXAMPLE STRING_FORMAT(\"~w not positive\", x) END\n" //
+			+ "  END;\n" //
+			+ "  RULE rule_after\n" //
+			+ "  DEPENDS_ON_RULE rule_positive\n" //
+			+ "  PRECONDITION SUCCEEDED_RULE(rule_positive)\n" //
+			+ "  BODY\n" //
+			+ "    RULE_FAIL(\"always\")\n" //
+			+ "  END;\n" //
+			+ "  FUNCTION out <-- inc(p) PRECONDITION p : INTEGER BODY out := p + 1 END;\n" //
+			+ "  Op = skip\n" //
+			+ "END";
+
+	private static RulesMachineNode create(String machine) {
+		return RulesMachineASTCreator.createRulesMachineAST(Antlr4BParser.parseRulesMachine(machine));
+	}
+
+	@Test
+	public void testRulesAndAttributes() {
+		RulesMachineNode machine = create(MACHINE);
+		assertEquals("Rules", machine.getName());
+		assertTrue(machine.isRulesMachine());
+		assertEquals(2, machine.getRules().size());
+		assertEquals(1, machine.getComputations().size());
+		assertEquals(Collections.singletonList("Op"), machine.getClassicalOperations());
+
+		RuleOperationNode computation = machine.getOperation("comp_values");
+		assertEquals(Collections.singleton("values"), computation.getDefinedVariables());
+
+		RuleOperationNode rule = machine.getOperation("rule_positive");
+		assertEquals(RuleOperationNode.Kind.RULE, rule.getKind());
+		assertEquals(Collections.singletonList("comp_values"), rule.getDependsOnComputations());
+		assertEquals("id_1", rule.getRuleId());
+		assertEquals("\"check\"", rule.getClassification());
+		assertEquals(Arrays.asList("\"fast\"", "\"small\""), rule.getTags());
+		assertEquals(2, rule.getErrorTypes());
+		assertEquals("1 = 1", rule.getActivation());
+		assertTrue(rule.getBody().startsWith("RULE_FORALL x WHERE x : values"));
+
+		RuleOperationNode after = machine.getOperation("rule_after");
+		assertEquals(Collections.singletonList("rule_positive"), after.getDependsOnRules());
+		assertEquals(Collections.singleton("rule_positive"), after.getReferencedRules());
+		assertEquals(1, after.getErrorTypes());
+
+		RuleOperationNode function = machine.getOperation("inc");
+		assertEquals(RuleOperationNode.Kind.FUNCTION, function.getKind());
+		assertEquals(Collections.singletonList("p"), function.getParameters());
+		assertEquals(Collections.singletonList("out"), function.getReturnValues());
+		assertEquals("p : INTEGER", function.getPrecondition());
+	}
+
+	@Test
+	public void testClassicalMachine() {
+		RulesMachineNode machine = create("MACHINE Plain\nOPERATIONS Op = skip\nEND");
+		assertFalse(machine.isRulesMachine());
+		assertTrue(machine.getOperations().isEmpty());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testSyntaxError() {
+		create("RULES_MACHINE Broken\nOPERATIONS RULE r BODY skip\nEND");
+	}
+
+}
@@ -1,12 +1,34 @@
 package de.prob.parser;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import de.prob.parser.antlr.Antlr4BParser;
+import de.prob.parser.antlr.BProject;
 import de.prob.parser.antlr.ScopeException;
+import de.prob.parser.ast.nodes.DeclarationNode;
+import de.prob.parser.ast.nodes.MachineNode;
+import de.prob.parser.ast.nodes.expression.IdentifierExprNode;
+import de.prob.parser.ast.nodes.predicate.PredicateOperatorWithExprArgsNode;
+import de.prob.parser.ast.visitors.MachineScopeChecker;
+import de.prob.parser.ast.visitors.MachineScopeViews;
+import de.prob.parser.ast.visitors.MachineScopeViews.ScopeView;
 
 public class ScopeCheckerTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void testKnownOperation() throws Exception {
 		String machineA = "MACHINE A\n";
@@ -85,6 +107,99 @@ public class ScopeCheckerTest {
 		checkmachines(machineA, machineB);
 	}
 
+	@Test
+	public void testNestedQuantifiersShadowVariable() throws Exception {
+		String machineA = "MACHINE A\n";
+		machineA += "VARIABLES x INVARIANT x = 1 & !x.(x : NATURAL => #x.(x : BOOL & x = TRUE)) & x = 1\n";
+		machineA += "INITIALISATION x := 1 \n";
+		machineA += "END";
+		checkmachines(machineA);
+	}
+
+	@Test(expected = ScopeException.class)
+	public void testUnknownQuantifiedVariableOutsideQuantifier() throws Exception {
+		String machineA = "MACHINE A\n";
+		machineA += "PROPERTIES #y.(y : NATURAL) & y = 1\n";
+		machineA += "END";
+		checkmachines(machineA);
+	}
+
+	@Test(expected = ScopeException.class)
+	public void testParameterOfOtherOperation() throws Exception {
+		String machineA = "MACHINE A\n";
+		machineA += "OPERATIONS\n";
+		machineA += "foo(p) = PRE p : NATURAL THEN skip END;\n";
+		machineA += "bar = PRE p : NATURAL THEN skip END \n";
+		machineA += "END";
+		checkmachines(machineA);
+	}
+
+	@Test
+	public void testRenamedDeclarationsAreShared() throws Exception {
+		BProject project = loadRenamedProject();
+		MachineNode main = project.getMachineNode("Main");
+		MachineNode sub = project.getMachineNode("Sub");
+		MachineNode lib = project.getMachineNode("Lib");
+		DeclarationNode variable = getDeclaration(main);
+		assertEquals("a.v", variable.getName());
+		assertSame(lib, variable.getSurroundingMachineNode());
+		assertSame(variable, getDeclaration(sub));
+		assertSame(variable, main.getIncludedRenamedVariables().get(0));
+		assertSame(variable, sub.getIncludedRenamedVariables().get(0));
+
+		MachineScopeViews views = new MachineScopeViews();
+		ScopeView view = views.getView(lib);
+		assertSame(view, views.getView(lib));
+		new MachineScopeChecker(sub, views);
+		new MachineScopeChecker(main, views);
+		assertSame(view.getVariables().get(0), getDeclaration(main));
+		assertSame(view.getVariables().get(0), getDeclaration(sub));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testScopeViewsCannotBeModified() throws Exception {
+		MachineNode lib = loadRenamedProject().getMachineNode("Lib");
+		List<DeclarationNode> variables = new MachineScopeViews().getView(lib).getVariables();
+		variables.add(variables.get(0));
+	}
+
+	@Test
+	public void testNoDuplicateRenamedVariables() throws Exception {
+		// Main sees a.v through a.Lib and through Sub
+		BProject project = loadRenamedProject();
+		MachineNode main = project.getMachineNode("Main");
+		MachineNode sub = project.getMachineNode("Sub");
+		assertEquals(1, main.getIncludedRenamedVariables().size());
+		assertEquals(1, sub.getIncludedRenamedVariables().size());
+
+		// checking the machines again does not add to the lists
+		MachineScopeViews views = new MachineScopeViews();
+		new MachineScopeChecker(sub, views);
+		new MachineScopeChecker(main, views);
+		new MachineScopeChecker(main, views);
+		assertEquals(1, main.getIncludedRenamedVariables().size());
+		assertEquals(1, sub.getIncludedRenamedVariables().size());
+	}
+
+	private BProject loadRenamedProject() throws Exception {
+		File directory = folder.newFolder();
+		write(directory, "Lib", "MACHINE Lib\nVARIABLES v\nINVARIANT v : INTEGER\nINITIALISATION v := 0\nEND");
+		write(directory, "Sub", "MACHINE Sub\nINCLUDES a.Lib\nINVARIANT a.v = 1\nEND");
+		File main = write(directory, "Main", "MACHINE Main\nINCLUDES a.Lib, Sub\nINVARIANT a.v = 2\nEND");
+		return Antlr4BParser.createBProjectFromMainMachineFile(main);
+	}
+
+	private File write(File directory, String name, String machine) throws IOException {
+		File file = new File(directory, name + ".mch");
+		Files.write(file.toPath(), machine.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private DeclarationNode getDeclaration(MachineNode machine) {
+		PredicateOperatorWithExprArgsNode invariant = (PredicateOperatorWithExprArgsNode) machine.getInvariant();
+		return ((IdentifierExprNode) invariant.getExpressionNodes().get(0)).getDeclarationNode();
+	}
+
 	private void checkmachines(String main, String... others) throws Exception {
 		Antlr4BParser.createBProjectFromMachineStrings(main, others);
 	}
@@ -0,0 +1,104 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import de.prob.parser.ast.Symbol;
+import de.prob.parser.ast.SymbolTable;
+
+public class SymbolTableTest {
+
+	@Test
+	public void testDenseIds() {
+		SymbolTable table = new SymbolTable();
+		Symbol x = table.getSymbol("x");
+		Symbol y = table.getSymbol("y");
+		assertSame(x, table.getSymbol("x"));
+		assertEquals(0, x.getId());
+		assertEquals(1, y.getId());
+		assertSame(y, table.getSymbol(1));
+		assertNull(table.getSymbol(2));
+		assertEquals(2, table.size());
+	}
+
+	@Test
+	public void testPrologAtom() {
+		SymbolTable table = new SymbolTable();
+		assertEquals("x", table.getSymbol("x").getPrologAtom());
+		assertEquals("'Foo'", table.getSymbol("Foo").getPrologAtom());
+		assertEquals("a.b", table.getSymbol("a.b").getPrologAtom());
+	}
+
+	@Test
+	public void testLookUpDoesNotIntern() {
+		SymbolTable table = new SymbolTable();
+		assertNull(table.lookUp("x"));
+		assertEquals(0, table.size());
+		Symbol x = table.getSymbol("x");
+		assertSame(x, table.lookUp("x"));
+	}
+
+	@Test
+	public void testUnusedSymbolsAreRemoved() throws Exception {
+		SymbolTable table = new SymbolTable();
+		Symbol kept = table.getSymbol("kept");
+		for (int i = 0; i < 1000; i++) {
+			table.getSymbol("unused" + i);
+		}
+		for (int i = 0; i < 50 && table.size() > 1; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(1, table.size());
+		assertSame(kept, table.lookUp("kept"));
+		assertNull(table.lookUp("unused0"));
+		// the ids of removed symbols are handed out again
+		Symbol y = table.getSymbol("y");
+		assertTrue(y.getId() <= 1000);
+		assertNotSame(kept.getId(), y.getId());
+	}
+
+	@Test
+	public void testConcurrentInterning() throws Exception {
+		SymbolTable table = new SymbolTable();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<Symbol>>> results = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				results.add(executor.submit(() -> {
+					List<Symbol> symbols = new ArrayList<>();
+					for (int i = 0; i < 1000; i++) {
+						symbols.add(table.getSymbol("x" + i));
+					}
+					return symbols;
+				}));
+			}
+			List<Symbol> first = results.get(0).get();
+			for (Future<List<Symbol>> result : results) {
+				List<Symbol> symbols = result.get();
+				for (int i = 0; i < symbols.size(); i++) {
+					assertSame(first.get(i), symbols.get(i));
+				}
+			}
+			assertEquals(1000, table.size());
+			for (Symbol symbol : first) {
+				assertTrue(symbol.getId() < 1000);
+				assertSame(symbol, table.getSymbol(symbol.getId()));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}